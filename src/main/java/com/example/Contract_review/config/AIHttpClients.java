@@ -0,0 +1,143 @@
+package com.example.Contract_review.config;
+
+import io.netty.channel.ChannelOption;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.client.ReactorClientHttpRequestFactory;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+import reactor.netty.transport.ProxyProvider;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * AI 提供商 HTTP 客户端
+ *
+ * 所有 AI 提供商（Qwen、Claude、OpenAI、豆包）统一使用 Reactor Netty 连接池：
+ * - 每个提供商独立的连接池（keep-alive 复用连接），最大连接数、连接超时、响应超时可按提供商配置
+ * - 启用 gzip 压缩；HTTPS 下通过 ALPN 协商 HTTP/2，不支持时回退 HTTP/1.1
+ * - 沿用 ai.service.proxy 的代理配置，可按提供商关闭
+ * - 同步调用（RestTemplate）和响应式调用（WebClient）共用同一连接池
+ */
+@Component
+public class AIHttpClients {
+
+    private static final Logger logger = LoggerFactory.getLogger(AIHttpClients.class);
+
+    @Autowired
+    private AIServiceConfig aiServiceConfig;
+
+    @Autowired
+    private WebClient.Builder webClientBuilder;
+
+    private final Map<String, ConnectionProvider> connectionProviders = new ConcurrentHashMap<>();
+    private final Map<String, HttpClient> httpClients = new ConcurrentHashMap<>();
+    private final Map<String, RestTemplate> restTemplates = new ConcurrentHashMap<>();
+    private final Map<String, WebClient> webClients = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, Object>> settings = new ConcurrentHashMap<>();
+
+    /**
+     * 获取提供商的 RestTemplate（同步调用）
+     *
+     * @param provider 提供商标识（qwen / claude / openai / doubao）
+     */
+    public RestTemplate restTemplate(String provider) {
+        return restTemplates.computeIfAbsent(provider, key -> {
+            RestTemplate restTemplate = new RestTemplate(new ReactorClientHttpRequestFactory(httpClient(key)));
+            restTemplate.setErrorHandler(new AIServiceErrorHandler());
+            return restTemplate;
+        });
+    }
+
+    /**
+     * 获取提供商的 WebClient（响应式调用，保留 Spring Boot 的编解码配置）
+     *
+     * @param provider 提供商标识（qwen / claude / openai / doubao）
+     */
+    public WebClient webClient(String provider) {
+        return webClients.computeIfAbsent(provider, key -> webClientBuilder.clone()
+                .clientConnector(new ReactorClientHttpConnector(httpClient(key)))
+                .build());
+    }
+
+    /**
+     * 获取已创建的各提供商连接池配置
+     */
+    public Map<String, Object> getStats() {
+        return new LinkedHashMap<>(settings);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        connectionProviders.values().forEach(ConnectionProvider::dispose);
+    }
+
+    private HttpClient httpClient(String provider) {
+        return httpClients.computeIfAbsent(provider, this::createHttpClient);
+    }
+
+    private HttpClient createHttpClient(String provider) {
+        AIServiceConfig.HttpConfig http = aiServiceConfig.getHttp();
+        AIServiceConfig.ProviderHttpConfig override = http.forProvider(provider);
+        int maxConnections = override.getMaxConnections() != null ? override.getMaxConnections() : http.getMaxConnections();
+        int connectTimeoutMs = override.getConnectTimeoutMs() != null ? override.getConnectTimeoutMs() : http.getConnectTimeoutMs();
+        int responseTimeoutSeconds = override.getResponseTimeoutSeconds() != null
+                ? override.getResponseTimeoutSeconds() : http.getResponseTimeoutSeconds();
+
+        ConnectionProvider pool = ConnectionProvider.builder("ai-" + provider)
+                .maxConnections(maxConnections)
+                .pendingAcquireMaxCount(http.getPendingAcquireMaxCount())
+                .pendingAcquireTimeout(Duration.ofSeconds(http.getPendingAcquireTimeoutSeconds()))
+                .maxIdleTime(Duration.ofSeconds(http.getMaxIdleSeconds()))
+                .evictInBackground(Duration.ofSeconds(Math.max(10, http.getMaxIdleSeconds())))
+                .build();
+        connectionProviders.put(provider, pool);
+
+        HttpClient client = HttpClient.create(pool)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeoutMs)
+                .option(ChannelOption.SO_KEEPALIVE, true)
+                .responseTimeout(Duration.ofSeconds(responseTimeoutSeconds))
+                .compress(http.isCompression());
+
+        if (http.isHttp2()) {
+            client = client.protocol(HttpProtocol.H2, HttpProtocol.HTTP11);
+        }
+
+        AIServiceConfig.ProxyConfig proxy = aiServiceConfig.getProxy();
+        boolean useProxy = proxy.isEnabled() && override.isUseProxy();
+        if (useProxy) {
+            ProxyProvider.Proxy type = "SOCKS".equalsIgnoreCase(proxy.getType())
+                    ? ProxyProvider.Proxy.SOCKS5
+                    : ProxyProvider.Proxy.HTTP;
+            client = client.proxy(spec -> spec.type(type).host(proxy.getHost()).port(proxy.getPort()));
+        } else {
+            // 明确禁用代理，不使用系统代理设置
+            client = client.noProxy();
+        }
+
+        Map<String, Object> resolved = new LinkedHashMap<>();
+        resolved.put("maxConnections", maxConnections);
+        resolved.put("connectTimeoutMs", connectTimeoutMs);
+        resolved.put("responseTimeoutSeconds", responseTimeoutSeconds);
+        resolved.put("compression", http.isCompression());
+        resolved.put("http2", http.isHttp2());
+        resolved.put("proxy", useProxy);
+        settings.put(provider, resolved);
+
+        logger.info("【AI HTTP】创建连接池: provider={}, maxConnections={}, connectTimeout={}ms, responseTimeout={}s, " +
+                        "gzip={}, http2={}, proxy={}",
+                provider, maxConnections, connectTimeoutMs, responseTimeoutSeconds,
+                http.isCompression(), http.isHttp2(), useProxy ? proxy.getHost() + ":" + proxy.getPort() : "无");
+        return client;
+    }
+}
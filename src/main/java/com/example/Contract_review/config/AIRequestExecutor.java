@@ -0,0 +1,175 @@
+package com.example.Contract_review.config;
+
+import com.example.Contract_review.util.AdaptiveConcurrencyLimiter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * AI 请求执行器
+ *
+ * 所有 AI 客户端的请求都经过这里：
+ * - 每个提供商一个自适应并发限制器（AIMD），遇到 429/503 或超时自动收缩，延迟正常时逐步放开
+ * - 429、5xx 和连接失败时非阻塞重试（Mono.delay，不占用线程），优先遵循响应的 Retry-After，
+ *   否则指数退避加随机抖动；重试等待期间不占用并发名额
+ * - 超时不重试：读超时长达数分钟，重试会让卡住的请求数倍延长才失败，超时只用于收缩并发
+ * - 流式请求只在尚未收到任何数据时重试，避免重复输出
+ */
+@Component
+public class AIRequestExecutor {
+
+    private static final Logger logger = LoggerFactory.getLogger(AIRequestExecutor.class);
+
+    @Autowired
+    private AIServiceConfig aiServiceConfig;
+
+    private final Map<String, AdaptiveConcurrencyLimiter> limiters = new ConcurrentHashMap<>();
+
+    /**
+     * 在提供商的并发限制内执行请求，失败时按策略重试
+     *
+     * @param provider 提供商标识（qwen / claude / openai / doubao）
+     * @param call 请求（每次重试重新调用）
+     */
+    public <T> Mono<T> execute(String provider, Supplier<Mono<T>> call) {
+        AdaptiveConcurrencyLimiter limiter = limiter(provider);
+        return Mono.defer(() -> limiter.run(call))
+                .retryWhen(retrySpec(provider, () -> true));
+    }
+
+    /**
+     * 在提供商的并发限制内执行流式请求，尚未收到数据时失败才重试
+     *
+     * @param provider 提供商标识
+     * @param call 流式请求（每次重试重新调用）
+     */
+    public <T> Flux<T> executeMany(String provider, Supplier<Flux<T>> call) {
+        AdaptiveConcurrencyLimiter limiter = limiter(provider);
+        AtomicBoolean received = new AtomicBoolean();
+        return Flux.defer(() -> limiter.runMany(call))
+                .doOnNext(item -> received.set(true))
+                .retryWhen(retrySpec(provider, () -> !received.get()));
+    }
+
+    /**
+     * 各提供商并发限制器的统计信息
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        limiters.forEach((provider, limiter) -> stats.put(provider, limiter.getStats()));
+        return stats;
+    }
+
+    /**
+     * 是否表示提供商过载（收缩并发）
+     */
+    static boolean isOverload(Throwable e) {
+        if (e instanceof WebClientResponseException) {
+            int status = ((WebClientResponseException) e).getStatusCode().value();
+            return status == 429 || status == 503;
+        }
+        return isTimeout(e);
+    }
+
+    /**
+     * 是否可以重试：429、5xx、连接失败（超时不重试）
+     */
+    static boolean isRetryable(Throwable e) {
+        if (isTimeout(e)) {
+            return false;
+        }
+        if (e instanceof WebClientResponseException) {
+            int status = ((WebClientResponseException) e).getStatusCode().value();
+            return status == 429 || status >= 500;
+        }
+        return e instanceof WebClientRequestException;
+    }
+
+    /**
+     * 解析 Retry-After（秒数或 HTTP 日期），没有时返回 null
+     */
+    static Duration retryAfter(Throwable e) {
+        if (!(e instanceof WebClientResponseException)) {
+            return null;
+        }
+        String value = ((WebClientResponseException) e).getHeaders().getFirst(HttpHeaders.RETRY_AFTER);
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        try {
+            return Duration.ofSeconds(Math.max(0, Long.parseLong(value.trim())));
+        } catch (NumberFormatException ignored) {
+            // 非秒数时按 HTTP 日期解析
+        }
+        try {
+            ZonedDateTime at = ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+            Duration delay = Duration.between(ZonedDateTime.now(at.getZone()), at);
+            return delay.isNegative() ? Duration.ZERO : delay;
+        } catch (Exception ignored) {
+            return null;
+        }
+    }
+
+    private static boolean isTimeout(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof TimeoutException || t instanceof io.netty.handler.timeout.TimeoutException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private AdaptiveConcurrencyLimiter limiter(String provider) {
+        return limiters.computeIfAbsent(provider, key -> {
+            AIServiceConfig.LimiterConfig config = aiServiceConfig.getLimiter();
+            return new AdaptiveConcurrencyLimiter(key, config.getInitialLimit(), config.getMinLimit(),
+                    config.getMaxLimit(), config.getMaxQueue(), config.getBackoffRatio(),
+                    config.getLatencyTolerance(), AIRequestExecutor::isOverload);
+        });
+    }
+
+    private Retry retrySpec(String provider, Supplier<Boolean> retryAllowed) {
+        int maxRetries = Math.max(0, aiServiceConfig.getMaxRetries() - 1);
+        long baseDelayMs = aiServiceConfig.getRetryBaseDelayMs();
+        long maxDelayMs = aiServiceConfig.getRetryMaxDelayMs();
+
+        return Retry.from(signals -> signals.concatMap(signal -> {
+            Throwable failure = signal.failure();
+            long attempt = signal.totalRetries() + 1;
+            if (attempt > maxRetries || !isRetryable(failure) || !retryAllowed.get()) {
+                return Mono.error(failure);
+            }
+
+            Duration delay = retryAfter(failure);
+            if (delay == null) {
+                long backoff = baseDelayMs * (1L << Math.min(attempt - 1, 10));
+                delay = Duration.ofMillis(backoff + ThreadLocalRandom.current().nextLong(Math.max(1, backoff / 2)));
+            }
+            if (delay.toMillis() > maxDelayMs) {
+                delay = Duration.ofMillis(maxDelayMs);
+            }
+
+            logger.warn("【AI请求】{} 调用失败，{} ms 后第 {}/{} 次重试: {}",
+                    provider, delay.toMillis(), attempt, maxRetries, failure.getMessage());
+            return Mono.delay(delay);
+        }));
+    }
+}
@@ -4,6 +4,11 @@ import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 /**
  * AI服务配置
  *
@@ -44,11 +49,36 @@ public class AIServiceConfig {
      */
     private int maxRetries = 3;
 
+    /**
+     * 重试基础等待时间(毫秒)，按指数退避；响应带 Retry-After 时以其为准
+     */
+    private long retryBaseDelayMs = 1000;
+
+    /**
+     * 单次重试最长等待时间(毫秒)
+     */
+    private long retryMaxDelayMs = 30000;
+
+    /**
+     * 自适应并发限制配置（每个提供商独立限制）
+     */
+    private LimiterConfig limiter = new LimiterConfig();
+
+    /**
+     * 多提供商路由配置（主备切换、对冲请求、熔断）
+     */
+    private RoutingConfig routing = new RoutingConfig();
+
     /**
      * 代理配置
      */
     private ProxyConfig proxy = new ProxyConfig();
 
+    /**
+     * HTTP连接池配置（所有AI提供商共用，可按提供商覆盖）
+     */
+    private HttpConfig http = new HttpConfig();
+
     @Data
     public static class ProxyConfig {
         /**
@@ -72,6 +102,177 @@ public class AIServiceConfig {
         private String type = "HTTP";
     }
 
+    @Data
+    public static class LimiterConfig {
+        /**
+         * 初始并发数
+         */
+        private int initialLimit = 4;
+
+        /**
+         * 最小并发数
+         */
+        private int minLimit = 1;
+
+        /**
+         * 最大并发数
+         */
+        private int maxLimit = 16;
+
+        /**
+         * 超出并发限制时排队的请求数上限，超出时立即拒绝
+         */
+        private int maxQueue = 100;
+
+        /**
+         * 遇到限流（429/503）或超时时的并发收缩比例
+         */
+        private double backoffRatio = 0.5;
+
+        /**
+         * 延迟超过基线延迟的倍数时暂停增长（不收缩，只有 429/503/超时才收缩）
+         */
+        private double latencyTolerance = 2.0;
+    }
+
+    @Data
+    public static class RoutingConfig {
+        /**
+         * 是否启用多提供商路由；关闭时只调用选定的提供商
+         */
+        private boolean enabled = false;
+
+        /**
+         * 备选提供商顺序，主提供商之后按此顺序选择健康且可用的提供商
+         * 只有在此显式列出的提供商才会作为备选（合同内容不会发送到未列出的提供商）
+         */
+        private List<String> order = new ArrayList<>();
+
+        /**
+         * 单次审查最多调用的提供商数（含主提供商）
+         */
+        private int maxAttempts = 2;
+
+        /**
+         * 是否启用对冲：主提供商超过延迟阈值仍未返回时，同时向下一个提供商发起请求，先返回有效结果者胜出
+         */
+        private boolean hedgeEnabled = false;
+
+        /**
+         * 对冲阈值取提供商历史延迟的该分位数
+         */
+        private double hedgePercentile = 0.9;
+
+        /**
+         * 延迟样本不足时使用的对冲阈值(毫秒)
+         */
+        private long hedgeInitialDelayMs = 60000;
+
+        /**
+         * 对冲阈值下限(毫秒)
+         */
+        private long hedgeMinDelayMs = 5000;
+
+        /**
+         * 对冲阈值上限(毫秒)
+         */
+        private long hedgeMaxDelayMs = 120000;
+
+        /**
+         * 按分位数计算对冲阈值所需的最少样本数
+         */
+        private int minSamples = 20;
+
+        /**
+         * 连续失败达到该次数时熔断
+         */
+        private int failureThreshold = 3;
+
+        /**
+         * 熔断持续时间(秒)，到期后放行一次试探请求
+         */
+        private int openSeconds = 60;
+    }
+
+    @Data
+    public static class HttpConfig {
+        /**
+         * 每个提供商连接池的最大连接数
+         */
+        private int maxConnections = 50;
+
+        /**
+         * 连接池满时等待获取连接的最大请求数
+         */
+        private int pendingAcquireMaxCount = 200;
+
+        /**
+         * 等待获取连接的超时时间(秒)
+         */
+        private int pendingAcquireTimeoutSeconds = 60;
+
+        /**
+         * 空闲连接保留时间(秒)，超时后关闭
+         */
+        private int maxIdleSeconds = 60;
+
+        /**
+         * 连接超时时间(毫秒)
+         */
+        private int connectTimeoutMs = 15000;
+
+        /**
+         * 响应超时时间(秒)：两次读取之间的最长间隔，流式响应同样适用
+         */
+        private int responseTimeoutSeconds = 120;
+
+        /**
+         * 是否启用 gzip 压缩
+         */
+        private boolean compression = true;
+
+        /**
+         * 是否启用 HTTP/2（HTTPS 下通过 ALPN 协商，不支持时回退 HTTP/1.1）
+         */
+        private boolean http2 = true;
+
+        /**
+         * 按提供商覆盖的配置，键为 qwen / claude / openai / doubao
+         */
+        private Map<String, ProviderHttpConfig> providers = new HashMap<>();
+
+        /**
+         * 获取提供商的覆盖配置（未配置时返回空配置）
+         */
+        public ProviderHttpConfig forProvider(String provider) {
+            ProviderHttpConfig config = providers.get(provider);
+            return config != null ? config : new ProviderHttpConfig();
+        }
+    }
+
+    @Data
+    public static class ProviderHttpConfig {
+        /**
+         * 最大连接数（为空时使用全局配置）
+         */
+        private Integer maxConnections;
+
+        /**
+         * 连接超时时间(毫秒)（为空时使用全局配置）
+         */
+        private Integer connectTimeoutMs;
+
+        /**
+         * 响应超时时间(秒)（为空时使用全局配置）
+         */
+        private Integer responseTimeoutSeconds;
+
+        /**
+         * 是否使用 proxy 配置的代理（默认使用）
+         */
+        private boolean useProxy = true;
+    }
+
     @Data
     public static class ClaudeConfig {
         /**
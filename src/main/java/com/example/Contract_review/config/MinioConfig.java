@@ -203,6 +203,11 @@ public class MinioConfig {
              * 临时文件路径
              */
             private String temp = "temp";
+
+            /**
+             * 内容寻址文件路径（{content}/{sha256前两位}/{sha256}.{扩展名}）
+             */
+            private String content = "content";
         }
     }
 }
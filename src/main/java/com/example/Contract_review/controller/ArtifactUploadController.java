@@ -0,0 +1,47 @@
+package com.example.Contract_review.controller;
+
+import com.example.Contract_review.service.ArtifactUploadService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+/**
+ * 产物上传状态控制器
+ *
+ * 审查报告、原始合同在后台上传到 MinIO，审查结果中返回 uploadId：
+ * - GET /api/uploads/{uploadId}：查询上传状态（PENDING/UPLOADING/SUCCEEDED/FAILED）
+ * - GET /api/uploads/stats：上传队列统计
+ */
+@RestController
+@RequestMapping("/api/uploads")
+public class ArtifactUploadController {
+
+    @Autowired
+    private ArtifactUploadService artifactUploadService;
+
+    /**
+     * 查询上传状态
+     */
+    @GetMapping("/{uploadId}")
+    public ResponseEntity<?> getUpload(@PathVariable String uploadId) {
+        ArtifactUploadService.Upload upload = artifactUploadService.getUpload(uploadId);
+        if (upload == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(Map.of("success", false, "error", "上传记录不存在或已过期: " + uploadId));
+        }
+        Map<String, Object> response = upload.toStatus();
+        response.put("success", true);
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * 上传队列统计
+     */
+    @GetMapping("/stats")
+    public ResponseEntity<?> getStats() {
+        return ResponseEntity.ok(artifactUploadService.getStats());
+    }
+}
@@ -1,6 +1,9 @@
 package com.example.Contract_review.controller;
 
 import com.example.Contract_review.service.AutoReviewService;
+import com.example.Contract_review.service.ReviewJobService;
+import com.example.Contract_review.util.SimpleMultipartFileWrapper;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -27,6 +30,12 @@ public class AutoReviewController {
     @Autowired
     private AutoReviewService autoReviewService;
 
+    @Autowired
+    private ReviewJobService reviewJobService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
     /**
      * 一键自动化审查
      *
@@ -82,6 +91,31 @@ public class AutoReviewController {
         }
     }
 
+    /**
+     * 异步自动化审查
+     *
+     * 参数与一键自动化审查相同，在审查任务线程池中执行，提交后立即返回 jobId（202）。
+     * 任务成功后通过 /api/review-jobs/{jobId}/document 下载带批注的文档；队列已满时返回 429。
+     *
+     * @param file 合同文件
+     * @param contractType 合同类型
+     * @param aiProvider AI提供商
+     * @param cleanupAnchors 是否清理锚点
+     * @return 任务信息
+     */
+    @PostMapping("/jobs")
+    public ResponseEntity<?> submitAutoReview(
+            @RequestParam("file") MultipartFile file,
+            @RequestParam(defaultValue = "general") String contractType,
+            @RequestParam(defaultValue = "auto") String aiProvider,
+            @RequestParam(defaultValue = "true") boolean cleanupAnchors) throws java.io.IOException {
+
+        // 上传的临时文件在请求结束后删除，先读出内容
+        MultipartFile copy = SimpleMultipartFileWrapper.copyOf(file);
+        return ReviewJobController.submit(reviewJobService, objectMapper, "auto", file.getOriginalFilename(),
+                () -> autoReviewService.autoReview(copy, contractType, aiProvider, cleanupAnchors));
+    }
+
     /**
      * 详细模式的自动化审查
      *
@@ -1,11 +1,13 @@
 package com.example.Contract_review.controller;
 
 import com.example.Contract_review.model.ParseResult;
+import com.example.Contract_review.model.StoredAnnotateRequest;
 import com.example.Contract_review.service.ContractParseService;
 import com.example.Contract_review.service.ContractAnnotateService;
 import com.example.Contract_review.service.XmlContractAnnotateService;
 import com.example.Contract_review.service.ParseResultCache;
 import com.example.Contract_review.service.impl.ChatGPTWebReviewServiceImpl;
+import com.example.Contract_review.util.SimpleMultipartFileWrapper;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
@@ -13,13 +15,13 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.io.ByteArrayResource;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.ByteArrayInputStream;
-import java.io.IOException;
+import java.io.FileNotFoundException;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -61,11 +63,12 @@ public class ChatGPTIntegrationController {
     public ResponseEntity<?> generatePrompt(
             @RequestParam("file") MultipartFile file,
             @RequestParam(value = "contractType", defaultValue = "通用合同") String contractType,
-            @RequestParam(value = "anchors", defaultValue = "generate") String anchors) {
+            @RequestParam(value = "anchors", defaultValue = "generate") String anchors,
+            @RequestParam(value = "includeDocument", defaultValue = "true") boolean includeDocument) {
 
         try {
-            logger.info("为ChatGPT生成提示: filename={}, contractType={}, anchors={}",
-                       file.getOriginalFilename(), contractType, anchors);
+            logger.info("为ChatGPT生成提示: filename={}, contractType={}, anchors={}, includeDocument={}",
+                       file.getOriginalFilename(), contractType, anchors, includeDocument);
 
             // 【修复】使用 parseContractWithDocument 获取带锚点的文档
             // 这样确保返回的文档包含了生成的锚点
@@ -117,11 +120,17 @@ public class ChatGPTIntegrationController {
             }
 
             // 【关键修复】返回带锚点的文档（Base64 编码）
+            // 使用 /chatgpt/annotate-by-id 的调用方可传 includeDocument=false，文档只保存在服务端（内存缓存 + MinIO）
             if (documentWithAnchorsBytes != null && documentWithAnchorsBytes.length > 0) {
-                String documentBase64 = java.util.Base64.getEncoder().encodeToString(documentWithAnchorsBytes);
-                result.put("documentWithAnchorsBase64", documentBase64);
-                result.put("documentWithAnchorsInfo",
-                    "本文档包含生成的锚点书签，用于精确批注定位。在步骤2中使用此文档以获得最佳效果。");
+                if (includeDocument) {
+                    String documentBase64 = java.util.Base64.getEncoder().encodeToString(documentWithAnchorsBytes);
+                    result.put("documentWithAnchorsBase64", documentBase64);
+                    result.put("documentWithAnchorsInfo",
+                        "本文档包含生成的锚点书签，用于精确批注定位。在步骤2中使用此文档以获得最佳效果。");
+                } else {
+                    result.put("documentStorageInfo",
+                        "带锚点的文档未随响应返回，已保存在服务端。步骤2请调用 /chatgpt/annotate-by-id，传递 parseResultId 和 issues。");
+                }
                 result.put("getDocumentUrl",
                     "提示：也可以调用 POST /chatgpt/get-document-with-anchors 直接下载带锚点的文档");
                 if (anchoredDocumentFilename != null) {
@@ -136,11 +145,14 @@ public class ChatGPTIntegrationController {
 
                 result.put("parseResultId", parseResultId);
                 result.put("parseResultIdUsage",
-                    "在步骤2中调用 /chatgpt/import-result-xml 时，建议传递 parseResultId 参数以确保使用同一个带锚点的文档");
+                    "在步骤2中调用 /chatgpt/import-result-xml 时，建议传递 parseResultId 参数以确保使用同一个带锚点的文档；" +
+                    "也可调用 /chatgpt/annotate-by-id 只传 parseResultId 和 issues，批注结果直接保存到MinIO");
             }
 
             result.put("workflowStep", "1-prompt-generation");
-            result.put("nextStep", "/chatgpt/import-result-xml (步骤2：使用带锚点的文档导入ChatGPT审查结果)");
+            result.put("nextStep", includeDocument || !result.containsKey("parseResultId")
+                    ? "/chatgpt/import-result-xml (步骤2：使用带锚点的文档导入ChatGPT审查结果)"
+                    : "/chatgpt/annotate-by-id (步骤2：传递 parseResultId 和 ChatGPT审查结果，批注结果保存到MinIO)");
 
             logger.info("ChatGPT提示生成成功，已启用锚点精确定位");
             return ResponseEntity.ok(result);
@@ -186,6 +198,7 @@ public class ChatGPTIntegrationController {
 
             // 【关键修复】优先使用缓存的带锚点文档
             byte[] documentToAnnotate = null;
+            ParseResultCache.CachedParseResult cachedDocument = null;
             String sourceInfo = "";
             String originalFilename = "contract.docx";
 
@@ -193,12 +206,12 @@ public class ChatGPTIntegrationController {
                 logger.info("🔍 [缓存检索] 尝试从缓存中检索parseResultId: {}", parseResultId);
                 // 优先方案：使用缓存的带锚点文档
                 ParseResultCache.CachedParseResult cached = parseResultCache.retrieve(parseResultId);
-                if (cached != null && cached.documentWithAnchorsBytes != null) {
-                    documentToAnnotate = cached.documentWithAnchorsBytes;
+                if (cached != null && cached.getDocumentSize() > 0) {
+                    cachedDocument = cached;
                     sourceInfo = "缓存的带锚点文档";
                     originalFilename = cached.sourceFilename;
                     logger.info("✅ [缓存命中] 成功使用缓存的带锚点文档: parseResultId={}, 大小={} 字节, 文件名={}",
-                               parseResultId, documentToAnnotate.length, originalFilename);
+                               parseResultId, cached.getDocumentSize(), originalFilename);
                 } else {
                     logger.warn("⚠️ [缓存失败] 缓存不存在或已过期: parseResultId={}", parseResultId);
                     if (file == null) {
@@ -211,7 +224,7 @@ public class ChatGPTIntegrationController {
             }
 
             // 备选方案：使用用户上传的文件
-            if (documentToAnnotate == null && file != null) {
+            if (cachedDocument == null && file != null) {
                 documentToAnnotate = file.getBytes();
                 sourceInfo = "用户上传的文件（不包含锚点）";
                 originalFilename = file.getOriginalFilename();
@@ -222,7 +235,7 @@ public class ChatGPTIntegrationController {
                 logger.warn("   3. 调用 /chatgpt/import-result?parseResultId=YOUR_ID 传入审查结果");
             }
 
-            if (documentToAnnotate == null) {
+            if (cachedDocument == null && documentToAnnotate == null) {
                 throw new IllegalArgumentException(
                     "❌ 无法获取文档内容: 既没有有效的 parseResultId，也没有提供 file 参数。" +
                     "请先调用 /chatgpt/generate-prompt 端点以获取 parseResultId，然后在此端点传递该ID");
@@ -256,12 +269,19 @@ public class ChatGPTIntegrationController {
             }
 
             // ✨ 使用XML方式批注合同（精确文字级批注）
-            // 创建一个简单的 MultipartFile 包装器来传递 byte[] 数据
-            MultipartFile mockFile = new SimpleMultipartFileWrapper(
-                originalFilename, documentToAnnotate);
+            byte[] annotatedDocument;
+            if (cachedDocument != null) {
+                // 缓存文档：直接读取缓存中的文档视图并复用预索引，不复制原文档
+                annotatedDocument = xmlContractAnnotateService.annotateContractWithXml(
+                    cachedDocument, cleanResponse, anchorStrategy, cleanupAnchors);
+            } else {
+                // 创建一个简单的 MultipartFile 包装器来传递 byte[] 数据
+                MultipartFile mockFile = new SimpleMultipartFileWrapper(
+                    originalFilename, documentToAnnotate);
 
-            byte[] annotatedDocument = xmlContractAnnotateService.annotateContractWithXml(
-                mockFile, cleanResponse, anchorStrategy, cleanupAnchors);
+                annotatedDocument = xmlContractAnnotateService.annotateContractWithXml(
+                    mockFile, cleanResponse, anchorStrategy, cleanupAnchors);
+            }
 
             // 生成文件名
             String fileExtension = originalFilename.substring(originalFilename.lastIndexOf('.'));
@@ -316,16 +336,18 @@ public class ChatGPTIntegrationController {
 
             // 【修复关键】优先使用缓存的带锚点文档
             byte[] documentToAnnotate = null;
+            ParseResultCache.CachedParseResult cachedDocument = null;
             String sourceInfo = "";
 
             if (parseResultId != null && !parseResultId.isEmpty()) {
                 // 优先方案：使用缓存的带锚点文档
                 ParseResultCache.CachedParseResult cached = parseResultCache.retrieve(parseResultId);
-                if (cached != null && cached.documentWithAnchorsBytes != null) {
-                    documentToAnnotate = cached.documentWithAnchorsBytes;
+                if (cached != null && cached.getDocumentSize() > 0) {
+                    cachedDocument = cached;
                     sourceInfo = "缓存的带锚点文档";
-                    logger.info("✅ 使用缓存的带锚点文档: parseResultId={}, 大小={} 字节, 条款数={}",
-                               parseResultId, documentToAnnotate.length, cached.parseResult.getClauses().size());
+                    logger.info("✅ 使用缓存的带锚点文档: parseResultId={}, 大小={} 字节, 条款数={}, 预索引={}",
+                               parseResultId, cached.getDocumentSize(), cached.parseResult.getClauses().size(),
+                               cached.documentIndex != null);
                 } else {
                     logger.warn("⚠️ 缓存不存在或已过期: parseResultId={}", parseResultId);
                     if (file == null) {
@@ -336,13 +358,13 @@ public class ChatGPTIntegrationController {
             }
 
             // 备选方案：使用用户上传的文件
-            if (documentToAnnotate == null && file != null) {
+            if (cachedDocument == null && file != null) {
                 documentToAnnotate = file.getBytes();
                 sourceInfo = "用户上传的文件";
                 logger.warn("⚠️ 使用用户上传的文件，可能不包含锚点。建议使用 parseResultId 参数以获得最佳效果");
             }
 
-            if (documentToAnnotate == null) {
+            if (cachedDocument == null && documentToAnnotate == null) {
                 throw new IllegalArgumentException(
                     "无法获取文档内容: 既没有有效的 parseResultId，也没有提供 file 参数。" +
                     "请使用 parseResultId 参数或上传 file 参数");
@@ -360,13 +382,20 @@ public class ChatGPTIntegrationController {
             int totalIssues = xmlContractAnnotateService.getIssueCount(cleanResponse);
 
             // ✨ 使用XML方式批注合同（精确文字级批注）
-            // 创建一个简单的 MultipartFile 包装器来传递 byte[] 数据
-            String mockFilename = (file != null) ? file.getOriginalFilename() : "contract.docx";
-            MultipartFile mockFile = new SimpleMultipartFileWrapper(
-                mockFilename, documentToAnnotate);
+            byte[] annotatedDocument;
+            if (cachedDocument != null) {
+                // 缓存文档：复用预索引，按片段拼接批注
+                annotatedDocument = xmlContractAnnotateService.annotateContractWithXml(
+                    cachedDocument, cleanResponse, anchorStrategy, cleanupAnchors);
+            } else {
+                // 创建一个简单的 MultipartFile 包装器来传递 byte[] 数据
+                String mockFilename = (file != null) ? file.getOriginalFilename() : "contract.docx";
+                MultipartFile mockFile = new SimpleMultipartFileWrapper(
+                    mockFilename, documentToAnnotate);
 
-            byte[] annotatedDocument = xmlContractAnnotateService.annotateContractWithXml(
-                mockFile, cleanResponse, anchorStrategy, cleanupAnchors);
+                annotatedDocument = xmlContractAnnotateService.annotateContractWithXml(
+                    mockFile, cleanResponse, anchorStrategy, cleanupAnchors);
+            }
 
             // 生成文件名
             String originalFilename = (file != null) ?
@@ -392,6 +421,63 @@ public class ChatGPTIntegrationController {
         }
     }
 
+    /**
+     * 按 parseResultId 批注（文档不经过客户端）
+     *
+     * 带锚点文档在 Parse 阶段已按 parseResultId 保存在服务端（内存缓存 + MinIO），
+     * 请求只需传递 parseResultId 和 issues；批注结果写入 MinIO，响应中返回对象位置和批注报告
+     *
+     * 请求体示例：
+     * {"parseResultId": "...", "issues": [...], "anchorStrategy": "preferAnchor", "cleanupAnchors": true}
+     */
+    @PostMapping("/annotate-by-id")
+    public ResponseEntity<?> annotateById(@RequestBody StoredAnnotateRequest request) {
+        try {
+            logger.info("按parseResultId批注: parseResultId={}, issues数量={}, strategy={}, cleanup={}",
+                       request.getParseResultId(),
+                       request.getIssues() != null ? request.getIssues().size() : 0,
+                       request.getAnchorStrategy(), request.isCleanupAnchors());
+
+            if (request.getParseResultId() == null || request.getParseResultId().isEmpty()) {
+                throw new IllegalArgumentException("parseResultId参数缺失或为空");
+            }
+
+            XmlContractAnnotateService.StoredAnnotation annotation = xmlContractAnnotateService.annotateStoredContract(
+                request.getParseResultId(), request.getIssues(),
+                request.getAnchorStrategy(), request.isCleanupAnchors());
+
+            Map<String, Object> result = new HashMap<>();
+            result.put("success", true);
+            result.put("parseResultId", request.getParseResultId());
+            result.put("source", annotation.getSource());
+            result.put("objectName", annotation.getObjectName());
+            result.put("url", annotation.getUrl());
+            result.put("filename", annotation.getFilename());
+            result.put("fileSize", annotation.getFileSize());
+            result.put("annotationReport", annotation.getReport());
+
+            logger.info("按parseResultId批注完成: objectName={}, 来源={}", annotation.getObjectName(), annotation.getSource());
+            return ResponseEntity.ok(result);
+
+        } catch (IllegalArgumentException e) {
+            logger.warn("按parseResultId批注参数无效: {}", e.getMessage());
+            return annotateByIdError(HttpStatus.BAD_REQUEST, "批注失败: " + e.getMessage());
+        } catch (FileNotFoundException e) {
+            logger.warn("按parseResultId批注失败，文档不存在: {}", e.getMessage());
+            return annotateByIdError(HttpStatus.NOT_FOUND, e.getMessage());
+        } catch (Exception e) {
+            logger.error("按parseResultId批注失败", e);
+            return annotateByIdError(HttpStatus.INTERNAL_SERVER_ERROR, "批注失败: " + e.getMessage());
+        }
+    }
+
+    private ResponseEntity<Map<String, String>> annotateByIdError(HttpStatus status, String message) {
+        Map<String, String> error = new HashMap<>();
+        error.put("success", "false");
+        error.put("error", message);
+        return ResponseEntity.status(status).body(error);
+    }
+
     /**
      * 新增：直接获取带锚点的文档
      *
@@ -463,7 +549,7 @@ public class ChatGPTIntegrationController {
         try {
             if ("1".equals(step)) {
                 // 步骤1: 生成提示
-                return generatePrompt(file, contractType, anchors);
+                return generatePrompt(file, contractType, anchors, true);
             } else if ("2".equals(step)) {
                 // 步骤2: 导入结果
                 if (chatgptResponse == null || chatgptResponse.trim().isEmpty()) {
@@ -610,58 +696,4 @@ public class ChatGPTIntegrationController {
 
         return ResponseEntity.ok(status);
     }
-
-    /**
-     * 简单的 MultipartFile 包装器
-     * 用于将 byte[] 包装成 MultipartFile 接口
-     */
-    private static class SimpleMultipartFileWrapper implements MultipartFile {
-        private final String filename;
-        private final byte[] content;
-
-        public SimpleMultipartFileWrapper(String filename, byte[] content) {
-            this.filename = filename;
-            this.content = content;
-        }
-
-        @Override
-        public String getName() {
-            return "file";
-        }
-
-        @Override
-        public String getOriginalFilename() {
-            return filename;
-        }
-
-        @Override
-        public String getContentType() {
-            return "application/vnd.openxmlformats-officedocument.wordprocessingml.document";
-        }
-
-        @Override
-        public boolean isEmpty() {
-            return content == null || content.length == 0;
-        }
-
-        @Override
-        public long getSize() {
-            return content != null ? content.length : 0;
-        }
-
-        @Override
-        public byte[] getBytes() throws IOException {
-            return content;
-        }
-
-        @Override
-        public ByteArrayInputStream getInputStream() throws IOException {
-            return new ByteArrayInputStream(content != null ? content : new byte[0]);
-        }
-
-        @Override
-        public void transferTo(java.io.File dest) throws IOException {
-            java.nio.file.Files.write(dest.toPath(), content);
-        }
-    }
-}
\ No newline at end of file
+}
@@ -235,6 +235,21 @@ public class DocumentViewController {
         }
     }
     
+    /**
+     * 缓存统计
+     * 
+     * GET /api/document-view/cache/stats
+     * 
+     * @return 文档和缩略图缓存的条目数、占用字节、命中/淘汰/过期次数及 ETag 校验次数
+     */
+    @GetMapping("/cache/stats")
+    public ResponseEntity<?> getCacheStats() {
+        ObjectNode response = objectMapper.createObjectNode();
+        response.put("success", true);
+        response.set("stats", objectMapper.valueToTree(documentViewService.getCacheStats()));
+        return ResponseEntity.ok(response);
+    }
+    
     /**
      * 清理缓存
      * 
@@ -1,6 +1,8 @@
 package com.example.Contract_review.controller;
 
 import com.example.Contract_review.service.MinioFileService;
+import com.example.Contract_review.util.DocxPackageInspector;
+import com.example.Contract_review.util.ObjectListingIndex;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -9,8 +11,15 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import io.minio.StatObjectResponse;
 
 import jakarta.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -26,6 +35,11 @@ public class FilePreviewController {
 
     private static final Logger logger = LoggerFactory.getLogger(FilePreviewController.class);
 
+    /**
+     * 文件列表每页条数上限
+     */
+    private static final int MAX_PAGE_SIZE = 1000;
+
     @Autowired
     private MinioFileService minioFileService;
 
@@ -39,28 +53,60 @@ public class FilePreviewController {
     private String onlyofficeBackendUrl;
 
     /**
-     * 获取MinIO云桶中的文件列表
+     * 代理下载时检查文档是否包含批注（需额外读取一次对象，仅排查问题时开启）
+     */
+    @Value("${preview.proxy.diagnostics:false}")
+    private boolean proxyDiagnostics;
+
+    /**
+     * 分页获取MinIO云桶中的文件列表（基于本地元数据索引，不遍历整个桶）
+     * @param prefix 对象名前缀，如 reports/
+     * @param cursor 上一页返回的 nextCursor，首页不传
+     * @param limit 每页条数（1-1000）
+     * @param sort time（按修改时间倒序，默认）或 name（按名称升序）
      * @return 文件列表信息
      */
     @GetMapping("/files")
-    public ResponseEntity<Map<String, Object>> getFileList() {
+    public ResponseEntity<Map<String, Object>> getFileList(
+            @RequestParam(required = false) String prefix,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "100") int limit,
+            @RequestParam(defaultValue = "time") String sort) {
         try {
             if (!minioFileService.isEnabled()) {
                 return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
                     .body(Map.of("error", "MinIO服务未启用"));
             }
 
-            List<Map<String, Object>> files = minioFileService.listFiles();
-            
+            int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+            ObjectListingIndex.Page page = minioFileService.listFilesPage(
+                prefix, cursor, pageSize, !"name".equalsIgnoreCase(sort));
+
+            List<Map<String, Object>> files = new ArrayList<>(page.getItems().size());
+            for (ObjectListingIndex.Entry entry : page.getItems()) {
+                Map<String, Object> fileInfo = new HashMap<>();
+                fileInfo.put("name", entry.getName());
+                fileInfo.put("size", entry.getSize());
+                fileInfo.put("lastModified", Instant.ofEpochMilli(entry.getLastModified()));
+                fileInfo.put("etag", entry.getEtag());
+                fileInfo.put("url", minioFileService.getFileUrl(entry.getName()));
+                files.add(fileInfo);
+            }
+
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
             response.put("files", files);
             response.put("total", files.size());
+            response.put("nextCursor", page.getNextCursor());
+            response.put("hasMore", page.getNextCursor() != null);
             response.put("bucket", minioFileService.getBucketName());
-            
-            logger.info("获取文件列表成功，共{}个文件", files.size());
+            response.putAll(minioFileService.getListingIndexStatus());
+
+            logger.debug("获取文件列表成功: prefix={}, 本页{}个文件", prefix, files.size());
             return ResponseEntity.ok(response);
-            
+
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         } catch (Exception e) {
             logger.error("获取文件列表失败", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -199,22 +245,28 @@ public class FilePreviewController {
 
             Map<String, Object> document = new HashMap<>();
             document.put("fileType", getFileExtension(fileName));
-            // 【修复】使用时间戳+MD5生成文档key，避免OnlyOffice缓存旧文档
-            // 每次打开文档时都生成新的key，确保OnlyOffice不使用缓存
-            String key;
-            try {
-                java.security.MessageDigest md = java.security.MessageDigest.getInstance("MD5");
-                // 在文件名中加入时间戳，确保每次key都不同
-                String keyInput = fileName + "_" + System.currentTimeMillis();
-                byte[] digest = md.digest(keyInput.getBytes(java.nio.charset.StandardCharsets.UTF_8));
-                StringBuilder sb = new StringBuilder();
-                for (byte b : digest) sb.append(String.format("%02x", b));
-                key = sb.toString();
-                logger.debug("生成OnlyOffice文档key: {}", key);
-            } catch (Exception ex) {
-                // 如果MD5失败，使用时间戳作为key
-                key = String.valueOf(System.currentTimeMillis());
-                logger.warn("MD5生成失败，使用时间戳作为key: {}", key);
+            // 内容寻址对象的内容不会变化，直接以SHA-256作为key，OnlyOffice可复用已转换的缓存
+            String key = minioFileService.contentHashOf(
+                    java.net.URLDecoder.decode(finalDocumentUrl, java.nio.charset.StandardCharsets.UTF_8));
+            if (key != null) {
+                logger.debug("内容寻址文档，使用内容哈希作为OnlyOffice文档key: {}", key);
+            } else {
+                // 【修复】使用时间戳+MD5生成文档key，避免OnlyOffice缓存旧文档
+                // 每次打开文档时都生成新的key，确保OnlyOffice不使用缓存
+                try {
+                    java.security.MessageDigest md = java.security.MessageDigest.getInstance("MD5");
+                    // 在文件名中加入时间戳，确保每次key都不同
+                    String keyInput = fileName + "_" + System.currentTimeMillis();
+                    byte[] digest = md.digest(keyInput.getBytes(java.nio.charset.StandardCharsets.UTF_8));
+                    StringBuilder sb = new StringBuilder();
+                    for (byte b : digest) sb.append(String.format("%02x", b));
+                    key = sb.toString();
+                    logger.debug("生成OnlyOffice文档key: {}", key);
+                } catch (Exception ex) {
+                    // 如果MD5失败，使用时间戳作为key
+                    key = String.valueOf(System.currentTimeMillis());
+                    logger.warn("MD5生成失败，使用时间戳作为key: {}", key);
+                }
             }
             document.put("key", key);
             document.put("title", fileName);
@@ -305,28 +357,15 @@ public class FilePreviewController {
 
     /**
      * 代理文档访问，解决OnlyOffice无法直接访问MinIO的问题
-     * @param fileName 文件名
-     * @return 文档内容
+     * @param request 请求（路径中携带文件名）
+     * @return 文档内容（流式）
      */
     @GetMapping("/proxy/**")
-    public ResponseEntity<byte[]> proxyDocument(HttpServletRequest request) {
+    public ResponseEntity<StreamingResponseBody> proxyDocument(HttpServletRequest request) {
         String decodedFileName = null;
         try {
-            // 从请求路径中提取文件名
-            String requestPath = request.getRequestURI();
-            String fileName = requestPath.substring("/api/preview/proxy/".length());
-            
-            // URL解码文件名
-            decodedFileName = java.net.URLDecoder.decode(fileName, "UTF-8");
-            
-            // 从MinIO下载文件
-            byte[] fileData = minioFileService.downloadFile(decodedFileName);
-            
-            logger.info("代理文档访问: fileName={}, size={}", 
-                       decodedFileName, fileData.length);
-            
-            return buildRangeAwareResponse(fileData, decodedFileName);
-            
+            decodedFileName = extractPathFileName(request);
+            return streamObject(decodedFileName, request);
         } catch (Exception e) {
             logger.error("代理文档访问失败: fileName={}", decodedFileName, e);
             return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
@@ -337,32 +376,17 @@ public class FilePreviewController {
      * 使用查询参数方式代理文档访问，避免编码斜杠问题
      */
     @GetMapping("/proxy")
-    public ResponseEntity<byte[]> proxyDocumentByQuery(@RequestParam String fileName) {
+    public ResponseEntity<StreamingResponseBody> proxyDocumentByQuery(@RequestParam String fileName,
+                                                                      HttpServletRequest request) {
         try {
             String decodedFileName = java.net.URLDecoder.decode(fileName, "UTF-8");
             logger.debug("【诊断】代理下载: fileName={}", decodedFileName);
-            
-            byte[] fileData = minioFileService.downloadFile(decodedFileName);
-            
-            // 【诊断】验证下载的文档是否包含批注
-            boolean hasComments = validateDocHasComments(fileData);
-            logger.info("【诊断】代理下载文档包含批注: {}, size={}字节", hasComments, fileData.length);
-            
-            if (!hasComments) {
-                logger.error("⚠️ 【严重警告】代理下载的文档不包含批注！fileName={}", decodedFileName);
-            }
-            
-            // 【诊断】计算MD5
-            try {
-                java.security.MessageDigest md5 = java.security.MessageDigest.getInstance("MD5");
-                byte[] hash = md5.digest(fileData);
-                String md5Str = bytesToHex(hash);
-                logger.debug("【诊断】代理下载文档MD5: {}", md5Str);
-            } catch (Exception e) {
-                logger.warn("【诊断】无法计算MD5: {}", e.getMessage());
+
+            if (proxyDiagnostics && request.getHeader(HttpHeaders.RANGE) == null) {
+                logDiagnostics(decodedFileName);
             }
-            
-            return buildRangeAwareResponse(fileData, decodedFileName);
+
+            return streamObject(decodedFileName, request);
         } catch (Exception e) {
             logger.error("代理文档访问失败: fileName={}", fileName, e);
             return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
@@ -376,11 +400,8 @@ public class FilePreviewController {
     public ResponseEntity<Void> headProxyPath(HttpServletRequest request) {
         String decodedFileName = null;
         try {
-            String requestPath = request.getRequestURI();
-            String fileName = requestPath.substring("/api/preview/proxy/".length());
-            decodedFileName = java.net.URLDecoder.decode(fileName, "UTF-8");
-            byte[] fileData = minioFileService.downloadFile(decodedFileName);
-            return buildHeadResponse(fileData.length, decodedFileName);
+            decodedFileName = extractPathFileName(request);
+            return buildHeadResponse(minioFileService.statObject(decodedFileName), decodedFileName);
         } catch (Exception e) {
             logger.error("HEAD 代理失败: fileName={}", decodedFileName, e);
             return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
@@ -395,88 +416,163 @@ public class FilePreviewController {
         String decodedFileName = null;
         try {
             decodedFileName = java.net.URLDecoder.decode(fileName, "UTF-8");
-            byte[] fileData = minioFileService.downloadFile(decodedFileName);
-            return buildHeadResponse(fileData.length, decodedFileName);
+            return buildHeadResponse(minioFileService.statObject(decodedFileName), decodedFileName);
         } catch (Exception e) {
             logger.error("HEAD 代理失败: fileName={}", decodedFileName, e);
             return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
         }
     }
 
+    private String extractPathFileName(HttpServletRequest request) throws Exception {
+        String requestPath = request.getRequestURI();
+        String fileName = requestPath.substring("/api/preview/proxy/".length());
+        return java.net.URLDecoder.decode(fileName, "UTF-8");
+    }
+
     /**
-     * 构建支持 Range 的响应，满足 OnlyOffice 取流要求
+     * 构建支持 Range 的流式响应，满足 OnlyOffice 取流要求
+     *
+     * - 先 statObject 取得大小、ETag、最后修改时间，再按 Range 向 MinIO 请求对应区间
+     * - 对象内容直接从 MinIO 连接复制到响应，不在内存中整体缓冲
+     * - 读取时携带 stat 得到的 ETag，对象在两次请求之间被替换时 MinIO 拒绝读取，不会拼出混合内容
      */
-    private ResponseEntity<byte[]> buildRangeAwareResponse(byte[] fullData, String fullFileName) {
-        try {
-            String contentType = getContentType(fullFileName);
+    private ResponseEntity<StreamingResponseBody> streamObject(String objectName, HttpServletRequest request) throws Exception {
+        StatObjectResponse stat = minioFileService.statObject(objectName);
+        long fileLength = stat.size();
+        String etag = MinioFileService.normalizeETag(stat.etag());
+
+        ByteRange range = ByteRange.parse(request.getHeader(HttpHeaders.RANGE), fileLength);
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (range != null && ifRange != null && !ifRange.isEmpty()
+                && !MinioFileService.normalizeETag(ifRange).equals(etag)) {
+            // If-Range 与当前版本不一致：返回完整对象
+            range = null;
+        }
 
-            String displayName = fullFileName;
-            int lastSlash = fullFileName.lastIndexOf('/');
-            if (lastSlash >= 0 && lastSlash < fullFileName.length() - 1) {
-                displayName = fullFileName.substring(lastSlash + 1);
-            }
+        if (range == ByteRange.UNSATISFIABLE) {
+            return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                    .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+                    .header(HttpHeaders.CONTENT_RANGE, "bytes */" + fileLength)
+                    .build();
+        }
 
-            long fileLength = fullData.length;
-            long start = 0;
-            long end = fileLength - 1;
+        long start = range != null ? range.start : 0;
+        long length = range != null ? range.end - range.start + 1 : fileLength;
 
-            String rangeHeader = null;
-            try {
-                rangeHeader = org.springframework.web.context.request.RequestContextHolder.getRequestAttributes() instanceof org.springframework.web.context.request.ServletRequestAttributes ?
-                        ((org.springframework.web.context.request.ServletRequestAttributes) org.springframework.web.context.request.RequestContextHolder.getRequestAttributes()).getRequest().getHeader("Range") : null;
-            } catch (Exception ignore) {}
+        ResponseEntity.BodyBuilder builder = range != null
+                ? ResponseEntity.status(HttpStatus.PARTIAL_CONTENT)
+                    .header(HttpHeaders.CONTENT_RANGE, String.format("bytes %d-%d/%d", range.start, range.end, fileLength))
+                : ResponseEntity.ok();
+        applyObjectHeaders(builder, stat, objectName)
+                .header(HttpHeaders.CONTENT_LENGTH, String.valueOf(length))
+                .header("Cache-Control", "no-cache, no-store, must-revalidate")
+                .header("Pragma", "no-cache")
+                .header("Expires", "0");
 
-            if (rangeHeader != null && rangeHeader.startsWith("bytes=")) {
-                String[] parts = rangeHeader.substring(6).split("-");
-                try {
-                    if (!parts[0].isEmpty()) start = Long.parseLong(parts[0]);
-                    if (parts.length > 1 && !parts[1].isEmpty()) end = Long.parseLong(parts[1]);
-                    if (end >= fileLength) end = fileLength - 1;
-                    if (start < 0 || start > end) { start = 0; end = fileLength - 1; }
-                } catch (NumberFormatException ignore) { start = 0; end = fileLength - 1; }
-
-                int sliceLen = (int) (end - start + 1);
-                byte[] slice = java.util.Arrays.copyOfRange(fullData, (int) start, (int) (end + 1));
-                return ResponseEntity.status(HttpStatus.PARTIAL_CONTENT)
-                        .header(HttpHeaders.ACCEPT_RANGES, "bytes")
-                        .header(HttpHeaders.CONTENT_TYPE, contentType)
-                        .header(HttpHeaders.CONTENT_LENGTH, String.valueOf(sliceLen))
-                        .header(HttpHeaders.CONTENT_RANGE, String.format("bytes %d-%d/%d", start, end, fileLength))
-                        .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + displayName + "\"")
-                        .header("Cache-Control", "no-cache, no-store, must-revalidate")
-                        .header("Pragma", "no-cache")
-                        .header("Expires", "0")
-                        .body(slice);
-            }
+        logger.info("代理文档访问: fileName={}, size={}, range={}", objectName, fileLength,
+                range != null ? range.start + "-" + range.end : "full");
 
-            return ResponseEntity.ok()
-                    .header(HttpHeaders.ACCEPT_RANGES, "bytes")
-                    .header(HttpHeaders.CONTENT_TYPE, contentType)
-                    .header(HttpHeaders.CONTENT_LENGTH, String.valueOf(fileLength))
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + displayName + "\"")
-                    .header("Cache-Control", "no-cache, no-store, must-revalidate")
-                    .header("Pragma", "no-cache")
-                    .header("Expires", "0")
-                    .body(fullData);
-        } catch (Exception e) {
-            logger.error("构建Range响应失败: {}", e.getMessage());
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        if (length == 0) {
+            return builder.body(out -> { });
         }
+        StreamingResponseBody body = out -> {
+            try (InputStream in = minioFileService.openObject(objectName, start, length, etag)) {
+                in.transferTo(out);
+            } catch (IOException e) {
+                // 客户端主动断开（OnlyOffice 取到需要的区间后常会断开）或 MinIO 连接中断
+                logger.warn("代理文档传输中断: fileName={}, 原因: {}", objectName, e.getMessage());
+            } catch (Exception e) {
+                logger.error("代理文档传输失败: fileName={}", objectName, e);
+                throw new IOException(e);
+            }
+        };
+        return builder.body(body);
     }
 
-    private ResponseEntity<Void> buildHeadResponse(long contentLength, String fileName) {
-        String contentType = getContentType(fileName);
+    private ResponseEntity<Void> buildHeadResponse(StatObjectResponse stat, String fileName) {
+        return applyObjectHeaders(ResponseEntity.ok(), stat, fileName)
+                .header(HttpHeaders.CONTENT_LENGTH, String.valueOf(stat.size()))
+                .build();
+    }
+
+    /**
+     * 设置对象的公共响应头：Accept-Ranges、Content-Type、Content-Disposition、ETag、Last-Modified
+     */
+    private ResponseEntity.BodyBuilder applyObjectHeaders(ResponseEntity.BodyBuilder builder,
+                                                          StatObjectResponse stat, String fileName) {
         String displayName = fileName;
         int lastSlash = fileName.lastIndexOf('/');
         if (lastSlash >= 0 && lastSlash < fileName.length() - 1) {
             displayName = fileName.substring(lastSlash + 1);
         }
-        return ResponseEntity.ok()
-                .header(HttpHeaders.ACCEPT_RANGES, "bytes")
-                .header(HttpHeaders.CONTENT_TYPE, contentType)
-                .header(HttpHeaders.CONTENT_LENGTH, String.valueOf(contentLength))
-                .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + displayName + "\"")
-                .build();
+        builder.header(HttpHeaders.ACCEPT_RANGES, "bytes")
+                .header(HttpHeaders.CONTENT_TYPE, getContentType(fileName))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + displayName + "\"");
+        String etag = MinioFileService.normalizeETag(stat.etag());
+        if (etag != null && !etag.isEmpty()) {
+            builder.eTag("\"" + etag + "\"");
+        }
+        if (stat.lastModified() != null) {
+            builder.lastModified(stat.lastModified());
+        }
+        return builder;
+    }
+
+    /**
+     * 单个字节区间（Range: bytes=a-b / bytes=a- / bytes=-n）
+     *
+     * 多区间请求按完整对象返回（RFC 9110 允许忽略 Range）
+     */
+    private static final class ByteRange {
+
+        static final ByteRange UNSATISFIABLE = new ByteRange(-1, -1);
+
+        final long start;
+        final long end;
+
+        ByteRange(long start, long end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        /**
+         * @return 区间；无 Range、格式无法识别或多区间时返回 null（返回完整对象），起点越界时返回 UNSATISFIABLE
+         */
+        static ByteRange parse(String header, long fileLength) {
+            if (header == null || !header.startsWith("bytes=") || header.indexOf(',') >= 0) {
+                return null;
+            }
+            String spec = header.substring(6).trim();
+            int dash = spec.indexOf('-');
+            if (dash < 0) {
+                return null;
+            }
+            try {
+                String first = spec.substring(0, dash).trim();
+                String last = spec.substring(dash + 1).trim();
+                if (first.isEmpty()) {
+                    if (last.isEmpty()) {
+                        return null;
+                    }
+                    long suffix = Long.parseLong(last);
+                    if (suffix <= 0 || fileLength == 0) {
+                        return UNSATISFIABLE;
+                    }
+                    return new ByteRange(Math.max(0, fileLength - suffix), fileLength - 1);
+                }
+                long start = Long.parseLong(first);
+                long end = last.isEmpty() ? fileLength - 1 : Math.min(Long.parseLong(last), fileLength - 1);
+                if (start >= fileLength) {
+                    return UNSATISFIABLE;
+                }
+                if (start < 0 || end < start) {
+                    return null;
+                }
+                return new ByteRange(start, end);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
     }
 
     /**
@@ -531,35 +627,29 @@ public class FilePreviewController {
     }
     
     /**
-     * 验证DOCX文档是否包含批注文件
+     * 【诊断】检查代理的文档是否包含批注（preview.proxy.diagnostics=true 时启用）
+     *
+     * 按范围读取对象末尾的中央目录和 comments.xml 部件，不下载整个文档；MinIO 单段上传对象的 ETag 即内容 MD5，直接记录 ETag
      */
-    private boolean validateDocHasComments(byte[] docBytes) {
+    private void logDiagnostics(String objectName) {
         try {
-            java.util.zip.ZipInputStream zip = new java.util.zip.ZipInputStream(
-                new java.io.ByteArrayInputStream(docBytes));
-            java.util.zip.ZipEntry entry;
-            while ((entry = zip.getNextEntry()) != null) {
-                if ("word/comments.xml".equals(entry.getName())) {
-                    zip.close();
-                    return true;
+            StatObjectResponse stat = minioFileService.statObject(objectName);
+            DocxPackageInspector inspector = DocxPackageInspector.open(stat.size(), (offset, length) -> {
+                try (InputStream in = minioFileService.openObject(objectName, offset, length, stat.etag())) {
+                    return ByteBuffer.wrap(in.readNBytes(length));
+                } catch (IOException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new IOException(e.getMessage(), e);
                 }
-                zip.closeEntry();
+            });
+            boolean hasComments = inspector.hasComments();
+            logger.info("【诊断】代理下载文档包含批注: {}, size={}字节, ETag={}", hasComments, stat.size(), stat.etag());
+            if (!hasComments) {
+                logger.error("⚠️ 【严重警告】代理下载的文档不包含批注！fileName={}", objectName);
             }
-            zip.close();
-            return false;
         } catch (Exception e) {
-            return false;
-        }
-    }
-    
-    /**
-     * 辅助方法：字节数组转十六进制
-     */
-    private String bytesToHex(byte[] bytes) {
-        StringBuilder sb = new StringBuilder();
-        for (byte b : bytes) {
-            sb.append(String.format("%02x", b));
+            logger.warn("【诊断】无法检查文档批注: fileName={}, 原因: {}", objectName, e.getMessage());
         }
-        return sb.toString();
     }
 }
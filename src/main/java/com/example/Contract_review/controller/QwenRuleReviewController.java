@@ -2,11 +2,18 @@ package com.example.Contract_review.controller;
 
 import com.example.Contract_review.model.ParseResult;
 import com.example.Contract_review.model.ReviewIssue;
+import com.example.Contract_review.model.RuleMatchResult;
 import com.example.Contract_review.service.ContractParseService;
 import com.example.Contract_review.service.ParseResultCache;
 import com.example.Contract_review.service.QwenRuleReviewService;
+import com.example.Contract_review.service.ReviewJobService;
 import com.example.Contract_review.service.XmlContractAnnotateService;
+import com.example.Contract_review.service.ArtifactUploadService;
+import com.example.Contract_review.service.DiagnosticsSink;
 import com.example.Contract_review.service.MinioFileService;
+import com.example.Contract_review.util.DocxPackageInspector;
+import com.example.Contract_review.util.SimpleMultipartFileWrapper;
+import com.example.Contract_review.util.WordXmlCommentProcessor;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import lombok.extern.slf4j.Slf4j;
@@ -14,15 +21,24 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Qwen 规则审查控制器
@@ -55,6 +71,15 @@ public class QwenRuleReviewController {
     @Autowired
     private MinioFileService minioFileService;
 
+    @Autowired
+    private ArtifactUploadService artifactUploadService;
+
+    @Autowired
+    private DiagnosticsSink diagnosticsSink;
+
+    @Autowired
+    private ReviewJobService reviewJobService;
+
     /**
      * 使用Qwen进行规则审查
      *
@@ -139,6 +164,127 @@ public class QwenRuleReviewController {
         }
     }
 
+    /**
+     * 流式规则审查（SSE）
+     *
+     * 对已解析的合同（parseResultId）进行规则匹配后流式调用Qwen，
+     * 每个审查问题的JSON对象一闭合就以 issue 事件推送，无需等待完整响应。
+     * annotate=true 时，问题按批（annotateBatchSize 个或等待1秒）边到达边写入批注，审查结束后保存到MinIO。
+     *
+     * 事件：
+     * - start: 规则匹配结果
+     * - issue: 单个审查问题（ReviewIssue）
+     * - annotation: 增量批注进度（annotate=true）
+     * - annotated: 批注结果位置及批注处理报告（annotate=true）
+     * - complete: 问题总数、首个问题耗时、总耗时
+     * - error: 错误信息
+     *
+     * @param parseResultId Parse 阶段返回的 parseResultId
+     * @param stance 审查立场
+     * @param annotate 是否边审查边批注
+     * @param annotateBatchSize 每批批注的问题数
+     * @return SSE事件流
+     */
+    @GetMapping(value = "/review-stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<Object>> streamReview(
+            @RequestParam("parseResultId") String parseResultId,
+            @RequestParam(value = "stance", defaultValue = "neutral") String stance,
+            @RequestParam(value = "annotate", defaultValue = "false") boolean annotate,
+            @RequestParam(value = "annotateBatchSize", defaultValue = "5") int annotateBatchSize) {
+
+        long startTime = System.currentTimeMillis();
+        log.info("=== 开始流式规则审查: parseResultId={}, 立场={}, 边审查边批注={} ===", parseResultId, stance, annotate);
+
+        ParseResultCache.CachedParseResult cached = parseResultCache.retrieve(parseResultId);
+        if (cached == null) {
+            return Flux.just(errorEvent("Parse 结果不存在或已过期，请重新解析: " + parseResultId));
+        }
+
+        List<RuleMatchResult> matched = qwenRuleReviewService.matchRules(cached.parseResult, stance);
+        ObjectNode start = objectMapper.createObjectNode();
+        start.put("parseResultId", parseResultId);
+        start.put("clauseCount", cached.parseResult.getClauses().size());
+        start.put("matchedClauseCount", matched.size());
+        start.put("annotate", annotate);
+        ServerSentEvent<Object> startEvent = ServerSentEvent.<Object>builder(start).event("start").build();
+
+        XmlContractAnnotateService.IncrementalAnnotation annotation = annotate
+            ? xmlContractAnnotateService.beginIncrementalAnnotation(parseResultId, cached, "preferAnchor")
+            : null;
+        AtomicInteger issueCount = new AtomicInteger();
+        AtomicLong firstIssueMs = new AtomicLong(-1);
+
+        Flux<ReviewIssue> issues = qwenRuleReviewService.streamReview(cached.parseResult, stance, matched)
+            .doOnNext(issue -> {
+                issueCount.incrementAndGet();
+                firstIssueMs.compareAndSet(-1, System.currentTimeMillis() - startTime);
+            });
+
+        // 问题事件立即推送；批注在独立线程上按批顺序执行，不阻塞问题推送
+        Flux<ServerSentEvent<Object>> reviewEvents = issues.publish(shared -> Flux.merge(
+            shared.map(issue -> ServerSentEvent.<Object>builder(issue).event("issue").build()),
+            annotation == null ? Flux.<ServerSentEvent<Object>>empty() : shared
+                .bufferTimeout(Math.max(1, annotateBatchSize), Duration.ofSeconds(1))
+                .onBackpressureBuffer()
+                .concatMap(batch -> Mono.fromCallable(() -> annotation.append(batch))
+                    .subscribeOn(Schedulers.boundedElastic())
+                    .map(added -> {
+                        ObjectNode progress = objectMapper.createObjectNode();
+                        progress.put("batchSize", batch.size());
+                        progress.put("annotatedCount", added);
+                        return ServerSentEvent.<Object>builder(progress).event("annotation").build();
+                    }))));
+
+        Flux<ServerSentEvent<Object>> finalEvents = Flux.defer(() -> {
+            List<ServerSentEvent<Object>> events = new java.util.ArrayList<>();
+            if (annotation != null) {
+                events.add(annotatedEvent(annotation));
+            }
+            ObjectNode complete = objectMapper.createObjectNode();
+            complete.put("success", true);
+            complete.put("issuesCount", issueCount.get());
+            complete.put("firstIssueMs", firstIssueMs.get());
+            complete.put("processingTime", System.currentTimeMillis() - startTime);
+            events.add(ServerSentEvent.<Object>builder(complete).event("complete").build());
+            log.info("✓ 流式规则审查完成: 问题 {} 个，首个问题 {} ms，总耗时 {} ms",
+                    issueCount.get(), firstIssueMs.get(), System.currentTimeMillis() - startTime);
+            return Flux.fromIterable(events);
+        }).subscribeOn(Schedulers.boundedElastic());
+
+        return Flux.just(startEvent)
+            .concatWith(reviewEvents)
+            .concatWith(finalEvents)
+            .onErrorResume(e -> {
+                log.error("流式规则审查失败", e);
+                return Flux.just(errorEvent(e.getMessage()));
+            });
+    }
+
+    private ServerSentEvent<Object> annotatedEvent(XmlContractAnnotateService.IncrementalAnnotation annotation) {
+        ObjectNode annotated = objectMapper.createObjectNode();
+        try {
+            XmlContractAnnotateService.StoredAnnotation stored = annotation.save();
+            annotated.put("success", true);
+            annotated.put("objectName", stored.getObjectName());
+            annotated.put("url", stored.getUrl());
+            annotated.put("filename", stored.getFilename());
+            annotated.put("fileSize", stored.getFileSize());
+        } catch (Exception e) {
+            log.warn("增量批注结果保存失败: {}", e.getMessage());
+            annotated.put("success", false);
+            annotated.put("error", e.getMessage());
+        }
+        annotated.set("annotationReport", objectMapper.valueToTree(annotation.getReport()));
+        return ServerSentEvent.<Object>builder(annotated).event("annotated").build();
+    }
+
+    private ServerSentEvent<Object> errorEvent(String message) {
+        ObjectNode error = objectMapper.createObjectNode();
+        error.put("success", false);
+        error.put("error", message);
+        return ServerSentEvent.<Object>builder(error).event("error").build();
+    }
+
     /**
      * 检查Qwen服务状态
      * 用于前端判断是否可以执行一键审查
@@ -267,17 +413,17 @@ public class QwenRuleReviewController {
                 return ResponseEntity.badRequest().body(error);
             }
 
-            // 【新增】先保存原始上传文件到MinIO的contracts目录，返回originalUrl
-            String originalUrl = null;
+            // 【新增】原始上传文件按内容寻址提交到MinIO（后台计算哈希并上传，与解析并行；相同内容已存在时不再上传），
+            // originalUrl 在构建响应时读取（哈希在后台计算，提交时尚未确定）
+            ArtifactUploadService.Upload originalUpload = null;
             try {
                 if (minioFileService.isEnabled()) {
-                    String originalObjName = minioFileService.generateObjectName(filename, "contracts");
-                    originalUrl = minioFileService.uploadBytes(
+                    originalUpload = artifactUploadService.submitContent(
                         file.getBytes(),
-                        originalObjName,
+                        filename,
                         file.getContentType() != null ? file.getContentType() : "application/vnd.openxmlformats-officedocument.wordprocessingml.document"
                     );
-                    log.info("✓ 原始文件已保存到MinIO: {}", originalUrl);
+                    log.info("✓ 原始文件已提交MinIO上传: uploadId={}", originalUpload.getUploadId());
                 } else {
                     log.info("MinIO服务未启用，跳过原始文件上传");
                 }
@@ -287,6 +433,7 @@ public class QwenRuleReviewController {
 
             // 步骤2：解析合同（优先使用缓存，避免重复解析）
             ContractParseService.ParseResultWithDocument parseResultWithDoc = null;
+            ParseResultCache.CachedParseResult cachedParse = null;
             boolean usedCache = false;
             
             // ✅ 尝试从缓存获取
@@ -296,11 +443,8 @@ public class QwenRuleReviewController {
                     if (cached != null) {
                         // 验证文件名匹配（安全检查）
                         if (cached.sourceFilename.equals(file.getOriginalFilename())) {
-                            parseResultWithDoc = new ContractParseService.ParseResultWithDocument(
-                                cached.parseResult,
-                                cached.documentWithAnchorsBytes,
-                                cached.sourceFilename
-                            );
+                            // 文档保留在缓存中（可能是磁盘层映射），按需以视图读取，不复制到堆上
+                            cachedParse = cached;
                             usedCache = true;
                             long savedTime = estimateParseTime(file.getSize());
                             log.info("✓ 使用缓存解析结果，节省约 {}ms（缓存年龄: {}秒）", 
@@ -317,24 +461,28 @@ public class QwenRuleReviewController {
             }
             
             // ❌ 缓存未命中，重新解析（向后兼容）
-            if (parseResultWithDoc == null) {
+            if (cachedParse == null) {
                 log.info("步骤1/6: 正在解析合同...（缓存未命中）");
+                ReviewJobService.reportStage("parse", "解析合同");
                 parseResultWithDoc = contractParseService.parseContractWithDocument(file, "generate");
                 log.info("✓ 合同解析完成");
             } else {
                 log.info("步骤1/6: ✓ 使用缓存（跳过解析）");
             }
             
-            ParseResult parseResult = parseResultWithDoc.getParseResult();
-            byte[] documentWithAnchorBytes = parseResultWithDoc.getDocumentBytes();
+            ParseResult parseResult = cachedParse != null ? cachedParse.parseResult : parseResultWithDoc.getParseResult();
+            byte[] documentWithAnchorBytes = cachedParse != null ? null : parseResultWithDoc.getDocumentBytes();
+            long documentWithAnchorSize = cachedParse != null ? cachedParse.getDocumentSize()
+                    : documentWithAnchorBytes != null ? documentWithAnchorBytes.length : 0;
+            final ParseResultCache.CachedParseResult cachedDocument = cachedParse;
 
             log.info("✓ 解析完成（{}），识别 {} 个条款，带锚点文档大小: {} bytes",
                     usedCache ? "缓存" : "实时解析",
                     parseResult.getClauses().size(),
-                    documentWithAnchorBytes != null ? documentWithAnchorBytes.length : 0);
+                    documentWithAnchorSize);
 
             // 验证文档中是否包含锚点
-            if (documentWithAnchorBytes == null || documentWithAnchorBytes.length == 0) {
+            if (documentWithAnchorSize == 0) {
                 log.error("❌ 错误：带锚点文档为空，无法继续");
                 ObjectNode error = objectMapper.createObjectNode();
                 error.put("success", false);
@@ -344,6 +492,7 @@ public class QwenRuleReviewController {
 
             // 步骤2：先进行规则匹配，若无匹配则跳过LLM
             log.info("步骤2/6: 规则匹配...");
+            ReviewJobService.reportStage("match", "规则匹配");
             java.util.List<com.example.Contract_review.model.RuleMatchResult> matched =
                 qwenRuleReviewService.matchRules(parseResult, stance);
             if (matched == null || matched.isEmpty()) {
@@ -352,28 +501,35 @@ public class QwenRuleReviewController {
                 String baseNameNoExt = filename.replaceAll("\\.(docx|doc)$", "");
                 String outputFilenameNoHit = baseNameNoExt + "_一键审查_未命中规则.docx";
 
-                // 保存到本地文档中心，便于留痕
-                String projectRootNoHit = System.getProperty("user.dir");
-                String docCenterPathNoHit = java.nio.file.Paths.get(projectRootNoHit, "文档中心", "已生成的审查报告").toString();
-                java.nio.file.Path docCenterDirNoHit = java.nio.file.Paths.get(docCenterPathNoHit);
-                if (!java.nio.file.Files.exists(docCenterDirNoHit)) {
-                    java.nio.file.Files.createDirectories(docCenterDirNoHit);
-                    log.info("✓ 创建文档中心目录: {}", docCenterPathNoHit);
+                // 本地文档中心留档（后台写入，按采样率留档）
+                if (diagnosticsSink.sampled(DiagnosticsSink.Category.REVIEW_REPORT)
+                        && diagnosticsSink.submit(DiagnosticsSink.Category.REVIEW_REPORT, outputFilenameNoHit, out -> {
+                            if (cachedDocument != null) {
+                                try (InputStream in = cachedDocument.openDocumentStream()) {
+                                    in.transferTo(out);
+                                }
+                            } else {
+                                out.write(documentWithAnchorBytes);
+                            }
+                        })) {
+                    log.info("✓ 未命中文档已提交本地留档: {}", outputFilenameNoHit);
                 }
-                java.nio.file.Path outputPathNoHit = docCenterDirNoHit.resolve(outputFilenameNoHit);
-                java.nio.file.Files.write(outputPathNoHit, documentWithAnchorBytes);
-                log.info("✓ 未命中文档已本地保存: {}", outputPathNoHit);
 
                 // 同步保存至 MinIO（reports 目录）
                 String minioUrlNoHit = null;
                 try {
                     if (minioFileService.isEnabled()) {
                         String objName = minioFileService.generateReportObjectName(filename, "一键审查未命中", stance);
-                        minioUrlNoHit = minioFileService.uploadBytes(
-                            documentWithAnchorBytes,
-                            objName,
-                            "application/vnd.openxmlformats-officedocument.wordprocessingml.document"
-                        );
+                        try (InputStream in = cachedDocument != null ? cachedDocument.openDocumentStream()
+                                : new ByteArrayInputStream(documentWithAnchorBytes)) {
+                            minioUrlNoHit = minioFileService.uploadStream(
+                                in,
+                                documentWithAnchorSize,
+                                objName,
+                                "application/vnd.openxmlformats-officedocument.wordprocessingml.document",
+                                null
+                            );
+                        }
                         log.info("✓ 未命中文档已保存到MinIO: {}", minioUrlNoHit);
                     } else {
                         log.info("MinIO服务未启用，跳过MinIO存储（未命中场景）");
@@ -387,8 +543,11 @@ public class QwenRuleReviewController {
                 response.put("message", "未命中任何规则，已跳过LLM并保存原文档");
                 response.put("issuesCount", 0);
                 response.put("processingTime", System.currentTimeMillis() - startTime);
-                if (originalUrl != null) {
-                    response.put("originalUrl", originalUrl);
+                if (originalUpload != null) {
+                    if (originalUpload.getUrl() != null) {
+                        response.put("originalUrl", originalUpload.getUrl());
+                    }
+                    response.set("originalUpload", objectMapper.valueToTree(originalUpload.toStatus()));
                 }
                 if (minioUrlNoHit != null) {
                     response.put("minioUrl", minioUrlNoHit);
@@ -399,14 +558,10 @@ public class QwenRuleReviewController {
                 return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(response);
             }
 
-            // 生成审查Prompt（仅包含命中条款）
-            log.info("步骤3/6: 生成审查Prompt...");
-            String prompt = qwenRuleReviewService.generateRuleReviewPrompt(parseResult, stance);
-            log.info("✓ Prompt生成完成，长度: {} 字符", prompt.length());
-
-            // 步骤4：调用Qwen进行审查
-            log.info("步骤4/6: 正在调用Qwen进行审查...");
-            String reviewResult = qwenRuleReviewService.reviewContractWithQwen(prompt);
+            // 步骤3-4：按条款分块生成Prompt，并发调用Qwen进行审查
+            log.info("步骤3/6: 正在分块调用Qwen进行审查...");
+            ReviewJobService.reportStage("llm", "分块调用Qwen进行审查");
+            String reviewResult = qwenRuleReviewService.reviewContractInChunks(parseResult, stance, matched);
             List<ReviewIssue> issues = qwenRuleReviewService.parseReviewResults(reviewResult);
             log.info("✓ Qwen审查完成，检出 {} 个问题", issues.size());
 
@@ -427,57 +582,28 @@ public class QwenRuleReviewController {
             // 【关键修复】直接传递文档字节数组和 issues 列表，而不是 JSON 字符串和 MultipartFile 包装器
             // 这样避免了中间层的不确定性，确保带锚点文档被正确使用
             log.info("步骤4/6: 正在将审查结果插入文档...");
+            ReviewJobService.reportStage("annotate", "将审查结果插入文档");
 
-            byte[] annotatedDocBytes = xmlContractAnnotateService.annotateContractWithXml(
-                documentWithAnchorBytes, issues, "preferAnchor", false);
+            // 命中缓存时复用预索引，按片段拼接批注
+            WordXmlCommentProcessor.AnnotatedDocument annotated = cachedParse != null
+                ? xmlContractAnnotateService.annotateContractWithReport(cachedParse, issues, "preferAnchor", false)
+                : xmlContractAnnotateService.annotateContractWithReport(documentWithAnchorBytes, issues, "preferAnchor", false);
+            byte[] annotatedDocBytes = annotated.getDocumentBytes();
             log.info("✓ 文档批注完成，大小: {} KB", annotatedDocBytes.length / 1024);
 
             // 步骤6：保存文档到文档中心
             log.info("步骤5/6: 正在保存文档到文档中心...");
+            ReviewJobService.reportStage("save", "保存文档到文档中心");
             String baseName = filename.replaceAll("\\.(docx|doc)$", "");
             
             // 添加时间戳避免文件冲突
             String timestamp = new java.text.SimpleDateFormat("yyyyMMdd_HHmmss").format(new java.util.Date());
             String outputFilename = baseName + "_一键审查_" + stance + "_" + timestamp + ".docx";
 
-            // 构建文档中心路径
-            String projectRoot = System.getProperty("user.dir");
-            String docCenterPath = java.nio.file.Paths.get(projectRoot, "文档中心", "已生成的审查报告").toString();
-
-            // 创建目录
-            java.nio.file.Path docCenterDir = java.nio.file.Paths.get(docCenterPath);
-            if (!java.nio.file.Files.exists(docCenterDir)) {
-                java.nio.file.Files.createDirectories(docCenterDir);
-                log.info("✓ 创建文档中心目录: {}", docCenterPath);
-            }
-
-            // 保存文件到本地（使用中文文件名，带时间戳避免冲突）
-            java.nio.file.Path outputPath = docCenterDir.resolve(outputFilename);
-            int retryCount = 0;
-            int maxRetries = 3;
-            
-            while (retryCount < maxRetries) {
-                try {
-                    java.nio.file.Files.write(outputPath, annotatedDocBytes);
-                    log.info("✓ 文档已保存到本地: {}", outputPath);
-                    break;
-                } catch (java.nio.file.FileSystemException e) {
-                    retryCount++;
-                    if (retryCount < maxRetries) {
-                        log.warn("文件保存失败（尝试 {}/{}），等待后重试: {}", retryCount, maxRetries, e.getMessage());
-                        try {
-                            Thread.sleep(500); // 等待500ms
-                        } catch (InterruptedException ie) {
-                            Thread.currentThread().interrupt();
-                        }
-                        // 添加随机后缀避免冲突
-                        outputFilename = baseName + "_一键审查_" + stance + "_" + timestamp + "_" + retryCount + ".docx";
-                        outputPath = docCenterDir.resolve(outputFilename);
-                    } else {
-                        log.error("文件保存失败，已达到最大重试次数", e);
-                        throw e;
-                    }
-                }
+            // 本地文档中心留档（后台写入，按采样率留档；同名文件由写入方追加序号）
+            if (diagnosticsSink.sampled(DiagnosticsSink.Category.REVIEW_REPORT)
+                    && diagnosticsSink.submit(DiagnosticsSink.Category.REVIEW_REPORT, outputFilename, annotatedDocBytes)) {
+                log.info("✓ 文档已提交本地留档: {}", outputFilename);
             }
 
             // 【新增】同时保存到MinIO
@@ -569,9 +695,13 @@ public class QwenRuleReviewController {
             response.put("filename", outputFilename);
             response.put("fileSize", annotatedDocBytes.length);
             response.put("issuesCount", issues.size());
+            response.set("annotationReport", objectMapper.valueToTree(annotated.getReport()));
             response.put("processingTime", endTime - startTime);
-            if (originalUrl != null) {
-                response.put("originalUrl", originalUrl);
+            if (originalUpload != null) {
+                if (originalUpload.getUrl() != null) {
+                    response.put("originalUrl", originalUpload.getUrl());
+                }
+                response.set("originalUpload", objectMapper.valueToTree(originalUpload.toStatus()));
             }
             
             if (minioUrl != null) {
@@ -608,7 +738,45 @@ public class QwenRuleReviewController {
             return ResponseEntity.status(500).body(error);
         }
     }
-    
+
+    /**
+     * 异步一键审查
+     *
+     * 与 /one-click-review 相同的流程，在审查任务线程池中执行，提交后立即返回 jobId（202）。
+     * 通过 /api/review-jobs/{jobId} 轮询或 /api/review-jobs/{jobId}/events 订阅进度和结果；
+     * 队列已满时返回 429。
+     *
+     * @param file 上传的合同文件
+     * @param cacheId 解析结果缓存ID（可选）
+     * @param stance 审查立场
+     * @return 任务信息
+     */
+    @PostMapping("/one-click-review/jobs")
+    public ResponseEntity<?> submitOneClickReview(
+            @RequestParam("file") MultipartFile file,
+            @RequestParam(value = "cacheId", required = false) String cacheId,
+            @RequestParam(value = "stance", defaultValue = "neutral") String stance) throws IOException {
+
+        if (file == null || file.isEmpty()) {
+            ObjectNode error = objectMapper.createObjectNode();
+            error.put("success", false);
+            error.put("error", "文件不能为空");
+            return ResponseEntity.badRequest().body(error);
+        }
+
+        // 上传的临时文件在请求结束后删除，先读出内容
+        MultipartFile copy = SimpleMultipartFileWrapper.copyOf(file);
+        return ReviewJobController.submit(reviewJobService, objectMapper, "one-click", file.getOriginalFilename(), () -> {
+            ResponseEntity<?> response = oneClickReview(copy, cacheId, stance);
+            if (!response.getStatusCode().is2xxSuccessful()) {
+                Object body = response.getBody();
+                throw new IllegalStateException(body instanceof ObjectNode
+                        ? ((ObjectNode) body).path("error").asText() : "一键审查失败");
+            }
+            return response.getBody();
+        });
+    }
+
     /**
      * 辅助方法：字节数组转十六进制
      */
@@ -621,22 +789,11 @@ public class QwenRuleReviewController {
     }
     
     /**
-     * 验证DOCX文档是否包含批注文件
+     * 验证DOCX文档是否包含批注（comments.xml 存在且有批注条目，只解压该部件）
      */
     private static boolean validateDocHasComments(byte[] docBytes) {
         try {
-            java.util.zip.ZipInputStream zip = new java.util.zip.ZipInputStream(
-                new java.io.ByteArrayInputStream(docBytes));
-            java.util.zip.ZipEntry entry;
-            while ((entry = zip.getNextEntry()) != null) {
-                if ("word/comments.xml".equals(entry.getName())) {
-                    zip.close();
-                    return true;
-                }
-                zip.closeEntry();
-            }
-            zip.close();
-            return false;
+            return DocxPackageInspector.of(docBytes).hasComments();
         } catch (Exception e) {
             return false;
         }
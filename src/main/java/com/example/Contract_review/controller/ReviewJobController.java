@@ -0,0 +1,201 @@
+package com.example.Contract_review.controller;
+
+import com.example.Contract_review.service.ReviewJobService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 异步审查任务控制器
+ *
+ * 审查任务由各审查接口的 /jobs 端点提交（/api/unified/review/jobs、
+ * /api/qwen/rule-review/one-click-review/jobs、/auto-review/jobs），本控制器负责查询：
+ * - GET /api/review-jobs/{jobId}：轮询任务状态，结束后包含审查结果
+ * - GET /api/review-jobs/{jobId}/events：SSE 订阅阶段进度和最终结果
+ * - GET /api/review-jobs/{jobId}/document：下载任务生成的带批注文档
+ * - DELETE /api/review-jobs/{jobId}：取消任务
+ */
+@RestController
+@RequestMapping("/api/review-jobs")
+public class ReviewJobController {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReviewJobController.class);
+
+    /**
+     * 队列已满时建议客户端重试的间隔（秒）
+     */
+    private static final String RETRY_AFTER_SECONDS = "30";
+
+    @Autowired
+    private ReviewJobService reviewJobService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /**
+     * 提交审查任务并构建 202 响应（供各审查控制器的 /jobs 端点使用）
+     *
+     * 队列已满时返回 429 并带 Retry-After 头
+     */
+    static ResponseEntity<?> submit(ReviewJobService reviewJobService, ObjectMapper objectMapper,
+                                    String type, String filename, ReviewJobService.JobTask task) {
+        try {
+            ReviewJobService.ReviewJob job = reviewJobService.submit(type, filename, task);
+            ObjectNode response = objectMapper.createObjectNode();
+            response.put("success", true);
+            response.put("jobId", job.getJobId());
+            response.put("status", job.getStatus().name());
+            response.put("statusUrl", "/api/review-jobs/" + job.getJobId());
+            response.put("eventsUrl", "/api/review-jobs/" + job.getJobId() + "/events");
+            return ResponseEntity.accepted()
+                    .header(HttpHeaders.LOCATION, "/api/review-jobs/" + job.getJobId())
+                    .body(response);
+        } catch (RejectedExecutionException e) {
+            ObjectNode error = objectMapper.createObjectNode();
+            error.put("success", false);
+            error.put("error", "审查任务队列已满，请稍后重试");
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS)
+                    .body(error);
+        }
+    }
+
+    /**
+     * 查询任务状态
+     */
+    @GetMapping("/{jobId}")
+    public ResponseEntity<?> getJob(@PathVariable String jobId) {
+        ReviewJobService.ReviewJob job = reviewJobService.getJob(jobId);
+        if (job == null) {
+            return notFound(jobId);
+        }
+
+        ObjectNode response = objectMapper.valueToTree(job.toStatus());
+        response.put("success", true);
+        if (job.getStatus() == ReviewJobService.JobStatus.SUCCEEDED) {
+            attachResult(response, job);
+        }
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * 订阅任务进度（SSE）
+     *
+     * 事件：queued、stage（阶段进度）、result（成功，含审查结果）、failed、cancelled。
+     * 订阅前已发生的事件会先重放，任务结束后连接关闭。
+     */
+    @GetMapping(value = "/{jobId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<Object>> streamEvents(@PathVariable String jobId) {
+        ReviewJobService.ReviewJob job = reviewJobService.getJob(jobId);
+        if (job == null) {
+            return Flux.just(ServerSentEvent.builder()
+                    .event("error")
+                    .data((Object) Map.of("success", false, "error", "任务不存在或已过期: " + jobId))
+                    .build());
+        }
+
+        return reviewJobService.events(job).map(event -> {
+            Object data = event.getData();
+            if ("result".equals(event.getType())) {
+                ObjectNode node = objectMapper.valueToTree(event.getData());
+                attachResult(node, job);
+                data = node;
+            }
+            return ServerSentEvent.builder().event(event.getType()).data(data).build();
+        });
+    }
+
+    /**
+     * 下载任务生成的带批注文档（仅返回文档的任务类型）
+     */
+    @GetMapping("/{jobId}/document")
+    public ResponseEntity<?> downloadDocument(@PathVariable String jobId) {
+        ReviewJobService.ReviewJob job = reviewJobService.getJob(jobId);
+        if (job == null) {
+            return notFound(jobId);
+        }
+        Path document = job.getDocumentFile();
+        if (document == null || !Files.exists(document)) {
+            ObjectNode error = objectMapper.createObjectNode();
+            error.put("success", false);
+            error.put("error", "任务未完成或不包含文档: " + job.getStatus().name());
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(error);
+        }
+
+        String filename = job.getFilename() != null
+                ? job.getFilename().replace(".docx", "-AI审查完成.docx")
+                : "contract-ai-reviewed.docx";
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename*=UTF-8''" + java.net.URLEncoder.encode(filename, StandardCharsets.UTF_8)
+                                .replace("+", "%20"))
+                .contentLength(job.getDocumentSize())
+                .body(new FileSystemResource(document));
+    }
+
+    /**
+     * 取消任务
+     */
+    @DeleteMapping("/{jobId}")
+    public ResponseEntity<?> cancelJob(@PathVariable String jobId) {
+        ReviewJobService.ReviewJob job = reviewJobService.getJob(jobId);
+        if (job == null) {
+            return notFound(jobId);
+        }
+        boolean cancelled = reviewJobService.cancel(jobId);
+        ObjectNode response = objectMapper.valueToTree(job.toStatus());
+        response.put("success", cancelled);
+        if (!cancelled) {
+            response.put("message", "任务已结束，无法取消");
+        }
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * 线程池与任务统计
+     */
+    @GetMapping("/stats")
+    public ResponseEntity<?> getStats() {
+        return ResponseEntity.ok(reviewJobService.getStats());
+    }
+
+    private void attachResult(ObjectNode response, ReviewJobService.ReviewJob job) {
+        Object result = job.getResult();
+        if (job.getDocumentFile() != null) {
+            response.put("documentAvailable", true);
+            response.put("documentSize", job.getDocumentSize());
+            response.put("documentUrl", "/api/review-jobs/" + job.getJobId() + "/document");
+        } else if (result != null) {
+            try {
+                response.set("result", objectMapper.valueToTree(result));
+            } catch (IllegalArgumentException e) {
+                logger.warn("【审查任务】结果序列化失败: jobId={}, {}", job.getJobId(), e.getMessage());
+                response.put("result", String.valueOf(result));
+            }
+        }
+    }
+
+    private ResponseEntity<?> notFound(String jobId) {
+        ObjectNode error = objectMapper.createObjectNode();
+        error.put("success", false);
+        error.put("error", "任务不存在或已过期: " + jobId);
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(error);
+    }
+}
@@ -2,7 +2,9 @@ package com.example.Contract_review.controller;
 
 import com.example.Contract_review.model.ReviewMode;
 import com.example.Contract_review.model.UnifiedReviewResult;
+import com.example.Contract_review.service.ReviewJobService;
 import com.example.Contract_review.service.UnifiedReviewService;
+import com.example.Contract_review.util.SimpleMultipartFileWrapper;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.slf4j.Logger;
@@ -34,6 +36,9 @@ public class UnifiedReviewController {
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private ReviewJobService reviewJobService;
+
     /**
      * 统一的审查接口
      *
@@ -142,6 +147,54 @@ public class UnifiedReviewController {
         }
     }
 
+    /**
+     * 异步统一审查接口
+     *
+     * 参数与 /review 相同，在审查任务线程池中执行，提交后立即返回 jobId（202）。
+     * 通过 /api/review-jobs/{jobId} 轮询或 /api/review-jobs/{jobId}/events 订阅进度，
+     * 任务成功后结果为 UnifiedReviewResult；队列已满时返回 429。
+     *
+     * @param file 合同文件
+     * @param contractType 合同类型
+     * @param party 审查立场（A方/B方/null）
+     * @param reviewMode 审查模式（rules/ai/full，默认为rules）
+     * @param aiProvider AI提供商（默认为qwen）
+     * @return 任务信息
+     */
+    @PostMapping("/review/jobs")
+    public ResponseEntity<?> submitUnifiedReview(
+            @RequestParam("file") MultipartFile file,
+            @RequestParam(value = "contractType", defaultValue = "通用合同") String contractType,
+            @RequestParam(value = "party", required = false) String party,
+            @RequestParam(value = "reviewMode", defaultValue = "rules") String reviewMode,
+            @RequestParam(value = "aiProvider", defaultValue = "qwen") String aiProvider) throws java.io.IOException {
+
+        if (file.isEmpty()) {
+            return ResponseEntity.badRequest()
+                    .body(createErrorResponse("文件不能为空", null));
+        }
+
+        ReviewMode mode;
+        try {
+            mode = ReviewMode.fromString(reviewMode);
+        } catch (IllegalArgumentException e) {
+            logger.warn("无效的审查模式: {}", reviewMode);
+            mode = ReviewMode.RULES;
+        }
+
+        // 上传的临时文件在请求结束后删除，先读出内容
+        MultipartFile copy = SimpleMultipartFileWrapper.copyOf(file);
+        ReviewMode finalMode = mode;
+        return ReviewJobController.submit(reviewJobService, objectMapper, "unified", file.getOriginalFilename(), () -> {
+            UnifiedReviewResult result = unifiedReviewService.performReview(
+                    copy, contractType, party, finalMode, aiProvider);
+            if (!result.isSuccess()) {
+                throw new IllegalStateException(result.getError());
+            }
+            return result;
+        });
+    }
+
     /**
      * 健康检查接口
      */
@@ -0,0 +1,82 @@
+package com.example.Contract_review.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 批注处理报告
+ *
+ * 由批注插入过程中维护的计数器和ID集合生成，无需在保存后再次遍历整个文档
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AnnotationReport {
+
+    /**
+     * 处理方式：xml（全量解析）或 indexed（预索引片段拼接）
+     */
+    private String mode;
+
+    /**
+     * 请求批注的问题数
+     */
+    private int requestedCount;
+
+    /**
+     * 成功添加的批注数
+     */
+    private int addedCount;
+
+    /**
+     * 添加失败的问题数
+     */
+    private int failedCount;
+
+    /**
+     * 本次插入的 commentRangeStart 数量
+     */
+    private int commentRangeStartCount;
+
+    /**
+     * 本次插入的 commentRangeEnd 数量
+     */
+    private int commentRangeEndCount;
+
+    /**
+     * 本次插入的 commentReference 数量
+     */
+    private int commentReferenceCount;
+
+    /**
+     * 本次写入 comments.xml 的批注数量
+     */
+    private int commentCount;
+
+    /**
+     * 标记不完整的批注ID（缺少或重复 起始/结束/引用/批注内容 之一）
+     */
+    @Builder.Default
+    private List<Integer> inconsistentCommentIds = new ArrayList<>();
+
+    /**
+     * 每个批注ID是否都恰好有一组 起始、结束、引用 和批注内容
+     */
+    private boolean consistent;
+
+    /**
+     * 是否执行了全文档遍历校验（仅调试模式）
+     */
+    private boolean fullScanVerified;
+
+    /**
+     * 处理耗时（毫秒）
+     */
+    private long elapsedMs;
+}
@@ -19,7 +19,7 @@ import java.util.regex.Pattern;
  * 2. 从 ReviewStandard 创建：使用 name, description, severity, targetClauses 等
  */
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 public class ReviewRule {
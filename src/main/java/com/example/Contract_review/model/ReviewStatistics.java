@@ -75,4 +75,24 @@ public class ReviewStatistics {
      * 用户立场
      */
     private String userStance;
+
+    /**
+     * 实际返回审查结果的AI提供商（主提供商失败或超时时可能为备选提供商）
+     */
+    private String llmProvider;
+
+    /**
+     * LLM响应缓存状态（HIT/MISS/PARTIAL/DISABLED/NONE）
+     */
+    private String llmCacheStatus;
+
+    /**
+     * 实际调用LLM的耗时（毫秒，命中缓存时为0）
+     */
+    private Long llmLatencyMs;
+
+    /**
+     * 命中缓存节省的LLM耗时（毫秒）
+     */
+    private Long llmCacheSavedMs;
 }
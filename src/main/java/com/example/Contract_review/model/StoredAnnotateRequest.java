@@ -0,0 +1,42 @@
+package com.example.Contract_review.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 按 parseResultId 批注请求模型
+ *
+ * 带锚点文档已在 Parse 阶段按 parseResultId 保存，请求中只需传递ID和审查问题
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StoredAnnotateRequest {
+
+    /**
+     * Parse 阶段返回的 parseResultId
+     */
+    private String parseResultId;
+
+    /**
+     * 审查问题列表
+     */
+    private List<ReviewIssue> issues;
+
+    /**
+     * 锚点策略：preferAnchor | anchorOnly | textFallback
+     */
+    @Builder.Default
+    private String anchorStrategy = "preferAnchor";
+
+    /**
+     * 是否清理锚点
+     */
+    @Builder.Default
+    private boolean cleanupAnchors = true;
+}
@@ -7,6 +7,7 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * 统一审查结果模型
@@ -59,6 +60,11 @@ public class UnifiedReviewResult {
      */
     private String annotatedDocumentUrl;
 
+    /**
+     * 带批注文档的MinIO上传状态（uploadId、status等，可通过 /api/uploads/{uploadId} 查询最新状态）
+     */
+    private Map<String, Object> annotatedDocumentUpload;
+
     /**
      * 审查指导信息（规则应用指南）
      */
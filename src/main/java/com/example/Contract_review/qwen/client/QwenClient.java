@@ -1,5 +1,7 @@
 package com.example.Contract_review.qwen.client;
 
+import com.example.Contract_review.config.AIHttpClients;
+import com.example.Contract_review.config.AIRequestExecutor;
 import com.example.Contract_review.qwen.dto.*;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
@@ -36,15 +38,12 @@ public class QwenClient {
     private int timeoutSeconds;
 
     private final WebClient webClient;
+    private final AIRequestExecutor aiRequestExecutor;
     private final ObjectMapper objectMapper;
 
-    // 重试配置（默认关闭）
-    private static final boolean ENABLE_RETRY = false;
-    private static final int MAX_RETRIES = 3;
-    private static final long RETRY_DELAY_MS = 1000;
-
-    public QwenClient(WebClient.Builder webClientBuilder, ObjectMapper objectMapper) {
-        this.webClient = webClientBuilder.build();
+    public QwenClient(AIHttpClients aiHttpClients, AIRequestExecutor aiRequestExecutor, ObjectMapper objectMapper) {
+        this.webClient = aiHttpClients.webClient("qwen");
+        this.aiRequestExecutor = aiRequestExecutor;
         this.objectMapper = objectMapper;
     }
 
@@ -78,7 +77,8 @@ public class QwenClient {
         // 增加 50% 的超时缓冲以防止 flatMap 内部操作超时
         long totalTimeoutSeconds = Math.round(timeoutSeconds * 1.5);
 
-        Mono<ChatResponse> responseMono = webClient.post()
+        // 并发限制和重试（429/5xx/超时，遵循 Retry-After）由 AIRequestExecutor 统一处理
+        return aiRequestExecutor.execute("qwen", () -> webClient.post()
                 .uri(baseUrl + "/chat/completions")
                 .header("Authorization", "Bearer " + apiKey)
                 .contentType(MediaType.APPLICATION_JSON)
@@ -88,12 +88,7 @@ public class QwenClient {
                 .timeout(Duration.ofSeconds(timeoutSeconds))
                 .flatMap(this::parseNonStreamResponse)
                 .timeout(Duration.ofSeconds(totalTimeoutSeconds))  // 为 flatMap 添加额外超时
-                .doOnError(e -> logError(e, "Non-stream chat failed"));
-
-        if (ENABLE_RETRY) {
-            return responseMono.retry(MAX_RETRIES);
-        }
-        return responseMono;
+                .doOnError(e -> logError(e, "Non-stream chat failed")));
     }
 
     /**
@@ -111,7 +106,8 @@ public class QwenClient {
         request.setModel(request.getModel() != null ? request.getModel() : defaultModel);
         request.setStream(true);
 
-        return webClient.post()
+        // 尚未收到数据时失败才重试，避免重复输出
+        return aiRequestExecutor.executeMany("qwen", () -> webClient.post()
                 .uri(baseUrl + "/chat/completions")
                 .header("Authorization", "Bearer " + apiKey)
                 .contentType(MediaType.APPLICATION_JSON)
@@ -122,7 +118,7 @@ public class QwenClient {
                 .timeout(Duration.ofSeconds(timeoutSeconds))
                 .doOnNext(line -> log.debug("SSE line: {}", line))
                 .flatMap(this::parseStreamLine)
-                .doOnError(e -> logError(e, "Stream chat failed"));
+                .doOnError(e -> logError(e, "Stream chat failed")));
     }
 
     /**
@@ -174,9 +170,9 @@ public class QwenClient {
             return Flux.empty();
         }
 
-        // 处理 SSE 格式：data: {...}
-        if (line.startsWith("data: ")) {
-            String jsonStr = line.substring(6).trim();
+        // 处理 SSE 格式：data: {...}；以 text/event-stream 解码时 data 前缀已被去除，直接是 {...}
+        if (line.startsWith("data:") || line.trim().startsWith("{")) {
+            String jsonStr = line.startsWith("data:") ? line.substring(5).trim() : line.trim();
             if (jsonStr.equals("[DONE]")) {
                 return Flux.just(ChatDelta.builder()
                         .done(true)
@@ -0,0 +1,510 @@
+package com.example.Contract_review.service;
+
+import com.example.Contract_review.config.AIServiceConfig;
+import com.example.Contract_review.model.ParseResult;
+import com.example.Contract_review.util.LatencyHistogram;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * AI 提供商路由服务
+ *
+ * 在多个已配置的 AI 提供商（Qwen 及各 AIReviewService 实现）之间路由审查请求：
+ * - 主备策略：先调用选定的主提供商，失败或返回无效 JSON 时立即切换到下一个健康的备选提供商
+ * - 对冲请求：主提供商超过延迟阈值仍未返回时，同时向下一个提供商发起请求，先返回有效 JSON 者胜出，
+ *   落后的请求被取消；阈值取各提供商延迟直方图的分位数（ai.service.routing.hedge-percentile）
+ * - 熔断：提供商连续失败达到阈值后熔断一段时间，期间直接跳过；到期后放行一次试探请求，成功即恢复
+ *
+ * 备选顺序、最多调用的提供商数、对冲和熔断参数见 ai.service.routing.*
+ * 路由和对冲默认关闭；开启后也只会切换到 ai.service.routing.order 中显式列出的提供商
+ */
+@Service
+public class AIProviderRouter {
+
+    private static final Logger logger = LoggerFactory.getLogger(AIProviderRouter.class);
+
+    /**
+     * 延迟直方图的衰减窗口（样本数）
+     */
+    private static final int HISTOGRAM_DECAY_WINDOW = 500;
+
+    @Autowired
+    private AIServiceConfig aiServiceConfig;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired(required = false)
+    private QwenRuleReviewService qwenRuleReviewService;
+
+    @Autowired(required = false)
+    @Qualifier("claudeReviewService")
+    private AIReviewService claudeReviewService;
+
+    @Autowired(required = false)
+    @Qualifier("openaiReviewService")
+    private AIReviewService openaiReviewService;
+
+    @Autowired(required = false)
+    @Qualifier("douBaoReviewService")
+    private AIReviewService doubaoReviewService;
+
+    private final Map<String, ProviderHealth> health = new ConcurrentHashMap<>();
+
+    /**
+     * 熔断状态
+     */
+    public enum CircuitState {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    /**
+     * 路由结果
+     */
+    public static class RouteResult {
+        private final String provider;
+        private final String response;
+        private final boolean hedged;
+        private final List<String> attempted;
+
+        RouteResult(String provider, String response, boolean hedged, List<String> attempted) {
+            this.provider = provider;
+            this.response = response;
+            this.hedged = hedged;
+            this.attempted = attempted;
+        }
+
+        /**
+         * 返回结果的提供商
+         */
+        public String getProvider() {
+            return provider;
+        }
+
+        public String getResponse() {
+            return response;
+        }
+
+        /**
+         * 是否发起过对冲请求
+         */
+        public boolean isHedged() {
+            return hedged;
+        }
+
+        /**
+         * 实际调用过的提供商（按发起顺序）
+         */
+        public List<String> getAttempted() {
+            return attempted;
+        }
+    }
+
+    /**
+     * 使用 AIReviewService 审查合同（自动化审查流程）
+     *
+     * 主提供商不在路由范围内（如模拟服务、ChatGPT网页版）或路由关闭时直接调用
+     *
+     * @param primary 选定的主提供商服务
+     * @param parseResult 解析后的合同内容
+     * @param contractType 合同类型
+     */
+    public RouteResult reviewContract(AIReviewService primary, ParseResult parseResult, String contractType)
+            throws Exception {
+        Map<String, AIReviewService> services = reviewServices();
+        String primaryKey = null;
+        for (Map.Entry<String, AIReviewService> entry : services.entrySet()) {
+            if (entry.getValue() == primary) {
+                primaryKey = entry.getKey();
+            }
+        }
+        if (primaryKey == null || !aiServiceConfig.getRouting().isEnabled()) {
+            return new RouteResult(primary.getProviderName(), primary.reviewContract(parseResult, contractType),
+                    false, List.of(primary.getProviderName()));
+        }
+
+        services.values().removeIf(service -> !service.isAvailable());
+        services.putIfAbsent(primaryKey, primary);
+        List<String> candidates = candidates(primaryKey, new ArrayList<>(services.keySet()));
+        return blockingRoute("auto-review", candidates, provider -> Mono.fromCallable(
+                () -> services.get(provider).reviewContract(parseResult, contractType)));
+    }
+
+    /**
+     * 发送已生成的审查Prompt（统一审查流程），可在 Qwen 与支持直接发送 Prompt 的提供商之间切换
+     *
+     * @param primary 主提供商（qwen / claude / openai / doubao）
+     * @param prompt 审查Prompt
+     * @param cacheUsage Qwen 响应缓存使用记录（可为 null）
+     * @return 路由结果；没有可用的提供商时返回 null
+     */
+    public RouteResult reviewPrompt(String primary, String prompt, LlmResponseCache.Usage cacheUsage)
+            throws Exception {
+        Map<String, Function<String, String>> callers = new LinkedHashMap<>();
+        if (qwenRuleReviewService != null && qwenRuleReviewService.isQwenAvailable()) {
+            callers.put("qwen", p -> qwenRuleReviewService.reviewContractWithQwen(p, cacheUsage));
+        }
+        reviewServices().forEach((provider, service) -> {
+            if (service.supportsPrompt() && service.isAvailable()) {
+                callers.put(provider, p -> {
+                    try {
+                        return service.reviewPrompt(p);
+                    } catch (Exception e) {
+                        throw new IllegalStateException(e.getMessage(), e);
+                    }
+                });
+            }
+        });
+
+        String primaryKey = primary.toLowerCase();
+        if ("chatgpt".equals(primaryKey)) {
+            primaryKey = "openai";
+        }
+        if (!callers.containsKey(primaryKey)) {
+            return null;
+        }
+        if (!aiServiceConfig.getRouting().isEnabled()) {
+            // 路由关闭：只调用选定的提供商，不做响应校验和熔断
+            return new RouteResult(primaryKey, callers.get(primaryKey).apply(prompt), false, List.of(primaryKey));
+        }
+        List<String> candidates = candidates(primaryKey, new ArrayList<>(callers.keySet()));
+        return blockingRoute("unified-review", candidates,
+                provider -> Mono.fromCallable(() -> callers.get(provider).apply(prompt)));
+    }
+
+    /**
+     * 在候选提供商之间路由一次请求
+     *
+     * 按顺序调用候选提供商：失败或返回无效 JSON 时切换到下一个；当前提供商超过对冲阈值仍未返回时
+     * 同时调用下一个。最先返回有效 JSON 的结果胜出，其余在途请求被取消。
+     *
+     * @param operation 操作名（用于日志）
+     * @param candidates 候选提供商，首个为主提供商
+     * @param call 按提供商发起请求
+     */
+    public Mono<RouteResult> route(String operation, List<String> candidates, Function<String, Mono<String>> call) {
+        if (candidates.isEmpty()) {
+            return Mono.error(new IllegalStateException("没有可用的AI提供商"));
+        }
+        return Mono.create(sink -> new HedgedCall(operation, candidates, call, sink).launchNext(false));
+    }
+
+    /**
+     * 各提供商的熔断状态、延迟分布和当前对冲阈值
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        health.forEach((provider, providerHealth) -> {
+            Map<String, Object> providerStats = providerHealth.getStats();
+            providerStats.put("hedgeDelayMs", hedgeDelayMs(provider));
+            stats.put(provider, providerStats);
+        });
+        return stats;
+    }
+
+    /**
+     * 判断响应是否为有效的审查 JSON（可解析为对象，且不是错误响应）
+     */
+    boolean isValidResponse(String response) {
+        if (response == null || response.isBlank()) {
+            return false;
+        }
+        int start = response.indexOf('{');
+        int end = response.lastIndexOf('}');
+        if (start < 0 || end <= start) {
+            return false;
+        }
+        try {
+            JsonNode root = objectMapper.readTree(response.substring(start, end + 1));
+            if (!root.isObject()) {
+                return false;
+            }
+            JsonNode error = root.get("error");
+            if (error != null && (error.asBoolean(false) || error.isTextual())) {
+                return false;
+            }
+            JsonNode success = root.get("success");
+            return success == null || !success.isBoolean() || success.asBoolean();
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private RouteResult blockingRoute(String operation, List<String> candidates,
+                                      Function<String, Mono<String>> call) throws Exception {
+        try {
+            // 各提供商的同步调用放到 boundedElastic 线程执行，取消时中断线程以终止落后的请求
+            return route(operation, candidates,
+                    provider -> call.apply(provider).subscribeOn(Schedulers.boundedElastic())).block();
+        } catch (RuntimeException e) {
+            if (e.getCause() instanceof Exception && !(e.getCause() instanceof RuntimeException)) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 主提供商在前，备选只取 ai.service.routing.order 中显式配置且可用的提供商
+     */
+    private List<String> candidates(String primary, List<String> available) {
+        List<String> ordered = new ArrayList<>();
+        ordered.add(primary);
+        for (String provider : aiServiceConfig.getRouting().getOrder()) {
+            String key = provider.trim().toLowerCase();
+            if (available.contains(key) && !ordered.contains(key)) {
+                ordered.add(key);
+            }
+        }
+        return ordered;
+    }
+
+    private Map<String, AIReviewService> reviewServices() {
+        Map<String, AIReviewService> services = new LinkedHashMap<>();
+        if (claudeReviewService != null) {
+            services.put("claude", claudeReviewService);
+        }
+        if (openaiReviewService != null) {
+            services.put("openai", openaiReviewService);
+        }
+        if (doubaoReviewService != null) {
+            services.put("doubao", doubaoReviewService);
+        }
+        return services;
+    }
+
+    private ProviderHealth health(String provider) {
+        return health.computeIfAbsent(provider, key -> new ProviderHealth());
+    }
+
+    /**
+     * 提供商的对冲阈值：样本足够时取延迟分位数，并限制在上下限之间
+     */
+    private long hedgeDelayMs(String provider) {
+        AIServiceConfig.RoutingConfig routing = aiServiceConfig.getRouting();
+        LatencyHistogram histogram = health(provider).histogram;
+        if (histogram.count() < routing.getMinSamples()) {
+            return routing.getHedgeInitialDelayMs();
+        }
+        long percentile = histogram.percentile(routing.getHedgePercentile());
+        return Math.min(routing.getHedgeMaxDelayMs(), Math.max(routing.getHedgeMinDelayMs(), percentile));
+    }
+
+    /**
+     * 单个提供商的健康状况：延迟直方图和熔断器
+     */
+    private class ProviderHealth {
+        private final LatencyHistogram histogram = new LatencyHistogram(HISTOGRAM_DECAY_WINDOW);
+        private CircuitState state = CircuitState.CLOSED;
+        private int consecutiveFailures;
+        private long openUntil;
+        private boolean trialInFlight;
+        private long successes;
+        private long failures;
+
+        /**
+         * 是否允许发起请求；熔断到期后只放行一次试探请求
+         */
+        synchronized boolean tryAcquire() {
+            if (state == CircuitState.OPEN) {
+                if (System.currentTimeMillis() < openUntil) {
+                    return false;
+                }
+                state = CircuitState.HALF_OPEN;
+            }
+            if (state == CircuitState.HALF_OPEN) {
+                if (trialInFlight) {
+                    return false;
+                }
+                trialInFlight = true;
+            }
+            return true;
+        }
+
+        synchronized void onSuccess(long latencyMs) {
+            histogram.record(latencyMs);
+            successes++;
+            consecutiveFailures = 0;
+            trialInFlight = false;
+            state = CircuitState.CLOSED;
+        }
+
+        synchronized void onFailure(String provider) {
+            failures++;
+            consecutiveFailures++;
+            trialInFlight = false;
+            AIServiceConfig.RoutingConfig routing = aiServiceConfig.getRouting();
+            if (state == CircuitState.HALF_OPEN || consecutiveFailures >= routing.getFailureThreshold()) {
+                state = CircuitState.OPEN;
+                openUntil = System.currentTimeMillis() + routing.getOpenSeconds() * 1000L;
+                logger.warn("【AI路由】{} 连续失败 {} 次，熔断 {} 秒", provider, consecutiveFailures, routing.getOpenSeconds());
+            }
+        }
+
+        /**
+         * 请求被取消（对冲落败），不计入成功或失败
+         */
+        synchronized void onCancel() {
+            trialInFlight = false;
+        }
+
+        synchronized Map<String, Object> getStats() {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("circuit", state == CircuitState.OPEN && System.currentTimeMillis() >= openUntil
+                    ? CircuitState.HALF_OPEN.name() : state.name());
+            stats.put("consecutiveFailures", consecutiveFailures);
+            stats.put("successes", successes);
+            stats.put("failures", failures);
+            stats.put("latency", histogram.getStats());
+            return stats;
+        }
+    }
+
+    /**
+     * 一次路由请求：负责主备切换、对冲和取消落后的请求
+     */
+    private class HedgedCall {
+        private final String operation;
+        private final List<String> candidates;
+        private final Function<String, Mono<String>> call;
+        private final MonoSink<RouteResult> sink;
+        private final Map<String, Disposable> inFlight = new LinkedHashMap<>();
+        private final List<String> attempted = new ArrayList<>();
+        private final List<String> failures = new ArrayList<>();
+        private final Disposable.Swap hedgeTimer = Disposables.swap();
+        private int next;
+        private boolean hedged;
+        private boolean done;
+
+        HedgedCall(String operation, List<String> candidates, Function<String, Mono<String>> call,
+                   MonoSink<RouteResult> sink) {
+            this.operation = operation;
+            this.candidates = candidates;
+            this.call = call;
+            this.sink = sink;
+            sink.onCancel(this::cancelAll);
+        }
+
+        /**
+         * 调用下一个可用的候选提供商；没有可调用的且无在途请求时整体失败
+         *
+         * @param hedge 是否为对冲请求（原请求仍在进行）
+         */
+        synchronized void launchNext(boolean hedge) {
+            if (done) {
+                return;
+            }
+            int maxAttempts = Math.max(1, aiServiceConfig.getRouting().getMaxAttempts());
+            while (next < candidates.size() && attempted.size() < maxAttempts) {
+                String provider = candidates.get(next++);
+                if (!health(provider).tryAcquire()) {
+                    failures.add(provider + ": 熔断中");
+                    continue;
+                }
+                if (hedge) {
+                    hedged = true;
+                    logger.info("【AI路由】{}: {} 超过对冲阈值未返回，同时请求 {}",
+                            operation, attempted.get(attempted.size() - 1), provider);
+                } else if (!attempted.isEmpty()) {
+                    logger.info("【AI路由】{}: 切换到 {}", operation, provider);
+                }
+                attempted.add(provider);
+
+                long start = System.nanoTime();
+                Disposable.Swap slot = Disposables.swap();
+                inFlight.put(provider, slot);
+                slot.update(call.apply(provider)
+                        .switchIfEmpty(Mono.error(new IllegalStateException("空响应")))
+                        .subscribe(
+                                response -> onResponse(provider, start, response),
+                                error -> onFailure(provider, error.getMessage())));
+                if (inFlight.containsKey(provider)) {
+                    // 同步完成时（如命中响应缓存）已在回调中处理，无需对冲
+                    scheduleHedge(provider);
+                }
+                return;
+            }
+
+            if (inFlight.isEmpty()) {
+                done = true;
+                hedgeTimer.dispose();
+                sink.error(new IllegalStateException("所有AI提供商调用失败: " + String.join("; ", failures)));
+            }
+        }
+
+        private void scheduleHedge(String provider) {
+            AIServiceConfig.RoutingConfig routing = aiServiceConfig.getRouting();
+            if (done || !routing.isHedgeEnabled() || next >= candidates.size()
+                    || attempted.size() >= Math.max(1, routing.getMaxAttempts())) {
+                return;
+            }
+            long delayMs = hedgeDelayMs(provider);
+            hedgeTimer.update(Mono.delay(Duration.ofMillis(delayMs)).subscribe(tick -> launchNext(true)));
+        }
+
+        private synchronized void onResponse(String provider, long startNanos, String response) {
+            if (!isValidResponse(response)) {
+                onFailure(provider, "无效的JSON响应");
+                return;
+            }
+            inFlight.remove(provider);
+            if (done) {
+                return;
+            }
+            done = true;
+            long latencyMs = (System.nanoTime() - startNanos) / 1_000_000;
+            health(provider).onSuccess(latencyMs);
+            hedgeTimer.dispose();
+            cancelOthers();
+            logger.info("【AI路由】{}: {} 返回有效结果，耗时 {} ms（调用过: {}）", operation, provider, latencyMs, attempted);
+            sink.success(new RouteResult(provider, response, hedged, new ArrayList<>(attempted)));
+        }
+
+        private synchronized void onFailure(String provider, String message) {
+            inFlight.remove(provider);
+            if (done) {
+                return;
+            }
+            health(provider).onFailure(provider);
+            failures.add(provider + ": " + message);
+            logger.warn("【AI路由】{}: {} 调用失败: {}", operation, provider, message);
+            if (inFlight.isEmpty()) {
+                launchNext(false);
+            }
+        }
+
+        private synchronized void cancelAll() {
+            if (!done) {
+                done = true;
+                hedgeTimer.dispose();
+                cancelOthers();
+            }
+        }
+
+        private void cancelOthers() {
+            inFlight.forEach((provider, disposable) -> {
+                disposable.dispose();
+                health(provider).onCancel();
+            });
+            inFlight.clear();
+        }
+    }
+}
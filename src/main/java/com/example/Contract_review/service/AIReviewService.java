@@ -19,6 +19,24 @@ public interface AIReviewService {
      */
     String reviewContract(ParseResult parseResult, String contractType) throws Exception;
 
+    /**
+     * 直接发送已生成的审查Prompt（供多提供商路由在主提供商超时或失败时切换使用）
+     *
+     * @param prompt 审查Prompt
+     * @return 审查结果JSON字符串
+     * @throws Exception AI调用失败
+     */
+    default String reviewPrompt(String prompt) throws Exception {
+        throw new UnsupportedOperationException(getProviderName() + " 不支持直接发送Prompt");
+    }
+
+    /**
+     * 是否支持直接发送Prompt
+     */
+    default boolean supportsPrompt() {
+        return false;
+    }
+
     /**
      * 检查服务是否可用
      *
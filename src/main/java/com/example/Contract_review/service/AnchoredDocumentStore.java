@@ -0,0 +1,350 @@
+package com.example.Contract_review.service;
+
+import com.example.Contract_review.model.ParseResult;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.minio.GetObjectResponse;
+import io.minio.errors.ErrorResponseException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.InputStream;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * 带锚点文档的 MinIO 持久化服务
+ *
+ * 按 parseResultId 保存 Parse 阶段生成的带锚点文档，使 Annotate 阶段只需传递 parseResultId：
+ * - 源文档：{minio.path.anchored}/{parseResultId}/source.docx
+ * - 批注结果：{minio.path.anchored}/{parseResultId}/annotated.docx
+ *
+ * 文档不再经由 JSON（Base64）返回给浏览器再上传回来，内存缓存过期后仍可从 MinIO 取回
+ *
+ * 写入经 ArtifactUploadService 在后台上传，不占用 Parse 请求线程；{minio.path.anchored}/ 下的对象
+ * 由桶生命周期规则按 parse-cache.persist.expire-days 过期
+ *
+ * 集群共享（parse-cache.shared.enabled）：
+ * - 同时保存序列化的解析结果：{parse-cache.shared.prefix}/{parseResultId}/parse-result.json
+ * - 任一实例都可按 parseResultId 取回解析结果和带锚点文档，无需会话粘滞
+ * - 解析结果由桶生命周期规则按天过期，读取时再按缓存 TTL 校验创建时间
+ * - 后台上传完成前其他实例按未命中处理
+ */
+@Service
+public class AnchoredDocumentStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(AnchoredDocumentStore.class);
+
+    private static final String DOCX_CONTENT_TYPE =
+            "application/vnd.openxmlformats-officedocument.wordprocessingml.document";
+
+    /**
+     * 用户元数据：源文件名（URL编码，S3元数据仅支持ASCII）
+     */
+    private static final String FILENAME_METADATA = "filename";
+
+    /**
+     * parseResultId 为 UUID，限制格式避免拼接出任意对象路径
+     */
+    private static final Pattern PARSE_RESULT_ID_PATTERN = Pattern.compile("[0-9a-fA-F-]{8,64}");
+
+    @Autowired
+    private MinioFileService minioFileService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ArtifactUploadService artifactUploadService;
+
+    /**
+     * 是否通过 MinIO 在多个实例间共享 Parse 结果（需同时启用持久化）
+     */
+    @Value("${parse-cache.shared.enabled:false}")
+    private boolean sharedEnabled;
+
+    /**
+     * 共享解析结果在 MinIO 中的路径前缀
+     */
+    @Value("${parse-cache.shared.prefix:parse-cache}")
+    private String sharedPrefix;
+
+    /**
+     * 共享解析结果的对象过期天数（桶生命周期规则）
+     */
+    @Value("${parse-cache.shared.expire-days:1}")
+    private int sharedExpireDays;
+
+    private volatile boolean lifecycleConfigured;
+
+    /**
+     * 是否将带锚点文档持久化到 MinIO
+     */
+    @Value("${parse-cache.persist.enabled:true}")
+    private boolean persistEnabled;
+
+    /**
+     * 带锚点文档在 MinIO 中的路径前缀
+     */
+    @Value("${minio.path.anchored:anchored}")
+    private String anchoredPath;
+
+    /**
+     * 带锚点文档及批注结果的对象过期天数（桶生命周期规则）
+     */
+    @Value("${parse-cache.persist.expire-days:7}")
+    private int persistExpireDays;
+
+    /**
+     * 已持久化的源文档
+     */
+    public static class StoredDocument {
+        private final InputStream stream;
+        private final String filename;
+
+        public StoredDocument(InputStream stream, String filename) {
+            this.stream = stream;
+            this.filename = filename;
+        }
+
+        /**
+         * 文档数据流（调用方负责关闭）
+         */
+        public InputStream getStream() {
+            return stream;
+        }
+
+        public String getFilename() {
+            return filename;
+        }
+    }
+
+    /**
+     * 共享的解析结果
+     */
+    public static class SharedParseResult {
+        private final ParseResult parseResult;
+        private final String sourceFilename;
+        private final long createdAt;
+
+        public SharedParseResult(ParseResult parseResult, String sourceFilename, long createdAt) {
+            this.parseResult = parseResult;
+            this.sourceFilename = sourceFilename;
+            this.createdAt = createdAt;
+        }
+
+        public ParseResult getParseResult() {
+            return parseResult;
+        }
+
+        public String getSourceFilename() {
+            return sourceFilename;
+        }
+
+        /**
+         * 创建该 parseResultId 的实例写入缓存的时间戳
+         */
+        public long getCreatedAt() {
+            return createdAt;
+        }
+    }
+
+    public boolean isEnabled() {
+        return persistEnabled && minioFileService.isEnabled();
+    }
+
+    public boolean isSharedEnabled() {
+        return sharedEnabled && isEnabled();
+    }
+
+    public String sourceObjectName(String parseResultId) {
+        return anchoredPath + "/" + checkId(parseResultId) + "/source.docx";
+    }
+
+    public String annotatedObjectName(String parseResultId) {
+        return anchoredPath + "/" + checkId(parseResultId) + "/annotated.docx";
+    }
+
+    public String parseResultObjectName(String parseResultId) {
+        return sharedPrefix + "/" + checkId(parseResultId) + "/parse-result.json";
+    }
+
+    /**
+     * 提交带锚点文档的后台持久化（失败只记录日志，不影响 Parse 流程）
+     *
+     * @param parseResultId parseResultId
+     * @param documentBytes 带锚点的文档字节数据（提交后即写入暂存文件，调用方可继续复用）
+     * @param filename 源文件名
+     * @return 是否已提交（上传在后台进行）
+     */
+    public boolean persist(String parseResultId, byte[] documentBytes, String filename) {
+        if (!isEnabled() || documentBytes == null || documentBytes.length == 0) {
+            return false;
+        }
+        ensureLifecycle();
+        ArtifactUploadService.Upload upload = artifactUploadService.submit(documentBytes,
+                sourceObjectName(parseResultId), DOCX_CONTENT_TYPE, filenameMetadata(filename));
+        if (upload.getStatus() == ArtifactUploadService.UploadStatus.FAILED) {
+            logger.warn("【锚点文档】持久化到MinIO失败，仅保留内存缓存: parseResultId={}", parseResultId);
+            return false;
+        }
+        logger.info("【锚点文档】已提交持久化: parseResultId={}, uploadId={}, 大小={} 字节",
+                   parseResultId, upload.getUploadId(), documentBytes.length);
+        return true;
+    }
+
+    /**
+     * 将解析结果写入共享存储（失败只记录日志，其他实例无法取回时会按未命中处理）
+     *
+     * @param parseResultId parseResultId
+     * @param parseResult 解析结果
+     * @param sourceFilename 源文件名
+     * @param createdAt 缓存创建时间戳
+     * @return 是否已提交（上传在后台进行）
+     */
+    public boolean persistParseResult(String parseResultId, ParseResult parseResult, String sourceFilename,
+                                      long createdAt) {
+        if (!isSharedEnabled() || parseResult == null) {
+            return false;
+        }
+        ensureLifecycle();
+        try {
+            ObjectNode envelope = objectMapper.createObjectNode();
+            envelope.put("createdAt", createdAt);
+            envelope.put("sourceFilename", sourceFilename);
+            envelope.set("parseResult", objectMapper.valueToTree(parseResult));
+            byte[] json = objectMapper.writeValueAsBytes(envelope);
+            ArtifactUploadService.Upload upload = artifactUploadService.submit(json,
+                    parseResultObjectName(parseResultId), "application/json");
+            if (upload.getStatus() == ArtifactUploadService.UploadStatus.FAILED) {
+                logger.warn("【锚点文档】解析结果写入共享存储失败: parseResultId={}", parseResultId);
+                return false;
+            }
+            logger.info("【锚点文档】解析结果已提交写入共享存储: parseResultId={}, 大小={} 字节", parseResultId, json.length);
+            return true;
+        } catch (Exception e) {
+            logger.warn("【锚点文档】解析结果写入共享存储失败: parseResultId={}, 错误={}", parseResultId, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 从共享存储读取解析结果
+     *
+     * @param parseResultId parseResultId
+     * @return 解析结果；未启用、不存在或读取失败时返回 null
+     */
+    public SharedParseResult loadParseResult(String parseResultId) {
+        if (!isSharedEnabled()) {
+            return null;
+        }
+        try (GetObjectResponse response = minioFileService.openObject(parseResultObjectName(parseResultId))) {
+            JsonNode envelope = objectMapper.readTree(response);
+            ParseResult parseResult = objectMapper.treeToValue(envelope.get("parseResult"), ParseResult.class);
+            return new SharedParseResult(parseResult, envelope.path("sourceFilename").asText(null),
+                    envelope.path("createdAt").asLong(0));
+        } catch (ErrorResponseException e) {
+            if ("NoSuchKey".equals(e.errorResponse().code())) {
+                logger.debug("【锚点文档】共享存储中不存在解析结果: parseResultId={}", parseResultId);
+            } else {
+                logger.warn("【锚点文档】读取共享解析结果失败: parseResultId={}, 错误={}", parseResultId, e.getMessage());
+            }
+            return null;
+        } catch (Exception e) {
+            logger.warn("【锚点文档】读取共享解析结果失败: parseResultId={}, 错误={}", parseResultId, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 首次写入时在后台为带锚点文档前缀（及启用共享时的共享前缀）设置过期规则
+     * （失败不重试，需由运维配置生命周期）
+     */
+    private void ensureLifecycle() {
+        if (lifecycleConfigured) {
+            return;
+        }
+        synchronized (this) {
+            if (lifecycleConfigured) {
+                return;
+            }
+            lifecycleConfigured = true;
+        }
+        Thread thread = new Thread(() -> {
+            configureExpiration("contract-review-anchored", anchoredPath, persistExpireDays);
+            if (isSharedEnabled()) {
+                configureExpiration("contract-review-parse-cache", sharedPrefix, sharedExpireDays);
+            }
+        }, "anchored-lifecycle");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void configureExpiration(String ruleId, String prefix, int days) {
+        try {
+            minioFileService.ensureExpirationRule(ruleId, prefix + "/", days);
+            logger.info("【锚点文档】已为 {}/ 设置 {} 天过期规则", prefix, days);
+        } catch (Exception e) {
+            logger.warn("【锚点文档】设置过期规则失败，请在 MinIO 上为 {}/ 配置生命周期: {}", prefix, e.getMessage());
+        }
+    }
+
+    /**
+     * 打开已持久化的带锚点文档
+     *
+     * @param parseResultId parseResultId
+     * @return 源文档数据流及文件名
+     * @throws Exception 未启用或对象不存在
+     */
+    public StoredDocument open(String parseResultId) throws Exception {
+        if (!isEnabled()) {
+            throw new IllegalStateException("MinIO未启用，无法读取持久化的带锚点文档");
+        }
+        GetObjectResponse response = minioFileService.openObject(sourceObjectName(parseResultId));
+        String encoded = response.headers().get("x-amz-meta-" + FILENAME_METADATA);
+        String filename = encoded != null ? URLDecoder.decode(encoded, StandardCharsets.UTF_8) : "contract.docx";
+        return new StoredDocument(response, filename);
+    }
+
+    /**
+     * 将批注结果流式写回 MinIO
+     *
+     * @param parseResultId parseResultId
+     * @param annotatedStream 批注后文档数据流
+     * @param size 数据长度
+     * @param filename 输出文件名
+     * @return 批注结果的对象名称
+     */
+    public String saveAnnotated(String parseResultId, InputStream annotatedStream, long size, String filename) throws Exception {
+        String objectName = annotatedObjectName(parseResultId);
+        minioFileService.uploadStream(annotatedStream, size, objectName, DOCX_CONTENT_TYPE, filenameMetadata(filename));
+        logger.info("【锚点文档】批注结果已保存到MinIO: objectName={}, 大小={} 字节", objectName, size);
+        return objectName;
+    }
+
+    public String getFileUrl(String objectName) {
+        return minioFileService.getFileUrl(objectName);
+    }
+
+    private Map<String, String> filenameMetadata(String filename) {
+        if (filename == null || filename.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        return Collections.singletonMap(FILENAME_METADATA, URLEncoder.encode(filename, StandardCharsets.UTF_8));
+    }
+
+    private static String checkId(String parseResultId) {
+        if (parseResultId == null || !PARSE_RESULT_ID_PATTERN.matcher(parseResultId).matches()) {
+            throw new IllegalArgumentException("parseResultId格式无效: " + parseResultId);
+        }
+        return parseResultId;
+    }
+}
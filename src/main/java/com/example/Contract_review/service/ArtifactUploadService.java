@@ -0,0 +1,703 @@
+package com.example.Contract_review.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * 异步上传服务（审查报告、原始合同等产物上传到 MinIO）
+ *
+ * 上传不再占用审查请求线程：
+ * - 提交时先把内容写入本地暂存目录（{spool-dir}/{uploadId}.bin + .json 元数据），随即返回 uploadId 和最终 URL
+ * - 后台线程上传，大文件按分段并行上传；失败按指数退避（带随机抖动）重试
+ * - 暂存文件在上传成功后删除；进程重启时重新提交目录中未完成的上传
+ * - 排队数量有上限，超出或暂存失败时在调用线程同步上传（与原有行为一致）
+ * - 上传状态可通过 getUpload 查询，结束后保留一段时间
+ *
+ * 原始合同按内容寻址保存（submitContent）：对象名由 SHA-256 决定，相同内容已存在或正在上传时不再上传，
+ * 另写一个小的引用对象记录用户可见文件名到内容哈希的映射。计算哈希和查询对象是否存在都在后台线程进行，
+ * 提交时只写暂存文件。
+ */
+@Service
+public class ArtifactUploadService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ArtifactUploadService.class);
+
+    private static final String DATA_SUFFIX = ".bin";
+    private static final String META_SUFFIX = ".json";
+
+    @Autowired
+    private MinioFileService minioFileService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /**
+     * 是否异步上传（关闭时在调用线程同步上传）
+     */
+    @Value("${artifact-upload.async-enabled:true}")
+    private boolean asyncEnabled;
+
+    /**
+     * 暂存目录，为空时使用 {user.dir}/.upload-spool
+     */
+    @Value("${artifact-upload.spool-dir:}")
+    private String spoolDir;
+
+    /**
+     * 同时上传的文件数
+     */
+    @Value("${artifact-upload.workers:2}")
+    private int workers;
+
+    /**
+     * 单个大文件同时上传的分段数
+     */
+    @Value("${artifact-upload.part-concurrency:4}")
+    private int partConcurrency;
+
+    /**
+     * 分段大小（字节），文件超过两个分段时并行上传
+     */
+    @Value("${artifact-upload.part-size:16777216}")
+    private long partSize;
+
+    /**
+     * 未完成（排队、上传中、等待重试）的上传数上限
+     */
+    @Value("${artifact-upload.queue-capacity:100}")
+    private int queueCapacity;
+
+    @Value("${artifact-upload.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${artifact-upload.initial-backoff-ms:1000}")
+    private long initialBackoffMs;
+
+    @Value("${artifact-upload.max-backoff-ms:60000}")
+    private long maxBackoffMs;
+
+    /**
+     * 已结束上传状态的保留时间（分钟）
+     */
+    @Value("${artifact-upload.retention-minutes:60}")
+    private long retentionMinutes;
+
+    private Path root;
+    private ScheduledThreadPoolExecutor executor;
+    private ExecutorService partExecutor;
+
+    private final Map<String, Upload> uploads = new ConcurrentHashMap<>();
+
+    /**
+     * 正在上传的内容寻址对象（对象名 -> 上传），相同内容的重复提交跟随该上传结束（读写均在自身锁内）
+     */
+    private final Map<String, Upload> contentUploads = new HashMap<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong succeeded = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong synchronousFallbacks = new AtomicLong();
+    private final AtomicLong recovered = new AtomicLong();
+    private final AtomicLong deduplicated = new AtomicLong();
+
+    /**
+     * 上传状态
+     */
+    public enum UploadStatus {
+        PENDING, UPLOADING, SUCCEEDED, FAILED;
+
+        public boolean isFinished() {
+            return this == SUCCEEDED || this == FAILED;
+        }
+    }
+
+    /**
+     * 一次上传
+     */
+    public static class Upload {
+        private final String uploadId;
+        private final String contentType;
+        private final Map<String, String> userMetadata;
+        private final long size;
+        private final long createdAt;
+
+        /**
+         * 内容寻址上传：对象名、URL、哈希由后台线程计算哈希后确定
+         */
+        private final boolean contentAddressed;
+        private final String filename;
+        private volatile String objectName;
+        private volatile String url;
+        private volatile String contentHash;
+
+        /**
+         * 相同内容的后续提交，随本上传一起结束（由 contentUploads 的锁保护）
+         */
+        private final List<Upload> duplicates = new ArrayList<>();
+
+        private volatile boolean deduplicated;
+        private volatile UploadStatus status = UploadStatus.PENDING;
+        private volatile int attempts;
+        private volatile String error;
+        private volatile long nextAttemptAt;
+        private volatile long finishedAt;
+
+        Upload(String uploadId, String objectName, String contentType, String url, long size, long createdAt,
+               String contentHash) {
+            this(uploadId, objectName, contentType, url, size, createdAt, contentHash, contentHash != null, null, null);
+        }
+
+        private Upload(String uploadId, String objectName, String contentType, String url, long size, long createdAt,
+                       String contentHash, boolean contentAddressed, String filename, Map<String, String> userMetadata) {
+            this.uploadId = uploadId;
+            this.objectName = objectName;
+            this.contentType = contentType;
+            this.userMetadata = userMetadata != null ? userMetadata : Collections.emptyMap();
+            this.url = url;
+            this.size = size;
+            this.createdAt = createdAt;
+            this.contentHash = contentHash;
+            this.contentAddressed = contentAddressed;
+            this.filename = filename;
+        }
+
+        public String getUploadId() {
+            return uploadId;
+        }
+
+        /**
+         * 对象名称（内容寻址上传在后台计算出哈希之前为 null）
+         */
+        public String getObjectName() {
+            return objectName;
+        }
+
+        /**
+         * 上传完成后对象的访问 URL（普通上传提交时即可确定，内容寻址上传在后台计算出哈希之前为 null）
+         */
+        public String getUrl() {
+            return url;
+        }
+
+        public UploadStatus getStatus() {
+            return status;
+        }
+
+        /**
+         * 内容 SHA-256（仅内容寻址上传）
+         */
+        public String getContentHash() {
+            return contentHash;
+        }
+
+        /**
+         * 相同内容已存在或正在上传，本次未实际上传
+         */
+        public boolean isDeduplicated() {
+            return deduplicated;
+        }
+
+        public long getFinishedAt() {
+            return finishedAt;
+        }
+
+        /**
+         * 上传状态快照
+         */
+        public Map<String, Object> toStatus() {
+            Map<String, Object> snapshot = new LinkedHashMap<>();
+            snapshot.put("uploadId", uploadId);
+            snapshot.put("objectName", objectName);
+            snapshot.put("url", url);
+            snapshot.put("size", size);
+            snapshot.put("status", status.name());
+            snapshot.put("attempts", attempts);
+            snapshot.put("createdAt", createdAt);
+            if (contentAddressed) {
+                snapshot.put("sha256", contentHash);
+                snapshot.put("deduplicated", deduplicated);
+            }
+            if (status == UploadStatus.PENDING && nextAttemptAt > 0) {
+                snapshot.put("nextAttemptAt", nextAttemptAt);
+            }
+            if (finishedAt > 0) {
+                snapshot.put("processingTime", finishedAt - createdAt);
+            }
+            if (error != null) {
+                snapshot.put("error", error);
+            }
+            return snapshot;
+        }
+
+        void finish(UploadStatus finalStatus, String finalError) {
+            status = finalStatus;
+            error = finalError;
+            finishedAt = System.currentTimeMillis();
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadIndex = new AtomicInteger();
+        executor = new ScheduledThreadPoolExecutor(Math.max(1, workers), runnable -> {
+            Thread thread = new Thread(runnable, "artifact-upload-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        AtomicInteger partIndex = new AtomicInteger();
+        partExecutor = Executors.newFixedThreadPool(Math.max(1, partConcurrency), runnable -> {
+            Thread thread = new Thread(runnable, "artifact-upload-part-" + partIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::purgeExpired, 1, 1, TimeUnit.MINUTES);
+
+        root = spoolDir == null || spoolDir.trim().isEmpty()
+                ? Paths.get(System.getProperty("user.dir"), ".upload-spool")
+                : Paths.get(spoolDir.trim());
+        if (!asyncEnabled) {
+            logger.info("【异步上传】未启用，产物在调用线程同步上传");
+            return;
+        }
+        try {
+            Files.createDirectories(root);
+            int count = recoverSpooled();
+            logger.info("【异步上传】已启动: 暂存目录 {}, 并发 {}, 分段并发 {}, 队列上限 {}, 恢复未完成上传 {}",
+                       root, workers, partConcurrency, queueCapacity, count);
+        } catch (IOException e) {
+            logger.warn("【异步上传】无法初始化暂存目录 {}，改为同步上传: {}", root, e.getMessage());
+            asyncEnabled = false;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // 未完成的上传保留在暂存目录，下次启动时继续
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        if (partExecutor != null) {
+            partExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * 提交上传
+     *
+     * @param data 文件内容（提交后调用方可继续复用，内容已写入暂存文件）
+     * @param objectName 对象名称（包含路径）
+     * @param contentType 内容类型
+     * @return 上传状态；同步回退时返回已结束的状态
+     */
+    public Upload submit(byte[] data, String objectName, String contentType) {
+        return submit(data, objectName, contentType, null);
+    }
+
+    /**
+     * 提交上传，并为对象设置用户元数据
+     *
+     * @param userMetadata 用户元数据（值需为ASCII），随暂存元数据保存，重启恢复后仍会设置
+     * @see #submit(byte[], String, String)
+     */
+    public Upload submit(byte[] data, String objectName, String contentType, Map<String, String> userMetadata) {
+        submitted.incrementAndGet();
+        Upload upload = new Upload(UUID.randomUUID().toString(), objectName, contentType,
+                minioFileService.getFileUrl(objectName), data.length, System.currentTimeMillis(), null, false, null,
+                userMetadata);
+        uploads.put(upload.uploadId, upload);
+        return enqueue(upload, data);
+    }
+
+    /**
+     * 按内容寻址提交上传
+     *
+     * 对象名为 {content}/{sha256前两位}/{sha256}.{扩展名}。提交时只写暂存文件，由后台线程流式计算哈希：
+     * 相同内容正在上传时跟随该上传结束，已存在（本地缓存或 statObject 确认）时不上传，直接标记完成。
+     * 同时后台写入引用对象 {contracts}/{时间戳}_{uuid}_{文件名}.ref.json，记录文件名与内容哈希的对应关系。
+     * 同步回退（未启用异步、队列已满或暂存失败）时以上步骤在调用线程完成。
+     *
+     * @param data 文件内容
+     * @param filename 用户可见的文件名
+     * @param contentType 内容类型
+     * @return 上传状态（getUrl 为内容寻址对象的 URL，后台计算出哈希之前为 null）
+     */
+    public Upload submitContent(byte[] data, String filename, String contentType) {
+        submitted.incrementAndGet();
+        Upload upload = new Upload(UUID.randomUUID().toString(), null, contentType, null, data.length,
+                System.currentTimeMillis(), null, true, filename, null);
+        uploads.put(upload.uploadId, upload);
+        return enqueue(upload, data);
+    }
+
+    /**
+     * 写入暂存文件并交给后台线程；未启用异步、队列已满或暂存失败时同步上传
+     */
+    private Upload enqueue(Upload upload, byte[] data) {
+        String target = upload.objectName != null ? upload.objectName : upload.filename;
+        if (!asyncEnabled) {
+            uploadSynchronously(upload, data);
+            return upload;
+        }
+        if (pending.incrementAndGet() > queueCapacity) {
+            pending.decrementAndGet();
+            logger.warn("【异步上传】未完成上传数已达上限 {}，同步上传: {}", queueCapacity, target);
+            uploadSynchronously(upload, data);
+            return upload;
+        }
+        try {
+            spool(upload, data);
+        } catch (IOException e) {
+            pending.decrementAndGet();
+            logger.warn("【异步上传】写入暂存文件失败，同步上传: {}, 原因: {}", target, e.getMessage());
+            uploadSynchronously(upload, data);
+            return upload;
+        }
+
+        executor.execute(() -> start(upload));
+        logger.info("【异步上传】已入队: uploadId={}, target={}, size={}", upload.uploadId, target, data.length);
+        return upload;
+    }
+
+    /**
+     * 后台线程处理一次上传：内容寻址上传先计算哈希并去重，再上传
+     */
+    private void start(Upload upload) {
+        if (upload.objectName == null) {
+            try {
+                if (!resolveContent(upload, MinioFileService.sha256Hex(dataFile(upload.uploadId)))) {
+                    deleteSpooled(upload.uploadId);
+                    pending.decrementAndGet();
+                    return;
+                }
+                writeMeta(upload);
+            } catch (IOException | RuntimeException e) {
+                finish(upload, UploadStatus.FAILED, e.getMessage());
+                pending.decrementAndGet();
+                failed.incrementAndGet();
+                logger.error("【异步上传】计算内容哈希失败: uploadId={}, 原因: {}", upload.uploadId, e.getMessage());
+                return;
+            }
+        }
+        attempt(upload);
+    }
+
+    /**
+     * 确定内容寻址上传的对象名并去重
+     *
+     * @return 是否需要实际上传；相同内容正在上传（跟随其结束）或已存在（直接完成）时返回 false
+     */
+    private boolean resolveContent(Upload upload, String sha256) {
+        String objectName = minioFileService.contentObjectName(sha256, upload.filename);
+        upload.contentHash = sha256;
+        upload.objectName = objectName;
+        upload.url = minioFileService.getFileUrl(objectName);
+        submitContentRef(upload.filename, objectName, sha256, upload.size, upload.contentType);
+
+        synchronized (contentUploads) {
+            Upload inFlight = contentUploads.get(objectName);
+            if (inFlight != null && !inFlight.status.isFinished()) {
+                upload.deduplicated = true;
+                inFlight.duplicates.add(upload);
+                deduplicated.incrementAndGet();
+                logger.info("【异步上传】相同内容正在上传，跟随其完成: uploadId={}, 原上传={}, sha256={}",
+                           upload.uploadId, inFlight.uploadId, sha256);
+                return false;
+            }
+            contentUploads.put(objectName, upload);
+        }
+        if (minioFileService.contentExists(objectName)) {
+            upload.deduplicated = true;
+            deduplicated.incrementAndGet();
+            finish(upload, UploadStatus.SUCCEEDED, null);
+            logger.info("【异步上传】相同内容已存在，跳过上传: objectName={}", objectName);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 结束上传；内容寻址上传同时结束跟随它的重复提交
+     */
+    private void finish(Upload upload, UploadStatus status, String error) {
+        if (!upload.contentAddressed) {
+            upload.finish(status, error);
+            return;
+        }
+        List<Upload> followers;
+        synchronized (contentUploads) {
+            contentUploads.remove(upload.objectName, upload);
+            upload.finish(status, error);
+            followers = new ArrayList<>(upload.duplicates);
+            upload.duplicates.clear();
+        }
+        for (Upload follower : followers) {
+            follower.finish(status, error);
+        }
+    }
+
+    public Upload getUpload(String uploadId) {
+        return uploadId != null ? uploads.get(uploadId) : null;
+    }
+
+    /**
+     * 获取上传统计信息
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("asyncEnabled", asyncEnabled);
+        stats.put("spoolDir", root != null ? root.toString() : null);
+        stats.put("workers", workers);
+        stats.put("partConcurrency", partConcurrency);
+        stats.put("queueCapacity", queueCapacity);
+        stats.put("pending", pending.get());
+        stats.put("retained", uploads.size());
+        stats.put("submitted", submitted.get());
+        stats.put("succeeded", succeeded.get());
+        stats.put("failed", failed.get());
+        stats.put("retries", retries.get());
+        stats.put("synchronousFallbacks", synchronousFallbacks.get());
+        stats.put("recovered", recovered.get());
+        stats.put("deduplicated", deduplicated.get());
+        stats.put("contentExistsCache", minioFileService.getContentExistsCacheStats());
+        return stats;
+    }
+
+    private void attempt(Upload upload) {
+        upload.status = UploadStatus.UPLOADING;
+        upload.attempts++;
+        try {
+            minioFileService.uploadFileParallel(dataFile(upload.uploadId), upload.objectName, upload.contentType,
+                    partSize, partExecutor, upload.userMetadata);
+            deleteSpooled(upload.uploadId);
+            completed(upload);
+            pending.decrementAndGet();
+            logger.info("【异步上传】完成: uploadId={}, objectName={}, 尝试 {} 次, 耗时 {} ms",
+                       upload.uploadId, upload.objectName, upload.attempts, upload.finishedAt - upload.createdAt);
+        } catch (Exception e) {
+            if (upload.attempts >= maxAttempts) {
+                finish(upload, UploadStatus.FAILED, e.getMessage());
+                pending.decrementAndGet();
+                failed.incrementAndGet();
+                // 暂存文件保留，下次启动时重新上传
+                logger.error("【异步上传】重试 {} 次后仍失败: uploadId={}, objectName={}, 原因: {}",
+                            upload.attempts, upload.uploadId, upload.objectName, e.getMessage());
+                return;
+            }
+            long delay = backoffMillis(upload.attempts);
+            upload.error = e.getMessage();
+            upload.nextAttemptAt = System.currentTimeMillis() + delay;
+            upload.status = UploadStatus.PENDING;
+            retries.incrementAndGet();
+            logger.warn("【异步上传】上传失败，{} ms 后重试（第 {} 次）: objectName={}, 原因: {}",
+                       delay, upload.attempts, upload.objectName, e.getMessage());
+            executor.schedule(() -> attempt(upload), delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void completed(Upload upload) {
+        if (upload.contentAddressed) {
+            minioFileService.markContentExists(upload.objectName);
+        }
+        finish(upload, UploadStatus.SUCCEEDED, null);
+        succeeded.incrementAndGet();
+    }
+
+    /**
+     * 写入引用对象（文件名 -> 内容哈希），失败不影响内容上传
+     */
+    private void submitContentRef(String filename, String objectName, String sha256, long size, String contentType) {
+        try {
+            Map<String, Object> ref = new LinkedHashMap<>();
+            ref.put("filename", filename);
+            ref.put("sha256", sha256);
+            ref.put("objectName", objectName);
+            ref.put("size", size);
+            ref.put("contentType", contentType);
+            ref.put("createdAt", System.currentTimeMillis());
+            String refName = minioFileService.generateObjectName(filename != null ? filename : sha256, "contracts") + ".ref.json";
+            submit(objectMapper.writeValueAsBytes(ref), refName, "application/json");
+        } catch (Exception e) {
+            logger.warn("【异步上传】写入内容引用失败: filename={}, 原因: {}", filename, e.getMessage());
+        }
+    }
+
+    /**
+     * 第 n 次失败后的等待时间：initial * 2^(n-1)，不超过上限，取 [一半, 全部] 之间的随机值避免集中重试
+     */
+    private long backoffMillis(int attempts) {
+        long base = initialBackoffMs << Math.min(attempts - 1, 20);
+        long capped = Math.max(1, Math.min(base, maxBackoffMs));
+        return capped / 2 + ThreadLocalRandom.current().nextLong(capped / 2 + 1);
+    }
+
+    private void uploadSynchronously(Upload upload, byte[] data) {
+        synchronousFallbacks.incrementAndGet();
+        if (upload.objectName == null && !resolveContent(upload, MinioFileService.sha256Hex(data))) {
+            return;
+        }
+        upload.status = UploadStatus.UPLOADING;
+        upload.attempts++;
+        try {
+            minioFileService.uploadStream(new ByteArrayInputStream(data), data.length, upload.objectName,
+                    upload.contentType, upload.userMetadata);
+            completed(upload);
+        } catch (Exception e) {
+            finish(upload, UploadStatus.FAILED, e.getMessage());
+            failed.incrementAndGet();
+            logger.warn("【异步上传】同步上传失败: objectName={}, 原因: {}", upload.objectName, e.getMessage());
+        }
+    }
+
+    /**
+     * 写入暂存文件：先写数据再写元数据，元数据存在即表示暂存完整（均经临时文件原子替换）
+     */
+    private void spool(Upload upload, byte[] data) throws IOException {
+        Path dataTmp = root.resolve(upload.uploadId + DATA_SUFFIX + ".tmp");
+        Files.write(dataTmp, data);
+        Files.move(dataTmp, dataFile(upload.uploadId), StandardCopyOption.ATOMIC_MOVE);
+        writeMeta(upload);
+    }
+
+    /**
+     * 写入元数据；内容寻址上传确定对象名后重写一次，重启后无需重新计算哈希和写入引用对象
+     */
+    private void writeMeta(Upload upload) throws IOException {
+        Map<String, Object> meta = new LinkedHashMap<>();
+        meta.put("objectName", upload.objectName);
+        meta.put("contentType", upload.contentType);
+        meta.put("size", upload.size);
+        meta.put("createdAt", upload.createdAt);
+        if (!upload.userMetadata.isEmpty()) {
+            meta.put("userMetadata", upload.userMetadata);
+        }
+        if (upload.contentAddressed) {
+            meta.put("contentAddressed", true);
+            meta.put("filename", upload.filename);
+            meta.put("sha256", upload.contentHash);
+        }
+        Path metaTmp = root.resolve(upload.uploadId + META_SUFFIX + ".tmp");
+        objectMapper.writeValue(metaTmp.toFile(), meta);
+        Files.move(metaTmp, metaFile(upload.uploadId), StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * 重新提交暂存目录中未完成的上传，清理不完整的暂存文件
+     */
+    private int recoverSpooled() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> listing = Files.list(root)) {
+            listing.forEach(files::add);
+        }
+        int count = 0;
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            if (name.endsWith(".tmp")) {
+                Files.deleteIfExists(file);
+                continue;
+            }
+            if (!name.endsWith(META_SUFFIX)) {
+                continue;
+            }
+            String uploadId = name.substring(0, name.length() - META_SUFFIX.length());
+            if (!Files.exists(dataFile(uploadId))) {
+                Files.deleteIfExists(file);
+                continue;
+            }
+            try {
+                Map<?, ?> meta = objectMapper.readValue(file.toFile(), Map.class);
+                String objectName = (String) meta.get("objectName");
+                String sha256 = (String) meta.get("sha256");
+                Upload upload = new Upload(uploadId, objectName, (String) meta.get("contentType"),
+                        objectName != null ? minioFileService.getFileUrl(objectName) : null,
+                        ((Number) meta.get("size")).longValue(), ((Number) meta.get("createdAt")).longValue(),
+                        sha256, sha256 != null || Boolean.TRUE.equals(meta.get("contentAddressed")),
+                        (String) meta.get("filename"), userMetadata(meta.get("userMetadata")));
+                uploads.put(uploadId, upload);
+                if (upload.contentAddressed && objectName != null) {
+                    synchronized (contentUploads) {
+                        contentUploads.put(objectName, upload);
+                    }
+                }
+                pending.incrementAndGet();
+                recovered.incrementAndGet();
+                executor.execute(() -> start(upload));
+                count++;
+            } catch (IOException | RuntimeException e) {
+                logger.warn("【异步上传】暂存元数据无法读取，跳过: {}, 原因: {}", file, e.getMessage());
+            }
+        }
+        // 没有元数据的数据文件是写入中断留下的
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            if (name.endsWith(DATA_SUFFIX)
+                    && !Files.exists(metaFile(name.substring(0, name.length() - DATA_SUFFIX.length())))) {
+                Files.deleteIfExists(file);
+            }
+        }
+        return count;
+    }
+
+    private static Map<String, String> userMetadata(Object value) {
+        if (!(value instanceof Map)) {
+            return null;
+        }
+        Map<String, String> metadata = new LinkedHashMap<>();
+        ((Map<?, ?>) value).forEach((key, item) -> metadata.put(String.valueOf(key), String.valueOf(item)));
+        return metadata;
+    }
+
+    private void deleteSpooled(String uploadId) {
+        try {
+            Files.deleteIfExists(metaFile(uploadId));
+            Files.deleteIfExists(dataFile(uploadId));
+        } catch (IOException e) {
+            logger.warn("【异步上传】删除暂存文件失败: uploadId={}, 原因: {}", uploadId, e.getMessage());
+        }
+    }
+
+    private Path dataFile(String uploadId) {
+        return root.resolve(uploadId + DATA_SUFFIX);
+    }
+
+    private Path metaFile(String uploadId) {
+        return root.resolve(uploadId + META_SUFFIX);
+    }
+
+    /**
+     * 清理超出保留时间的已结束上传状态
+     */
+    private void purgeExpired() {
+        long cutoff = System.currentTimeMillis() - retentionMinutes * 60_000L;
+        uploads.values().removeIf(upload -> upload.status.isFinished() && upload.finishedAt < cutoff);
+    }
+}
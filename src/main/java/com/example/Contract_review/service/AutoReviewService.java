@@ -1,5 +1,7 @@
 package com.example.Contract_review.service;
 
+import com.example.Contract_review.config.AIHttpClients;
+import com.example.Contract_review.config.AIRequestExecutor;
 import com.example.Contract_review.config.AIServiceConfig;
 import com.example.Contract_review.model.ParseResult;
 import org.slf4j.Logger;
@@ -35,6 +37,15 @@ public class AutoReviewService {
     @Autowired
     private AIServiceConfig aiServiceConfig;
 
+    @Autowired
+    private AIRequestExecutor aiRequestExecutor;
+
+    @Autowired
+    private AIHttpClients aiHttpClients;
+
+    @Autowired
+    private AIProviderRouter aiProviderRouter;
+
     @Autowired(required = false)
     @Qualifier("claudeReviewService")
     private AIReviewService claudeReviewService;
@@ -44,7 +55,7 @@ public class AutoReviewService {
     private AIReviewService openaiReviewService;
 
     @Autowired(required = false)
-    @Qualifier("doubaoReviewService")
+    @Qualifier("douBaoReviewService")
     private AIReviewService doubaoReviewService;
 
     @Autowired(required = false)
@@ -76,17 +87,21 @@ public class AutoReviewService {
 
         // 步骤1: 解析合同
         logger.info("[步骤1/4] 解析合同文件...");
-        ParseResult parseResult = parseContract(file, contractType);
+        ReviewJobService.reportStage("parse", "解析合同文件");
+        ContractParseService.ParseResultWithDocument parsed = parseContract(file);
+        ParseResult parseResult = parsed.getParseResult();
         logger.info("[步骤1/4] 解析完成: 提取{}个条款", parseResult.getClauses().size());
 
         // 步骤2: AI审查
         logger.info("[步骤2/4] 调用AI进行审查...");
+        ReviewJobService.reportStage("llm", "调用AI进行审查");
         String reviewJson = performAIReview(parseResult, contractType, aiProvider);
         logger.info("[步骤2/4] AI审查完成");
 
         // 步骤3: 批注合同
         logger.info("[步骤3/4] 将审查结果批注到合同...");
-        byte[] annotatedDocument = annotateContract(file, reviewJson, cleanupAnchors);
+        ReviewJobService.reportStage("annotate", "将审查结果批注到合同");
+        byte[] annotatedDocument = annotateContract(parsed, reviewJson, cleanupAnchors);
         logger.info("[步骤3/4] 批注完成");
 
         logger.info("[步骤4/4] 自动化审查流程完成");
@@ -114,13 +129,16 @@ public class AutoReviewService {
 
         // 步骤1: 解析合同
         logger.info("[步骤1/4] 解析合同文件...");
-        ParseResult parseResult = parseContract(file, contractType);
+        ReviewJobService.reportStage("parse", "解析合同文件");
+        ContractParseService.ParseResultWithDocument parsed = parseContract(file);
+        ParseResult parseResult = parsed.getParseResult();
         result.put("parseResult", parseResult);
         result.put("clauseCount", parseResult.getClauses().size());
         logger.info("[步骤1/4] 解析完成: 提取{}个条款", parseResult.getClauses().size());
 
         // 步骤2: AI审查
         logger.info("[步骤2/4] 调用AI进行审查...");
+        ReviewJobService.reportStage("llm", "调用AI进行审查");
         String reviewJson = performAIReview(parseResult, contractType, aiProvider);
         result.put("reviewJson", reviewJson);
         result.put("aiProvider", getActualProvider(aiProvider));
@@ -128,7 +146,8 @@ public class AutoReviewService {
 
         // 步骤3: 批注合同
         logger.info("[步骤3/4] 将审查结果批注到合同...");
-        byte[] annotatedDocument = annotateContract(file, reviewJson, cleanupAnchors);
+        ReviewJobService.reportStage("annotate", "将审查结果批注到合同");
+        byte[] annotatedDocument = annotateContract(parsed, reviewJson, cleanupAnchors);
         result.put("annotatedDocument", annotatedDocument);
         result.put("documentSize", annotatedDocument.length);
         logger.info("[步骤3/4] 批注完成");
@@ -143,18 +162,26 @@ public class AutoReviewService {
     }
 
     /**
-     * 解析合同并确保锚点被插入到文档中
+     * 解析合同并生成带锚点的文档
+     *
+     * 整个流程只解析一次（.doc 也只转换一次）：解析结果交给AI审查，带锚点文档交给批注，
+     * 两者出自同一次解析，AI返回的锚点一定能在文档中找到
      */
-    private ParseResult parseContract(MultipartFile file, String contractType) throws Exception {
-        // 解析合同并生成锚点
-        ParseResult parseResult = contractParseService.parseContract(file, "generate");
+    private ContractParseService.ParseResultWithDocument parseContract(MultipartFile file) throws Exception {
+        ContractParseService.ParseResultWithDocument parsed =
+                contractParseService.parseContractWithDocument(file, "generate");
+        ParseResult parseResult = parsed.getParseResult();
 
-        // 确保锚点被插入到实际文档中（这对后续批注定位很重要）
         logger.info("解析结果包含 {} 个条款，生成了 {} 个锚点",
                    parseResult.getClauses().size(),
                    parseResult.getClauses().stream().mapToInt(c -> c.getAnchorId() != null ? 1 : 0).sum());
 
-        return parseResult;
+        // 在调用AI之前检查，避免文档生成失败时白白消耗一次AI调用
+        byte[] documentWithAnchors = parsed.getDocumentBytes();
+        if (documentWithAnchors == null || documentWithAnchors.length == 0) {
+            throw new IllegalStateException("带锚点的文档生成失败，无法继续批注");
+        }
+        return parsed;
     }
 
     /**
@@ -169,26 +196,21 @@ public class AutoReviewService {
 
         logger.info("使用AI服务: {}", reviewService.getProviderName());
 
-        return reviewService.reviewContract(parseResult, contractType);
+        // 主提供商超时或失败时由路由服务对冲/切换到其他健康的提供商
+        AIProviderRouter.RouteResult routed = aiProviderRouter.reviewContract(reviewService, parseResult, contractType);
+        if (routed.getAttempted().size() > 1) {
+            logger.info("AI审查由 {} 完成（调用过: {}）", routed.getProvider(), routed.getAttempted());
+        }
+        return routed.getResponse();
     }
 
     /**
      * 批注合同
      */
-    private byte[] annotateContract(MultipartFile file, String reviewJson, boolean cleanupAnchors) throws Exception {
-        // 重新解析文档，确保获得带锚点的版本
-        ContractParseService.ParseResultWithDocument parseResultWithDoc =
-                contractParseService.parseContractWithDocument(file, "generate");
-        ParseResult parseResultForAnnotation = parseResultWithDoc.getParseResult();
-
-        logger.info("为批注重新解析文档: 条款数={}, 锚点数={}",
-                   parseResultForAnnotation.getClauses().size(),
-                   parseResultForAnnotation.getClauses().stream().mapToInt(c -> c.getAnchorId() != null ? 1 : 0).sum());
-
-        byte[] documentWithAnchors = parseResultWithDoc.getDocumentBytes();
-        if (documentWithAnchors == null || documentWithAnchors.length == 0) {
-            throw new IllegalStateException("带锚点的文档生成失败，无法继续批注");
-        }
+    private byte[] annotateContract(ContractParseService.ParseResultWithDocument parsed, String reviewJson,
+                                    boolean cleanupAnchors) throws Exception {
+        // 直接使用步骤1生成的带锚点文档，不再重新解析
+        byte[] documentWithAnchors = parsed.getDocumentBytes();
 
         ReviewRequest reviewRequest = objectMapper.readValue(reviewJson, ReviewRequest.class);
         List<ReviewIssue> issues = reviewRequest.getIssues();
@@ -315,6 +337,12 @@ public class AutoReviewService {
                             || (chatgptWebReviewService != null && chatgptWebReviewService.isAvailable());
         status.put("autoReviewAvailable", anyAvailable);
 
+        // 各提供商的自适应并发限制（在途、限制、排队、拒绝）和连接池配置
+        status.put("concurrency", aiRequestExecutor.getStats());
+        status.put("httpPools", aiHttpClients.getStats());
+        // 各提供商的熔断状态、延迟分布和对冲阈值
+        status.put("routing", aiProviderRouter.getStats());
+
         return status;
     }
 }
\ No newline at end of file
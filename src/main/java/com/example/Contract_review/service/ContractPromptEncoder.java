@@ -0,0 +1,227 @@
+package com.example.Contract_review.service;
+
+import com.example.Contract_review.model.Clause;
+import com.example.Contract_review.model.ParseResult;
+import com.example.Contract_review.model.ReviewRule;
+import com.example.Contract_review.model.ReviewStandard;
+import com.example.Contract_review.util.TokenEstimator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 合同内容的紧凑 Prompt 编码
+ *
+ * 替代把整个 ParseResult 序列化为 JSON 放入 Prompt 的做法（fullContractText、条款正文和
+ * paragraphAnchors 中的段落文本会让合同内容重复两三次）：
+ * - 每个条款只输出一次：[条款ID] 标题 + 正文（含表格），用条款ID作为简短的定位引用
+ * - 去掉锚点、段落索引、元数据等模型用不到的字段
+ * - 审查标准中的规则都指定了目标条款时，只输出命中规则关键词的条款及其前后 context-window 个条款，
+ *   其余条款只列出标题；存在通用规则（未指定目标条款，适用于所有条款）时输出全部条款
+ * - 返回编码结果的 token 估算，便于记录和规划请求大小
+ */
+@Service
+public class ContractPromptEncoder {
+
+    private static final Logger logger = LoggerFactory.getLogger(ContractPromptEncoder.class);
+
+    @Autowired
+    private ReviewStandardService reviewStandardService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${ai.prompt.compact.enabled:true}")
+    private boolean enabled;
+
+    @Value("${ai.prompt.compact.relevant-only:true}")
+    private boolean relevantOnly;
+
+    @Value("${ai.prompt.compact.context-window:1}")
+    private int contextWindow;
+
+    /**
+     * 编码结果
+     */
+    public static class EncodedContract {
+        private final String text;
+        private final int totalClauses;
+        private final int includedClauses;
+        private final int estimatedTokens;
+
+        EncodedContract(String text, int totalClauses, int includedClauses) {
+            this.text = text;
+            this.totalClauses = totalClauses;
+            this.includedClauses = includedClauses;
+            this.estimatedTokens = TokenEstimator.estimate(text);
+        }
+
+        /**
+         * 放入 Prompt 的合同内容
+         */
+        public String getText() {
+            return text;
+        }
+
+        public int getTotalClauses() {
+            return totalClauses;
+        }
+
+        /**
+         * 输出了正文的条款数
+         */
+        public int getIncludedClauses() {
+            return includedClauses;
+        }
+
+        /**
+         * 合同内容的估算 token 数
+         */
+        public int getEstimatedTokens() {
+            return estimatedTokens;
+        }
+    }
+
+    /**
+     * 编码合同内容
+     *
+     * @param parseResult 解析后的合同内容
+     * @param contractType 合同类型（用于选择审查规则）
+     */
+    public EncodedContract encode(ParseResult parseResult, String contractType) throws Exception {
+        List<Clause> clauses = parseResult.getClauses() != null ? parseResult.getClauses() : Collections.emptyList();
+        if (!enabled) {
+            return new EncodedContract(objectMapper.writeValueAsString(parseResult), clauses.size(), clauses.size());
+        }
+
+        List<ReviewRule> enabledRules = enabledRules(contractType);
+        List<ReviewRule> targetedRules = new ArrayList<>();
+        boolean hasGeneralRules = false;
+        for (ReviewRule rule : enabledRules) {
+            if (rule.getTargetClauses() != null && !rule.getTargetClauses().isEmpty()) {
+                targetedRules.add(rule);
+            } else {
+                hasGeneralRules = true;
+            }
+        }
+        boolean[] included = new boolean[clauses.size()];
+        List<List<String>> matchedRules = new ArrayList<>();
+        boolean anyMatched = false;
+        for (int i = 0; i < clauses.size(); i++) {
+            List<String> names = matchRules(clauses.get(i), targetedRules);
+            matchedRules.add(names);
+            if (!names.isEmpty()) {
+                anyMatched = true;
+                int window = Math.max(0, contextWindow);
+                for (int j = Math.max(0, i - window); j <= Math.min(clauses.size() - 1, i + window); j++) {
+                    included[j] = true;
+                }
+            }
+        }
+        // 通用规则（未指定目标条款）适用于每个条款；存在通用规则、没有按关键词定位的规则或没有命中时输出全部条款，避免漏审
+        if (!relevantOnly || hasGeneralRules || !anyMatched) {
+            Arrays.fill(included, true);
+        }
+
+        StringBuilder sb = new StringBuilder();
+        if (notBlank(parseResult.getTitle())) {
+            sb.append("标题：").append(parseResult.getTitle().trim()).append('\n');
+        }
+        appendParty(sb, parseResult.getPartyARoleName(), "甲方", parseResult.getPartyA());
+        appendParty(sb, parseResult.getPartyBRoleName(), "乙方", parseResult.getPartyB());
+
+        int includedCount = 0;
+        for (boolean value : included) {
+            if (value) {
+                includedCount++;
+            }
+        }
+        sb.append("条款（共").append(clauses.size()).append("条");
+        if (includedCount < clauses.size()) {
+            sb.append("，以下为与审查标准相关的").append(includedCount).append("条");
+        }
+        sb.append("；输出 clauseId 时使用方括号中的编号）：\n");
+
+        List<String> omitted = new ArrayList<>();
+        for (int i = 0; i < clauses.size(); i++) {
+            Clause clause = clauses.get(i);
+            String id = clause.getId() != null ? clause.getId() : "c" + (i + 1);
+            String heading = clause.getHeading() != null ? clause.getHeading().trim() : "";
+            if (!included[i]) {
+                omitted.add(id + " " + heading);
+                continue;
+            }
+            sb.append("\n[").append(id).append("] ").append(heading);
+            if (!matchedRules.get(i).isEmpty()) {
+                sb.append("（相关检查项：").append(String.join("、", matchedRules.get(i))).append("）");
+            }
+            sb.append('\n');
+            String body = clause.getFullText().trim();
+            // 正文以标题开头时不重复输出标题
+            if (!heading.isEmpty() && body.startsWith(heading)) {
+                body = body.substring(heading.length()).trim();
+            }
+            if (!body.isEmpty()) {
+                sb.append(body).append('\n');
+            }
+        }
+
+        if (!omitted.isEmpty()) {
+            sb.append("\n其余条款（仅列标题，无需审查）：").append(String.join("；", omitted)).append('\n');
+        }
+
+        EncodedContract encoded = new EncodedContract(sb.toString(), clauses.size(), includedCount);
+        logger.info("【Prompt编码】条款 {}/{}，估算 {} tokens", includedCount, clauses.size(), encoded.getEstimatedTokens());
+        return encoded;
+    }
+
+    /**
+     * 合同类型对应审查标准中的已启用规则
+     */
+    private List<ReviewRule> enabledRules(String contractType) {
+        ReviewStandard standard = reviewStandardService.getStandardByContractType(contractType);
+        List<ReviewRule> rules = new ArrayList<>();
+        if (standard == null || standard.getRules() == null) {
+            return rules;
+        }
+        for (ReviewRule rule : standard.getRules()) {
+            if (rule.isEnabled()) {
+                rules.add(rule);
+            }
+        }
+        return rules;
+    }
+
+    private static List<String> matchRules(Clause clause, List<ReviewRule> rules) {
+        String text = ((clause.getHeading() != null ? clause.getHeading() : "") + "\n" + clause.getFullText())
+                .toLowerCase();
+        List<String> names = new ArrayList<>();
+        for (ReviewRule rule : rules) {
+            for (String keyword : rule.getTargetClauses()) {
+                if (keyword != null && !keyword.isEmpty() && text.contains(keyword.toLowerCase())) {
+                    names.add(rule.getName());
+                    break;
+                }
+            }
+        }
+        return names;
+    }
+
+    private static void appendParty(StringBuilder sb, String roleName, String defaultRole, String name) {
+        if (notBlank(name)) {
+            sb.append(notBlank(roleName) ? roleName.trim() : defaultRole).append("：").append(name.trim()).append('\n');
+        }
+    }
+
+    private static boolean notBlank(String value) {
+        return value != null && !value.trim().isEmpty();
+    }
+}
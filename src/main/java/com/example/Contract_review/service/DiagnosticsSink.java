@@ -0,0 +1,343 @@
+package com.example.Contract_review.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * 维测日志与本地留档写入服务
+ *
+ * 规则匹配维测日志和文档中心的审查报告留档不再在审查请求线程中写盘：
+ * - 调用方先按类别采样（sampled），未采样的请求不产生任何开销
+ * - 采样的条目放入有界队列，由后台线程写入；队列满时直接丢弃，不阻塞请求
+ * - 每个类别的目录有容量上限，超出后删除最早的文件
+ * - 内容可以延迟渲染（ContentWriter 在后台线程执行），调用方需保证其引用的数据不再被修改
+ */
+@Service
+public class DiagnosticsSink {
+
+    private static final Logger logger = LoggerFactory.getLogger(DiagnosticsSink.class);
+
+    /**
+     * 写入类别
+     */
+    public enum Category {
+        /**
+         * 规则匹配维测日志（文档中心/02_实现和修复总结/维测日志）
+         */
+        RULE_MATCH,
+        /**
+         * 审查报告本地留档（文档中心/已生成的审查报告）
+         */
+        REVIEW_REPORT
+    }
+
+    /**
+     * 延迟渲染的内容
+     */
+    @FunctionalInterface
+    public interface ContentWriter {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    private static final class Pending {
+        private final Category category;
+        private final String filename;
+        private final ContentWriter writer;
+
+        Pending(Category category, String filename, ContentWriter writer) {
+            this.category = category;
+            this.filename = filename;
+            this.writer = writer;
+        }
+    }
+
+    @Value("${diagnostics.sink.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 文档中心所在目录，为空时使用 {user.dir}
+     */
+    @Value("${diagnostics.sink.base-dir:}")
+    private String baseDir;
+
+    /**
+     * 等待写入的条目数上限，超出时丢弃
+     */
+    @Value("${diagnostics.sink.queue-capacity:64}")
+    private int queueCapacity;
+
+    /**
+     * 规则匹配维测日志采样率（0-1）
+     */
+    @Value("${diagnostics.sink.rule-match.sample-rate:0.1}")
+    private double ruleMatchSampleRate;
+
+    /**
+     * 规则匹配维测日志目录容量上限（字节）
+     */
+    @Value("${diagnostics.sink.rule-match.max-bytes:104857600}")
+    private long ruleMatchMaxBytes;
+
+    /**
+     * 审查报告留档采样率（0-1）
+     */
+    @Value("${diagnostics.sink.review-report.sample-rate:1.0}")
+    private double reviewReportSampleRate;
+
+    /**
+     * 审查报告留档目录容量上限（字节）
+     */
+    @Value("${diagnostics.sink.review-report.max-bytes:1073741824}")
+    private long reviewReportMaxBytes;
+
+    private BlockingQueue<Pending> queue;
+    private Thread worker;
+
+    private final Map<Category, AtomicLong> dirBytes = new EnumMap<>(Category.class);
+    private final Map<Category, AtomicLong> written = new EnumMap<>(Category.class);
+    private final Map<Category, AtomicLong> dropped = new EnumMap<>(Category.class);
+    private final Map<Category, AtomicLong> skipped = new EnumMap<>(Category.class);
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong rotatedFiles = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        for (Category category : Category.values()) {
+            dirBytes.put(category, new AtomicLong(-1));
+            written.put(category, new AtomicLong());
+            dropped.put(category, new AtomicLong());
+            skipped.put(category, new AtomicLong());
+        }
+        queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        if (!enabled) {
+            logger.info("【维测写入】未启用，维测日志和审查报告留档不写入本地");
+            return;
+        }
+        worker = new Thread(this::drain, "diagnostics-sink");
+        worker.setDaemon(true);
+        worker.start();
+        logger.info("【维测写入】已启动: 队列上限 {}, 维测日志采样率 {}, 报告留档采样率 {}",
+                   queueCapacity, ruleMatchSampleRate, reviewReportSampleRate);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (worker != null) {
+            worker.interrupt();
+        }
+    }
+
+    /**
+     * 本次是否采样（未启用时返回 false）
+     */
+    public boolean sampled(Category category) {
+        if (!enabled) {
+            return false;
+        }
+        double rate = sampleRate(category);
+        boolean sampled = rate >= 1.0 || (rate > 0 && ThreadLocalRandom.current().nextDouble() < rate);
+        if (!sampled) {
+            skipped.get(category).incrementAndGet();
+        }
+        return sampled;
+    }
+
+    /**
+     * 提交写入（不做采样判断，调用方应先调用 sampled）
+     *
+     * @param category 类别
+     * @param filename 文件名（同名文件已存在时追加序号）
+     * @param writer 内容（在后台线程渲染）
+     * @return 是否已入队（未启用或队列已满时返回 false）
+     */
+    public boolean submit(Category category, String filename, ContentWriter writer) {
+        if (!enabled) {
+            return false;
+        }
+        if (!queue.offer(new Pending(category, filename, writer))) {
+            long count = dropped.get(category).incrementAndGet();
+            logger.warn("【维测写入】队列已满，丢弃: category={}, file={}, 累计丢弃 {}", category, filename, count);
+            return false;
+        }
+        return true;
+    }
+
+    public boolean submit(Category category, String filename, byte[] content) {
+        return submit(category, filename, out -> out.write(content));
+    }
+
+    /**
+     * 类别对应的目录
+     */
+    public Path directory(Category category) {
+        String base = baseDir == null || baseDir.trim().isEmpty() ? System.getProperty("user.dir") : baseDir.trim();
+        Path docCenter = Paths.get(base, "文档中心");
+        return category == Category.RULE_MATCH
+                ? docCenter.resolve("02_实现和修复总结").resolve("维测日志")
+                : docCenter.resolve("已生成的审查报告");
+    }
+
+    /**
+     * 写入统计：按类别的写入、丢弃、未采样次数和目录占用
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("queued", queue.size());
+        stats.put("queueCapacity", queueCapacity);
+        stats.put("failed", failed.get());
+        stats.put("rotatedFiles", rotatedFiles.get());
+        for (Category category : Category.values()) {
+            Map<String, Object> categoryStats = new LinkedHashMap<>();
+            categoryStats.put("sampleRate", sampleRate(category));
+            categoryStats.put("written", written.get(category).get());
+            categoryStats.put("dropped", dropped.get(category).get());
+            categoryStats.put("skipped", skipped.get(category).get());
+            categoryStats.put("directoryBytes", dirBytes.get(category).get());
+            categoryStats.put("maxBytes", maxBytes(category));
+            stats.put(category.name(), categoryStats);
+        }
+        return stats;
+    }
+
+    private void drain() {
+        while (!Thread.currentThread().isInterrupted()) {
+            Pending pending;
+            try {
+                pending = queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            try {
+                write(pending);
+            } catch (Exception e) {
+                failed.incrementAndGet();
+                logger.warn("【维测写入】写入失败: category={}, file={}, 原因: {}",
+                           pending.category, pending.filename, e.getMessage());
+            }
+        }
+    }
+
+    private void write(Pending pending) throws IOException {
+        Path dir = directory(pending.category);
+        Files.createDirectories(dir);
+        Path tmp = Files.createTempFile(dir, ".pending-", ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(tmp)) {
+                pending.writer.writeTo(out);
+            }
+            Path target = moveToUniqueName(tmp, dir, pending.filename);
+            long size = Files.size(target);
+            written.get(pending.category).incrementAndGet();
+            logger.debug("【维测写入】已写入: {}, {} 字节", target, size);
+            enforceCap(pending.category, dir, size);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private Path moveToUniqueName(Path tmp, Path dir, String filename) throws IOException {
+        int dot = filename.lastIndexOf('.');
+        String base = dot > 0 ? filename.substring(0, dot) : filename;
+        String extension = dot > 0 ? filename.substring(dot) : "";
+        for (int i = 0; ; i++) {
+            Path target = dir.resolve(i == 0 ? filename : base + "_" + i + extension);
+            try {
+                return Files.move(tmp, target);
+            } catch (FileAlreadyExistsException e) {
+                // 同名文件已存在，追加序号
+            }
+        }
+    }
+
+    /**
+     * 目录占用超过上限时按修改时间删除最早的文件（首次写入时统计一次目录占用，之后累加）
+     */
+    private void enforceCap(Category category, Path dir, long addedBytes) throws IOException {
+        AtomicLong usage = dirBytes.get(category);
+        if (usage.get() < 0) {
+            usage.set(directorySize(dir));
+        } else {
+            usage.addAndGet(addedBytes);
+        }
+        long cap = maxBytes(category);
+        if (cap <= 0 || usage.get() <= cap) {
+            return;
+        }
+
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> listing = Files.list(dir)) {
+            listing.filter(Files::isRegularFile)
+                   .filter(file -> !file.getFileName().toString().startsWith(".pending-"))
+                   .forEach(files::add);
+        }
+        files.sort(Comparator.comparingLong(DiagnosticsSink::lastModified));
+        long total = 0;
+        for (Path file : files) {
+            total += Files.size(file);
+        }
+        for (Path file : files) {
+            if (total <= cap) {
+                break;
+            }
+            long size = Files.size(file);
+            if (Files.deleteIfExists(file)) {
+                total -= size;
+                rotatedFiles.incrementAndGet();
+            }
+        }
+        usage.set(total);
+        logger.info("【维测写入】目录超过上限 {} 字节，已清理最早的文件: {}, 当前占用 {} 字节", cap, dir, total);
+    }
+
+    private static long directorySize(Path dir) throws IOException {
+        long total = 0;
+        try (Stream<Path> listing = Files.list(dir)) {
+            for (Path file : (Iterable<Path>) listing::iterator) {
+                if (Files.isRegularFile(file) && !file.getFileName().toString().startsWith(".pending-")) {
+                    total += Files.size(file);
+                }
+            }
+        }
+        return total;
+    }
+
+    private static long lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    private double sampleRate(Category category) {
+        return category == Category.RULE_MATCH ? ruleMatchSampleRate : reviewReportSampleRate;
+    }
+
+    private long maxBytes(Category category) {
+        return category == Category.RULE_MATCH ? ruleMatchMaxBytes : reviewReportMaxBytes;
+    }
+}
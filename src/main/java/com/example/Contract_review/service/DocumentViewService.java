@@ -3,8 +3,13 @@ package com.example.Contract_review.service;
 import com.aspose.words.*;
 import com.example.Contract_review.model.DocumentInfo;
 import com.example.Contract_review.model.ThumbnailInfo;
+import com.example.Contract_review.util.DocxPackageInspector;
+import com.example.Contract_review.util.WeightedLruCache;
+import io.minio.GetObjectResponse;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import javax.imageio.ImageIO;
@@ -15,8 +20,9 @@ import java.util.ArrayList;
 import java.util.Base64;
 import java.util.HashMap;
 import java.util.List;
+import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -27,6 +33,11 @@ import java.util.regex.Pattern;
  * - 生成文档缩略图（PNG, Base64）
  * - 导出页面为SVG矢量图
  * - 获取文档基本信息
+ *
+ * 缓存：
+ * - 文档字节和缩略图分别缓存在按字节计重、带 TTL 的 LRU 缓存中
+ * - 每个条目记录 MinIO 对象的 ETag，超过 revalidate-seconds 后用 statObject（HEAD）校验，
+ *   同名对象被重新上传时丢弃旧版本及其缩略图
  */
 @Slf4j
 @Service
@@ -35,49 +46,161 @@ public class DocumentViewService {
     @Autowired
     private MinioFileService minioFileService;
     
-    // 文档字节数组缓存（避免重复下载）
+    // 缓存条目生存时间（秒）
+    @Value("${document-view.cache.ttl-seconds:300}")
+    private long cacheTtlSeconds;
+    
+    // 文档字节缓存上限（字节）
+    @Value("${document-view.cache.max-bytes:134217728}")
+    private long documentCacheMaxBytes;
+    
+    // 缩略图缓存上限（字节）
+    @Value("${document-view.cache.thumbnail-max-bytes:33554432}")
+    private long thumbnailCacheMaxBytes;
+    
+    // 距上次校验超过该时间（秒）后用 ETag 重新校验条目
+    @Value("${document-view.cache.revalidate-seconds:10}")
+    private long revalidateSeconds;
+    
+    // 文档字节数组缓存（避免重复下载），键为 MinIO URL
     // 注意：不能直接缓存Document对象，Aspose Document对象在缓存后会出现状态问题
-    private final ConcurrentHashMap<String, byte[]> documentBytesCache = new ConcurrentHashMap<>();
+    private WeightedLruCache<String, CachedDocument> documentBytesCache;
     
-    // 缩略图缓存
-    private final ConcurrentHashMap<String, String> thumbnailCache = new ConcurrentHashMap<>();
+    // 缩略图缓存，键为 MinIO URL + "_thumb_" + 页码
+    private WeightedLruCache<String, CachedThumbnail> thumbnailCache;
     
-    // 缓存过期时间（5分钟）
-    private static final long CACHE_EXPIRE_MS = 5 * 60 * 1000;
+    private final AtomicLong revalidations = new AtomicLong();
+    private final AtomicLong staleReloads = new AtomicLong();
     
     /**
-     * 从MinIO获取文档字节数组（带缓存）
+     * 带 ETag 的缓存条目
+     */
+    private static class Validated {
+        final String etag;
+        volatile long validatedAt = System.currentTimeMillis();
+        
+        Validated(String etag) {
+            this.etag = etag;
+        }
+    }
+    
+    private static class CachedDocument extends Validated {
+        final byte[] bytes;
+        
+        CachedDocument(byte[] bytes, String etag) {
+            super(etag);
+            this.bytes = bytes;
+        }
+    }
+    
+    private static class CachedThumbnail extends Validated {
+        final String base64;
+        final int width;
+        final int height;
+        final int size;
+        
+        CachedThumbnail(String base64, int width, int height, int size, String etag) {
+            super(etag);
+            this.base64 = base64;
+            this.width = width;
+            this.height = height;
+            this.size = size;
+        }
+    }
+    
+    @PostConstruct
+    public void init() {
+        long ttlMs = cacheTtlSeconds * 1000;
+        documentBytesCache = new WeightedLruCache<>(documentCacheMaxBytes, ttlMs, doc -> doc.bytes.length + 64L);
+        // Base64 字符串为 Latin-1 紧凑存储，每字符1字节
+        thumbnailCache = new WeightedLruCache<>(thumbnailCacheMaxBytes, ttlMs, thumb -> thumb.base64.length() + 96L);
+    }
+    
+    /**
+     * 从MinIO获取文档（带缓存，按 ETag 校验）
      * 
      * @param minioUrl MinIO文件URL
-     * @return 文档字节数组
+     * @return 文档字节数组及 ETag
      */
-    private byte[] getDocumentBytes(String minioUrl) throws Exception {
+    private CachedDocument getDocument(String minioUrl) throws Exception {
         String cacheKey = minioUrl;
+        String objectName = extractObjectName(minioUrl);
         
         // 检查缓存
-        if (documentBytesCache.containsKey(cacheKey)) {
-            log.debug("从缓存获取文档字节数组: {}", minioUrl);
-            return documentBytesCache.get(cacheKey);
+        CachedDocument cached = documentBytesCache.get(cacheKey);
+        if (cached != null) {
+            if (isCurrent(cached, objectName)) {
+                log.debug("从缓存获取文档字节数组: {}", minioUrl);
+                return cached;
+            }
+            log.info("MinIO中的文档已更新（ETag变化），重新下载: {}", minioUrl);
+            clearDocumentCache(minioUrl);
         }
         
         log.info("从MinIO下载文档: {}", minioUrl);
         
-        // 从MinIO URL提取objectName
-        String objectName = extractObjectName(minioUrl);
-        
-        // 从MinIO下载文件
-        byte[] fileBytes = minioFileService.downloadFile(objectName);
+        // 从MinIO下载文件，ETag 取自同一次响应，避免与下载内容不一致
+        byte[] fileBytes;
+        String etag;
+        try (GetObjectResponse response = minioFileService.openObject(objectName)) {
+            fileBytes = response.readAllBytes();
+            etag = MinioFileService.normalizeETag(response.headers().get("ETag"));
+        } catch (Exception e) {
+            log.error("文件下载失败: objectName={}", objectName, e);
+            throw new RuntimeException("文件下载失败: " + e.getMessage(), e);
+        }
         
         if (fileBytes == null || fileBytes.length == 0) {
             throw new RuntimeException("文件下载失败或文件为空");
         }
         
-        log.info("文件下载成功，大小: {} KB", fileBytes.length / 1024);
+        log.info("文件下载成功，大小: {} KB, ETag: {}", fileBytes.length / 1024, etag);
         
         // 放入缓存
-        documentBytesCache.put(cacheKey, fileBytes);
+        CachedDocument document = new CachedDocument(fileBytes, etag);
+        documentBytesCache.put(cacheKey, document);
         
-        return fileBytes;
+        return document;
+    }
+    
+    /**
+     * 从MinIO获取文档字节数组（带缓存）
+     * 
+     * @param minioUrl MinIO文件URL
+     * @return 文档字节数组
+     */
+    private byte[] getDocumentBytes(String minioUrl) throws Exception {
+        return getDocument(minioUrl).bytes;
+    }
+    
+    /**
+     * 缓存条目是否仍对应 MinIO 中的当前版本
+     * 
+     * 距上次校验不超过 revalidate-seconds 时直接视为有效；否则优先用已校验的文档条目的 ETag，
+     * 再退回 statObject（HEAD 请求）
+     */
+    private boolean isCurrent(Validated entry, String objectName) {
+        long now = System.currentTimeMillis();
+        if (now - entry.validatedAt <= revalidateSeconds * 1000) {
+            return true;
+        }
+        if (entry.etag == null) {
+            return false;
+        }
+        String currentETag;
+        try {
+            currentETag = minioFileService.getETag(objectName);
+        } catch (Exception e) {
+            log.warn("校验文档ETag失败，丢弃缓存条目: objectName={}, 错误={}", objectName, e.getMessage());
+            return false;
+        }
+        revalidations.incrementAndGet();
+        if (entry.etag.equals(currentETag)) {
+            entry.validatedAt = now;
+            return true;
+        }
+        staleReloads.incrementAndGet();
+        return false;
     }
     
     /**
@@ -216,16 +339,29 @@ public class DocumentViewService {
         
         String cacheKey = minioUrl + "_thumb_" + pageNumber;
         
-        // 检查缩略图缓存
-        if (thumbnailCache.containsKey(cacheKey)) {
-            log.debug("从缓存获取缩略图: 第{}页", pageNumber);
-            return ThumbnailInfo.builder()
-                    .pageNumber(pageNumber)
-                    .thumbnailBase64(thumbnailCache.get(cacheKey))
-                    .build();
+        // 检查缩略图缓存（文档条目刚校验过时沿用其结果，不再单独请求 ETag）
+        CachedThumbnail cachedThumbnail = thumbnailCache.get(cacheKey);
+        if (cachedThumbnail != null) {
+            CachedDocument document = documentBytesCache.peek(minioUrl);
+            boolean current = (document != null && cachedThumbnail.etag != null
+                    && cachedThumbnail.etag.equals(document.etag)
+                    && System.currentTimeMillis() - document.validatedAt <= revalidateSeconds * 1000)
+                    || isCurrent(cachedThumbnail, extractObjectName(minioUrl));
+            if (current) {
+                log.debug("从缓存获取缩略图: 第{}页", pageNumber);
+                return ThumbnailInfo.builder()
+                        .pageNumber(pageNumber)
+                        .thumbnailBase64(cachedThumbnail.base64)
+                        .width(cachedThumbnail.width)
+                        .height(cachedThumbnail.height)
+                        .size(cachedThumbnail.size)
+                        .build();
+            }
+            thumbnailCache.remove(cacheKey);
         }
         
-        Document doc = loadDocumentFromMinio(minioUrl);
+        CachedDocument document = getDocument(minioUrl);
+        Document doc = new Document(new ByteArrayInputStream(document.bytes));
         
         // 验证页码
         if (pageNumber < 1 || pageNumber > doc.getPageCount()) {
@@ -255,7 +391,7 @@ public class DocumentViewService {
         String base64 = Base64.getEncoder().encodeToString(imageBytes);
         
         // 缓存
-        thumbnailCache.put(cacheKey, base64);
+        thumbnailCache.put(cacheKey, new CachedThumbnail(base64, width, height, imageBytes.length, document.etag));
         
         log.info("缩略图生成成功: 第{}页, 尺寸: {}x{}, 大小: {} KB", 
                 pageNumber, width, height, imageBytes.length / 1024);
@@ -377,6 +513,19 @@ public class DocumentViewService {
         return svgList;
     }
     
+    /**
+     * 缓存统计信息
+     */
+    public Map<String, Object> getCacheStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("documents", documentBytesCache.getStats());
+        stats.put("thumbnails", thumbnailCache.getStats());
+        stats.put("revalidateSeconds", revalidateSeconds);
+        stats.put("revalidations", revalidations.get());
+        stats.put("staleReloads", staleReloads.get());
+        return stats;
+    }
+    
     /**
      * 清理缓存
      */
@@ -395,31 +544,20 @@ public class DocumentViewService {
         documentBytesCache.remove(minioUrl);
         
         // 清理相关的缩略图缓存
-        thumbnailCache.keySet().removeIf(key -> key.startsWith(minioUrl));
+        thumbnailCache.removeIf(key -> key.startsWith(minioUrl + "_thumb_"));
         
         log.info("已清理文档缓存: {}", minioUrl);
     }
     
     /**
-     * 检查DOCX文档是否包含批注
+     * 检查DOCX文档是否包含批注（只读取中央目录和 comments.xml）
      * 
      * @param docBytes 文档字节数组
      * @return 是否包含批注
      */
     private boolean checkDocHasComments(byte[] docBytes) {
         try {
-            java.util.zip.ZipInputStream zip = new java.util.zip.ZipInputStream(
-                new java.io.ByteArrayInputStream(docBytes));
-            java.util.zip.ZipEntry entry;
-            while ((entry = zip.getNextEntry()) != null) {
-                if ("word/comments.xml".equals(entry.getName())) {
-                    zip.close();
-                    return true;
-                }
-                zip.closeEntry();
-            }
-            zip.close();
-            return false;
+            return DocxPackageInspector.of(docBytes).hasComments();
         } catch (Exception e) {
             return false;
         }
@@ -0,0 +1,524 @@
+package com.example.Contract_review.service;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * LLM 响应持久化缓存
+ *
+ * 同一份合同、同一立场、同一套规则重复审查时直接返回上次的模型输出，不再调用模型。
+ * 所有审查入口（Qwen 规则审查、Claude、OpenAI、豆包）共用：
+ * - 缓存键：SHA-256(提供商 + 模型 + 规则快照版本 + 规范化 Prompt 的 SHA-256)
+ * - 存储：本地磁盘，每个响应一个 JSON 文件（写临时文件后原子替换）
+ * - 过期：超过 TTL 的条目在读取或清理时删除
+ * - 容量：总大小超过上限时按最近访问时间淘汰（命中时刷新文件修改时间）
+ * - 只缓存成功的响应：必须是包含 issues 数组的 JSON 对象（错误响应、非JSON或格式错误的输出不缓存）
+ */
+@Service
+public class LlmResponseCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(LlmResponseCache.class);
+
+    private static final String FILE_SUFFIX = ".json";
+
+    /**
+     * 淘汰时清理到容量上限的比例，避免每次写入都触发淘汰
+     */
+    private static final double EVICT_TARGET_RATIO = 0.9;
+
+    @Autowired
+    private ReviewRulesService reviewRulesService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${llm-cache.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 缓存目录，为空时使用 {user.dir}/.llm-cache
+     */
+    @Value("${llm-cache.dir:}")
+    private String cacheDir;
+
+    @Value("${llm-cache.ttl-hours:168}")
+    private long ttlHours;
+
+    @Value("${llm-cache.max-bytes:268435456}")
+    private long maxBytes;
+
+    private Path root;
+
+    /**
+     * 缓存文件大小索引：key → 字节数
+     */
+    private final Map<String, Long> entrySizes = new ConcurrentHashMap<>();
+    private final AtomicLong totalBytes = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong savedLatencyMs = new AtomicLong();
+
+    /**
+     * 一次审查中的缓存使用情况（可跨多次模型调用累计，如分块审查）
+     */
+    public static class Usage {
+        private final AtomicInteger hitCount = new AtomicInteger();
+        private final AtomicInteger missCount = new AtomicInteger();
+        private final AtomicLong latencyMs = new AtomicLong();
+        private final AtomicLong savedMs = new AtomicLong();
+        private volatile boolean disabled;
+
+        /**
+         * 缓存状态：HIT（全部命中）、MISS（全部未命中）、PARTIAL（部分命中）、DISABLED（未启用）、NONE（未调用模型）
+         */
+        public String getStatus() {
+            if (disabled) {
+                return "DISABLED";
+            }
+            int hit = hitCount.get();
+            int miss = missCount.get();
+            if (hit == 0 && miss == 0) {
+                return "NONE";
+            }
+            return miss == 0 ? "HIT" : hit == 0 ? "MISS" : "PARTIAL";
+        }
+
+        public int getHitCount() {
+            return hitCount.get();
+        }
+
+        public int getMissCount() {
+            return missCount.get();
+        }
+
+        /**
+         * 本次实际调用模型的耗时（毫秒）
+         */
+        public long getLatencyMs() {
+            return latencyMs.get();
+        }
+
+        /**
+         * 命中缓存节省的模型调用耗时（毫秒，按缓存写入时记录的原始耗时计）
+         */
+        public long getSavedMs() {
+            return savedMs.get();
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        root = cacheDir == null || cacheDir.trim().isEmpty()
+                ? Paths.get(System.getProperty("user.dir"), ".llm-cache")
+                : Paths.get(cacheDir.trim());
+        if (!enabled) {
+            logger.info("【LLM缓存】未启用");
+            return;
+        }
+        try {
+            Files.createDirectories(root);
+            int expired = scan();
+            logger.info("【LLM缓存】目录: {}, 条目数: {}, 占用: {} 字节, 清理过期: {}, TTL: {} 小时, 上限: {} 字节",
+                       root, entrySizes.size(), totalBytes.get(), expired, ttlHours, maxBytes);
+        } catch (IOException e) {
+            logger.warn("【LLM缓存】无法初始化缓存目录 {}，缓存已停用: {}", root, e.getMessage());
+            enabled = false;
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 同步调用：命中时直接返回缓存，否则调用模型并缓存成功的响应
+     *
+     * @param provider 提供商
+     * @param model 模型名称
+     * @param prompt 完整 Prompt（含系统提示）
+     * @param call 模型调用
+     * @param usage 本次审查的缓存使用记录（可为 null）
+     * @return 模型响应
+     * @throws Exception 模型调用失败
+     */
+    public String getOrCompute(String provider, String model, String prompt,
+                               Callable<String> call, Usage usage) throws Exception {
+        if (!enabled) {
+            markDisabled(usage);
+            return call.call();
+        }
+        String key = buildKey(provider, model, prompt);
+        String cached = get(key, usage);
+        if (cached != null) {
+            return cached;
+        }
+        long start = System.currentTimeMillis();
+        String response = call.call();
+        long elapsed = System.currentTimeMillis() - start;
+        recordMiss(usage, elapsed);
+        put(key, provider, model, response, elapsed);
+        return response;
+    }
+
+    /**
+     * 异步调用：命中时直接返回缓存，否则订阅模型调用并缓存成功的响应
+     *
+     * @param provider 提供商
+     * @param model 模型名称
+     * @param prompt 完整 Prompt（含系统提示）
+     * @param call 模型调用
+     * @param usage 本次审查的缓存使用记录（可为 null）
+     * @return 模型响应
+     */
+    public Mono<String> getOrComputeAsync(String provider, String model, String prompt,
+                                          Supplier<Mono<String>> call, Usage usage) {
+        if (!enabled) {
+            markDisabled(usage);
+            return call.get();
+        }
+        String key = buildKey(provider, model, prompt);
+        return Mono.fromCallable(() -> java.util.Optional.ofNullable(get(key, usage)))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(cached -> {
+                    if (cached.isPresent()) {
+                        return Mono.just(cached.get());
+                    }
+                    long start = System.currentTimeMillis();
+                    return call.get().doOnNext(response -> {
+                        long elapsed = System.currentTimeMillis() - start;
+                        recordMiss(usage, elapsed);
+                        put(key, provider, model, response, elapsed);
+                    });
+                });
+    }
+
+    /**
+     * 查询缓存（用于流式调用：命中时不再发起流式请求）
+     *
+     * @return 缓存的响应，未命中返回 null
+     */
+    public String lookup(String provider, String model, String prompt, Usage usage) {
+        if (!enabled) {
+            markDisabled(usage);
+            return null;
+        }
+        return get(buildKey(provider, model, prompt), usage);
+    }
+
+    /**
+     * 写入缓存（用于流式调用：流结束后写入完整响应）
+     */
+    public void store(String provider, String model, String prompt, String response, long latencyMs, Usage usage) {
+        if (!enabled) {
+            return;
+        }
+        recordMiss(usage, latencyMs);
+        put(buildKey(provider, model, prompt), provider, model, response, latencyMs);
+    }
+
+    /**
+     * 清空缓存
+     *
+     * @return 删除的条目数
+     */
+    public int clear() {
+        int removed = 0;
+        for (String key : new ArrayList<>(entrySizes.keySet())) {
+            if (delete(key)) {
+                removed++;
+            }
+        }
+        logger.info("【LLM缓存】已清空 {} 个条目", removed);
+        return removed;
+    }
+
+    /**
+     * 获取缓存统计信息
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("directory", root != null ? root.toString() : null);
+        stats.put("entries", entrySizes.size());
+        stats.put("totalBytes", totalBytes.get());
+        stats.put("maxBytes", maxBytes);
+        stats.put("ttlHours", ttlHours);
+        stats.put("hits", hits.get());
+        stats.put("misses", misses.get());
+        stats.put("evictions", evictions.get());
+        stats.put("savedLatencyMs", savedLatencyMs.get());
+        stats.put("rulesVersion", reviewRulesService.getRulesVersion());
+        return stats;
+    }
+
+    /**
+     * 规范化 Prompt：统一换行、去除行尾空白、合并连续空格和多余空行
+     *
+     * 只消除不影响模型理解的格式差异，文字内容保持不变
+     */
+    static String normalizePrompt(String prompt) {
+        if (prompt == null) {
+            return "";
+        }
+        String normalized = prompt.replace("\r\n", "\n").replace('\r', '\n');
+        normalized = normalized.replaceAll("[ \\t\\u3000]+\\n", "\n");
+        normalized = normalized.replaceAll("[ \\t]{2,}", " ");
+        normalized = normalized.replaceAll("\\n{3,}", "\n\n");
+        return normalized.trim();
+    }
+
+    String buildKey(String provider, String model, String prompt) {
+        String promptHash = sha256(normalizePrompt(prompt));
+        return sha256(provider + "\n" + model + "\n" + reviewRulesService.getRulesVersion() + "\n" + promptHash);
+    }
+
+    private String get(String key, Usage usage) {
+        Path file = pathOf(key);
+        if (!entrySizes.containsKey(key) && !Files.exists(file)) {
+            misses.incrementAndGet();
+            return null;
+        }
+        try {
+            JsonNode entry = objectMapper.readTree(file.toFile());
+            long createdAt = entry.path("createdAt").asLong(0);
+            if (isExpired(createdAt)) {
+                delete(key);
+                misses.incrementAndGet();
+                return null;
+            }
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+
+            long latency = entry.path("latencyMs").asLong(0);
+            hits.incrementAndGet();
+            savedLatencyMs.addAndGet(latency);
+            if (usage != null) {
+                usage.hitCount.incrementAndGet();
+                usage.savedMs.addAndGet(latency);
+            }
+            logger.info("【LLM缓存】命中: provider={}, model={}, 节省约 {} ms",
+                       entry.path("provider").asText(), entry.path("model").asText(), latency);
+            return entry.path("response").asText();
+        } catch (Exception e) {
+            logger.debug("【LLM缓存】读取缓存条目失败，视为未命中: {}", e.getMessage());
+            delete(key);
+            misses.incrementAndGet();
+            return null;
+        }
+    }
+
+    private void put(String key, String provider, String model, String response, long latencyMs) {
+        if (!isCacheable(response)) {
+            return;
+        }
+        try {
+            ObjectNode entry = objectMapper.createObjectNode();
+            entry.put("provider", provider);
+            entry.put("model", model);
+            entry.put("rulesVersion", reviewRulesService.getRulesVersion());
+            entry.put("createdAt", System.currentTimeMillis());
+            entry.put("latencyMs", latencyMs);
+            entry.put("response", response);
+            byte[] bytes = objectMapper.writeValueAsBytes(entry);
+            if (bytes.length > maxBytes) {
+                return;
+            }
+
+            Path file = pathOf(key);
+            Files.createDirectories(file.getParent());
+            Path tmp = Files.createTempFile(file.getParent(), key, ".tmp");
+            Files.write(tmp, bytes);
+            try {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+
+            Long previous = entrySizes.put(key, (long) bytes.length);
+            totalBytes.addAndGet(bytes.length - (previous != null ? previous : 0));
+            logger.debug("【LLM缓存】已写入: provider={}, model={}, {} 字节", provider, model, bytes.length);
+
+            if (totalBytes.get() > maxBytes) {
+                evict();
+            }
+        } catch (Exception e) {
+            logger.warn("【LLM缓存】写入缓存失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 按最近访问时间淘汰，同时清理过期条目
+     */
+    private synchronized void evict() {
+        if (totalBytes.get() <= maxBytes) {
+            return;
+        }
+        List<Object[]> candidates = new ArrayList<>();
+        for (String key : entrySizes.keySet()) {
+            try {
+                candidates.add(new Object[]{key, Files.getLastModifiedTime(pathOf(key)).toMillis()});
+            } catch (IOException e) {
+                delete(key);
+            }
+        }
+        candidates.sort((a, b) -> Long.compare((Long) a[1], (Long) b[1]));
+
+        long target = (long) (maxBytes * EVICT_TARGET_RATIO);
+        int removed = 0;
+        for (Object[] candidate : candidates) {
+            if (totalBytes.get() <= target) {
+                break;
+            }
+            if (delete((String) candidate[0])) {
+                removed++;
+            }
+        }
+        evictions.addAndGet(removed);
+        logger.info("【LLM缓存】超出容量上限，已淘汰 {} 个最久未访问的条目，当前占用 {} 字节", removed, totalBytes.get());
+    }
+
+    /**
+     * 扫描缓存目录，建立大小索引并删除过期条目
+     *
+     * @return 删除的过期条目数
+     */
+    private int scan() throws IOException {
+        int expired = 0;
+        try (Stream<Path> files = Files.walk(root, 2)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(".tmp")) {
+                    Files.deleteIfExists(file);
+                    continue;
+                }
+                if (!Files.isRegularFile(file) || !name.endsWith(FILE_SUFFIX)) {
+                    continue;
+                }
+                String key = name.substring(0, name.length() - FILE_SUFFIX.length());
+                // 以文件修改时间（最近访问）为下限，创建时间在条目内，读取时再精确校验
+                if (isExpired(Files.getLastModifiedTime(file).toMillis())) {
+                    Files.deleteIfExists(file);
+                    expired++;
+                    continue;
+                }
+                long size = Files.size(file);
+                entrySizes.put(key, size);
+                totalBytes.addAndGet(size);
+            }
+        }
+        if (totalBytes.get() > maxBytes) {
+            evict();
+        }
+        return expired;
+    }
+
+    private boolean delete(String key) {
+        Long size = entrySizes.remove(key);
+        if (size != null) {
+            totalBytes.addAndGet(-size);
+        }
+        try {
+            return Files.deleteIfExists(pathOf(key)) || size != null;
+        } catch (IOException e) {
+            logger.debug("【LLM缓存】删除缓存文件失败: {}", e.getMessage());
+            return size != null;
+        }
+    }
+
+    private boolean isExpired(long createdAt) {
+        return ttlHours > 0 && System.currentTimeMillis() - createdAt > ttlHours * 3600_000L;
+    }
+
+    /**
+     * 只缓存可完整解析为 JSON 对象且包含 issues 数组的成功响应（允许外层 Markdown 代码块）
+     *
+     * 模型偶发输出的格式错误 JSON、修复失败的文本等不缓存，避免在 TTL 内反复返回同一错误结果
+     */
+    private boolean isCacheable(String response) {
+        if (response == null || response.trim().isEmpty()) {
+            return false;
+        }
+        String json = response.trim();
+        if (json.startsWith("```")) {
+            int firstLineEnd = json.indexOf('\n');
+            int fenceEnd = json.lastIndexOf("```");
+            if (firstLineEnd < 0 || fenceEnd <= firstLineEnd) {
+                return false;
+            }
+            json = json.substring(firstLineEnd + 1, fenceEnd).trim();
+        }
+        try {
+            JsonNode root = objectMapper.reader()
+                    .with(DeserializationFeature.FAIL_ON_TRAILING_TOKENS)
+                    .readTree(json);
+            if (root == null || !root.isObject() || !root.path("issues").isArray()) {
+                return false;
+            }
+            JsonNode error = root.path("error");
+            return !error.asBoolean(false) && !error.isTextual() && root.path("success").asBoolean(true);
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private void recordMiss(Usage usage, long elapsedMs) {
+        if (usage != null) {
+            usage.missCount.incrementAndGet();
+            usage.latencyMs.addAndGet(elapsedMs);
+        }
+    }
+
+    private void markDisabled(Usage usage) {
+        if (usage != null) {
+            usage.disabled = true;
+        }
+    }
+
+    /**
+     * 按键的前两位分目录，避免单目录文件过多
+     */
+    private Path pathOf(String key) {
+        return root.resolve(key.substring(0, 2)).resolve(key + FILE_SUFFIX);
+    }
+
+    private static String sha256(String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(text.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -1,19 +1,47 @@
 package com.example.Contract_review.service;
 
 import com.example.Contract_review.config.MinioConfig;
+import com.example.Contract_review.util.ObjectListingIndex;
+import com.example.Contract_review.util.WeightedLruCache;
 import io.minio.*;
+import io.minio.errors.ErrorResponseException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.LocalDateTime;
+import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
+import io.minio.messages.Expiration;
 import io.minio.messages.Item;
+import io.minio.messages.LifecycleConfiguration;
+import io.minio.messages.LifecycleRule;
+import io.minio.messages.RuleFilter;
+import io.minio.messages.Status;
 
 /**
  * MinIO文件服务
@@ -24,12 +52,84 @@ import io.minio.messages.Item;
 @Service
 public class MinioFileService {
 
+    /**
+     * composeObject 要求除最后一个源对象外每个至少 5MB
+     */
+    private static final long MIN_COMPOSE_PART_SIZE = 5L * 1024 * 1024;
+
     @Autowired(required = false)
     private MinioClient minioClient;
 
     @Autowired
     private MinioConfig.MinioProperties minioProperties;
 
+    /**
+     * 内容寻址对象存在性缓存条目数上限
+     */
+    @Value("${minio.content.exists-cache-size:10000}")
+    private long existsCacheSize;
+
+    /**
+     * 内容寻址对象存在性缓存时间（秒），超时后重新 statObject（对象可能被清理）
+     */
+    @Value("${minio.content.exists-cache-ttl-seconds:3600}")
+    private long existsCacheTtlSeconds;
+
+    /**
+     * 已确认存在的内容寻址对象（只缓存存在的结果）
+     */
+    private WeightedLruCache<String, Boolean> contentExistsCache;
+
+    /**
+     * 文件列表索引与MinIO对账的间隔（秒），不大于0时只在启动时对账一次
+     */
+    @Value("${minio.listing.reconcile-interval-seconds:300}")
+    private long listingReconcileIntervalSeconds;
+
+    /**
+     * 带锚点文档和共享解析缓存的路径（与 AnchoredDocumentStore 一致），其下对象不出现在文件列表中
+     */
+    @Value("${minio.path.anchored:anchored}")
+    private String anchoredPath;
+
+    @Value("${parse-cache.shared.prefix:parse-cache}")
+    private String parseCachePrefix;
+
+    /**
+     * 文件列表本地索引（上传、删除时增量更新，定期与MinIO对账，不含内部对象）
+     */
+    private final ObjectListingIndex listingIndex = new ObjectListingIndex(this::isInternalObject);
+
+    private ScheduledExecutorService listingReconciler;
+
+    @PostConstruct
+    public void init() {
+        contentExistsCache = new WeightedLruCache<>(Math.max(1, existsCacheSize),
+                existsCacheTtlSeconds * 1000L, exists -> 1);
+
+        if (!isEnabled()) {
+            return;
+        }
+        listingReconciler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "minio-listing-reconciler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (listingReconcileIntervalSeconds > 0) {
+            listingReconciler.scheduleWithFixedDelay(this::reconcileListingIndex, 0,
+                    listingReconcileIntervalSeconds, TimeUnit.SECONDS);
+        } else {
+            listingReconciler.execute(this::reconcileListingIndex);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (listingReconciler != null) {
+            listingReconciler.shutdownNow();
+        }
+    }
+
     /**
      * 检查MinIO服务是否可用
      */
@@ -56,7 +156,7 @@ public class MinioFileService {
             ensureBucketExists();
 
             // 上传文件
-            minioClient.putObject(
+            ObjectWriteResponse response = minioClient.putObject(
                 PutObjectArgs.builder()
                     .bucket(minioProperties.getBucketName())
                     .object(objectName)
@@ -64,6 +164,7 @@ public class MinioFileService {
                     .contentType(file.getContentType())
                     .build()
             );
+            indexUploaded(objectName, file.getSize(), response);
 
             String url = getFileUrl(objectName);
             log.info("✓ 文件上传成功: {}", url);
@@ -95,7 +196,7 @@ public class MinioFileService {
             ensureBucketExists();
 
             // 上传字节数组
-            minioClient.putObject(
+            ObjectWriteResponse response = minioClient.putObject(
                 PutObjectArgs.builder()
                     .bucket(minioProperties.getBucketName())
                     .object(objectName)
@@ -103,6 +204,7 @@ public class MinioFileService {
                     .contentType(contentType)
                     .build()
             );
+            indexUploaded(objectName, data.length, response);
 
             String url = getFileUrl(objectName);
             log.info("✓ 字节数组上传成功: {}", url);
@@ -114,6 +216,274 @@ public class MinioFileService {
         }
     }
 
+    /**
+     * 以流方式上传到MinIO（数据不在内存中整体复制）
+     *
+     * @param stream 数据流
+     * @param size 数据长度，未知时传-1（按10MB分片上传）
+     * @param objectName 对象名称（包含路径）
+     * @param contentType 内容类型
+     * @param userMetadata 用户元数据（值需为ASCII），可为null
+     * @return MinIO URL
+     */
+    public String uploadStream(InputStream stream, long size, String objectName, String contentType,
+                               Map<String, String> userMetadata) throws Exception {
+        if (!isEnabled()) {
+            throw new IllegalStateException("MinIO服务未启用或未配置");
+        }
+
+        try {
+            log.info("流式上传到MinIO: objectName={}, size={}", objectName, size);
+
+            // 确保bucket存在
+            ensureBucketExists();
+
+            PutObjectArgs.Builder builder = PutObjectArgs.builder()
+                .bucket(minioProperties.getBucketName())
+                .object(objectName)
+                .stream(stream, size, size < 0 ? 10L * 1024 * 1024 : -1)
+                .contentType(contentType);
+            if (userMetadata != null && !userMetadata.isEmpty()) {
+                builder.userMetadata(userMetadata);
+            }
+            ObjectWriteResponse response = minioClient.putObject(builder.build());
+            indexUploaded(objectName, size, response);
+
+            String url = getFileUrl(objectName);
+            log.info("✓ 流式上传成功: {}", url);
+            return url;
+
+        } catch (Exception e) {
+            log.error("流式上传失败: objectName={}", objectName, e);
+            throw new RuntimeException("流式上传失败: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 将本地文件分段并行上传到MinIO
+     *
+     * 文件不超过两个分段时直接流式上传；否则每段作为临时对象（{objectName}.parts/{uploadId}/{n}）
+     * 在 executor 中并行上传，再用 composeObject 在服务端合并，最后删除临时对象。
+     *
+     * @param file 本地文件
+     * @param objectName 对象名称（包含路径）
+     * @param contentType 内容类型
+     * @param partSize 分段大小（不小于 5MB，composeObject 要求除最后一段外每段至少 5MB）
+     * @param executor 分段上传线程池
+     * @return MinIO URL
+     */
+    public String uploadFileParallel(Path file, String objectName, String contentType, long partSize,
+                                     ExecutorService executor) throws Exception {
+        return uploadFileParallel(file, objectName, contentType, partSize, executor, null);
+    }
+
+    /**
+     * 将本地文件分段并行上传到MinIO，并设置用户元数据
+     *
+     * @param userMetadata 用户元数据（值需为ASCII），可为null
+     * @see #uploadFileParallel(Path, String, String, long, ExecutorService)
+     */
+    public String uploadFileParallel(Path file, String objectName, String contentType, long partSize,
+                                     ExecutorService executor, Map<String, String> userMetadata) throws Exception {
+        if (!isEnabled()) {
+            throw new IllegalStateException("MinIO服务未启用或未配置");
+        }
+
+        long size = Files.size(file);
+        long effectivePartSize = Math.max(partSize, MIN_COMPOSE_PART_SIZE);
+        if (size <= effectivePartSize * 2) {
+            try (InputStream in = Files.newInputStream(file)) {
+                return uploadStream(in, size, objectName, contentType, userMetadata);
+            }
+        }
+
+        ensureBucketExists();
+        String partPrefix = objectName + ".parts/" + UUID.randomUUID() + "/";
+        int partCount = (int) ((size + effectivePartSize - 1) / effectivePartSize);
+        log.info("分段并行上传到MinIO: objectName={}, size={}, parts={}", objectName, size, partCount);
+
+        List<String> partNames = new ArrayList<>();
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (int i = 0; i < partCount; i++) {
+                String partName = partPrefix + i;
+                long offset = i * effectivePartSize;
+                long length = Math.min(effectivePartSize, size - offset);
+                partNames.add(partName);
+                futures.add(executor.submit(() -> {
+                    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                        channel.position(offset);
+                        minioClient.putObject(
+                            PutObjectArgs.builder()
+                                .bucket(minioProperties.getBucketName())
+                                .object(partName)
+                                .stream(Channels.newInputStream(channel), length, -1)
+                                .build()
+                        );
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                }
+            }
+
+            List<ComposeSource> sources = new ArrayList<>();
+            for (String partName : partNames) {
+                sources.add(ComposeSource.builder()
+                    .bucket(minioProperties.getBucketName())
+                    .object(partName)
+                    .build());
+            }
+            ComposeObjectArgs.Builder compose = ComposeObjectArgs.builder()
+                .bucket(minioProperties.getBucketName())
+                .object(objectName)
+                .sources(sources)
+                .headers(Map.of("Content-Type", contentType));
+            if (userMetadata != null && !userMetadata.isEmpty()) {
+                compose.userMetadata(userMetadata);
+            }
+            ObjectWriteResponse response = minioClient.composeObject(compose.build());
+            indexUploaded(objectName, size, response);
+
+            String url = getFileUrl(objectName);
+            log.info("✓ 分段并行上传成功: {}", url);
+            return url;
+
+        } catch (Exception e) {
+            log.error("分段并行上传失败: objectName={}", objectName, e);
+            throw new RuntimeException("分段并行上传失败: " + e.getMessage(), e);
+        } finally {
+            for (Future<?> future : futures) {
+                future.cancel(true);
+            }
+            for (String partName : partNames) {
+                deleteFile(partName);
+            }
+        }
+    }
+
+    /**
+     * 计算内容的 SHA-256（十六进制小写）
+     */
+    public static String sha256Hex(byte[] data) {
+        MessageDigest digest = sha256Digest();
+        digest.update(data);
+        return toHex(digest.digest());
+    }
+
+    /**
+     * 流式计算文件内容的 SHA-256（十六进制小写），不把文件读入内存
+     */
+    public static String sha256Hex(Path file) throws IOException {
+        MessageDigest digest = sha256Digest();
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = Files.newInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    private static MessageDigest sha256Digest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 不可用", e);
+        }
+    }
+
+    private static String toHex(byte[] digest) {
+        StringBuilder sb = new StringBuilder(digest.length * 2);
+        for (byte b : digest) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 内容寻址对象名称：{content}/{sha256前两位}/{sha256}.{扩展名}
+     *
+     * 相同内容始终对应同一对象，对象内容不会变化
+     *
+     * @param sha256 内容 SHA-256
+     * @param originalFilename 原始文件名（仅取扩展名）
+     */
+    public String contentObjectName(String sha256, String originalFilename) {
+        String extension = "";
+        if (originalFilename != null) {
+            int dot = originalFilename.lastIndexOf('.');
+            if (dot >= 0) {
+                String candidate = originalFilename.substring(dot + 1).toLowerCase();
+                if (candidate.matches("[a-z0-9]{1,10}")) {
+                    extension = "." + candidate;
+                }
+            }
+        }
+        return minioProperties.getPath().getContent() + "/" + sha256.substring(0, 2) + "/" + sha256 + extension;
+    }
+
+    /**
+     * 从对象名称或URL（含 ?fileName= 形式的代理URL）中取出内容寻址对象的 SHA-256
+     *
+     * @return SHA-256；不是内容寻址对象时返回 null
+     */
+    public String contentHashOf(String objectNameOrUrl) {
+        if (objectNameOrUrl == null) {
+            return null;
+        }
+        Matcher matcher = Pattern.compile("(?:^|[/=])" + Pattern.quote(minioProperties.getPath().getContent())
+                + "/[0-9a-f]{2}/([0-9a-f]{64})(?:\\.[a-z0-9]{1,10})?$").matcher(objectNameOrUrl);
+        return matcher.find() ? matcher.group(1) : null;
+    }
+
+    /**
+     * 内容寻址对象是否已存在（先查本地缓存，未命中时 statObject）
+     *
+     * 查询失败时返回 false（调用方重新上传，内容相同不影响正确性）
+     */
+    public boolean contentExists(String objectName) {
+        if (!isEnabled()) {
+            return false;
+        }
+        if (contentExistsCache.get(objectName) != null) {
+            return true;
+        }
+        try {
+            statObject(objectName);
+            contentExistsCache.put(objectName, Boolean.TRUE);
+            return true;
+        } catch (ErrorResponseException e) {
+            if (!"NoSuchKey".equals(e.errorResponse().code())) {
+                log.warn("查询内容寻址对象失败: objectName={}, {}", objectName, e.getMessage());
+            }
+            return false;
+        } catch (Exception e) {
+            log.warn("查询内容寻址对象失败: objectName={}, {}", objectName, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 上传内容寻址对象成功后记录其存在
+     */
+    public void markContentExists(String objectName) {
+        contentExistsCache.put(objectName, Boolean.TRUE);
+    }
+
+    /**
+     * 内容寻址对象存在性缓存统计
+     */
+    public Map<String, Object> getContentExistsCacheStats() {
+        return contentExistsCache.getStats();
+    }
+
     /**
      * 获取文件URL（公开访问）
      * 
@@ -186,6 +556,72 @@ public class MinioFileService {
         }
     }
 
+    /**
+     * 以流方式打开MinIO对象（调用方负责关闭）
+     *
+     * 返回的响应同时携带对象头信息（含用户元数据 x-amz-meta-*）
+     *
+     * @param objectName 对象名称
+     * @return 对象数据流
+     */
+    public GetObjectResponse openObject(String objectName) throws Exception {
+        if (!isEnabled()) {
+            throw new IllegalStateException("MinIO服务未启用或未配置");
+        }
+
+        log.debug("从MinIO打开对象流: objectName={}", objectName);
+        return minioClient.getObject(
+            GetObjectArgs.builder()
+                .bucket(minioProperties.getBucketName())
+                .object(objectName)
+                .build()
+        );
+    }
+
+    /**
+     * 以流方式打开MinIO对象的一段（调用方负责关闭）
+     *
+     * @param objectName 对象名称
+     * @param offset 起始偏移
+     * @param length 长度
+     * @param matchETag 期望的 ETag（对象在此期间被替换时 MinIO 返回 412），可为null
+     * @return 对象数据流
+     */
+    public GetObjectResponse openObject(String objectName, long offset, long length, String matchETag) throws Exception {
+        if (!isEnabled()) {
+            throw new IllegalStateException("MinIO服务未启用或未配置");
+        }
+
+        log.debug("从MinIO打开对象流: objectName={}, offset={}, length={}", objectName, offset, length);
+        GetObjectArgs.Builder builder = GetObjectArgs.builder()
+            .bucket(minioProperties.getBucketName())
+            .object(objectName)
+            .offset(offset)
+            .length(length);
+        if (matchETag != null) {
+            builder.matchETag(matchETag);
+        }
+        return minioClient.getObject(builder.build());
+    }
+
+    /**
+     * 获取对象元数据（HEAD 请求，不下载内容）
+     *
+     * @param objectName 对象名称
+     * @return 对象元数据（大小、ETag、最后修改时间、内容类型）
+     */
+    public StatObjectResponse statObject(String objectName) throws Exception {
+        if (!isEnabled()) {
+            throw new IllegalStateException("MinIO服务未启用或未配置");
+        }
+        return minioClient.statObject(
+            StatObjectArgs.builder()
+                .bucket(minioProperties.getBucketName())
+                .object(objectName)
+                .build()
+        );
+    }
+
     /**
      * 删除文件
      * 
@@ -207,6 +643,7 @@ public class MinioFileService {
                     .build()
             );
 
+            listingIndex.remove(objectName);
             log.info("✓ 文件删除成功: objectName={}", objectName);
             return true;
 
@@ -300,6 +737,47 @@ public class MinioFileService {
     /**
      * 确保bucket存在
      */
+    /**
+     * 为指定前缀设置对象过期规则
+     *
+     * 桶的生命周期配置是整体替换的，这里读取已有配置并只替换同ID的规则，保留其他规则
+     *
+     * @param ruleId 规则ID
+     * @param prefix 对象前缀
+     * @param days 过期天数（MinIO 按天计，最少1天）
+     */
+    public void ensureExpirationRule(String ruleId, String prefix, int days) throws Exception {
+        if (!isEnabled()) {
+            throw new IllegalStateException("MinIO服务未启用或未配置");
+        }
+        ensureBucketExists();
+
+        List<LifecycleRule> rules = new ArrayList<>();
+        LifecycleConfiguration existing = minioClient.getBucketLifecycle(
+            GetBucketLifecycleArgs.builder()
+                .bucket(minioProperties.getBucketName())
+                .build()
+        );
+        if (existing != null && existing.rules() != null) {
+            for (LifecycleRule rule : existing.rules()) {
+                if (!ruleId.equals(rule.id())) {
+                    rules.add(rule);
+                }
+            }
+        }
+        rules.add(new LifecycleRule(Status.ENABLED, null,
+                new Expiration((ZonedDateTime) null, Math.max(1, days), null),
+                new RuleFilter(prefix), ruleId, null, null, null));
+
+        minioClient.setBucketLifecycle(
+            SetBucketLifecycleArgs.builder()
+                .bucket(minioProperties.getBucketName())
+                .config(new LifecycleConfiguration(rules))
+                .build()
+        );
+        log.info("✓ 已设置对象过期规则: ruleId={}, prefix={}, days={}", ruleId, prefix, Math.max(1, days));
+    }
+
     private void ensureBucketExists() throws Exception {
         boolean bucketExists = minioClient.bucketExists(
             BucketExistsArgs.builder()
@@ -384,45 +862,140 @@ public class MinioFileService {
     }
 
     /**
-     * 获取文件列表
-     * 
-     * @return 文件列表
+     * 分页获取文件列表（基于本地索引，耗时与桶内对象总数无关）
+     *
+     * @param prefix 对象名前缀（可为空）
+     * @param cursor 上一页返回的游标（首页为 null）
+     * @param limit 每页条数
+     * @param sortByTime true 按修改时间倒序，false 按名称升序
+     * @return 当页条目和下一页游标
+     * @throws IllegalArgumentException 游标无效
      */
-    public List<Map<String, Object>> listFiles() throws Exception {
+    public ObjectListingIndex.Page listFilesPage(String prefix, String cursor, int limit, boolean sortByTime) {
         if (!isEnabled()) {
             throw new IllegalStateException("MinIO服务未启用或未配置");
         }
+        return listingIndex.page(prefix, cursor, limit, sortByTime);
+    }
 
+    /**
+     * 是否为内部对象（不出现在文件列表中）：
+     * 带锚点文档 {anchored}/、共享解析缓存 {parse-cache}/、内容寻址对象 {content}/、
+     * 引用对象 *.ref.json、分段上传临时对象 {objectName}.parts/
+     */
+    boolean isInternalObject(String objectName) {
+        return objectName.startsWith(anchoredPath + "/")
+                || objectName.startsWith(parseCachePrefix + "/")
+                || objectName.startsWith(minioProperties.getPath().getContent() + "/")
+                || objectName.endsWith(".ref.json")
+                || objectName.contains(".parts/");
+    }
+
+    /**
+     * 文件列表索引状态：条目数、是否已完成首次对账、上次对账时间
+     */
+    public Map<String, Object> getListingIndexStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("indexedObjects", listingIndex.size());
+        status.put("indexReady", listingIndex.isReady());
+        status.put("lastReconciledAt", listingIndex.getLastReconciledAt());
+        return status;
+    }
+
+    /**
+     * 用MinIO完整列表对账本地索引
+     */
+    void reconcileListingIndex() {
+        long start = System.currentTimeMillis();
         try {
-            List<Map<String, Object>> files = new ArrayList<>();
-            
             Iterable<Result<Item>> results = minioClient.listObjects(
                 ListObjectsArgs.builder()
                     .bucket(minioProperties.getBucketName())
                     .recursive(true)
                     .build()
             );
+            Iterable<ObjectListingIndex.Entry> listing = () -> new Iterator<ObjectListingIndex.Entry>() {
+                private final Iterator<Result<Item>> it = results.iterator();
+                private ObjectListingIndex.Entry next;
+
+                @Override
+                public boolean hasNext() {
+                    while (next == null && it.hasNext()) {
+                        Item item;
+                        try {
+                            item = it.next().get();
+                        } catch (Exception e) {
+                            throw new IllegalStateException(e.getMessage(), e);
+                        }
+                        if (!item.isDir()) {
+                            next = new ObjectListingIndex.Entry(item.objectName(), item.size(),
+                                    item.lastModified() != null ? item.lastModified().toInstant().toEpochMilli() : 0,
+                                    normalizeETag(item.etag()));
+                        }
+                    }
+                    return next != null;
+                }
 
-            for (Result<Item> result : results) {
-                Item item = result.get();
-                if (!item.isDir()) {
-                    Map<String, Object> fileInfo = new HashMap<>();
-                    fileInfo.put("name", item.objectName());
-                    fileInfo.put("size", item.size());
-                    fileInfo.put("lastModified", item.lastModified());
-                    fileInfo.put("etag", item.etag());
-                    fileInfo.put("url", getFileUrl(item.objectName()));
-                    files.add(fileInfo);
+                @Override
+                public ObjectListingIndex.Entry next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    ObjectListingIndex.Entry entry = next;
+                    next = null;
+                    return entry;
                 }
+            };
+            int count = listingIndex.reconcile(listing);
+            log.info("【文件列表索引】对账完成: {} 个对象, 耗时 {} ms", count, System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            log.warn("【文件列表索引】对账失败，保留现有索引: {}", e.getMessage());
+        }
+    }
+
+    private void indexUploaded(String objectName, long size, ObjectWriteResponse response) {
+        long knownSize = size;
+        long lastModified = System.currentTimeMillis();
+        String etag = response != null ? normalizeETag(response.etag()) : null;
+        if (knownSize < 0) {
+            try {
+                StatObjectResponse stat = statObject(objectName);
+                knownSize = stat.size();
+                lastModified = stat.lastModified().toInstant().toEpochMilli();
+                etag = normalizeETag(stat.etag());
+            } catch (Exception e) {
+                // 下次对账时修正
+                knownSize = 0;
             }
+        }
+        listingIndex.put(new ObjectListingIndex.Entry(objectName, knownSize, lastModified, etag));
+    }
 
-            log.info("获取文件列表成功，共{}个文件", files.size());
-            return files;
+    /**
+     * 获取对象的 ETag（HEAD 请求，不下载内容）
+     *
+     * @param objectName 对象名称
+     * @return ETag（不含引号）
+     */
+    public String getETag(String objectName) throws Exception {
+        return normalizeETag(statObject(objectName).etag());
+    }
 
-        } catch (Exception e) {
-            log.error("获取文件列表失败", e);
-            throw new RuntimeException("获取文件列表失败: " + e.getMessage(), e);
+    /**
+     * 去掉 ETag 两侧的引号（响应头中带引号，statObject 返回的不带）
+     */
+    public static String normalizeETag(String etag) {
+        if (etag == null) {
+            return null;
+        }
+        String value = etag.trim();
+        if (value.startsWith("W/")) {
+            value = value.substring(2);
+        }
+        if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+            value = value.substring(1, value.length() - 1);
         }
+        return value;
     }
 
     /**
@@ -1,13 +1,35 @@
 package com.example.Contract_review.service;
 
+import com.example.Contract_review.model.Clause;
+import com.example.Contract_review.model.ParagraphAnchor;
 import com.example.Contract_review.model.ParseResult;
+import com.example.Contract_review.util.AnchoredDocumentIndex;
+import com.example.Contract_review.util.ByteBufferInputStream;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Parse 结果缓存服务
@@ -24,6 +46,27 @@ import java.util.concurrent.ConcurrentHashMap;
  * - Annotate 阶段使用 parseResultId 检索缓存的文档
  * - 保证 Parse 和 Annotate 使用完全相同的文档
  *
+ * 预索引：
+ * - 存储时同时构建 AnchoredDocumentIndex（解压后的条目、锚点书签偏移表、段落偏移）
+ * - Annotate 阶段直接按偏移拼接批注，无需再次解压和全量解析 document.xml
+ * - 索引内存按预算计入，超出单文档或总预算时仅缓存字节
+ *
+ * 持久化：
+ * - 存储时同时按 parseResultId 将带锚点文档保存到 MinIO（AnchoredDocumentStore）
+ * - 内存缓存过期后，Annotate 阶段仍可按 parseResultId 从 MinIO 取回文档
+ *
+ * 容量控制：
+ * - 每个条目按 ParseResult 估算大小 + 预索引 + 堆上的文档字节 计重，总重量不超过 parse-cache.max-bytes
+ * - 超出预算时按最近访问顺序（LRU）淘汰，单个条目超过预算时不进入内存缓存（仍持久化到 MinIO）
+ * - 后台定时清理过期条目，不再依赖检索时才发现过期
+ * - 启用磁盘层（ParseResultSpillStore）时文档由后台线程写入本地文件并内存映射，写入完成前文档暂留堆上；
+ *   堆上只保留 ParseResult 和预索引，映射文档从存储时起就按 parse-cache.disk.max-bytes 单独计量
+ *
+ * 集群共享：
+ * - 启用 parse-cache.shared.enabled 时解析结果也写入 MinIO，本地缓存作为近端缓存
+ * - 本地未命中时从 MinIO 取回解析结果和带锚点文档并放入本地缓存，任一实例都能处理任一 parseResultId
+ * - getStats 报告命中、未命中、淘汰、过期清理次数和占用字节数
+ *
  * @author Claude Code
  * @version 2.3.0
  */
@@ -42,9 +85,14 @@ public class ParseResultCache {
         public final ParseResult parseResult;
 
         /**
-         * 带锚点的文档字节数据
+         * 带锚点的文档字节数据（写入磁盘层后为 null）
+         */
+        private volatile byte[] heapDocument;
+
+        /**
+         * 磁盘层中带锚点文档的只读映射（留在堆上或尚未写入时为 null）
          */
-        public final byte[] documentWithAnchorsBytes;
+        private volatile ByteBuffer mappedDocument;
 
         /**
          * 缓存创建时间戳
@@ -56,11 +104,129 @@ public class ParseResultCache {
          */
         public final String sourceFilename;
 
+        /**
+         * 带锚点文档的预索引（未启用或超出内存预算时为 null，此时仅使用字节数据）
+         */
+        public final AnchoredDocumentIndex documentIndex;
+
+        /**
+         * 条目堆内存计重（字节）：ParseResult 估算大小 + 预索引 + 堆上的文档字节，在存储时计算一次
+         */
+        private volatile long weight;
+
+        /**
+         * 条目按磁盘层计量的字节数（计划或已经写入磁盘层时为文档大小），由缓存锁保护
+         */
+        private volatile long diskBytes;
+
+        /**
+         * 条目是否仍在缓存中，由缓存锁保护；后台写入磁盘层完成时据此判断是否还需要映射
+         */
+        private boolean resident;
+
+        /**
+         * parseResultId（由缓存存储时设置，直接构造的条目为 null）
+         */
+        private String cacheId;
+
         public CachedParseResult(ParseResult parseResult, byte[] documentBytes, String sourceFilename) {
+            this(parseResult, documentBytes, sourceFilename, null);
+        }
+
+        public CachedParseResult(ParseResult parseResult, byte[] documentBytes, String sourceFilename,
+                                 AnchoredDocumentIndex documentIndex) {
+            this(parseResult, documentBytes, null, sourceFilename, documentIndex, System.currentTimeMillis());
+        }
+
+        private CachedParseResult(ParseResult parseResult, byte[] heapDocument, ByteBuffer mappedDocument,
+                                  String sourceFilename, AnchoredDocumentIndex documentIndex, long timestamp) {
             this.parseResult = parseResult;
-            this.documentWithAnchorsBytes = documentBytes;
+            this.heapDocument = heapDocument;
+            this.mappedDocument = mappedDocument;
             this.sourceFilename = sourceFilename;
-            this.timestamp = System.currentTimeMillis();
+            this.documentIndex = documentIndex;
+            this.timestamp = timestamp;
+        }
+
+        public String getCacheId() {
+            return cacheId;
+        }
+
+        /**
+         * 带锚点的文档字节数据
+         *
+         * 文档在磁盘层时从映射复制出一份（调用方用完即可回收），只需顺序读取时优先使用
+         * {@link #openDocumentStream()} 或 {@link #getDocumentBuffer()}
+         */
+        public byte[] getDocumentBytes() {
+            byte[] heap = heapDocument;
+            if (heap != null) {
+                return heap;
+            }
+            ByteBuffer view = getDocumentBuffer();
+            byte[] bytes = new byte[view.remaining()];
+            view.get(bytes);
+            return bytes;
+        }
+
+        /**
+         * 带锚点文档的只读视图（每次调用返回独立的读取位置），在磁盘层时直接是映射，不复制
+         */
+        public ByteBuffer getDocumentBuffer() {
+            // 写入磁盘层时先设置映射再清除堆上字节，先读映射可保证两者至少有一个
+            ByteBuffer mapped = mappedDocument;
+            if (mapped != null) {
+                return mapped.duplicate();
+            }
+            byte[] heap = heapDocument;
+            return heap != null ? ByteBuffer.wrap(heap).asReadOnlyBuffer() : mappedDocument.duplicate();
+        }
+
+        /**
+         * 以数据流读取带锚点文档，不复制到堆上
+         */
+        public InputStream openDocumentStream() {
+            return new ByteBufferInputStream(getDocumentBuffer());
+        }
+
+        /**
+         * 带锚点文档大小（字节）
+         */
+        public int getDocumentSize() {
+            ByteBuffer mapped = mappedDocument;
+            if (mapped != null) {
+                return mapped.capacity();
+            }
+            byte[] heap = heapDocument;
+            return heap != null ? heap.length : getDocumentBuffer().remaining();
+        }
+
+        /**
+         * 文档是否在磁盘层（内存映射）
+         */
+        public boolean isSpilled() {
+            return mappedDocument != null;
+        }
+
+        /**
+         * 预索引占用的内存（字节），未索引时为0
+         */
+        public long getIndexBytes() {
+            return documentIndex != null ? documentIndex.getEstimatedBytes() : 0;
+        }
+
+        /**
+         * 条目在缓存中的堆内存计重（字节）
+         */
+        public long getWeight() {
+            return weight;
+        }
+
+        /**
+         * 条目按磁盘层计量的字节数（包括正在后台写入的文档），文档留在堆上时为0
+         */
+        public long getDiskBytes() {
+            return diskBytes;
         }
 
         /**
@@ -83,20 +249,133 @@ public class ParseResultCache {
     }
 
     /**
-     * 缓存存储：parseResultId → CachedParseResult
+     * 缓存存储：parseResultId → CachedParseResult，按访问顺序排列（最久未访问的在前），由 this 保护
      */
-    private static final Map<String, CachedParseResult> cache = new ConcurrentHashMap<>();
+    private final LinkedHashMap<String, CachedParseResult> cache = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * 缓存条目堆内存总计重（字节），由 this 保护
+     */
+    private long totalWeight;
+
+    /**
+     * 磁盘层中映射文档的总字节数，由 this 保护
+     */
+    private long totalDiskBytes;
+
+    /**
+     * 当前所有预索引占用的内存（字节）
+     */
+    private final AtomicLong indexedBytes = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong evictedBytes = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong sharedLoads = new AtomicLong();
+
+    /**
+     * 正在从共享存储加载的 parseResultId，避免同一条目被并发重复加载
+     */
+    private final ConcurrentHashMap<String, Object> sharedLoading = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService sweeper;
+
+    /**
+     * 磁盘层后台写入线程（未初始化时在调用线程写入）
+     */
+    private ExecutorService spillExecutor;
 
     /**
      * 缓存生存时间（分钟）
-     * 设置为 240 分钟（4小时），足够用户完成 Parse → ChatGPT 审查 → Annotate 的整个流程
-     *
-     * 修复说明：
-     * - 原设置：30 分钟太短，用户审查时间通常 30-60 分钟，导致缓存过期
-     * - 新设置：240 分钟（4小时），覆盖典型工作流周期
-     * - 内存影响：4小时 * 10个缓存 * 50KB ≈ 2MB，可接受
+     * 默认 240 分钟（4小时），足够用户完成 Parse → ChatGPT 审查 → Annotate 的整个流程
+     */
+    @Value("${parse-cache.ttl-minutes:240}")
+    private long ttlMinutes;
+
+    /**
+     * 缓存总计重上限（字节），超出时按 LRU 淘汰
+     */
+    @Value("${parse-cache.max-bytes:536870912}")
+    private long maxBytes;
+
+    /**
+     * 磁盘层（内存映射文档）总大小上限（字节），超出时按 LRU 淘汰
+     */
+    @Value("${parse-cache.disk.max-bytes:4294967296}")
+    private long diskMaxBytes;
+
+    /**
+     * 过期条目清理间隔（秒），不大于 0 时不启动后台清理
+     */
+    @Value("${parse-cache.sweep-interval-seconds:60}")
+    private long sweepIntervalSeconds;
+
+    /**
+     * 是否在存储时构建预索引
      */
-    private static final long DEFAULT_TTL_MINUTES = 240;
+    @Value("${parse-cache.index.enabled:true}")
+    private boolean indexEnabled;
+
+    /**
+     * 单个文档预索引的内存上限（字节），超出时仅缓存字节
+     */
+    @Value("${parse-cache.index.max-document-bytes:33554432}")
+    private long indexMaxDocumentBytes;
+
+    /**
+     * 所有预索引的内存总预算（字节），超出时新文档仅缓存字节
+     */
+    @Value("${parse-cache.index.max-total-bytes:268435456}")
+    private long indexMaxTotalBytes;
+
+    @Autowired
+    private AnchoredDocumentStore anchoredDocumentStore;
+
+    @Autowired
+    private ParseResultSpillStore spillStore;
+
+    @PostConstruct
+    public void init() {
+        if (spillStore != null && spillStore.isEnabled()) {
+            spillExecutor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "parse-cache-spill");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        if (sweepIntervalSeconds <= 0) {
+            logger.info("【缓存】未启用过期清理任务，容量上限: {} 字节, TTL: {} 分钟", maxBytes, ttlMinutes);
+            return;
+        }
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "parse-cache-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.setRemoveOnCancelPolicy(true);
+        executor.scheduleWithFixedDelay(() -> {
+            try {
+                cleanupExpired();
+            } catch (RuntimeException e) {
+                logger.warn("【缓存】清理过期项失败: {}", e.getMessage());
+            }
+        }, sweepIntervalSeconds, sweepIntervalSeconds, TimeUnit.SECONDS);
+        sweeper = executor;
+        logger.info("【缓存】容量上限: {} 字节, TTL: {} 分钟, 每 {} 秒清理过期项", maxBytes, ttlMinutes, sweepIntervalSeconds);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+        }
+        if (spillExecutor != null) {
+            spillExecutor.shutdownNow();
+        }
+    }
 
     /**
      * 存储 Parse 结果到缓存
@@ -107,15 +386,307 @@ public class ParseResultCache {
      * @return parseResultId - 用于后续检索的唯一 ID
      */
     public String store(ParseResult parseResult, byte[] documentBytes, String sourceFilename) {
+        return storeAndGet(parseResult, documentBytes, sourceFilename).getCacheId();
+    }
+
+    /**
+     * 存储 Parse 结果并直接返回构建的条目（含预索引），调用方无需再按 ID 检索
+     *
+     * @return 缓存条目，{@link CachedParseResult#getCacheId()} 为 parseResultId
+     */
+    public CachedParseResult storeAndGet(ParseResult parseResult, byte[] documentBytes, String sourceFilename) {
         String cacheId = UUID.randomUUID().toString();
 
-        CachedParseResult cached = new CachedParseResult(parseResult, documentBytes, sourceFilename);
-        cache.put(cacheId, cached);
+        CachedParseResult cached = admit(cacheId, parseResult, documentBytes, sourceFilename, System.currentTimeMillis());
+
+        anchoredDocumentStore.persist(cacheId, documentBytes, sourceFilename);
+        anchoredDocumentStore.persistParseResult(cacheId, parseResult, sourceFilename, cached.timestamp);
+
+        return cached;
+    }
+
+    /**
+     * 将条目放入本地缓存，超出容量时按 LRU 淘汰其他条目
+     *
+     * @return 构建的条目（超过整个预算时不进入缓存，但仍返回给调用方使用）
+     */
+    private CachedParseResult admit(String cacheId, ParseResult parseResult, byte[] documentBytes,
+                                    String sourceFilename, long timestamp) {
+        long metadataWeight = estimateParseResultBytes(parseResult);
+        boolean fitsDisk = spillStore != null && spillStore.accepts(documentBytes.length) && documentBytes.length <= diskMaxBytes;
+        long heapDocumentWeight = fitsDisk ? 0 : documentBytes.length;
+        AnchoredDocumentIndex documentIndex = metadataWeight + heapDocumentWeight < maxBytes
+                ? buildIndexWithinBudget(documentBytes) : null;
+        long heapWeight = metadataWeight + (documentIndex != null ? documentIndex.getEstimatedBytes() : 0);
+
+        // 写入磁盘层在后台线程进行，条目从存储时起就按磁盘层计量，写入失败时再转回堆内存计量
+        boolean spill = fitsDisk && heapWeight <= maxBytes;
+        CachedParseResult cached = new CachedParseResult(parseResult, documentBytes, null, sourceFilename,
+                documentIndex, timestamp);
+        cached.weight = heapWeight + (spill ? 0 : documentBytes.length);
+        cached.diskBytes = spill ? documentBytes.length : 0;
+        cached.cacheId = cacheId;
+
+        if (cached.weight > maxBytes) {
+            rejected.incrementAndGet();
+            released(cacheId, cached);
+            logger.warn("【缓存】Parse 结果大小 {} 字节超过缓存上限 {} 字节，不进入内存缓存: parseResultId={}, 文件名={}",
+                       cached.weight, maxBytes, cacheId, sourceFilename);
+        } else {
+            Map<String, CachedParseResult> evicted;
+            synchronized (this) {
+                cache.put(cacheId, cached);
+                cached.resident = true;
+                totalWeight += cached.weight;
+                totalDiskBytes += cached.diskBytes;
+                evicted = evictOverBudget(cached);
+            }
+            releaseEvicted(evicted);
+
+            logger.info("【缓存】Parse 结果已存储: parseResultId={}, 条款数={}, 文档大小={} 字节, 预索引={} 字节, 堆内存计重={} 字节, 磁盘层={}, 文件名={}",
+                       cacheId, parseResult.getClauses().size(), documentBytes.length, cached.getIndexBytes(),
+                       cached.weight, spill, sourceFilename);
+            if (spill) {
+                scheduleSpill(cached);
+            }
+        }
+        return cached;
+    }
+
+    /**
+     * 将文档写入磁盘层（后台线程），完成后把条目切换为内存映射并释放堆上的字节
+     */
+    private void scheduleSpill(CachedParseResult cached) {
+        Runnable task = () -> {
+            ByteBuffer mapped = spillStore.spill(cached.cacheId, cached.heapDocument);
+            Map<String, CachedParseResult> evicted = Collections.emptyMap();
+            synchronized (this) {
+                if (!cached.resident) {
+                    // 写入期间条目已被淘汰或移除，映射不再需要
+                    if (mapped != null) {
+                        spillStore.delete(cached.cacheId);
+                    }
+                    return;
+                }
+                if (mapped != null) {
+                    cached.mappedDocument = mapped;
+                    cached.heapDocument = null;
+                } else {
+                    // 写入失败，文档留在堆上，改为按堆内存计量
+                    long size = cached.diskBytes;
+                    cached.diskBytes = 0;
+                    cached.weight += size;
+                    totalDiskBytes -= size;
+                    totalWeight += size;
+                    evicted = evictOverBudget(cached);
+                }
+            }
+            releaseEvicted(evicted);
+        };
+        if (spillExecutor == null) {
+            task.run();
+            return;
+        }
+        try {
+            spillExecutor.execute(task);
+        } catch (RejectedExecutionException e) {
+            task.run();
+        }
+    }
+
+    /**
+     * 超出堆内存或磁盘层预算时按 LRU 移出条目（调用方持有缓存锁）
+     *
+     * @param keep 本次存入或变更的条目，不会被移出
+     * @return 被移出的条目，由调用方在锁外释放
+     */
+    private Map<String, CachedParseResult> evictOverBudget(CachedParseResult keep) {
+        Map<String, CachedParseResult> evicted = new LinkedHashMap<>();
+        Iterator<Map.Entry<String, CachedParseResult>> it = cache.entrySet().iterator();
+        while ((totalWeight > maxBytes || totalDiskBytes > diskMaxBytes) && it.hasNext()) {
+            Map.Entry<String, CachedParseResult> eldest = it.next();
+            if (eldest.getValue() == keep) {
+                continue;
+            }
+            it.remove();
+            eldest.getValue().resident = false;
+            totalWeight -= eldest.getValue().weight;
+            totalDiskBytes -= eldest.getValue().diskBytes;
+            evicted.put(eldest.getKey(), eldest.getValue());
+        }
+        return evicted;
+    }
+
+    private void releaseEvicted(Map<String, CachedParseResult> evicted) {
+        for (Map.Entry<String, CachedParseResult> entry : evicted.entrySet()) {
+            CachedParseResult value = entry.getValue();
+            released(entry.getKey(), value);
+            evictions.incrementAndGet();
+            evictedBytes.addAndGet(value.weight + value.diskBytes);
+            logger.info("【缓存】容量不足，淘汰最久未访问的 Parse 结果: 文件名={}, 堆内存={} 字节, 磁盘层={} 字节, 年龄={} 秒",
+                       value.sourceFilename, value.weight, value.diskBytes, value.getAgeSeconds());
+        }
+    }
+
+    /**
+     * 从共享存储加载本地缓存中没有的条目
+     *
+     * @return 条目；未启用共享、共享存储中不存在或已过期时返回 null
+     */
+    private CachedParseResult loadShared(String cacheId) {
+        if (anchoredDocumentStore == null || !anchoredDocumentStore.isSharedEnabled()) {
+            return null;
+        }
+        Object lock = sharedLoading.computeIfAbsent(cacheId, key -> new Object());
+        try {
+            synchronized (lock) {
+                CachedParseResult loaded;
+                synchronized (this) {
+                    loaded = cache.get(cacheId);
+                }
+                if (loaded != null) {
+                    return loaded;
+                }
+
+                AnchoredDocumentStore.SharedParseResult shared = anchoredDocumentStore.loadParseResult(cacheId);
+                if (shared == null || shared.getParseResult() == null) {
+                    return null;
+                }
+                if (System.currentTimeMillis() - shared.getCreatedAt() > ttlMinutes * 60 * 1000L) {
+                    logger.info("【缓存】共享存储中的 Parse 结果已过期: parseResultId={}", cacheId);
+                    return null;
+                }
+                byte[] documentBytes;
+                try (InputStream in = anchoredDocumentStore.open(cacheId).getStream()) {
+                    documentBytes = in.readAllBytes();
+                } catch (Exception e) {
+                    logger.warn("【缓存】共享存储中的带锚点文档读取失败: parseResultId={}, 错误={}", cacheId, e.getMessage());
+                    return null;
+                }
+
+                loaded = admit(cacheId, shared.getParseResult(), documentBytes, shared.getSourceFilename(),
+                        shared.getCreatedAt());
+                sharedLoads.incrementAndGet();
+                logger.info("【缓存】已从共享存储加载 Parse 结果: parseResultId={}, 文档大小={} 字节", cacheId, documentBytes.length);
+                return loaded;
+            }
+        } finally {
+            sharedLoading.remove(cacheId);
+        }
+    }
+
+    /**
+     * 在内存预算内构建预索引
+     *
+     * @return 预索引；未启用、无法索引或超出预算时返回 null（回退为仅缓存字节）
+     */
+    private AnchoredDocumentIndex buildIndexWithinBudget(byte[] documentBytes) {
+        if (!indexEnabled || documentBytes == null) {
+            return null;
+        }
+        if (indexedBytes.get() + documentBytes.length > indexMaxTotalBytes) {
+            logger.info("【缓存】预索引总预算已满（{}/{} 字节），仅缓存文档字节", indexedBytes.get(), indexMaxTotalBytes);
+            return null;
+        }
 
-        logger.info("【缓存】Parse 结果已存储: parseResultId={}, 条款数={}, 文档大小={} 字节, 文件名={}",
-                   cacheId, parseResult.getClauses().size(), documentBytes.length, sourceFilename);
+        AnchoredDocumentIndex documentIndex;
+        try {
+            documentIndex = AnchoredDocumentIndex.build(documentBytes);
+        } catch (Exception e) {
+            logger.warn("【缓存】构建预索引失败，仅缓存文档字节: {}", e.getMessage());
+            return null;
+        }
+        if (documentIndex == null) {
+            return null;
+        }
 
-        return cacheId;
+        long size = documentIndex.getEstimatedBytes();
+        if (size > indexMaxDocumentBytes) {
+            logger.info("【缓存】预索引大小 {} 字节超过单文档上限 {} 字节，仅缓存文档字节", size, indexMaxDocumentBytes);
+            return null;
+        }
+        long total = indexedBytes.addAndGet(size);
+        if (total > indexMaxTotalBytes) {
+            indexedBytes.addAndGet(-size);
+            logger.info("【缓存】预索引总预算不足（需要 {} 字节），仅缓存文档字节", size);
+            return null;
+        }
+        return documentIndex;
+    }
+
+    /**
+     * 估算 ParseResult 占用的内存（字节）：字符串按 UTF-16 计，另加对象头和集合开销
+     */
+    static long estimateParseResultBytes(ParseResult parseResult) {
+        if (parseResult == null) {
+            return 0;
+        }
+        long size = 64 + stringBytes(parseResult.getFilename()) + stringBytes(parseResult.getTitle())
+                + stringBytes(parseResult.getPartyA()) + stringBytes(parseResult.getPartyB())
+                + stringBytes(parseResult.getPartyARoleName()) + stringBytes(parseResult.getPartyBRoleName())
+                + stringBytes(parseResult.getFullContractText());
+        if (parseResult.getMeta() != null) {
+            size += 64L * parseResult.getMeta().size();
+        }
+        if (parseResult.getClauses() == null) {
+            return size;
+        }
+        for (Clause clause : parseResult.getClauses()) {
+            size += 64 + stringBytes(clause.getId()) + stringBytes(clause.getHeading())
+                    + stringBytes(clause.getText()) + stringBytes(clause.getAnchorId());
+            if (clause.getTables() != null) {
+                for (Map<String, List<String>> table : clause.getTables()) {
+                    for (Map.Entry<String, List<String>> column : table.entrySet()) {
+                        size += 48 + stringBytes(column.getKey());
+                        if (column.getValue() != null) {
+                            for (String cell : column.getValue()) {
+                                size += stringBytes(cell);
+                            }
+                        }
+                    }
+                }
+            }
+            if (clause.getParagraphAnchors() != null) {
+                for (ParagraphAnchor anchor : clause.getParagraphAnchors()) {
+                    size += 48 + stringBytes(anchor.getAnchorId()) + stringBytes(anchor.getParagraphText());
+                }
+            }
+        }
+        return size;
+    }
+
+    private static long stringBytes(String value) {
+        return value == null ? 0 : 40 + 2L * value.length();
+    }
+
+    /**
+     * 移除缓存项并释放预索引内存计数
+     */
+    private boolean remove(String cacheId) {
+        CachedParseResult removed;
+        synchronized (this) {
+            removed = cache.remove(cacheId);
+            if (removed == null) {
+                return false;
+            }
+            removed.resident = false;
+            totalWeight -= removed.weight;
+            totalDiskBytes -= removed.getDiskBytes();
+        }
+        released(cacheId, removed);
+        return true;
+    }
+
+    /**
+     * 释放已移出缓存的条目占用的预索引计数和磁盘层文件
+     *
+     * 后台写入尚未完成时由写入任务发现条目已移出后自行删除文件
+     */
+    private void released(String cacheId, CachedParseResult removed) {
+        indexedBytes.addAndGet(-removed.getIndexBytes());
+        if (removed.diskBytes > 0) {
+            spillStore.delete(cacheId);
+        }
     }
 
     /**
@@ -129,20 +700,31 @@ public class ParseResultCache {
             return null;
         }
 
-        CachedParseResult result = cache.get(cacheId);
+        CachedParseResult result;
+        synchronized (this) {
+            // 访问顺序的 LinkedHashMap 在 get 时将条目移到最近访问的位置
+            result = cache.get(cacheId);
+        }
 
         if (result == null) {
-            logger.warn("【缓存】Parse 结果不存在: parseResultId={}", cacheId);
-            return null;
+            result = loadShared(cacheId);
+            if (result == null) {
+                misses.incrementAndGet();
+                logger.warn("【缓存】Parse 结果不存在: parseResultId={}", cacheId);
+                return null;
+            }
         }
 
-        // 检查是否过期（30 分钟）
-        if (result.isExpired(DEFAULT_TTL_MINUTES)) {
+        if (result.isExpired(ttlMinutes)) {
+            misses.incrementAndGet();
             logger.warn("【缓存】Parse 结果已过期（{}分钟）: parseResultId={}, 文件名={}",
-                       DEFAULT_TTL_MINUTES, cacheId, result.sourceFilename);
-            cache.remove(cacheId);
+                       ttlMinutes, cacheId, result.sourceFilename);
+            if (remove(cacheId)) {
+                expirations.incrementAndGet();
+            }
             return null;
         }
+        hits.incrementAndGet();
 
         logger.info("【缓存】Parse 结果已检索: parseResultId={}, 年龄={} 秒, 条款数={}, 文件名={}",
                    cacheId, result.getAgeSeconds(), result.parseResult.getClauses().size(), result.sourceFilename);
@@ -156,7 +738,7 @@ public class ParseResultCache {
      * @param cacheId parseResultId
      */
     public void evict(String cacheId) {
-        if (cache.remove(cacheId) != null) {
+        if (remove(cacheId)) {
             logger.info("【缓存】Parse 结果已移除: parseResultId={}", cacheId);
         }
     }
@@ -167,48 +749,92 @@ public class ParseResultCache {
      * @return 清理的缓存数量
      */
     public int cleanupExpired() {
-        int removed = 0;
-
-        for (String key : cache.keySet()) {
-            CachedParseResult result = cache.get(key);
-            if (result != null && result.isExpired(DEFAULT_TTL_MINUTES)) {
-                if (cache.remove(key) != null) {
-                    removed++;
-                    logger.debug("【缓存】清理过期项: parseResultId={}", key);
+        Map<String, CachedParseResult> expired = new HashMap<>();
+        int remaining;
+        long remainingWeight;
+        synchronized (this) {
+            Iterator<Map.Entry<String, CachedParseResult>> it = cache.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<String, CachedParseResult> entry = it.next();
+                if (entry.getValue().isExpired(ttlMinutes)) {
+                    it.remove();
+                    entry.getValue().resident = false;
+                    totalWeight -= entry.getValue().weight;
+                    totalDiskBytes -= entry.getValue().getDiskBytes();
+                    expired.put(entry.getKey(), entry.getValue());
+                    logger.debug("【缓存】清理过期项: parseResultId={}", entry.getKey());
                 }
             }
+            remaining = cache.size();
+            remainingWeight = totalWeight;
+        }
+        for (Map.Entry<String, CachedParseResult> entry : expired.entrySet()) {
+            released(entry.getKey(), entry.getValue());
         }
+        expirations.addAndGet(expired.size());
 
-        if (removed > 0) {
-            logger.info("【缓存】已清理 {} 个过期项, 当前缓存大小: {}", removed, cache.size());
+        if (!expired.isEmpty()) {
+            logger.info("【缓存】已清理 {} 个过期项, 当前缓存: {} 项 / {} 字节", expired.size(), remaining, remainingWeight);
         }
 
-        return removed;
+        return expired.size();
     }
 
     /**
      * 获取缓存统计信息
      */
     public Map<String, Object> getStats() {
-        Map<String, Object> stats = new java.util.HashMap<>();
-        stats.put("totalCached", cache.size());
-        stats.put("ttlMinutes", DEFAULT_TTL_MINUTES);
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("ttlMinutes", ttlMinutes);
 
         int expiredCount = 0;
         long totalSize = 0;
         int totalClauses = 0;
-
-        for (CachedParseResult result : cache.values()) {
-            if (result.isExpired(DEFAULT_TTL_MINUTES)) {
-                expiredCount++;
+        int indexedCount = 0;
+        int spilledCount = 0;
+
+        synchronized (this) {
+            stats.put("totalCached", cache.size());
+            stats.put("totalBytes", totalWeight);
+            stats.put("diskBytes", totalDiskBytes);
+            // 直接遍历 values() 不改变访问顺序
+            for (CachedParseResult result : cache.values()) {
+                if (result.isExpired(ttlMinutes)) {
+                    expiredCount++;
+                }
+                if (result.documentIndex != null) {
+                    indexedCount++;
+                }
+                if (result.isSpilled()) {
+                    spilledCount++;
+                }
+                totalSize += result.getDocumentSize();
+                totalClauses += result.parseResult.getClauses().size();
             }
-            totalSize += result.documentWithAnchorsBytes.length;
-            totalClauses += result.parseResult.getClauses().size();
         }
 
+        long hitCount = hits.get();
+        long missCount = misses.get();
+        stats.put("maxBytes", maxBytes);
+        stats.put("diskEnabled", spillStore != null && spillStore.isEnabled());
+        stats.put("diskMaxBytes", diskMaxBytes);
+        stats.put("spilledCount", spilledCount);
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRate", hitCount + missCount == 0 ? 0.0 : (double) hitCount / (hitCount + missCount));
+        stats.put("evictions", evictions.get());
+        stats.put("evictedBytes", evictedBytes.get());
+        stats.put("expirations", expirations.get());
+        stats.put("rejectedOversize", rejected.get());
+        stats.put("sharedEnabled", anchoredDocumentStore != null && anchoredDocumentStore.isSharedEnabled());
+        stats.put("sharedLoads", sharedLoads.get());
         stats.put("expiredCount", expiredCount);
         stats.put("totalDocumentSize", totalSize);
         stats.put("totalClauses", totalClauses);
+        stats.put("indexEnabled", indexEnabled);
+        stats.put("indexedCount", indexedCount);
+        stats.put("indexedBytes", indexedBytes.get());
+        stats.put("indexBudgetBytes", indexMaxTotalBytes);
 
         return stats;
     }
@@ -0,0 +1,140 @@
+package com.example.Contract_review.service;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Parse 结果缓存的磁盘层
+ *
+ * 将带锚点文档写入本地目录并以只读内存映射的方式返回，文档内容不再占用堆内存：
+ * - 每个 parseResultId 一个文件：{dir}/{parseResultId}.docx
+ * - 映射页由操作系统页缓存管理，GC 不扫描也不复制
+ * - 启动时清空目录（上次运行留下的文件已没有对应的内存条目）
+ * - 小于 min-document-bytes 的文档仍留在堆上，避免为小文件创建映射
+ */
+@Service
+public class ParseResultSpillStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(ParseResultSpillStore.class);
+
+    private static final String FILE_SUFFIX = ".docx";
+
+    /**
+     * parseResultId 为 UUID，限制格式避免拼接出任意文件路径
+     */
+    private static final Pattern CACHE_ID_PATTERN = Pattern.compile("[0-9a-fA-F-]{8,64}");
+
+    @Value("${parse-cache.disk.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 磁盘层目录，为空时使用 {user.dir}/.parse-cache
+     */
+    @Value("${parse-cache.disk.dir:}")
+    private String dir;
+
+    /**
+     * 文档达到该大小（字节）才写入磁盘层
+     */
+    @Value("${parse-cache.disk.min-document-bytes:65536}")
+    private long minDocumentBytes;
+
+    private Path root;
+
+    @PostConstruct
+    public void init() {
+        root = dir == null || dir.trim().isEmpty()
+                ? Paths.get(System.getProperty("user.dir"), ".parse-cache")
+                : Paths.get(dir.trim());
+        if (!enabled) {
+            logger.info("【缓存磁盘层】未启用，带锚点文档保留在堆内存");
+            return;
+        }
+        try {
+            Files.createDirectories(root);
+            int removed = 0;
+            try (Stream<Path> files = Files.list(root)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    if (file.getFileName().toString().endsWith(FILE_SUFFIX) && Files.deleteIfExists(file)) {
+                        removed++;
+                    }
+                }
+            }
+            logger.info("【缓存磁盘层】目录: {}, 清理上次运行遗留文件: {}, 写入阈值: {} 字节", root, removed, minDocumentBytes);
+        } catch (IOException e) {
+            logger.warn("【缓存磁盘层】无法初始化目录 {}，文档将保留在堆内存: {}", root, e.getMessage());
+            enabled = false;
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 该大小的文档是否写入磁盘层（未启用或小于 min-document-bytes 时留在堆上）
+     */
+    public boolean accepts(long documentSize) {
+        return enabled && documentSize >= minDocumentBytes;
+    }
+
+    /**
+     * 将文档写入磁盘层并映射
+     *
+     * @param cacheId parseResultId
+     * @param documentBytes 文档字节
+     * @return 只读映射；未启用、文档过小或写入失败时返回 null（调用方保留堆上的字节）
+     */
+    public ByteBuffer spill(String cacheId, byte[] documentBytes) {
+        if (documentBytes == null || !accepts(documentBytes.length)
+                || !CACHE_ID_PATTERN.matcher(cacheId).matches()) {
+            return null;
+        }
+        Path file = root.resolve(cacheId + FILE_SUFFIX);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer source = ByteBuffer.wrap(documentBytes);
+            while (source.hasRemaining()) {
+                channel.write(source);
+            }
+            // 关闭通道后映射仍然有效
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, documentBytes.length).asReadOnlyBuffer();
+        } catch (IOException | RuntimeException e) {
+            logger.warn("【缓存磁盘层】写入失败，文档保留在堆内存: parseResultId={}, 原因: {}", cacheId, e.getMessage());
+            delete(cacheId);
+            return null;
+        }
+    }
+
+    /**
+     * 删除磁盘层文件
+     *
+     * 映射在 GC 回收缓冲区前一直有效：Linux 下删除后仍可读取，Windows 下映射期间无法删除，
+     * 此时改为退出时删除（下次启动也会清理）
+     */
+    public void delete(String cacheId) {
+        if (root == null || cacheId == null || !CACHE_ID_PATTERN.matcher(cacheId).matches()) {
+            return;
+        }
+        Path file = root.resolve(cacheId + FILE_SUFFIX);
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.debug("【缓存磁盘层】文件仍被映射，退出时删除: {}", file);
+            file.toFile().deleteOnExit();
+        }
+    }
+}
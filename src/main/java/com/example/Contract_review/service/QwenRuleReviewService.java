@@ -7,7 +7,12 @@ import com.example.Contract_review.model.RuleMatchResult;
 import com.example.Contract_review.model.Clause;
 import com.example.Contract_review.qwen.client.QwenClient;
 import com.example.Contract_review.qwen.dto.ChatMessage;
+import com.example.Contract_review.qwen.dto.ChatRequest;
 import com.example.Contract_review.qwen.dto.ChatResponse;
+import com.example.Contract_review.util.ReviewChunkPlanner;
+import com.example.Contract_review.util.StreamingIssueParser;
+import com.example.Contract_review.util.TokenEstimator;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
@@ -15,17 +20,24 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.beans.factory.annotation.Value;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -49,14 +61,39 @@ public class QwenRuleReviewService {
     @Autowired
     private ReviewRulesService reviewRulesService;
 
+    @Autowired
+    private LlmResponseCache llmResponseCache;
+
+    @Autowired
+    private DiagnosticsSink diagnosticsSink;
+
     @Value("${diagnostics.rules.write-keyword-logs:true}")
     private boolean writeKeywordDiagnostics;
 
     @Value("${rules.default-contract-type:通用合同}")
     private String defaultContractType;
 
+    /**
+     * 分块审查时每块条款部分的 token 预算（<=0 表示不分块，整份合同一次请求）
+     */
+    @Value("${qwen.review.chunk-token-budget:6000}")
+    private int chunkTokenBudget;
+
+    /**
+     * 分块审查时同时发往 Qwen 的最大请求数
+     */
+    @Value("${qwen.review.max-concurrency:4}")
+    private int maxConcurrency;
+
     private static final String QWEN_MODEL = "qwen-max-latest";
 
+    private static final String SYSTEM_PROMPT = "你是一位资深的法律合同审查专家。你的任务是严格按照用户提供的规则和条款检查清单，" +
+            "对合同进行审查，并返回结构化的JSON格式的审查结果。" +
+            "返回的JSON必须包含'issues'数组，其中每个问题包含：" +
+            "anchorId（锚点ID）、clauseId（条款ID）、severity（严重性：HIGH/MEDIUM/LOW）、" +
+            "category（问题类别）、finding（发现的问题）、suggestion（建议修改）。" +
+            "只返回JSON，不要返回任何其他文本。";
+
     /**
      * 使用Qwen进行合同审查
      *
@@ -64,77 +101,418 @@ public class QwenRuleReviewService {
      * @return 审查结果JSON，包含issues数组
      */
     public String reviewContractWithQwen(String prompt) {
+        return reviewContractWithQwen(prompt, null);
+    }
+
+    /**
+     * 使用Qwen进行合同审查，并记录本次的响应缓存使用情况
+     *
+     * @param prompt 规则审查生成的Prompt
+     * @param cacheUsage 响应缓存使用记录（可为 null）
+     * @return 审查结果JSON，包含issues数组
+     */
+    public String reviewContractWithQwen(String prompt, LlmResponseCache.Usage cacheUsage) {
         log.info("=== 开始使用Qwen进行合同审查 ===");
         log.debug("Prompt长度: {} 字符", prompt.length());
 
         try {
-            // 构建系统消息和用户消息
-            ChatMessage systemMsg = ChatMessage.builder()
-                .role("system")
-                .content("你是一位资深的法律合同审查专家。你的任务是严格按照用户提供的规则和条款检查清单，" +
-                        "对合同进行审查，并返回结构化的JSON格式的审查结果。" +
-                        "返回的JSON必须包含'issues'数组，其中每个问题包含：" +
-                        "anchorId（锚点ID）、clauseId（条款ID）、severity（严重性：HIGH/MEDIUM/LOW）、" +
-                        "category（问题类别）、finding（发现的问题）、suggestion（建议修改）。" +
-                        "只返回JSON，不要返回任何其他文本。")
-                .build();
-
-            ChatMessage userMsg = ChatMessage.builder()
-                .role("user")
-                .content(prompt)
-                .build();
-
-            List<ChatMessage> messages = Arrays.asList(systemMsg, userMsg);
-
             log.info("向Qwen发送审查请求，模型: {}", QWEN_MODEL);
 
-            // 调用Qwen API
-            ChatResponse response = qwenClient.chat(messages, QWEN_MODEL).block();
-
-            if (response == null) {
+            String result = requestReview(prompt, cacheUsage).block();
+            if (result == null) {
                 log.error("Qwen返回null响应");
                 return buildErrorResponse("Qwen返回null响应");
             }
+            return result;
+
+        } catch (Exception e) {
+            log.error("Qwen审查失败", e);
+            return buildErrorResponse("Qwen审查失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 分块并发审查命中规则的条款
+     *
+     * 按估算 token 数把命中条款装入若干分块，每块生成独立的 Prompt 并发送给 Qwen，
+     * 同时在途的请求数受 qwen.review.max-concurrency 限制。整体耗时取决于最慢的分块，
+     * 而不是所有分块耗时之和。各分块的问题合并后按 (clauseId, targetText) 去重，并按条款顺序排序。
+     * 部分分块失败时返回其余分块的结果，全部失败才返回错误响应。
+     *
+     * @param parseResult 解析的合同结果
+     * @param stance 审查立场
+     * @param matchResults 规则匹配结果（为 null 时重新匹配）
+     * @return 审查结果JSON，包含issues数组
+     */
+    public String reviewContractInChunks(ParseResult parseResult, String stance, List<RuleMatchResult> matchResults) {
+        if (matchResults == null) {
+            matchResults = performRuleMatching(parseResult, stance);
+        }
+        if (matchResults.isEmpty()) {
+            return reviewContractWithQwen(buildRuleReviewPrompt(parseResult, stance, matchResults, matchResults, 0));
+        }
+
+        long startTime = System.currentTimeMillis();
+        List<RuleMatchResult> allMatches = matchResults;
+        List<ReviewChunkPlanner.ReviewChunk> chunks = planChunks(stance, allMatches);
+        Map<Integer, String> prompts = buildChunkPrompts(parseResult, stance, allMatches, chunks);
+
+        int concurrency = Math.max(1, maxConcurrency);
+        log.info("=== 开始分块并发审查：条款 {} 个，分块 {} 个，并发上限 {}，每块预算 {} tokens ===",
+                allMatches.size(), chunks.size(), concurrency, chunkTokenBudget);
+        recordDiagnostics(parseResult, stance, allMatches, joinChunkPrompts(prompts));
+
+        LlmResponseCache.Usage cacheUsage = new LlmResponseCache.Usage();
+        List<ChunkOutcome> outcomes = Flux.fromIterable(chunks)
+                .flatMap(chunk -> reviewChunk(chunk, prompts.get(chunk.getIndex()), cacheUsage), concurrency)
+                .collectList()
+                .block();
+
+        return mergeChunkOutcomes(outcomes, allMatches, System.currentTimeMillis() - startTime, cacheUsage);
+    }
 
-            String responseContent = response.extractContent();
-            log.info("Qwen返回内容长度: {} 字符", responseContent.length());
-            log.debug("Qwen原始返回: {}", responseContent);
+    /**
+     * 流式分块审查命中规则的条款
+     *
+     * 与 reviewContractInChunks 相同的分块方式，但每块通过 QwenClient.streamChat 流式调用，
+     * 增量解析返回内容，问题对象一闭合即发出（首个问题通常在数秒内到达）。
+     * 各分块交错发出，按 (clauseId, targetText) 全局去重；增量解析失败的分块在流结束后用完整文本兜底。
+     * 部分分块失败时跳过，全部失败才以错误结束。
+     *
+     * @param parseResult 解析的合同结果
+     * @param stance 审查立场
+     * @param matchResults 规则匹配结果（为 null 时重新匹配）
+     * @return 审查问题流
+     */
+    public Flux<ReviewIssue> streamReview(ParseResult parseResult, String stance, List<RuleMatchResult> matchResults) {
+        List<RuleMatchResult> allMatches = matchResults != null ? matchResults : performRuleMatching(parseResult, stance);
+        if (allMatches.isEmpty()) {
+            return Flux.empty();
+        }
 
-            // 提取和验证JSON
-            String jsonResult = extractJsonFromResponse(responseContent);
+        List<ReviewChunkPlanner.ReviewChunk> chunks = planChunks(stance, allMatches);
+        Map<Integer, String> prompts = buildChunkPrompts(parseResult, stance, allMatches, chunks);
+        int concurrency = Math.max(1, maxConcurrency);
+        log.info("=== 开始流式分块审查：条款 {} 个，分块 {} 个，并发上限 {} ===",
+                allMatches.size(), chunks.size(), concurrency);
+        recordDiagnostics(parseResult, stance, allMatches, joinChunkPrompts(prompts));
+
+        Set<String> seen = ConcurrentHashMap.newKeySet();
+        List<String> errors = new CopyOnWriteArrayList<>();
+
+        return Flux.fromIterable(chunks)
+                .flatMap(chunk -> streamChunk(chunk, prompts.get(chunk.getIndex()))
+                        .onErrorResume(e -> {
+                            log.error("【流式审查】分块 {} 调用Qwen失败: {}", chunk.getIndex() + 1, e.getMessage());
+                            errors.add("分块" + (chunk.getIndex() + 1) + ": " + e.getMessage());
+                            return Flux.empty();
+                        }), concurrency)
+                .filter(node -> seen.add(issueKey(node)))
+                .map(this::toReviewIssue)
+                .filter(issue -> issue.getFinding() != null && !issue.getFinding().isEmpty())
+                .concatWith(Flux.defer(() -> errors.size() == chunks.size()
+                        ? Flux.error(new IllegalStateException("Qwen审查失败: " + String.join("; ", errors)))
+                        : Flux.empty()));
+    }
 
-            if (jsonResult == null || jsonResult.isEmpty()) {
-                log.warn("无法从Qwen返回中提取JSON");
-                return buildErrorResponse("无法解析Qwen的返回结果");
+    private Flux<JsonNode> streamChunk(ReviewChunkPlanner.ReviewChunk chunk, String prompt) {
+        return Flux.defer(() -> {
+            // 命中响应缓存时直接发出缓存结果，不再发起流式请求
+            String cached = llmResponseCache.lookup("qwen", QWEN_MODEL, cacheablePrompt(prompt), null);
+            if (cached != null) {
+                log.info("【流式审查】分块 {} 命中响应缓存", chunk.getIndex() + 1);
+                return Flux.fromIterable(extractIssueNodes(cached));
             }
 
-            // 验证JSON格式
-            try {
-                ObjectNode json = (ObjectNode) objectMapper.readTree(jsonResult);
+            long chunkStart = System.currentTimeMillis();
+            StreamingIssueParser parser = new StreamingIssueParser(objectMapper);
+            ChatRequest request = ChatRequest.builder()
+                    .model(QWEN_MODEL)
+                    .messages(buildReviewMessages(prompt))
+                    .build();
+            log.info("【流式审查】发送分块 {}：条款 {} 个，估算 {} tokens",
+                    chunk.getIndex() + 1, chunk.getMatchResults().size(), TokenEstimator.estimate(prompt));
+
+            Flux<JsonNode> incremental = qwenClient.streamChat(request)
+                    .concatMapIterable(delta -> parser.feed(delta.getDelta()));
+
+            // 增量解析未能完整闭合时，用完整文本兜底（已发出的问题由全局去重过滤）
+            Flux<JsonNode> remainder = Flux.defer(() -> {
+                log.info("【流式审查】分块 {} 完成：增量发出 {} 个问题，耗时 {} ms，增量解析{}",
+                        chunk.getIndex() + 1, parser.getIssueCount(), System.currentTimeMillis() - chunkStart,
+                        parser.isFinished() ? "完整" : "未完整，使用完整文本兜底");
+                llmResponseCache.store("qwen", QWEN_MODEL, cacheablePrompt(prompt),
+                        normalizeReviewResponse(ChatResponse.builder().content(parser.getText()).build()),
+                        System.currentTimeMillis() - chunkStart, null);
+                if (parser.isFinished()) {
+                    return Flux.empty();
+                }
+                return Flux.fromIterable(extractIssueNodes(parser.getText()));
+            });
 
-                // 确保包含issues数组
-                if (!json.has("issues")) {
-                    json.putArray("issues");
-                    log.warn("Qwen返回的JSON不包含issues数组，已添加空数组");
+            return incremental.concatWith(remainder);
+        });
+    }
+
+    /**
+     * 从完整返回文本中提取问题对象（流式解析兜底）
+     */
+    private List<JsonNode> extractIssueNodes(String content) {
+        List<JsonNode> nodes = new ArrayList<>();
+        String jsonResult = extractJsonFromResponse(content);
+        if (jsonResult == null || jsonResult.isEmpty()) {
+            return nodes;
+        }
+        try {
+            JsonNode json = objectMapper.readTree(jsonResult);
+            JsonNode issues = json.isArray() ? json : json.path("issues");
+            issues.forEach(nodes::add);
+        } catch (Exception e) {
+            log.warn("【流式审查】兜底解析完整文本失败: {}", e.getMessage());
+        }
+        return nodes;
+    }
+
+    private List<ReviewChunkPlanner.ReviewChunk> planChunks(String stance, List<RuleMatchResult> matchResults) {
+        return ReviewChunkPlanner.plan(
+                matchResults, match -> TokenEstimator.estimate(buildClauseSection(match, 0, stance)), chunkTokenBudget);
+    }
+
+    /**
+     * 生成全部分块的 Prompt（分块内条款编号沿用整体顺序）
+     */
+    private Map<Integer, String> buildChunkPrompts(ParseResult parseResult, String stance,
+                                                   List<RuleMatchResult> allMatches,
+                                                   List<ReviewChunkPlanner.ReviewChunk> chunks) {
+        Map<Integer, String> prompts = new LinkedHashMap<>();
+        int offset = 0;
+        for (ReviewChunkPlanner.ReviewChunk chunk : chunks) {
+            prompts.put(chunk.getIndex(),
+                    buildRuleReviewPrompt(parseResult, stance, allMatches, chunk.getMatchResults(), offset));
+            offset += chunk.getMatchResults().size();
+        }
+        return prompts;
+    }
+
+    /**
+     * 问题去重键：(clauseId, targetText)
+     *
+     * targetText 为空的问题无法按原文去重，改用 finding 区分，避免同一条款下不同问题被误合并
+     */
+    private static String issueKey(JsonNode issue) {
+        String clauseId = issue.path("clauseId").asText("").trim();
+        String targetText = issue.path("targetText").asText("").trim();
+        return clauseId + "\n" + (targetText.isEmpty()
+                ? "finding:" + issue.path("finding").asText("").trim() : targetText);
+    }
+
+    /**
+     * 单个分块的审查结果
+     */
+    private static class ChunkOutcome {
+        private final int index;
+        private final JsonNode issues;
+        private final String error;
+        private final long elapsedMs;
+
+        ChunkOutcome(int index, JsonNode issues, String error, long elapsedMs) {
+            this.index = index;
+            this.issues = issues;
+            this.error = error;
+            this.elapsedMs = elapsedMs;
+        }
+    }
+
+    private Mono<ChunkOutcome> reviewChunk(ReviewChunkPlanner.ReviewChunk chunk, String prompt,
+                                           LlmResponseCache.Usage cacheUsage) {
+        return Mono.defer(() -> {
+            long chunkStart = System.currentTimeMillis();
+            log.info("【分块审查】发送分块 {}：条款 {} 个，估算 {} tokens，Prompt {} 字符",
+                    chunk.getIndex() + 1, chunk.getMatchResults().size(), TokenEstimator.estimate(prompt), prompt.length());
+            return requestReview(prompt, cacheUsage)
+                    .map(json -> {
+                        long elapsed = System.currentTimeMillis() - chunkStart;
+                        try {
+                            JsonNode node = objectMapper.readTree(json);
+                            if (node.has("success") && !node.get("success").asBoolean(true)) {
+                                return new ChunkOutcome(chunk.getIndex(), null, node.path("error").asText(), elapsed);
+                            }
+                            log.info("【分块审查】分块 {} 完成，检出 {} 个问题，耗时 {} ms",
+                                    chunk.getIndex() + 1, node.path("issues").size(), elapsed);
+                            return new ChunkOutcome(chunk.getIndex(), node.path("issues"), null, elapsed);
+                        } catch (Exception e) {
+                            return new ChunkOutcome(chunk.getIndex(), null, e.getMessage(), elapsed);
+                        }
+                    })
+                    .onErrorResume(e -> {
+                        log.error("【分块审查】分块 {} 调用Qwen失败: {}", chunk.getIndex() + 1, e.getMessage());
+                        return Mono.just(new ChunkOutcome(chunk.getIndex(), null,
+                                e.getMessage(), System.currentTimeMillis() - chunkStart));
+                    });
+        });
+    }
+
+    /**
+     * 合并各分块结果：按 (clauseId, targetText) 去重，按条款顺序排序
+     */
+    private String mergeChunkOutcomes(List<ChunkOutcome> outcomes, List<RuleMatchResult> matchResults, long wallClockMs,
+                                      LlmResponseCache.Usage cacheUsage) {
+        Map<String, Integer> clauseOrder = new HashMap<>();
+        for (int i = 0; i < matchResults.size(); i++) {
+            RuleMatchResult match = matchResults.get(i);
+            clauseOrder.putIfAbsent(match.getClauseId(), i);
+            if (match.getAnchorId() != null) {
+                clauseOrder.putIfAbsent(match.getAnchorId(), i);
+            }
+        }
+
+        outcomes.sort(Comparator.comparingInt(outcome -> outcome.index));
+
+        Map<String, JsonNode> unique = new LinkedHashMap<>();
+        List<String> errors = new ArrayList<>();
+        long slowestMs = 0;
+        long totalMs = 0;
+        int duplicates = 0;
+        for (ChunkOutcome outcome : outcomes) {
+            slowestMs = Math.max(slowestMs, outcome.elapsedMs);
+            totalMs += outcome.elapsedMs;
+            if (outcome.error != null) {
+                errors.add("分块" + (outcome.index + 1) + ": " + outcome.error);
+                continue;
+            }
+            if (outcome.issues == null || !outcome.issues.isArray()) {
+                continue;
+            }
+            for (JsonNode issue : outcome.issues) {
+                if (unique.putIfAbsent(issueKey(issue), issue) != null) {
+                    duplicates++;
                 }
+            }
+        }
 
-                log.info("✓ 审查完成，检出 {} 个问题",
-                    json.has("issues") ? json.get("issues").size() : 0);
+        if (errors.size() == outcomes.size()) {
+            log.error("【分块审查】全部 {} 个分块均失败", outcomes.size());
+            return buildErrorResponse("Qwen审查失败: " + String.join("; ", errors));
+        }
 
-                return objectMapper.writeValueAsString(json);
+        List<JsonNode> merged = new ArrayList<>(unique.values());
+        merged.sort(Comparator.comparingInt(issue -> clauseOrderOf(issue, clauseOrder)));
+
+        ObjectNode result = objectMapper.createObjectNode();
+        ArrayNode issuesArray = result.putArray("issues");
+        merged.forEach(issuesArray::add);
+        result.put("chunkCount", outcomes.size());
+        result.put("failedChunks", errors.size());
+        result.put("llmCacheStatus", cacheUsage.getStatus());
+        result.put("llmCacheSavedMs", cacheUsage.getSavedMs());
+        if (!errors.isEmpty()) {
+            ArrayNode chunkErrors = result.putArray("chunkErrors");
+            errors.forEach(chunkErrors::add);
+        }
 
-            } catch (Exception e) {
-                log.error("JSON解析失败: {}", e.getMessage());
-                log.debug("尝试解析的JSON内容: {}", jsonResult);
+        log.info("✓ 分块审查完成：分块 {} 个（失败 {} 个），问题 {} 个（去重 {} 个），" +
+                        "总耗时 {} ms，最慢分块 {} ms，分块耗时合计 {} ms",
+                outcomes.size(), errors.size(), merged.size(), duplicates, wallClockMs, slowestMs, totalMs);
 
-                // 尝试修复常见的JSON格式错误
-                String fixedJson = fixJsonFormat(jsonResult);
-                return fixedJson;
+        try {
+            return objectMapper.writeValueAsString(result);
+        } catch (Exception e) {
+            log.error("序列化合并结果失败", e);
+            return buildErrorResponse("合并审查结果失败");
+        }
+    }
+
+    private static int clauseOrderOf(JsonNode issue, Map<String, Integer> clauseOrder) {
+        Integer order = clauseOrder.get(issue.path("clauseId").asText(""));
+        if (order == null) {
+            order = clauseOrder.get(issue.path("anchorId").asText(""));
+        }
+        return order != null ? order : Integer.MAX_VALUE;
+    }
+
+    private static String joinChunkPrompts(Map<Integer, String> prompts) {
+        if (prompts.size() == 1) {
+            return prompts.values().iterator().next();
+        }
+        StringBuilder joined = new StringBuilder();
+        prompts.forEach((index, prompt) ->
+                joined.append("=== 分块 ").append(index + 1).append(" ===\n").append(prompt).append("\n\n"));
+        return joined.toString();
+    }
+
+    /**
+     * 发送审查请求并规范化返回的JSON
+     *
+     * 相同 Prompt 在规则未变更时直接返回响应缓存中的结果
+     *
+     * @param prompt 审查Prompt
+     * @param cacheUsage 响应缓存使用记录（可为 null）
+     * @return 审查结果JSON（无法解析时为错误响应）
+     */
+    private Mono<String> requestReview(String prompt, LlmResponseCache.Usage cacheUsage) {
+        return llmResponseCache.getOrComputeAsync("qwen", QWEN_MODEL, cacheablePrompt(prompt),
+                () -> qwenClient.chat(buildReviewMessages(prompt), QWEN_MODEL).map(this::normalizeReviewResponse),
+                cacheUsage);
+    }
+
+    /**
+     * 参与缓存键计算的完整 Prompt（系统提示 + 用户 Prompt）
+     */
+    private static String cacheablePrompt(String prompt) {
+        return SYSTEM_PROMPT + "\n" + prompt;
+    }
+
+    private List<ChatMessage> buildReviewMessages(String prompt) {
+        ChatMessage systemMsg = ChatMessage.builder()
+            .role("system")
+            .content(SYSTEM_PROMPT)
+            .build();
+
+        ChatMessage userMsg = ChatMessage.builder()
+            .role("user")
+            .content(prompt)
+            .build();
+
+        return Arrays.asList(systemMsg, userMsg);
+    }
+
+    /**
+     * 从Qwen返回内容中提取并校验审查JSON
+     */
+    private String normalizeReviewResponse(ChatResponse response) {
+        String responseContent = response.extractContent();
+        log.info("Qwen返回内容长度: {} 字符", responseContent.length());
+        log.debug("Qwen原始返回: {}", responseContent);
+
+        // 提取和验证JSON
+        String jsonResult = extractJsonFromResponse(responseContent);
+
+        if (jsonResult == null || jsonResult.isEmpty()) {
+            log.warn("无法从Qwen返回中提取JSON");
+            return buildErrorResponse("无法解析Qwen的返回结果");
+        }
+
+        // 验证JSON格式
+        try {
+            ObjectNode json = (ObjectNode) objectMapper.readTree(jsonResult);
+
+            // 确保包含issues数组
+            if (!json.has("issues")) {
+                json.putArray("issues");
+                log.warn("Qwen返回的JSON不包含issues数组，已添加空数组");
             }
 
+            log.info("✓ 审查完成，检出 {} 个问题",
+                json.has("issues") ? json.get("issues").size() : 0);
+
+            return objectMapper.writeValueAsString(json);
+
         } catch (Exception e) {
-            log.error("Qwen审查失败", e);
-            return buildErrorResponse("Qwen审查失败: " + e.getMessage());
+            log.error("JSON解析失败: {}", e.getMessage());
+            log.debug("尝试解析的JSON内容: {}", jsonResult);
+
+            // 尝试修复常见的JSON格式错误
+            return fixJsonFormat(jsonResult);
         }
     }
 
@@ -248,29 +626,7 @@ public class QwenRuleReviewService {
                 ArrayNode issuesArray = (ArrayNode) reviewJson.get("issues");
 
                 for (int i = 0; i < issuesArray.size(); i++) {
-                    ObjectNode issueNode = (ObjectNode) issuesArray.get(i);
-
-                    ReviewIssue issue = new ReviewIssue();
-                    issue.setAnchorId(getStringValue(issueNode, "anchorId"));
-                    issue.setClauseId(getStringValue(issueNode, "clauseId"));
-                    issue.setSeverity(getStringValue(issueNode, "severity", "MEDIUM"));
-                    issue.setCategory(getStringValue(issueNode, "category", "General"));
-                    issue.setFinding(getStringValue(issueNode, "finding"));
-                    issue.setSuggestion(getStringValue(issueNode, "suggestion"));
-
-                    // 【恢复精确匹配功能】提取targetText字段用于精确文本匹配
-                    String targetText = getStringValue(issueNode, "targetText");
-                    if (targetText != null && !targetText.isEmpty()) {
-                        issue.setTargetText(targetText);
-                        log.debug("提取targetText用于精确定位：{}",
-                                 targetText.length() > 50 ? targetText.substring(0, 50) + "..." : targetText);
-                    }
-
-                    // 【恢复精确匹配功能】提取matchPattern字段（可选）
-                    String matchPattern = getStringValue(issueNode, "matchPattern");
-                    if (matchPattern != null && !matchPattern.isEmpty()) {
-                        issue.setMatchPattern(matchPattern);
-                    }
+                    ReviewIssue issue = toReviewIssue(issuesArray.get(i));
 
                     if (issue.getFinding() != null && !issue.getFinding().isEmpty()) {
                         issues.add(issue);
@@ -290,6 +646,40 @@ public class QwenRuleReviewService {
         return issues;
     }
 
+    /**
+     * 将单个问题JSON对象转换为ReviewIssue
+     *
+     * @param node 问题JSON对象
+     * @return ReviewIssue（finding 可能为空，由调用方过滤）
+     */
+    private ReviewIssue toReviewIssue(JsonNode node) {
+        ObjectNode issueNode = node.isObject() ? (ObjectNode) node : objectMapper.createObjectNode();
+
+        ReviewIssue issue = new ReviewIssue();
+        issue.setAnchorId(getStringValue(issueNode, "anchorId"));
+        issue.setClauseId(getStringValue(issueNode, "clauseId"));
+        issue.setSeverity(getStringValue(issueNode, "severity", "MEDIUM"));
+        issue.setCategory(getStringValue(issueNode, "category", "General"));
+        issue.setFinding(getStringValue(issueNode, "finding"));
+        issue.setSuggestion(getStringValue(issueNode, "suggestion"));
+
+        // 【恢复精确匹配功能】提取targetText字段用于精确文本匹配
+        String targetText = getStringValue(issueNode, "targetText");
+        if (targetText != null && !targetText.isEmpty()) {
+            issue.setTargetText(targetText);
+            log.debug("提取targetText用于精确定位：{}",
+                     targetText.length() > 50 ? targetText.substring(0, 50) + "..." : targetText);
+        }
+
+        // 【恢复精确匹配功能】提取matchPattern字段（可选）
+        String matchPattern = getStringValue(issueNode, "matchPattern");
+        if (matchPattern != null && !matchPattern.isEmpty()) {
+            issue.setMatchPattern(matchPattern);
+        }
+
+        return issue;
+    }
+
     /**
      * 从JSON对象中获取字符串值
      *
@@ -349,6 +739,27 @@ public class QwenRuleReviewService {
         List<RuleMatchResult> matchResults = performRuleMatching(parseResult, stance);
         log.info("✓ 规则匹配完成，匹配到 {} 个条款", matchResults.size());
 
+        String prompt = buildRuleReviewPrompt(parseResult, stance, matchResults, matchResults, 0);
+
+        log.debug("Prompt生成完成，长度: {}", prompt.length());
+
+        recordDiagnostics(parseResult, stance, matchResults, prompt);
+
+        return prompt;
+    }
+
+    /**
+     * 构建规则审查Prompt
+     *
+     * @param parseResult 解析的合同结果
+     * @param stance 审查立场
+     * @param allMatches 全部规则匹配结果（用于合同基本信息）
+     * @param clauseMatches 本次Prompt包含的条款（分块审查时为其中一块）
+     * @param numberOffset 条款编号起始偏移
+     * @return Prompt文本
+     */
+    private String buildRuleReviewPrompt(ParseResult parseResult, String stance, List<RuleMatchResult> allMatches,
+                                         List<RuleMatchResult> clauseMatches, int numberOffset) {
         StringBuilder prompt = new StringBuilder();
 
         // 系统角色说明
@@ -365,7 +776,11 @@ public class QwenRuleReviewService {
         prompt.append("\n## 合同基本信息\n");
         prompt.append("- 文件名: ").append(parseResult.getFilename()).append("\n");
         prompt.append("- 条款总数: ").append(parseResult.getClauses().size()).append("\n");
-        prompt.append("- 匹配规则条款数: ").append(matchResults.size()).append("\n");
+        prompt.append("- 匹配规则条款数: ").append(allMatches.size()).append("\n");
+        if (clauseMatches.size() < allMatches.size()) {
+            prompt.append("- 本次审查条款数: ").append(clauseMatches.size())
+                  .append("（分块审查，仅需审查下列条款）\n");
+        }
         if (parseResult.getPartyA() != null) {
             prompt.append("- A方: ").append(parseResult.getPartyA()).append("\n");
         }
@@ -374,7 +789,7 @@ public class QwenRuleReviewService {
         }
 
         // 【修改】只显示匹配到规则的条款
-        if (matchResults.isEmpty()) {
+        if (clauseMatches.isEmpty()) {
             prompt.append("\n## 审查结果\n");
             prompt.append("经过规则匹配，未发现需要特别关注的条款。\n");
             prompt.append("建议进行常规的合同审查。\n");
@@ -382,50 +797,8 @@ public class QwenRuleReviewService {
             prompt.append("\n## 需要重点审查的条款\n");
             prompt.append("以下条款通过规则匹配识别出潜在风险，请重点审查：\n\n");
 
-            for (int i = 0; i < matchResults.size(); i++) {
-                RuleMatchResult matchResult = matchResults.get(i);
-                prompt.append("### 条款").append(i + 1).append(" (ID: ").append(matchResult.getClauseId());
-                
-                if (matchResult.getAnchorId() != null && !matchResult.getAnchorId().isEmpty()) {
-                    prompt.append(" | 锚点: ").append(matchResult.getAnchorId());
-                }
-                prompt.append(")\n\n");
-
-                if (matchResult.getClauseHeading() != null && !matchResult.getClauseHeading().isEmpty()) {
-                    prompt.append("**标题**: ").append(matchResult.getClauseHeading()).append("\n\n");
-                }
-
-                prompt.append("**内容**:\n").append(matchResult.getClauseText()).append("\n\n");
-
-                // 【新增】显示匹配的规则和检查要点
-                prompt.append("**匹配的规则** (共").append(matchResult.getMatchCount()).append("条):\n");
-                for (ReviewRule rule : matchResult.getMatchedRules()) {
-                    prompt.append("- **风险等级**: ").append(rule.getRisk().toUpperCase()).append("\n");
-                    
-                    if (rule.getMatchedKeywords() != null && !rule.getMatchedKeywords().isEmpty()) {
-                        prompt.append("  **匹配关键词**: ").append(String.join(", ", rule.getMatchedKeywords())).append("\n");
-                    }
-                    
-                    if (rule.getChecklist() != null && !rule.getChecklist().isEmpty()) {
-                        prompt.append("  **检查要点**:\n");
-                        for (String line : rule.getChecklist().split("\n")) {
-                            prompt.append("    ").append(line).append("\n");
-                        }
-                    }
-                    
-                    // 根据立场显示建议
-                    if ("A方".equals(stance) || "甲方".equals(stance)) {
-                        if (rule.getSuggestA() != null && !rule.getSuggestA().isEmpty()) {
-                            prompt.append("  **甲方建议**: ").append(rule.getSuggestA()).append("\n");
-                        }
-                    } else if ("B方".equals(stance) || "乙方".equals(stance)) {
-                        if (rule.getSuggestB() != null && !rule.getSuggestB().isEmpty()) {
-                            prompt.append("  **乙方建议**: ").append(rule.getSuggestB()).append("\n");
-                        }
-                    }
-                    prompt.append("\n");
-                }
-                prompt.append("---\n\n");
+            for (int i = 0; i < clauseMatches.size(); i++) {
+                prompt.append(buildClauseSection(clauseMatches.get(i), numberOffset + i + 1, stance));
             }
         }
 
@@ -471,111 +844,169 @@ public class QwenRuleReviewService {
         prompt.append("  targetText应该是条款中相关的实际文字，如'赔偿责任'或'甲方应承担'等。\n\n");
         prompt.append("只返回JSON，不要返回任何其他文本。");
 
-        log.debug("Prompt生成完成，长度: {}", prompt.length());
+        return prompt.toString();
+    }
+
+    /**
+     * 构建单个条款的审查段落（条款内容、匹配规则及检查要点）
+     *
+     * @param matchResult 规则匹配结果
+     * @param number 条款在Prompt中的编号
+     * @param stance 审查立场
+     * @return 条款段落文本
+     */
+    private String buildClauseSection(RuleMatchResult matchResult, int number, String stance) {
+        StringBuilder prompt = new StringBuilder();
+        prompt.append("### 条款").append(number).append(" (ID: ").append(matchResult.getClauseId());
+        
+        if (matchResult.getAnchorId() != null && !matchResult.getAnchorId().isEmpty()) {
+            prompt.append(" | 锚点: ").append(matchResult.getAnchorId());
+        }
+        prompt.append(")\n\n");
+
+        if (matchResult.getClauseHeading() != null && !matchResult.getClauseHeading().isEmpty()) {
+            prompt.append("**标题**: ").append(matchResult.getClauseHeading()).append("\n\n");
+        }
 
-        recordDiagnostics(parseResult, stance, matchResults, prompt.toString());
+        prompt.append("**内容**:\n").append(matchResult.getClauseText()).append("\n\n");
+
+        // 【新增】显示匹配的规则和检查要点
+        prompt.append("**匹配的规则** (共").append(matchResult.getMatchCount()).append("条):\n");
+        for (ReviewRule rule : matchResult.getMatchedRules()) {
+            prompt.append("- **风险等级**: ").append(rule.getRisk().toUpperCase()).append("\n");
+            
+            if (rule.getMatchedKeywords() != null && !rule.getMatchedKeywords().isEmpty()) {
+                prompt.append("  **匹配关键词**: ").append(String.join(", ", rule.getMatchedKeywords())).append("\n");
+            }
+            
+            if (rule.getChecklist() != null && !rule.getChecklist().isEmpty()) {
+                prompt.append("  **检查要点**:\n");
+                for (String line : rule.getChecklist().split("\n")) {
+                    prompt.append("    ").append(line).append("\n");
+                }
+            }
+            
+            // 根据立场显示建议
+            if ("A方".equals(stance) || "甲方".equals(stance)) {
+                if (rule.getSuggestA() != null && !rule.getSuggestA().isEmpty()) {
+                    prompt.append("  **甲方建议**: ").append(rule.getSuggestA()).append("\n");
+                }
+            } else if ("B方".equals(stance) || "乙方".equals(stance)) {
+                if (rule.getSuggestB() != null && !rule.getSuggestB().isEmpty()) {
+                    prompt.append("  **乙方建议**: ").append(rule.getSuggestB()).append("\n");
+                }
+            }
+            prompt.append("\n");
+        }
+        prompt.append("---\n\n");
 
         return prompt.toString();
     }
 
     private void recordDiagnostics(ParseResult parseResult, String stance,
                                    List<RuleMatchResult> matchResults, String prompt) {
-        try {
-            Path baseDir = Paths.get(System.getProperty("user.dir"), "文档中心", "02_实现和修复总结", "维测日志");
-            Files.createDirectories(baseDir);
-
-            String safeName = parseResult.getFilename() != null
-                    ? parseResult.getFilename().replaceAll("[\\\\/:*?\"<>|]", "_")
-                    : "合同";
-            String timestamp = new SimpleDateFormat("yyyyMMdd_HHmmss").format(new Date());
-            Path diagFile = baseDir.resolve(String.format("规则匹配维测_%s_%s.txt", safeName, timestamp));
-
-            try (BufferedWriter writer = Files.newBufferedWriter(diagFile, StandardCharsets.UTF_8)) {
-                writer.write("=== 规则匹配维测日志 ===\n");
-                writer.write("生成时间: " + timestamp + "\n");
-                writer.write("立场: " + stance + "\n");
-                writer.write("源文件: " + parseResult.getFilename() + "\n");
-                writer.write("条款总数: " + parseResult.getClauses().size() + "\n");
-                writer.write("匹配条款数: " + matchResults.size() + "\n\n");
-
-                writer.write("=== 规则加载与过滤 ===\n");
-                try {
-                    int totalRules = reviewRulesService.loadRules().size();
-                    writer.write("原始规则数: " + totalRules + "\n");
-                    if (defaultContractType == null || defaultContractType.trim().isEmpty() || "ALL".equalsIgnoreCase(defaultContractType.trim())) {
-                        writer.write("使用全部规则，无合同类型过滤\n");
-                        writer.write("适用规则数: " + totalRules + "\n");
-                    } else {
-                        writer.write("默认合同类型: " + defaultContractType + "\n");
-                        writer.write("适用规则数: " + reviewRulesService.filterByContractType(defaultContractType).size() + "\n");
-                    }
-                } catch (Exception e) {
-                    writer.write("规则统计异常: " + e.getMessage() + "\n");
+        log.debug("【维测】Prompt全文:\n{}", prompt);
+        if (!diagnosticsSink.sampled(DiagnosticsSink.Category.RULE_MATCH)) {
+            return;
+        }
+
+        String safeName = parseResult.getFilename() != null
+                ? parseResult.getFilename().replaceAll("[\\\\/:*?\"<>|]", "_")
+                : "合同";
+        String timestamp = new SimpleDateFormat("yyyyMMdd_HHmmss").format(new Date());
+        // 命中关键词记录在共享的规则对象上，后续匹配会覆盖，在请求线程中先渲染匹配详情
+        String matchDetails = renderMatchDetails(matchResults);
+
+        diagnosticsSink.submit(DiagnosticsSink.Category.RULE_MATCH,
+                String.format("规则匹配维测_%s_%s.txt", safeName, timestamp), out -> {
+            BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            writer.write("=== 规则匹配维测日志 ===\n");
+            writer.write("生成时间: " + timestamp + "\n");
+            writer.write("立场: " + stance + "\n");
+            writer.write("源文件: " + parseResult.getFilename() + "\n");
+            writer.write("条款总数: " + parseResult.getClauses().size() + "\n");
+            writer.write("匹配条款数: " + matchResults.size() + "\n\n");
+
+            writer.write("=== 规则加载与过滤 ===\n");
+            try {
+                int totalRules = reviewRulesService.loadRules().size();
+                writer.write("原始规则数: " + totalRules + "\n");
+                if (defaultContractType == null || defaultContractType.trim().isEmpty() || "ALL".equalsIgnoreCase(defaultContractType.trim())) {
+                    writer.write("使用全部规则，无合同类型过滤\n");
+                    writer.write("适用规则数: " + totalRules + "\n");
+                } else {
+                    writer.write("默认合同类型: " + defaultContractType + "\n");
+                    writer.write("适用规则数: " + reviewRulesService.filterByContractType(defaultContractType).size() + "\n");
                 }
+            } catch (Exception e) {
+                writer.write("规则统计异常: " + e.getMessage() + "\n");
+            }
 
-                if (writeKeywordDiagnostics) {
-                    List<ReviewRule> diagnosticRules;
-                    if (defaultContractType == null || defaultContractType.trim().isEmpty() || "ALL".equalsIgnoreCase(defaultContractType.trim())) {
-                        diagnosticRules = reviewRulesService.loadRules();
-                    } else {
-                        diagnosticRules = reviewRulesService.filterByContractType(defaultContractType);
-                    }
+            if (writeKeywordDiagnostics) {
+                List<ReviewRule> diagnosticRules;
+                if (defaultContractType == null || defaultContractType.trim().isEmpty() || "ALL".equalsIgnoreCase(defaultContractType.trim())) {
+                    diagnosticRules = reviewRulesService.loadRules();
+                } else {
+                    diagnosticRules = reviewRulesService.filterByContractType(defaultContractType);
+                }
 
-                    writer.write("\n=== 全量条款关键词匹配结果 ===\n");
-                    for (Clause clause : parseResult.getClauses()) {
-                        writer.write(String.format("[条款ID=%s] %s\n", clause.getId(), clause.getFullText()));
-                        for (ReviewRule rule : diagnosticRules) {
-                            boolean matched = rule.matches(clause.getFullText());
-                            writer.write(String.format("  - 规则ID=%s, 命中=%s, 命中关键字=%s\n",
-                                    rule.getId(), matched ? "✓" : "✗",
-                                    rule.getMatchedKeywords() != null ? rule.getMatchedKeywords() : "[]"));
-                        }
-                        writer.write('\n');
+                writer.write("\n=== 全量条款关键词匹配结果 ===\n");
+                for (Clause clause : parseResult.getClauses()) {
+                    writer.write(String.format("[条款ID=%s] %s\n", clause.getId(), clause.getFullText()));
+                    for (ReviewRule sharedRule : diagnosticRules) {
+                        // 在副本上匹配，不改写共享规则的命中关键词
+                        ReviewRule rule = sharedRule.toBuilder().build();
+                        boolean matched = rule.matches(clause.getFullText());
+                        writer.write(String.format("  - 规则ID=%s, 命中=%s, 命中关键字=%s\n",
+                                rule.getId(), matched ? "✓" : "✗",
+                                rule.getMatchedKeywords() != null ? rule.getMatchedKeywords() : "[]"));
                     }
+                    writer.write('\n');
                 }
+            }
 
-                int idx = 1;
-                for (RuleMatchResult matchResult : matchResults) {
-                    writer.write(String.format("## 匹配条款 %d\n", idx++));
-                    writer.write("条款ID: " + matchResult.getClauseId() + "\n");
-                    writer.write("锚点: " + (matchResult.getAnchorId() != null ? matchResult.getAnchorId() : "无") + "\n");
-                    writer.write("标题: " + (matchResult.getClauseHeading() != null ? matchResult.getClauseHeading() : "（无）") + "\n");
-                    writer.write("内容:\n" + matchResult.getClauseText() + "\n\n");
-
-                    writer.write("匹配规则（数量: " + matchResult.getMatchCount() + "）:\n");
-                    for (ReviewRule rule : matchResult.getMatchedRules()) {
-                        writer.write(String.format("- 规则ID: %s, 风险: %s\n",
-                                rule.getId(), rule.getRisk()));
-                        if (rule.getMatchedKeywords() != null && !rule.getMatchedKeywords().isEmpty()) {
-                            writer.write("  命中关键词: " + String.join(", ", rule.getMatchedKeywords()) + "\n");
-                        }
-                        if (rule.getKeywords() != null && !rule.getKeywords().isEmpty()) {
-                            writer.write("  规则关键词: " + rule.getKeywords() + "\n");
-                        }
-                        if (rule.getRegex() != null && !rule.getRegex().isEmpty()) {
-                            writer.write("  正则: " + rule.getRegex() + "\n");
-                        }
-                        if (rule.getChecklist() != null && !rule.getChecklist().isEmpty()) {
-                            writer.write("  检查要点:\n");
-                            for (String line : rule.getChecklist().split("\\n")) {
-                                writer.write("    " + line + "\n");
-                            }
-                        }
-                        writer.write("\n");
+            writer.write(matchDetails);
+
+            writer.write("=== 生成 Prompt ===\n");
+            writer.write(prompt);
+            writer.write("\n");
+            writer.flush();
+        });
+    }
+
+    private String renderMatchDetails(List<RuleMatchResult> matchResults) {
+        StringBuilder details = new StringBuilder();
+        int idx = 1;
+        for (RuleMatchResult matchResult : matchResults) {
+            details.append(String.format("## 匹配条款 %d\n", idx++));
+            details.append("条款ID: ").append(matchResult.getClauseId()).append("\n");
+            details.append("锚点: ").append(matchResult.getAnchorId() != null ? matchResult.getAnchorId() : "无").append("\n");
+            details.append("标题: ").append(matchResult.getClauseHeading() != null ? matchResult.getClauseHeading() : "（无）").append("\n");
+            details.append("内容:\n").append(matchResult.getClauseText()).append("\n\n");
+
+            details.append("匹配规则（数量: ").append(matchResult.getMatchCount()).append("）:\n");
+            for (ReviewRule rule : matchResult.getMatchedRules()) {
+                details.append(String.format("- 规则ID: %s, 风险: %s\n", rule.getId(), rule.getRisk()));
+                if (rule.getMatchedKeywords() != null && !rule.getMatchedKeywords().isEmpty()) {
+                    details.append("  命中关键词: ").append(String.join(", ", rule.getMatchedKeywords())).append("\n");
+                }
+                if (rule.getKeywords() != null && !rule.getKeywords().isEmpty()) {
+                    details.append("  规则关键词: ").append(rule.getKeywords()).append("\n");
+                }
+                if (rule.getRegex() != null && !rule.getRegex().isEmpty()) {
+                    details.append("  正则: ").append(rule.getRegex()).append("\n");
+                }
+                if (rule.getChecklist() != null && !rule.getChecklist().isEmpty()) {
+                    details.append("  检查要点:\n");
+                    for (String line : rule.getChecklist().split("\\n")) {
+                        details.append("    ").append(line).append("\n");
                     }
-                    writer.write("\n");
                 }
-
-                writer.write("=== 生成 Prompt ===\n");
-                writer.write(prompt);
-                writer.write("\n");
+                details.append("\n");
             }
-
-            log.info("【维测】规则匹配与Prompt信息已输出到: {}", diagFile);
-            log.debug("【维测】Prompt全文:\n{}", prompt);
-        } catch (Exception e) {
-            log.warn("写入规则匹配维测日志失败: {}", e.getMessage(), e);
+            details.append("\n");
         }
+        return details.toString();
     }
 
     /**
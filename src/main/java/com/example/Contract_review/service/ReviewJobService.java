@@ -0,0 +1,514 @@
+package com.example.Contract_review.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * 异步审查任务服务
+ *
+ * 审查流程（解析、规则匹配、LLM 调用、批注）耗时可达数分钟，不再占用 Tomcat 请求线程：
+ * - 提交后立即返回 jobId，任务在有界线程池中执行
+ * - 线程池和等待队列均有上限，队列满时拒绝提交（调用方返回 429）
+ * - 任务执行中通过 reportStage 上报阶段进度，客户端可轮询状态或通过 SSE 订阅
+ * - 已结束的任务保留一段时间供查询结果，超时或超出数量上限后清理
+ * - 带批注文档（byte[] 结果）写入本地结果目录，不占用堆内存；结果目录总大小超出上限时清理最早结束的任务
+ */
+@Service
+public class ReviewJobService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReviewJobService.class);
+
+    /**
+     * 当前线程正在执行的任务（非任务线程为 null，reportStage 为空操作）
+     */
+    private static final ThreadLocal<ReviewJob> CURRENT_JOB = new ThreadLocal<>();
+
+    /**
+     * 同时执行的审查任务数
+     */
+    @Value("${review-job.workers:4}")
+    private int workers;
+
+    /**
+     * 等待执行的任务数上限，超出时拒绝提交
+     */
+    @Value("${review-job.queue-capacity:20}")
+    private int queueCapacity;
+
+    /**
+     * 已结束任务的保留时间（分钟）
+     */
+    @Value("${review-job.retention-minutes:60}")
+    private long retentionMinutes;
+
+    /**
+     * 保留的已结束任务数上限（超出时清理最早结束的任务）
+     */
+    @Value("${review-job.max-retained:200}")
+    private int maxRetained;
+
+    /**
+     * 文档结果目录，为空时使用 {user.dir}/.review-jobs（启动时清空）
+     */
+    @Value("${review-job.result-dir:}")
+    private String resultDir;
+
+    /**
+     * 保留的文档结果总大小上限（字节，超出时清理最早结束的任务）
+     */
+    @Value("${review-job.max-retained-bytes:1073741824}")
+    private long maxRetainedBytes;
+
+    private Path resultPath;
+
+    private ThreadPoolExecutor executor;
+
+    private final Map<String, ReviewJob> jobs = new ConcurrentHashMap<>();
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong succeeded = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    /**
+     * 任务状态
+     */
+    public enum JobStatus {
+        QUEUED, RUNNING, SUCCEEDED, FAILED, CANCELLED;
+
+        public boolean isFinished() {
+            return this == SUCCEEDED || this == FAILED || this == CANCELLED;
+        }
+    }
+
+    /**
+     * 审查任务执行体
+     */
+    @FunctionalInterface
+    public interface JobTask {
+        /**
+         * 执行审查
+         *
+         * @return 审查结果（JSON 可序列化对象，或带批注文档的 byte[]）
+         */
+        Object run() throws Exception;
+    }
+
+    /**
+     * 任务事件（阶段进度、结果、失败等），按发生顺序推送给 SSE 订阅者
+     */
+    public static class JobEvent {
+        private final String type;
+        private final Map<String, Object> data;
+
+        JobEvent(String type, Map<String, Object> data) {
+            this.type = type;
+            this.data = data;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public Map<String, Object> getData() {
+            return data;
+        }
+    }
+
+    /**
+     * 审查任务
+     */
+    public static class ReviewJob {
+        private final String jobId;
+        private final String type;
+        private final String filename;
+        private final long createdAt = System.currentTimeMillis();
+        private final List<Map<String, Object>> stages = new ArrayList<>();
+        private final Sinks.Many<JobEvent> events = Sinks.many().replay().all();
+
+        private volatile JobStatus status = JobStatus.QUEUED;
+        private volatile String stage;
+        private volatile long startedAt;
+        private volatile long finishedAt;
+        private volatile Object result;
+        private volatile Path documentFile;
+        private volatile long documentSize;
+        private volatile String error;
+        private volatile Future<?> future;
+
+        ReviewJob(String jobId, String type, String filename) {
+            this.jobId = jobId;
+            this.type = type;
+            this.filename = filename;
+        }
+
+        public String getJobId() {
+            return jobId;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public String getFilename() {
+            return filename;
+        }
+
+        public JobStatus getStatus() {
+            return status;
+        }
+
+        public String getStage() {
+            return stage;
+        }
+
+        /**
+         * JSON 结果（文档结果见 getDocumentFile）
+         */
+        public Object getResult() {
+            return result;
+        }
+
+        /**
+         * 带批注文档所在的本地文件，任务不返回文档或未完成时为 null
+         */
+        public Path getDocumentFile() {
+            return documentFile;
+        }
+
+        public long getDocumentSize() {
+            return documentSize;
+        }
+
+        public String getError() {
+            return error;
+        }
+
+        public long getFinishedAt() {
+            return finishedAt;
+        }
+
+        /**
+         * 任务状态快照（不含结果本体）
+         */
+        public synchronized Map<String, Object> toStatus() {
+            Map<String, Object> snapshot = new LinkedHashMap<>();
+            snapshot.put("jobId", jobId);
+            snapshot.put("type", type);
+            snapshot.put("filename", filename);
+            snapshot.put("status", status.name());
+            snapshot.put("stage", stage);
+            snapshot.put("stages", new ArrayList<>(stages));
+            snapshot.put("createdAt", createdAt);
+            if (startedAt > 0) {
+                snapshot.put("queuedMs", startedAt - createdAt);
+            }
+            if (finishedAt > 0) {
+                snapshot.put("processingTime", finishedAt - (startedAt > 0 ? startedAt : createdAt));
+            }
+            if (error != null) {
+                snapshot.put("error", error);
+            }
+            return snapshot;
+        }
+
+        synchronized void emit(String eventType, Map<String, Object> data) {
+            events.tryEmitNext(new JobEvent(eventType, data));
+        }
+
+        synchronized void stage(String name, String message) {
+            stage = name;
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("stage", name);
+            entry.put("message", message);
+            entry.put("elapsedMs", System.currentTimeMillis() - createdAt);
+            stages.add(entry);
+            emit("stage", entry);
+        }
+
+        synchronized boolean start() {
+            if (status.isFinished()) {
+                return false;
+            }
+            status = JobStatus.RUNNING;
+            startedAt = System.currentTimeMillis();
+            stage("start", "开始执行");
+            return true;
+        }
+
+        synchronized boolean finish(JobStatus finalStatus, Object finalResult, String finalError) {
+            return finish(finalStatus, finalResult, null, 0, finalError);
+        }
+
+        synchronized boolean finish(JobStatus finalStatus, Object finalResult, Path finalDocument,
+                                    long finalDocumentSize, String finalError) {
+            if (status.isFinished()) {
+                return false;
+            }
+            status = finalStatus;
+            result = finalResult;
+            documentFile = finalDocument;
+            documentSize = finalDocumentSize;
+            error = finalError;
+            finishedAt = System.currentTimeMillis();
+            emit(finalStatus == JobStatus.SUCCEEDED ? "result" : finalStatus.name().toLowerCase(), toStatus());
+            events.tryEmitComplete();
+            return true;
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        resultPath = resultDir == null || resultDir.trim().isEmpty()
+                ? Paths.get(System.getProperty("user.dir"), ".review-jobs")
+                : Paths.get(resultDir.trim());
+        try {
+            // 任务只保存在内存中，重启前的文档结果无法再被查询
+            if (Files.isDirectory(resultPath)) {
+                try (Stream<Path> files = Files.list(resultPath)) {
+                    for (Path file : (Iterable<Path>) files::iterator) {
+                        Files.deleteIfExists(file);
+                    }
+                }
+            }
+            Files.createDirectories(resultPath);
+        } catch (IOException e) {
+            logger.warn("【审查任务】初始化结果目录失败: {}, 原因: {}", resultPath, e.getMessage());
+        }
+
+        int poolSize = Math.max(1, workers);
+        AtomicInteger threadIndex = new AtomicInteger();
+        executor = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "review-job-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        logger.info("【审查任务】线程池已启动: 并发 {}，等待队列上限 {}", poolSize, queueCapacity);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 提交审查任务
+     *
+     * @param type 任务类型（unified/one-click/auto）
+     * @param filename 合同文件名
+     * @param task 审查执行体（必须已读出上传文件内容，不能引用请求作用域对象）
+     * @return 已入队的任务
+     * @throws RejectedExecutionException 等待队列已满
+     */
+    public ReviewJob submit(String type, String filename, JobTask task) {
+        purgeExpired();
+
+        ReviewJob job = new ReviewJob(UUID.randomUUID().toString(), type, filename);
+        jobs.put(job.jobId, job);
+        job.emit("queued", job.toStatus());
+        try {
+            job.future = executor.submit(() -> execute(job, task));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.jobId);
+            rejected.incrementAndGet();
+            logger.warn("【审查任务】队列已满，拒绝任务: type={}, file={}, 执行中 {}，排队 {}",
+                       type, filename, executor.getActiveCount(), executor.getQueue().size());
+            throw e;
+        }
+        submitted.incrementAndGet();
+        logger.info("【审查任务】已入队: jobId={}, type={}, file={}, 排队 {}",
+                   job.jobId, type, filename, executor.getQueue().size());
+        return job;
+    }
+
+    /**
+     * 在任务线程中上报当前阶段（非任务线程调用时忽略）
+     *
+     * @param stage 阶段标识（如 parse、match、llm、annotate、save）
+     * @param message 阶段说明
+     */
+    public static void reportStage(String stage, String message) {
+        ReviewJob job = CURRENT_JOB.get();
+        if (job != null) {
+            job.stage(stage, message);
+        }
+    }
+
+    public ReviewJob getJob(String jobId) {
+        purgeExpired();
+        return jobs.get(jobId);
+    }
+
+    /**
+     * 订阅任务事件（历史事件会先重放，任务结束后流完成）
+     */
+    public Flux<JobEvent> events(ReviewJob job) {
+        return job.events.asFlux();
+    }
+
+    /**
+     * 取消任务（排队中的任务从线程池等待队列中移除，执行中的任务中断线程）
+     *
+     * @return 是否取消成功（已结束的任务返回 false）
+     */
+    public boolean cancel(String jobId) {
+        ReviewJob job = jobs.get(jobId);
+        if (job == null) {
+            return false;
+        }
+        boolean queued = job.status == JobStatus.QUEUED;
+        if (!job.finish(JobStatus.CANCELLED, null, "任务已取消")) {
+            return false;
+        }
+        Future<?> future = job.future;
+        if (future != null) {
+            future.cancel(true);
+            if (queued) {
+                // submit 返回的 FutureTask 即等待队列中的元素，移除后立即释放队列容量
+                executor.remove((Runnable) future);
+            }
+        }
+        logger.info("【审查任务】已取消: jobId={}", jobId);
+        return true;
+    }
+
+    /**
+     * 获取线程池和任务统计信息
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("workers", executor.getMaximumPoolSize());
+        stats.put("queueCapacity", queueCapacity);
+        stats.put("running", executor.getActiveCount());
+        stats.put("queued", executor.getQueue().size());
+        stats.put("retainedJobs", jobs.size());
+        stats.put("retainedDocumentBytes", retainedDocumentBytes());
+        stats.put("submitted", submitted.get());
+        stats.put("rejected", rejected.get());
+        stats.put("succeeded", succeeded.get());
+        stats.put("failed", failed.get());
+        return stats;
+    }
+
+    private void execute(ReviewJob job, JobTask task) {
+        if (!job.start()) {
+            return;
+        }
+        logger.info("【审查任务】开始执行: jobId={}, 排队 {} ms", job.jobId, job.startedAt - job.createdAt);
+
+        CURRENT_JOB.set(job);
+        try {
+            Object result = task.run();
+            boolean finished;
+            if (result instanceof byte[]) {
+                byte[] document = (byte[]) result;
+                Path file = resultPath.resolve(job.jobId + ".docx");
+                Files.write(file, document);
+                finished = job.finish(JobStatus.SUCCEEDED, null, file, document.length, null);
+                if (!finished) {
+                    Files.deleteIfExists(file);
+                }
+            } else {
+                finished = job.finish(JobStatus.SUCCEEDED, result, null);
+            }
+            if (finished) {
+                succeeded.incrementAndGet();
+                logger.info("【审查任务】完成: jobId={}, 耗时 {} ms", job.jobId, job.finishedAt - job.startedAt);
+                if (job.documentFile != null) {
+                    purgeExpired();
+                }
+            }
+        } catch (Exception e) {
+            if (job.finish(JobStatus.FAILED, null, e.getMessage())) {
+                failed.incrementAndGet();
+                logger.error("【审查任务】失败: jobId={}", job.jobId, e);
+            }
+        } finally {
+            CURRENT_JOB.remove();
+        }
+    }
+
+    /**
+     * 清理超出保留时间、数量上限或文档结果总大小上限的已结束任务
+     */
+    private void purgeExpired() {
+        long cutoff = System.currentTimeMillis() - retentionMinutes * 60_000L;
+        List<ReviewJob> finished = new ArrayList<>();
+        for (ReviewJob job : jobs.values()) {
+            if (!job.status.isFinished()) {
+                continue;
+            }
+            if (job.finishedAt < cutoff) {
+                remove(job);
+            } else {
+                finished.add(job);
+            }
+        }
+
+        finished.sort(Comparator.comparingLong(ReviewJob::getFinishedAt));
+        long documentBytes = 0;
+        for (ReviewJob job : finished) {
+            documentBytes += job.documentSize;
+        }
+        int remaining = finished.size();
+        for (ReviewJob job : finished) {
+            if (remaining <= maxRetained && documentBytes <= maxRetainedBytes) {
+                break;
+            }
+            remove(job);
+            remaining--;
+            documentBytes -= job.documentSize;
+        }
+    }
+
+    private void remove(ReviewJob job) {
+        jobs.remove(job.jobId);
+        Path file = job.documentFile;
+        if (file != null) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                logger.warn("【审查任务】删除文档结果失败: {}, 原因: {}", file, e.getMessage());
+            }
+        }
+    }
+
+    private long retainedDocumentBytes() {
+        long total = 0;
+        for (ReviewJob job : jobs.values()) {
+            total += job.documentSize;
+        }
+        return total;
+    }
+}
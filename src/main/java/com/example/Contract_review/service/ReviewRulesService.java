@@ -41,6 +41,11 @@ public class ReviewRulesService {
      */
     private boolean rulesLoaded = false;
 
+    /**
+     * 规则快照版本（规则文件内容的 SHA-256 前 16 位，无规则文件时为 none）
+     */
+    private String rulesVersion = "none";
+
     /**
      * 加载规则（初始化时调用）
      * 如果文件不存在，则返回空列表
@@ -59,12 +64,14 @@ public class ReviewRulesService {
         String actualPath = findRulesFile();
         if (actualPath == null) {
             logger.warn("Rules file not found at {}, using empty rules", rulesFilePath);
+            rulesVersion = "none";
             rulesLoaded = true;
             return cachedRules;
         }
 
         try {
             cachedRules = loadRulesFromExcel(actualPath);
+            rulesVersion = computeVersion(actualPath);
             rulesLoaded = true;
             logger.info("Successfully loaded {} rules from {}", cachedRules.size(), actualPath);
 
@@ -326,4 +333,28 @@ public class ReviewRulesService {
     public boolean isRulesLoaded() {
         return rulesLoaded;
     }
+
+    /**
+     * 获取规则快照版本
+     * 规则文件变更并重新加载后版本随之变化，用于使依赖规则的缓存失效
+     *
+     * @return 规则版本
+     */
+    public String getRulesVersion() {
+        if (!rulesLoaded) {
+            loadRules();
+        }
+        return rulesVersion;
+    }
+
+    private String computeVersion(String filePath) {
+        try {
+            java.security.MessageDigest digest = java.security.MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(Files.readAllBytes(Paths.get(filePath)));
+            return HexFormat.of().formatHex(hash).substring(0, 16);
+        } catch (Exception e) {
+            logger.warn("Failed to compute rules version for {}: {}", filePath, e.getMessage());
+            return "unknown";
+        }
+    }
 }
@@ -3,6 +3,7 @@ package com.example.Contract_review.service;
 import com.example.Contract_review.model.*;
 import com.example.Contract_review.util.PromptGeneratorNew;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -11,9 +12,6 @@ import org.springframework.web.multipart.MultipartFile;
 
 import java.util.List;
 import java.util.stream.Collectors;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 
@@ -47,12 +45,21 @@ public class UnifiedReviewService {
     @Autowired
     private QwenRuleReviewService qwenRuleReviewService;
 
+    @Autowired
+    private AIProviderRouter aiProviderRouter;
+
     @Autowired
     private XmlContractAnnotateService xmlContractAnnotateService;
 
     @Autowired
     private MinioFileService minioFileService;
 
+    @Autowired
+    private ArtifactUploadService artifactUploadService;
+
+    @Autowired
+    private DiagnosticsSink diagnosticsSink;
+
     @Autowired
     private ObjectMapper objectMapper;
 
@@ -98,6 +105,7 @@ public class UnifiedReviewService {
 
             // 【步骤2】解析合同（生成带锚点文档）
             logger.info("步骤1: 解析合同并生成带锚点文档...");
+            ReviewJobService.reportStage("parse", "解析合同并生成带锚点文档");
             long parseStartTime = System.currentTimeMillis();
 
             ContractParseService.ParseResultWithDocument parseResultWithDoc =
@@ -109,15 +117,17 @@ public class UnifiedReviewService {
             long parseTime = System.currentTimeMillis() - parseStartTime;
             logger.info("✓ 合同解析完成: {} 个条款, 耗时 {}ms", clauses.size(), parseTime);
 
+            ParseResultCache.CachedParseResult cachedParse = null;
             if (anchoredDocumentBytes != null && anchoredDocumentBytes.length > 0) {
                 String cacheFilename = parseResultWithDoc.getDocumentFilename() != null ?
                         parseResultWithDoc.getDocumentFilename() : filename;
-                String parseResultId = parseResultCache.store(parseResult, anchoredDocumentBytes, cacheFilename);
-                logger.info("✓ 带锚点文档已缓存，parseResultId={}", parseResultId);
+                cachedParse = parseResultCache.storeAndGet(parseResult, anchoredDocumentBytes, cacheFilename);
+                logger.info("✓ 带锚点文档已缓存，parseResultId={}", cachedParse.getCacheId());
             }
 
             // 【步骤3】加载规则并匹配
             logger.info("步骤2: 加载规则并进行匹配...");
+            ReviewJobService.reportStage("match", "加载规则并进行匹配");
             long matchStartTime = System.currentTimeMillis();
 
             List<ReviewRule> allRules = reviewRulesService.loadRules();
@@ -171,14 +181,20 @@ public class UnifiedReviewService {
 
             // 【步骤4】生成Prompt
             logger.info("步骤3: 为LLM生成Prompt...");
+            ReviewJobService.reportStage("prompt", "生成审查Prompt");
             String prompt = generatePrompt(matchResults, party, contractType);
             result.setPrompt(prompt);
 
             // 【步骤5】如果需要，调用AI
             if (reviewMode == ReviewMode.AI || reviewMode == ReviewMode.FULL) {
                 logger.info("步骤4: 调用AI服务...");
+                ReviewJobService.reportStage("llm", "调用AI服务: " + aiProvider);
 
-                String aiResult = callAI(prompt, aiProvider);
+                LlmResponseCache.Usage cacheUsage = new LlmResponseCache.Usage();
+                String aiResult = callAI(prompt, aiProvider, cacheUsage, statistics);
+                statistics.setLlmCacheStatus(cacheUsage.getStatus());
+                statistics.setLlmLatencyMs(cacheUsage.getLatencyMs());
+                statistics.setLlmCacheSavedMs(cacheUsage.getSavedMs());
                 if (aiResult != null && !aiResult.isEmpty()) {
                     logger.info("✓ AI审查完成");
                     try {
@@ -191,15 +207,17 @@ public class UnifiedReviewService {
                     // 【步骤6】如果是完整模式，解析结果并导入批注
                     if (reviewMode == ReviewMode.FULL) {
                         logger.info("步骤5: 解析AI结果并导入批注...");
+                        ReviewJobService.reportStage("annotate", "解析AI结果并导入批注");
                         try {
                             // 【关键修复】解析AI结果为ReviewIssue列表
                             List<ReviewIssue> issues = qwenRuleReviewService.parseReviewResults(aiResult);
                             logger.info("✓ 解析出 {} 个审查问题", issues.size());
 
                             if (issues != null && !issues.isEmpty()) {
-                                // 【关键修复】直接传递带锚点文档字节数组和issues列表
-                                byte[] annotatedDocBytes = xmlContractAnnotateService.annotateContractWithXml(
-                                    anchoredDocumentBytes, issues, "preferAnchor", false);
+                                // 【关键修复】直接传递带锚点文档字节数组和issues列表（有缓存预索引时按片段拼接）
+                                byte[] annotatedDocBytes = cachedParse != null
+                                    ? xmlContractAnnotateService.annotateContractWithXml(cachedParse, issues, "preferAnchor", false)
+                                    : xmlContractAnnotateService.annotateContractWithXml(anchoredDocumentBytes, issues, "preferAnchor", false);
                                 logger.info("✓ 文档批注完成，大小: {} KB", annotatedDocBytes.length / 1024);
 
                                 // 【步骤7】保存带批注的文档到文档中心和MinIO
@@ -207,34 +225,25 @@ public class UnifiedReviewService {
                                 String outputFilename = baseName + "_统一审查_" +
                                     (party != null ? party : "中立") + ".docx";
 
-                                // 保存到本地文档中心（保持现有逻辑）
-                                String projectRoot = System.getProperty("user.dir");
-                                String docCenterPath = Paths.get(projectRoot, "文档中心", "已生成的审查报告").toString();
-
-                                // 创建目录
-                                Path docCenterDir = Paths.get(docCenterPath);
-                                if (!Files.exists(docCenterDir)) {
-                                    Files.createDirectories(docCenterDir);
-                                    logger.info("✓ 创建文档中心目录: {}", docCenterPath);
+                                // 本地文档中心留档（后台写入，按采样率留档）
+                                if (diagnosticsSink.sampled(DiagnosticsSink.Category.REVIEW_REPORT)
+                                        && diagnosticsSink.submit(DiagnosticsSink.Category.REVIEW_REPORT, outputFilename, annotatedDocBytes)) {
+                                    logger.info("✓ 文档已提交本地留档: {}", outputFilename);
                                 }
 
-                                // 保存文件到本地（使用中文文件名）
-                                Path outputPath = docCenterDir.resolve(outputFilename);
-                                Files.write(outputPath, annotatedDocBytes);
-                                logger.info("✓ 文档已保存到本地: {}", outputPath);
-
-                                // 【新增】同时保存到MinIO
+                                // 【新增】同时保存到MinIO（后台上传，URL 在上传完成后可访问）
                                 try {
                                     if (minioFileService.isEnabled()) {
                                         String minioObjectName = minioFileService.generateReportObjectName(
                                             filename, "统一审查", party != null ? party : "中立");
-                                        String minioUrl = minioFileService.uploadBytes(
-                                            annotatedDocBytes, 
+                                        ArtifactUploadService.Upload upload = artifactUploadService.submit(
+                                            annotatedDocBytes,
                                             minioObjectName,
                                             "application/vnd.openxmlformats-officedocument.wordprocessingml.document"
                                         );
-                                        result.setAnnotatedDocumentUrl(minioUrl);
-                                        logger.info("✓ 文档已保存到MinIO: {}", minioUrl);
+                                        result.setAnnotatedDocumentUrl(upload.getUrl());
+                                        result.setAnnotatedDocumentUpload(upload.toStatus());
+                                        logger.info("✓ 文档已提交MinIO上传: {}, 状态: {}", upload.getUrl(), upload.getStatus());
                                     } else {
                                         logger.info("MinIO服务未启用，跳过MinIO存储");
                                     }
@@ -353,27 +362,28 @@ public class UnifiedReviewService {
 
     /**
      * 调用AI服务
+     *
+     * 选定的提供商为主提供商；超时或失败时由路由服务对冲/切换到其他支持直接发送 Prompt 的提供商
      */
-    private String callAI(String prompt, String aiProvider) {
+    private String callAI(String prompt, String aiProvider, LlmResponseCache.Usage cacheUsage,
+                          ReviewStatistics statistics) {
         if (aiProvider == null || aiProvider.isEmpty()) {
             return null;
         }
 
-        switch (aiProvider.toLowerCase()) {
-            case "qwen":
-                if (qwenRuleReviewService.isQwenAvailable()) {
-                    return qwenRuleReviewService.reviewContractWithQwen(prompt);
-                }
-                break;
-
-            case "chatgpt":
-            case "openai":
-                logger.warn("ChatGPT服务暂未集成到统一接口");
-                break;
-
-            case "claude":
-                logger.warn("Claude服务暂未集成到统一接口");
-                break;
+        try {
+            AIProviderRouter.RouteResult routed = aiProviderRouter.reviewPrompt(aiProvider, prompt, cacheUsage);
+            if (routed != null) {
+                statistics.setLlmProvider(routed.getProvider());
+                return routed.getResponse();
+            }
+        } catch (Exception e) {
+            logger.error("AI服务调用失败: {}", e.getMessage());
+            ObjectNode error = objectMapper.createObjectNode();
+            error.put("success", false);
+            error.put("error", "AI审查失败: " + e.getMessage());
+            error.putArray("issues");
+            return error.toString();
         }
 
         logger.warn("无法调用AI服务: {}", aiProvider);
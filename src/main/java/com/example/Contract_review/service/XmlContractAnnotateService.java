@@ -1,16 +1,23 @@
 package com.example.Contract_review.service;
 
+import com.example.Contract_review.model.AnnotationReport;
 import com.example.Contract_review.model.ReviewIssue;
 import com.example.Contract_review.model.ReviewRequest;
+import com.example.Contract_review.util.AnchoredDocumentIndex;
 import com.example.Contract_review.util.WordXmlCommentProcessor;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.minio.errors.ErrorResponseException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.List;
 
 /**
@@ -29,6 +36,250 @@ public class XmlContractAnnotateService {
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private ParseResultCache parseResultCache;
+
+    @Autowired
+    private AnchoredDocumentStore anchoredDocumentStore;
+
+    /**
+     * 按 parseResultId 批注的结果
+     */
+    public static class StoredAnnotation {
+        private final String objectName;
+        private final String url;
+        private final String filename;
+        private final long fileSize;
+        private final String source;
+        private final AnnotationReport report;
+
+        public StoredAnnotation(String objectName, String url, String filename, long fileSize,
+                                String source, AnnotationReport report) {
+            this.objectName = objectName;
+            this.url = url;
+            this.filename = filename;
+            this.fileSize = fileSize;
+            this.source = source;
+            this.report = report;
+        }
+
+        /**
+         * 批注结果在 MinIO 中的对象名称
+         */
+        public String getObjectName() {
+            return objectName;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public String getFilename() {
+            return filename;
+        }
+
+        public long getFileSize() {
+            return fileSize;
+        }
+
+        /**
+         * 源文档来源：cache（内存缓存，含预索引）或 minio
+         */
+        public String getSource() {
+            return source;
+        }
+
+        public AnnotationReport getReport() {
+            return report;
+        }
+    }
+
+    /**
+     * 按 parseResultId 为合同添加批注，结果写回 MinIO
+     *
+     * 源文档优先取内存缓存（可复用预索引），缓存过期时从 MinIO 流式读取（数据流直接交给批注处理器解包）；
+     * 批注结果流式写入 {minio.path.anchored}/{parseResultId}/annotated.docx，文档不经过调用方
+     *
+     * @param parseResultId Parse 阶段返回的 parseResultId
+     * @param issues 审查问题列表
+     * @param anchorStrategy 锚点策略
+     * @param cleanupAnchors 是否清理锚点
+     * @return 批注结果在 MinIO 中的位置及批注处理报告
+     * @throws IllegalArgumentException parseResultId 格式无效
+     * @throws FileNotFoundException parseResultId 对应的带锚点文档不存在（已过期或从未生成）
+     * @throws IOException 读取、批注或保存失败
+     */
+    public StoredAnnotation annotateStoredContract(String parseResultId, List<ReviewIssue> issues,
+                                                   String anchorStrategy, boolean cleanupAnchors) throws IOException {
+        if (!anchoredDocumentStore.isEnabled()) {
+            throw new IOException("MinIO未启用，无法按 parseResultId 保存批注结果");
+        }
+
+        WordXmlCommentProcessor.AnnotatedDocument annotated;
+        String sourceFilename;
+        String source;
+
+        ParseResultCache.CachedParseResult cached = parseResultCache.retrieve(parseResultId);
+        if (cached != null) {
+            annotated = annotateContractWithReport(cached, issues, anchorStrategy, cleanupAnchors);
+            sourceFilename = cached.sourceFilename;
+            source = "cache";
+        } else {
+            logger.info("内存缓存不存在，从MinIO读取带锚点文档: parseResultId={}", parseResultId);
+            AnchoredDocumentStore.StoredDocument stored;
+            try {
+                stored = anchoredDocumentStore.open(parseResultId);
+            } catch (IllegalArgumentException e) {
+                throw e;
+            } catch (ErrorResponseException e) {
+                if ("NoSuchKey".equals(e.errorResponse().code())) {
+                    throw new FileNotFoundException("parseResultId 对应的带锚点文档不存在或已过期: " + parseResultId);
+                }
+                throw new IOException("读取带锚点文档失败: " + e.getMessage(), e);
+            } catch (Exception e) {
+                throw new IOException("读取带锚点文档失败: " + e.getMessage(), e);
+            }
+            try (InputStream in = stored.getStream()) {
+                annotated = xmlCommentProcessor.annotateDocx(in, issues, anchorStrategy, cleanupAnchors);
+            } catch (IOException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IOException("XML批注处理失败: " + e.getMessage(), e);
+            }
+            sourceFilename = stored.getFilename();
+            source = "minio";
+        }
+
+        return saveAnnotation(parseResultId, annotated.getDocumentBytes(), sourceFilename, source, annotated.getReport());
+    }
+
+    private StoredAnnotation saveAnnotation(String parseResultId, byte[] annotatedBytes, String sourceFilename,
+                                            String source, AnnotationReport report) throws IOException {
+        String outputFilename = buildOutputFilename(sourceFilename);
+        try {
+            String objectName = anchoredDocumentStore.saveAnnotated(parseResultId,
+                    new ByteArrayInputStream(annotatedBytes), annotatedBytes.length, outputFilename);
+            return new StoredAnnotation(objectName, anchoredDocumentStore.getFileUrl(objectName), outputFilename,
+                    annotatedBytes.length, source, report);
+        } catch (Exception e) {
+            throw new IOException("批注结果保存到MinIO失败: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 开始增量批注：审查问题分批到达时逐批写入同一份文档
+     *
+     * 首批使用缓存中的预索引，之后每批沿用上一批按拼接偏移增量更新的预索引（只重新扫描被替换的段落），
+     * 仅在回退到全量处理时重新建立索引；
+     * 批注ID从文档中已有的最大ID继续编号，各批之间不会冲突。为保证后续批次仍能按锚点定位，批次处理不清理锚点。
+     *
+     * @param parseResultId Parse 阶段返回的 parseResultId（用于保存结果）
+     * @param cached 缓存的 Parse 结果
+     * @param anchorStrategy 锚点策略
+     * @return 增量批注会话
+     */
+    public IncrementalAnnotation beginIncrementalAnnotation(String parseResultId,
+                                                            ParseResultCache.CachedParseResult cached,
+                                                            String anchorStrategy) {
+        return new IncrementalAnnotation(parseResultId, cached, anchorStrategy);
+    }
+
+    /**
+     * 增量批注会话
+     */
+    public class IncrementalAnnotation {
+        private final String parseResultId;
+        private final String sourceFilename;
+        private final String anchorStrategy;
+        private final AnnotationReport report;
+        private final ParseResultCache.CachedParseResult cached;
+        /**
+         * 最近一批的批注结果，首批之前为 null（此时直接读取缓存中的文档视图）
+         */
+        private byte[] documentBytes;
+        private AnchoredDocumentIndex documentIndex;
+        private int batchCount;
+
+        private IncrementalAnnotation(String parseResultId, ParseResultCache.CachedParseResult cached,
+                                      String anchorStrategy) {
+            this.parseResultId = parseResultId;
+            this.sourceFilename = cached.sourceFilename;
+            this.anchorStrategy = anchorStrategy;
+            this.cached = cached;
+            this.documentIndex = cached.documentIndex;
+            this.report = AnnotationReport.builder().mode("incremental").consistent(true).build();
+        }
+
+        /**
+         * 批注一批问题
+         *
+         * @param issues 本批审查问题
+         * @return 累计成功添加的批注数
+         * @throws IOException 处理失败
+         */
+        public synchronized int append(List<ReviewIssue> issues) throws IOException {
+            if (issues == null || issues.isEmpty()) {
+                return report.getAddedCount();
+            }
+
+            WordXmlCommentProcessor.AnnotatedDocument annotated =
+                    annotateContract(currentDocument(), documentIndex, issues, anchorStrategy, false);
+            documentBytes = annotated.getDocumentBytes();
+            // 片段拼接时预索引已按偏移增量更新；回退到全量处理（或无预索引）时才重新构建
+            documentIndex = annotated.getDocumentIndex() != null
+                    ? annotated.getDocumentIndex() : AnchoredDocumentIndex.build(documentBytes);
+            batchCount++;
+            mergeReport(annotated.getReport());
+
+            logger.info("【增量批注】第 {} 批完成: 本批 {} 个问题，累计添加 {} 个批注",
+                       batchCount, issues.size(), report.getAddedCount());
+            return report.getAddedCount();
+        }
+
+        /**
+         * 将当前批注结果写回 MinIO
+         *
+         * @return 批注结果在 MinIO 中的位置及累计批注处理报告
+         * @throws IOException 未启用MinIO或保存失败
+         */
+        public synchronized StoredAnnotation save() throws IOException {
+            if (!anchoredDocumentStore.isEnabled()) {
+                throw new IOException("MinIO未启用，无法按 parseResultId 保存批注结果");
+            }
+            return saveAnnotation(parseResultId, getDocumentBytes(), sourceFilename, "cache", report);
+        }
+
+        public synchronized byte[] getDocumentBytes() {
+            return documentBytes != null ? documentBytes : cached.getDocumentBytes();
+        }
+
+        private ByteBuffer currentDocument() {
+            return documentBytes != null ? ByteBuffer.wrap(documentBytes) : cached.getDocumentBuffer();
+        }
+
+        public synchronized AnnotationReport getReport() {
+            return report;
+        }
+
+        public String getSourceFilename() {
+            return sourceFilename;
+        }
+
+        private void mergeReport(AnnotationReport batch) {
+            report.setRequestedCount(report.getRequestedCount() + batch.getRequestedCount());
+            report.setAddedCount(report.getAddedCount() + batch.getAddedCount());
+            report.setFailedCount(report.getFailedCount() + batch.getFailedCount());
+            report.setCommentRangeStartCount(report.getCommentRangeStartCount() + batch.getCommentRangeStartCount());
+            report.setCommentRangeEndCount(report.getCommentRangeEndCount() + batch.getCommentRangeEndCount());
+            report.setCommentReferenceCount(report.getCommentReferenceCount() + batch.getCommentReferenceCount());
+            report.setCommentCount(report.getCommentCount() + batch.getCommentCount());
+            report.getInconsistentCommentIds().addAll(batch.getInconsistentCommentIds());
+            report.setConsistent(report.isConsistent() && batch.isConsistent());
+            report.setFullScanVerified(report.isFullScanVerified() || batch.isFullScanVerified());
+            report.setElapsedMs(report.getElapsedMs() + batch.getElapsedMs());
+        }
+    }
+
     /**
      * 使用XML方式为合同添加批注（新版本 - 高性能版）
      *
@@ -50,23 +301,114 @@ public class XmlContractAnnotateService {
      */
     public byte[] annotateContractWithXml(byte[] documentBytes, List<ReviewIssue> issues,
                                          String anchorStrategy, boolean cleanupAnchors) throws IOException {
+        return annotateContract(wrap(documentBytes), null, issues, anchorStrategy, cleanupAnchors).getDocumentBytes();
+    }
+
+    /**
+     * 使用XML方式为合同添加批注，同时返回批注处理报告
+     *
+     * @param documentBytes 合同文档字节数组（必须是带锚点的文档）
+     * @param issues 审查问题列表
+     * @param anchorStrategy 锚点策略
+     * @param cleanupAnchors 是否清理锚点
+     * @return 带批注的文档字节数组及批注处理报告
+     * @throws IOException 处理失败
+     */
+    public WordXmlCommentProcessor.AnnotatedDocument annotateContractWithReport(
+            byte[] documentBytes, List<ReviewIssue> issues,
+            String anchorStrategy, boolean cleanupAnchors) throws IOException {
+        return annotateContract(wrap(documentBytes), null, issues, anchorStrategy, cleanupAnchors);
+    }
+
+    /**
+     * 使用缓存的 Parse 结果为合同添加批注，同时返回批注处理报告
+     *
+     * @param cached 缓存的 Parse 结果
+     * @param issues 审查问题列表
+     * @param anchorStrategy 锚点策略
+     * @param cleanupAnchors 是否清理锚点
+     * @return 带批注的文档字节数组及批注处理报告
+     * @throws IOException 处理失败
+     */
+    public WordXmlCommentProcessor.AnnotatedDocument annotateContractWithReport(
+            ParseResultCache.CachedParseResult cached, List<ReviewIssue> issues,
+            String anchorStrategy, boolean cleanupAnchors) throws IOException {
+        return annotateContract(cached.getDocumentBuffer(), cached.documentIndex,
+                                issues, anchorStrategy, cleanupAnchors);
+    }
+
+    /**
+     * 使用缓存的 Parse 结果为合同添加批注
+     *
+     * 【推荐用于】已有 parseResultId 的调用方；缓存中存在预索引时直接按偏移拼接批注，
+     * 无需再次解压和全量解析 document.xml
+     *
+     * @param cached 缓存的 Parse 结果
+     * @param issues 审查问题列表
+     * @param anchorStrategy 锚点策略
+     * @param cleanupAnchors 是否清理锚点
+     * @return 带批注的文档字节数组
+     * @throws IOException 处理失败
+     */
+    public byte[] annotateContractWithXml(ParseResultCache.CachedParseResult cached, List<ReviewIssue> issues,
+                                         String anchorStrategy, boolean cleanupAnchors) throws IOException {
+        return annotateContract(cached.getDocumentBuffer(), cached.documentIndex,
+                                issues, anchorStrategy, cleanupAnchors).getDocumentBytes();
+    }
+
+    /**
+     * 使用缓存的 Parse 结果和审查JSON为合同添加批注
+     *
+     * @param cached 缓存的 Parse 结果
+     * @param reviewJson 审查结果JSON
+     * @param anchorStrategy 锚点策略
+     * @param cleanupAnchors 是否清理锚点
+     * @return 带批注的文档字节数组
+     * @throws IOException 处理失败
+     */
+    public byte[] annotateContractWithXml(ParseResultCache.CachedParseResult cached, String reviewJson,
+                                         String anchorStrategy, boolean cleanupAnchors) throws IOException {
+        if (!validateReviewJson(reviewJson)) {
+            throw new IOException("审查JSON格式无效");
+        }
+        ReviewRequest reviewRequest = objectMapper.readValue(reviewJson, ReviewRequest.class);
+        return annotateContractWithXml(cached, reviewRequest.getIssues(), anchorStrategy, cleanupAnchors);
+    }
+
+    /**
+     * 使用XML方式为合同添加批注（可选预索引）
+     *
+     * @param document 合同文档的只读视图（必须是带锚点的文档；缓存磁盘层的映射直接传入，不复制到堆上）
+     * @param documentIndex 带锚点文档的预索引，为 null 时走全量处理
+     * @param issues 审查问题列表
+     * @param anchorStrategy 锚点策略
+     * @param cleanupAnchors 是否清理锚点
+     * @return 带批注的文档字节数组及批注处理报告
+     * @throws IOException 处理失败
+     */
+    private WordXmlCommentProcessor.AnnotatedDocument annotateContract(
+            ByteBuffer document, AnchoredDocumentIndex documentIndex, List<ReviewIssue> issues,
+            String anchorStrategy, boolean cleanupAnchors) throws IOException {
 
         logger.info("【新版本】开始XML方式批注处理: issues数量={}, anchorStrategy={}, cleanupAnchors={}",
                    issues != null ? issues.size() : 0, anchorStrategy, cleanupAnchors);
 
         try {
             // 1. 验证输入参数
-            if (documentBytes == null || documentBytes.length == 0) {
+            if (document == null || !document.hasRemaining()) {
                 throw new IOException("文档字节数组为空");
             }
 
             if (issues == null || issues.isEmpty()) {
                 logger.warn("没有要添加的审查问题，直接返回原始文档");
-                return documentBytes;
+                byte[] original = new byte[document.remaining()];
+                document.duplicate().get(original);
+                return new WordXmlCommentProcessor.AnnotatedDocument(original,
+                        AnnotationReport.builder().consistent(true).build());
             }
 
-            logger.info("✓ 输入验证通过，文档大小: {} 字节, 问题数: {}",
-                       documentBytes.length, issues.size());
+            logger.info("✓ 输入验证通过，文档大小: {} 字节, 问题数: {}, 预索引: {}",
+                       document.remaining(), issues.size(), documentIndex != null ? "可用" : "无");
 
             // 【关键诊断】检查每个issue的anchorId
             int validAnchorCount = 0;
@@ -86,12 +428,13 @@ public class XmlContractAnnotateService {
             }
             logger.info("✓ 问题诊断：有效anchorId数={}, 缺失anchorId数={}", validAnchorCount, nullAnchorCount);
 
-            // 2. 直接调用XML处理器添加批注
-            byte[] annotatedBytes = xmlCommentProcessor.addCommentsToDocx(
-                documentBytes, issues, anchorStrategy, cleanupAnchors);
+            // 2. 直接调用XML处理器添加批注（有预索引时按片段拼接，否则全量处理）
+            WordXmlCommentProcessor.AnnotatedDocument annotated = xmlCommentProcessor.annotateIndexedDocx(
+                documentIndex, document, issues, anchorStrategy, cleanupAnchors);
 
-            logger.info("✓ XML批注处理完成，输出文档大小: {} 字节", annotatedBytes.length);
-            return annotatedBytes;
+            logger.info("✓ XML批注处理完成，输出文档大小: {} 字节, 批注校验一致: {}",
+                       annotated.getDocumentBytes().length, annotated.getReport().isConsistent());
+            return annotated;
 
         } catch (Exception e) {
             logger.error("XML批注处理失败", e);
@@ -99,6 +442,10 @@ public class XmlContractAnnotateService {
         }
     }
 
+    private static ByteBuffer wrap(byte[] documentBytes) {
+        return documentBytes != null ? ByteBuffer.wrap(documentBytes) : null;
+    }
+
     /**
      * 使用XML方式为合同添加批注（旧版本 - 保留用于向后兼容）
      *
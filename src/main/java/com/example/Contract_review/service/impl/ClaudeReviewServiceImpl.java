@@ -1,20 +1,20 @@
 package com.example.Contract_review.service.impl;
 
+import com.example.Contract_review.config.AIHttpClients;
+import com.example.Contract_review.config.AIRequestExecutor;
 import com.example.Contract_review.config.AIServiceConfig;
 import com.example.Contract_review.model.ParseResult;
 import com.example.Contract_review.service.AIReviewService;
+import com.example.Contract_review.service.ContractPromptEncoder;
+import com.example.Contract_review.service.LlmResponseCache;
 import com.example.Contract_review.service.ReviewStandardService;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.http.HttpEntity;
-import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 
 import java.util.HashMap;
 import java.util.List;
@@ -34,11 +34,20 @@ public class ClaudeReviewServiceImpl implements AIReviewService {
     @Autowired
     private ReviewStandardService reviewStandardService;
 
+    @Autowired
+    private ContractPromptEncoder contractPromptEncoder;
+
     @Autowired
     private ObjectMapper objectMapper;
 
     @Autowired
-    private RestTemplate restTemplate;
+    private AIHttpClients aiHttpClients;
+
+    @Autowired
+    private AIRequestExecutor aiRequestExecutor;
+
+    @Autowired
+    private LlmResponseCache llmResponseCache;
 
     @Override
     public String reviewContract(ParseResult parseResult, String contractType) throws Exception {
@@ -48,17 +57,28 @@ public class ClaudeReviewServiceImpl implements AIReviewService {
 
         logger.info("开始使用Claude审查合同: contractType={}", contractType);
 
-        // 生成审查Prompt
-        String contractJson = objectMapper.writeValueAsString(parseResult);
-        String prompt = reviewStandardService.generateReviewPrompt(contractType, contractJson);
+        // 生成审查Prompt（紧凑编码：每个条款只出现一次，只包含与审查标准相关的条款）
+        ContractPromptEncoder.EncodedContract contract = contractPromptEncoder.encode(parseResult, contractType);
+        String prompt = reviewStandardService.generateReviewPrompt(contractType, contract.getText());
 
         // 调用Claude API
-        String reviewResult = callClaudeAPI(prompt);
+        String reviewResult = llmResponseCache.getOrCompute("claude", aiServiceConfig.getClaude().getModel(), prompt,
+                () -> callClaudeAPI(prompt), null);
 
         logger.info("Claude审查完成，结果长度: {}", reviewResult.length());
         return reviewResult;
     }
 
+    @Override
+    public String reviewPrompt(String prompt) throws Exception {
+        return llmResponseCache.getOrCompute("claude", aiServiceConfig.getClaude().getModel(), prompt, () -> callClaudeAPI(prompt), null);
+    }
+
+    @Override
+    public boolean supportsPrompt() {
+        return true;
+    }
+
     @Override
     public boolean isAvailable() {
         return "claude".equalsIgnoreCase(aiServiceConfig.getProvider())
@@ -76,81 +96,51 @@ public class ClaudeReviewServiceImpl implements AIReviewService {
     private String callClaudeAPI(String prompt) throws Exception {
         AIServiceConfig.ClaudeConfig config = aiServiceConfig.getClaude();
 
-        // 重试机制
-        int maxRetries = aiServiceConfig.getMaxRetries();
-        Exception lastException = null;
-
-        for (int attempt = 1; attempt <= maxRetries; attempt++) {
-            try {
-                logger.info("调用Claude API - 尝试 {}/{}", attempt, maxRetries);
-
-                // 构建请求体
-                Map<String, Object> requestBody = new HashMap<>();
-                requestBody.put("model", config.getModel());
-                requestBody.put("max_tokens", config.getMaxTokens());
-
-                // 构建消息
-                Map<String, String> message = new HashMap<>();
-                message.put("role", "user");
-                message.put("content", prompt);
-                requestBody.put("messages", List.of(message));
-
-                // 设置请求头
-                HttpHeaders headers = new HttpHeaders();
-                headers.setContentType(MediaType.APPLICATION_JSON);
-                headers.set("x-api-key", config.getApiKey());
-                headers.set("anthropic-version", "2023-06-01");
-
-                HttpEntity<Map<String, Object>> request = new HttpEntity<>(requestBody, headers);
-
-                // 发送请求
-                ResponseEntity<String> response = restTemplate.postForEntity(
-                    config.getApiEndpoint(),
-                    request,
-                    String.class
-                );
-
-                // 解析响应
-                String result = extractReviewFromResponse(response.getBody());
-                logger.info("Claude API调用成功");
-                return result;
-
-            } catch (Exception e) {
-                lastException = e;
-                logger.warn("Claude API调用失败 (尝试 {}/{}): {}", attempt, maxRetries, e.getMessage());
-
-                if (attempt < maxRetries) {
-                    // 等待后重试（指数退避）
-                    int waitTime = (int) Math.pow(2, attempt) * 1000; // 2秒, 4秒, 8秒
-                    logger.info("等待{}秒后重试...", waitTime / 1000);
-                    try {
-                        Thread.sleep(waitTime);
-                    } catch (InterruptedException ie) {
-                        Thread.currentThread().interrupt();
-                        throw new Exception("重试被中断", ie);
-                    }
-                }
-            }
-        }
+        // 构建请求体
+        Map<String, Object> requestBody = new HashMap<>();
+        requestBody.put("model", config.getModel());
+        requestBody.put("max_tokens", config.getMaxTokens());
+
+        // 构建消息
+        Map<String, String> message = new HashMap<>();
+        message.put("role", "user");
+        message.put("content", prompt);
+        requestBody.put("messages", List.of(message));
 
-        // 所有重试都失败
-        String errorMessage = "Claude API调用失败（已重试" + maxRetries + "次）";
-        if (lastException != null) {
-            errorMessage += ": " + lastException.getMessage();
+        logger.info("调用Claude API: model={}", config.getModel());
+
+        String responseBody;
+        try {
+            // 并发限制和重试（429/5xx/超时，遵循 Retry-After）由 AIRequestExecutor 统一处理，等待期间不占用线程
+            responseBody = aiRequestExecutor.execute("claude", () -> aiHttpClients.webClient("claude").post()
+                    .uri(config.getApiEndpoint())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .header("x-api-key", config.getApiKey())
+                    .header("anthropic-version", "2023-06-01")
+                    .bodyValue(requestBody)
+                    .retrieve()
+                    .bodyToMono(String.class))
+                    .block();
+        } catch (Exception e) {
+            String errorMessage = "Claude API调用失败（最多尝试" + aiServiceConfig.getMaxRetries() + "次）: " + e.getMessage();
 
             // 检查是否是网络连接问题
-            if (lastException.getMessage().contains("Connection") ||
-                lastException.getMessage().contains("timeout") ||
-                lastException.getMessage().contains("connect")) {
+            String cause = String.valueOf(e.getMessage());
+            if (cause.contains("Connection") || cause.contains("timeout") || cause.contains("connect")) {
                 errorMessage = "网络连接失败，无法访问Claude服务。请检查:\n" +
                               "1. 网络连接是否正常\n" +
                               "2. 是否需要配置代理\n" +
                               "3. API端点URL是否正确: " + config.getApiEndpoint();
             }
+
+            logger.error(errorMessage);
+            throw new Exception(errorMessage, e);
         }
 
-        logger.error(errorMessage);
-        throw new Exception(errorMessage, lastException);
+        // 解析响应
+        String result = extractReviewFromResponse(responseBody);
+        logger.info("Claude API调用成功");
+        return result;
     }
 
     /**
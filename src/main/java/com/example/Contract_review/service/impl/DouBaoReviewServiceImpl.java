@@ -1,8 +1,11 @@
 package com.example.Contract_review.service.impl;
 
-import com.example.Contract_review.model.Clause;
+import com.example.Contract_review.config.AIHttpClients;
+import com.example.Contract_review.config.AIRequestExecutor;
 import com.example.Contract_review.model.ParseResult;
 import com.example.Contract_review.service.AIReviewService;
+import com.example.Contract_review.service.ContractPromptEncoder;
+import com.example.Contract_review.service.LlmResponseCache;
 import com.example.Contract_review.util.VolcEngineSignature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
@@ -10,7 +13,7 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.*;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.web.reactive.function.client.WebClient;
 
 import java.util.HashMap;
 import java.util.List;
@@ -33,12 +36,20 @@ public class DouBaoReviewServiceImpl implements AIReviewService {
     @Value("${doubao.model:ep-20241014141450-2mhkd}")
     private String model;
 
-    private final RestTemplate restTemplate;
+    private final WebClient webClient;
+    private final AIRequestExecutor aiRequestExecutor;
     private final ObjectMapper objectMapper;
-
-    public DouBaoReviewServiceImpl(RestTemplate restTemplate, ObjectMapper objectMapper) {
-        this.restTemplate = restTemplate;
+    private final LlmResponseCache llmResponseCache;
+    private final ContractPromptEncoder contractPromptEncoder;
+
+    public DouBaoReviewServiceImpl(AIHttpClients aiHttpClients, AIRequestExecutor aiRequestExecutor,
+                                   ObjectMapper objectMapper, LlmResponseCache llmResponseCache,
+                                   ContractPromptEncoder contractPromptEncoder) {
+        this.webClient = aiHttpClients.webClient("doubao");
+        this.aiRequestExecutor = aiRequestExecutor;
         this.objectMapper = objectMapper;
+        this.llmResponseCache = llmResponseCache;
+        this.contractPromptEncoder = contractPromptEncoder;
     }
 
     @Override
@@ -47,28 +58,8 @@ public class DouBaoReviewServiceImpl implements AIReviewService {
 
         try {
             // 构建请求消息
-            String prompt = buildReviewPrompt(parseResult.getClauses(), contractType);
-            Map<String, Object> requestBody = buildRequestBody(prompt);
-
-            // 设置请求头
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            headers.set("Authorization", "Bearer " + apiKey);
-
-            HttpEntity<Map<String, Object>> request = new HttpEntity<>(requestBody, headers);
-
-            // 发送请求
-            logger.debug("发送豆包API请求: {}", apiUrl);
-            ResponseEntity<String> response = restTemplate.postForEntity(apiUrl, request, String.class);
-
-            if (response.getStatusCode() == HttpStatus.OK) {
-                String responseBody = response.getBody();
-                logger.debug("豆包API响应: {}", responseBody);
-                return extractReviewResult(responseBody);
-            } else {
-                logger.error("豆包API请求失败，状态码: {}", response.getStatusCode());
-                return createErrorResponse("API请求失败，状态码: " + response.getStatusCode());
-            }
+            String prompt = buildReviewPrompt(contractPromptEncoder.encode(parseResult, contractType).getText(), contractType);
+            return llmResponseCache.getOrCompute("doubao", model, prompt, () -> callDouBaoAPI(prompt), null);
 
         } catch (Exception e) {
             logger.error("豆包AI审查过程中发生错误", e);
@@ -76,22 +67,36 @@ public class DouBaoReviewServiceImpl implements AIReviewService {
         }
     }
 
+    /**
+     * 调用豆包API
+     */
+    private String callDouBaoAPI(String prompt) {
+        Map<String, Object> requestBody = buildRequestBody(prompt);
+
+        // 发送请求（并发限制和 429/5xx 重试由 AIRequestExecutor 统一处理）
+        logger.debug("发送豆包API请求: {}", apiUrl);
+        String responseBody = aiRequestExecutor.execute("doubao", () -> webClient.post()
+                .uri(apiUrl)
+                .contentType(MediaType.APPLICATION_JSON)
+                .header("Authorization", "Bearer " + apiKey)
+                .bodyValue(requestBody)
+                .retrieve()
+                .bodyToMono(String.class))
+                .block();
+
+        logger.debug("豆包API响应: {}", responseBody);
+        return extractReviewResult(responseBody);
+    }
+
     /**
      * 构建审查提示词
      */
-    private String buildReviewPrompt(List<Clause> clauses, String standards) {
+    private String buildReviewPrompt(String contractContent, String standards) {
         StringBuilder prompt = new StringBuilder();
 
         prompt.append("作为资深法务专家，请对以下合同条款进行详细审查分析。\n\n");
         prompt.append("审查标准：\n").append(standards).append("\n\n");
-        prompt.append("合同条款：\n");
-
-        for (int i = 0; i < clauses.size(); i++) {
-            Clause clause = clauses.get(i);
-            prompt.append("条款 ").append(i + 1).append(" (").append(clause.getId()).append(")：")
-                  .append(clause.getHeading()).append("\n")
-                  .append(clause.getText()).append("\n\n");
-        }
+        prompt.append("合同内容：\n").append(contractContent).append("\n");
 
         prompt.append("请按照以下JSON格式返回审查结果：\n");
         prompt.append("{\n");
@@ -195,6 +200,16 @@ public class DouBaoReviewServiceImpl implements AIReviewService {
         }
     }
 
+    @Override
+    public String reviewPrompt(String prompt) throws Exception {
+        return llmResponseCache.getOrCompute("doubao", model, prompt, () -> callDouBaoAPI(prompt), null);
+    }
+
+    @Override
+    public boolean supportsPrompt() {
+        return true;
+    }
+
     @Override
     public boolean isAvailable() {
         return apiKey != null && !apiKey.trim().isEmpty();
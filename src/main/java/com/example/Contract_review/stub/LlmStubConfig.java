@@ -0,0 +1,28 @@
+package com.example.Contract_review.stub;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+/**
+ * LLM 替身服务配置
+ *
+ * 以 --spring.profiles.active=llm-stub 启动时随应用启动本地 OpenAI 兼容替身服务，
+ * application-llm-stub.properties 把 Qwen、豆包、OpenAI 的地址指向它，用于离线压测
+ */
+@Configuration
+@Profile("llm-stub")
+public class LlmStubConfig {
+
+    @Bean
+    @ConfigurationProperties(prefix = "llm-stub")
+    public LlmStubServer.Settings llmStubSettings() {
+        return new LlmStubServer.Settings();
+    }
+
+    @Bean(destroyMethod = "stop")
+    public LlmStubServer llmStubServer(LlmStubServer.Settings llmStubSettings) {
+        return new LlmStubServer(llmStubSettings).start();
+    }
+}
@@ -0,0 +1,445 @@
+package com.example.Contract_review.stub;
+
+import com.example.Contract_review.util.TokenEstimator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.netty.handler.codec.http.HttpMethod;
+import lombok.Data;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.http.server.HttpServerRequest;
+import reactor.netty.http.server.HttpServerResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 本地 LLM 替身服务（OpenAI 兼容）
+ *
+ * 在无网络环境下对整条审查链路（QwenClient、各提供商的 HTTP 客户端、JSON 提取、批注）做端到端压测：
+ * - 实现 POST .../chat/completions，支持非流式和流式（SSE，以 data: [DONE] 结束）两种响应
+ * - 首字延迟按配置的分布采样（fixed / uniform / lognormal），输出按 tokensPerSecond 的速率返回
+ * - 按比例注入 429（带 Retry-After）和 500 错误
+ * - 审查结果中的 issues 引用 Prompt 里真实出现的锚点ID（anc-...）或条款ID（[c1]），
+ *   targetText 取锚点之后的原文片段，使批注流程可以定位
+ *
+ * 可直接在测试中启动（端口传 0 时随机分配），也可通过 llm-stub profile 随应用启动。
+ */
+public class LlmStubServer {
+
+    private static final Logger logger = LoggerFactory.getLogger(LlmStubServer.class);
+
+    private static final Pattern ANCHOR_PATTERN = Pattern.compile("anc-(c\\d+)(?:-p\\d+)?-[0-9a-zA-Z]{2,16}");
+    private static final Pattern CLAUSE_PATTERN = Pattern.compile("\\[(c\\d+)]");
+    private static final String[] SEVERITIES = {"HIGH", "MEDIUM", "LOW"};
+
+    /**
+     * 流式响应每个分片的字符数
+     */
+    private static final int STREAM_CHUNK_CHARS = 16;
+
+    /**
+     * targetText 的最大长度
+     */
+    private static final int TARGET_TEXT_CHARS = 20;
+
+    private final Settings settings;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Random random;
+    private final AtomicLong ids = new AtomicLong();
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong streamed = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong throttled = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    private DisposableServer server;
+
+    /**
+     * 替身服务配置
+     */
+    @Data
+    public static class Settings {
+        /**
+         * 监听端口（0 表示随机分配）
+         */
+        private int port = 18080;
+
+        /**
+         * 首字延迟分布：fixed / uniform / lognormal
+         */
+        private String latencyDistribution = "lognormal";
+
+        /**
+         * 首字延迟均值(毫秒)
+         */
+        private long latencyMeanMs = 800;
+
+        /**
+         * 首字延迟标准差(毫秒)；uniform 时为均值两侧的波动范围
+         */
+        private long latencyStddevMs = 400;
+
+        /**
+         * 输出速率（token/秒），不大于 0 时一次性返回
+         */
+        private double tokensPerSecond = 50;
+
+        /**
+         * 返回 429 的比例（0~1）
+         */
+        private double error429Rate = 0.0;
+
+        /**
+         * 返回 500 的比例（0~1）
+         */
+        private double error500Rate = 0.0;
+
+        /**
+         * 429 响应的 Retry-After(秒)
+         */
+        private int retryAfterSeconds = 1;
+
+        /**
+         * 每个响应生成的问题数
+         */
+        private int issuesPerResponse = 3;
+
+        /**
+         * 是否用 ```json 代码块包裹返回的 JSON（模拟真实模型的输出习惯）
+         */
+        private boolean codeFence = true;
+
+        /**
+         * 随机种子（0 表示不固定）
+         */
+        private long seed = 0;
+    }
+
+    public LlmStubServer(Settings settings) {
+        this.settings = settings;
+        this.random = settings.getSeed() != 0 ? new Random(settings.getSeed()) : new Random();
+    }
+
+    /**
+     * 启动服务（监听 127.0.0.1）
+     */
+    public synchronized LlmStubServer start() {
+        if (server == null) {
+            server = HttpServer.create()
+                    .host("127.0.0.1")
+                    .port(settings.getPort())
+                    .handle(this::handle)
+                    .bindNow();
+            logger.info("【LLM替身】已启动: {}，延迟={}({}±{}ms)，速率={} token/s，429={}，500={}",
+                    getBaseUrl(), settings.getLatencyDistribution(), settings.getLatencyMeanMs(),
+                    settings.getLatencyStddevMs(), settings.getTokensPerSecond(),
+                    settings.getError429Rate(), settings.getError500Rate());
+        }
+        return this;
+    }
+
+    /**
+     * 停止服务
+     */
+    public synchronized void stop() {
+        if (server != null) {
+            server.disposeNow();
+            server = null;
+            logger.info("【LLM替身】已停止");
+        }
+    }
+
+    public synchronized int getPort() {
+        return server != null ? server.port() : settings.getPort();
+    }
+
+    /**
+     * OpenAI 兼容的 base URL（如 http://127.0.0.1:18080/v1）
+     */
+    public String getBaseUrl() {
+        return "http://127.0.0.1:" + getPort() + "/v1";
+    }
+
+    /**
+     * 请求统计
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("requests", requests.get());
+        stats.put("streamed", streamed.get());
+        stats.put("completed", completed.get());
+        stats.put("throttled", throttled.get());
+        stats.put("failed", failed.get());
+        return stats;
+    }
+
+    private Publisher<Void> handle(HttpServerRequest request, HttpServerResponse response) {
+        if (!HttpMethod.POST.equals(request.method()) || !request.fullPath().endsWith("/chat/completions")) {
+            return response.status(404).send();
+        }
+        requests.incrementAndGet();
+
+        return request.receive().aggregate().asString(StandardCharsets.UTF_8)
+                .defaultIfEmpty("{}")
+                .flatMap(body -> {
+                    double roll = nextDouble();
+                    if (roll < settings.getError429Rate()) {
+                        throttled.incrementAndGet();
+                        return sendError(response.header("Retry-After", String.valueOf(settings.getRetryAfterSeconds())),
+                                429, "rate_limit_exceeded", "Rate limit reached (stub)");
+                    }
+                    if (roll < settings.getError429Rate() + settings.getError500Rate()) {
+                        failed.incrementAndGet();
+                        return sendError(response, 500, "server_error", "Internal server error (stub)");
+                    }
+
+                    JsonNode root;
+                    try {
+                        root = objectMapper.readTree(body);
+                    } catch (Exception e) {
+                        return sendError(response, 400, "invalid_request_error", "Invalid JSON body");
+                    }
+                    String model = root.path("model").asText("stub-model");
+                    String prompt = promptOf(root);
+                    String content = generateContent(prompt);
+                    long latencyMs = sampleLatencyMs();
+
+                    if (root.path("stream").asBoolean(false)) {
+                        streamed.incrementAndGet();
+                        return stream(response, model, content, latencyMs);
+                    }
+                    return complete(response, model, prompt, content, latencyMs);
+                });
+    }
+
+    private Mono<Void> complete(HttpServerResponse response, String model, String prompt, String content,
+                                long latencyMs) {
+        int completionTokens = TokenEstimator.estimate(content);
+        ObjectNode body = objectMapper.createObjectNode();
+        body.put("id", "chatcmpl-stub-" + ids.incrementAndGet());
+        body.put("object", "chat.completion");
+        body.put("created", System.currentTimeMillis() / 1000);
+        body.put("model", model);
+        ObjectNode choice = body.putArray("choices").addObject();
+        choice.put("index", 0);
+        choice.putObject("message").put("role", "assistant").put("content", content);
+        choice.put("finish_reason", "stop");
+        ObjectNode usage = body.putObject("usage");
+        int promptTokens = TokenEstimator.estimate(prompt);
+        usage.put("prompt_tokens", promptTokens);
+        usage.put("completion_tokens", completionTokens);
+        usage.put("total_tokens", promptTokens + completionTokens);
+
+        return Mono.delay(Duration.ofMillis(latencyMs + generationMs(completionTokens)))
+                .then(response.header("Content-Type", "application/json; charset=utf-8")
+                        .sendString(Mono.just(body.toString()), StandardCharsets.UTF_8)
+                        .then())
+                .doOnSuccess(v -> completed.incrementAndGet());
+    }
+
+    private Mono<Void> stream(HttpServerResponse response, String model, String content, long latencyMs) {
+        String id = "chatcmpl-stub-" + ids.incrementAndGet();
+        List<String> pieces = new ArrayList<>();
+        for (int i = 0; i < content.length(); i += STREAM_CHUNK_CHARS) {
+            pieces.add(content.substring(i, Math.min(content.length(), i + STREAM_CHUNK_CHARS)));
+        }
+
+        Flux<String> events = Flux.fromIterable(pieces)
+                .concatMap(piece -> Mono.delay(Duration.ofMillis(generationMs(TokenEstimator.estimate(piece))))
+                        .thenReturn(sseChunk(id, model, piece, null)))
+                .concatWith(Mono.fromSupplier(() -> sseChunk(id, model, null, "stop")))
+                .concatWith(Mono.just("data: [DONE]\n\n"));
+
+        return response.header("Content-Type", "text/event-stream; charset=utf-8")
+                .header("Cache-Control", "no-cache")
+                .sendString(Mono.delay(Duration.ofMillis(latencyMs)).thenMany(events), StandardCharsets.UTF_8)
+                .then()
+                .doOnSuccess(v -> completed.incrementAndGet());
+    }
+
+    private String sseChunk(String id, String model, String piece, String finishReason) {
+        ObjectNode chunk = objectMapper.createObjectNode();
+        chunk.put("id", id);
+        chunk.put("object", "chat.completion.chunk");
+        chunk.put("created", System.currentTimeMillis() / 1000);
+        chunk.put("model", model);
+        ObjectNode choice = chunk.putArray("choices").addObject();
+        choice.put("index", 0);
+        ObjectNode delta = choice.putObject("delta");
+        if (piece != null) {
+            delta.put("content", piece);
+        }
+        if (finishReason != null) {
+            choice.put("finish_reason", finishReason);
+        } else {
+            choice.putNull("finish_reason");
+        }
+        return "data: " + chunk + "\n\n";
+    }
+
+    private Mono<Void> sendError(HttpServerResponse response, int status, String type, String message) {
+        ObjectNode body = objectMapper.createObjectNode();
+        body.putObject("error").put("message", message).put("type", type).put("code", String.valueOf(status));
+        return response.status(status)
+                .header("Content-Type", "application/json; charset=utf-8")
+                .sendString(Mono.just(body.toString()), StandardCharsets.UTF_8)
+                .then();
+    }
+
+    /**
+     * 拼接请求中所有消息的内容
+     */
+    private static String promptOf(JsonNode root) {
+        StringBuilder sb = new StringBuilder();
+        for (JsonNode message : root.path("messages")) {
+            JsonNode content = message.path("content");
+            if (content.isTextual()) {
+                sb.append(content.asText()).append('\n');
+            } else if (content.isArray()) {
+                for (JsonNode part : content) {
+                    sb.append(part.path("text").asText("")).append('\n');
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 生成审查结果：问题均匀分布在 Prompt 中出现的锚点（没有锚点时用条款ID）上
+     */
+    String generateContent(String prompt) {
+        List<String> anchors = distinctMatches(ANCHOR_PATTERN, prompt, 0);
+        List<String> clauses = distinctMatches(CLAUSE_PATTERN, prompt, 1);
+        List<String> targets = !anchors.isEmpty() ? anchors : clauses;
+
+        ObjectNode result = objectMapper.createObjectNode();
+        ArrayNode issues = result.putArray("issues");
+        int count = Math.min(Math.max(0, settings.getIssuesPerResponse()), targets.size());
+        for (int i = 0; i < count; i++) {
+            String target = targets.get(i * targets.size() / count);
+            boolean isAnchor = !anchors.isEmpty();
+            String clauseId = isAnchor ? clauseOfAnchor(target) : target;
+
+            ObjectNode issue = issues.addObject();
+            issue.put("clauseId", clauseId);
+            if (isAnchor) {
+                issue.put("anchorId", target);
+            }
+            issue.put("severity", SEVERITIES[i % SEVERITIES.length]);
+            issue.put("category", "模拟审查");
+            issue.put("finding", "【模拟】条款 " + clauseId + " 的约定需要关注（LLM 替身服务生成）");
+            issue.put("suggestion", "【模拟】建议补充明确的权利义务约定");
+            String targetText = targetTextAfter(prompt, isAnchor ? target : "[" + target + "]");
+            if (targetText != null) {
+                issue.put("targetText", targetText);
+                issue.put("matchPattern", "EXACT");
+            } else {
+                issue.putNull("targetText");
+            }
+        }
+
+        String json = result.toPrettyString();
+        return settings.isCodeFence() ? "```json\n" + json + "\n```" : json;
+    }
+
+    private static List<String> distinctMatches(Pattern pattern, String text, int group) {
+        Set<String> values = new LinkedHashSet<>();
+        Matcher matcher = pattern.matcher(text);
+        while (matcher.find()) {
+            values.add(matcher.group(group));
+        }
+        return new ArrayList<>(values);
+    }
+
+    private static String clauseOfAnchor(String anchor) {
+        Matcher matcher = ANCHOR_PATTERN.matcher(anchor);
+        return matcher.matches() ? matcher.group(1) : anchor;
+    }
+
+    /**
+     * 取标记之后第一段包含中文的原文片段作为 targetText
+     */
+    private static String targetTextAfter(String prompt, String marker) {
+        int index = prompt.indexOf(marker);
+        if (index < 0) {
+            return null;
+        }
+        int lineEnd = prompt.indexOf('\n', index);
+        String rest = lineEnd < 0 ? "" : prompt.substring(lineEnd + 1);
+        for (String line : rest.split("\n", 8)) {
+            String text = line.trim();
+            if (text.contains("anc-") || text.startsWith("[")) {
+                break;
+            }
+            int start = 0;
+            while (start < text.length() && !Character.isIdeographic(text.codePointAt(start))) {
+                start++;
+            }
+            if (start < text.length()) {
+                String candidate = text.substring(start);
+                return candidate.length() > TARGET_TEXT_CHARS ? candidate.substring(0, TARGET_TEXT_CHARS) : candidate;
+            }
+        }
+        return null;
+    }
+
+    private long sampleLatencyMs() {
+        double mean = settings.getLatencyMeanMs();
+        double stddev = settings.getLatencyStddevMs();
+        double value;
+        switch (settings.getLatencyDistribution().toLowerCase()) {
+            case "fixed":
+                value = mean;
+                break;
+            case "uniform":
+                value = mean - stddev + 2 * stddev * nextDouble();
+                break;
+            default:
+                // 对数正态：长尾，接近真实 LLM 的首字延迟分布
+                if (mean <= 0) {
+                    value = 0;
+                } else {
+                    double sigma2 = Math.log(1 + (stddev * stddev) / (mean * mean));
+                    double mu = Math.log(mean) - sigma2 / 2;
+                    value = Math.exp(mu + Math.sqrt(sigma2) * nextGaussian());
+                }
+        }
+        return Math.max(0, Math.round(value));
+    }
+
+    private long generationMs(int tokens) {
+        double rate = settings.getTokensPerSecond();
+        return rate > 0 ? Math.round(tokens * 1000.0 / rate) : 0;
+    }
+
+    private double nextDouble() {
+        synchronized (random) {
+            return random.nextDouble();
+        }
+    }
+
+    private double nextGaussian() {
+        synchronized (random) {
+            return random.nextGaussian();
+        }
+    }
+}
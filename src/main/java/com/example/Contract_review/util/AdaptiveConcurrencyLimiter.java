@@ -0,0 +1,270 @@
+package com.example.Contract_review.util;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * 自适应并发限制器（AIMD）
+ *
+ * 根据请求结果动态调整允许同时在途的请求数：
+ * - 成功且延迟不超过基线延迟 × latencyTolerance 时加性增长（每轮约 +1），延迟升高时保持不变
+ * - 只有限流（429/503）或超时等过载信号才按 backoffRatio 乘性收缩；
+ *   大模型的延迟随输出长度自然波动，不能作为收缩依据，否则限制会持续下沉到 minLimit
+ * - 基线延迟取最近一段时间内的最小延迟，定期重置以适应负载变化
+ * - 超出限制的请求异步排队（不占用线程），队列满时立即拒绝
+ *
+ * 流式请求以首个元素到达的耗时作为延迟样本，避免输出长度影响判断
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    /**
+     * 基线延迟的重置周期（样本数）
+     */
+    private static final int BASELINE_WINDOW = 200;
+
+    private final String name;
+    private final int minLimit;
+    private final int maxLimit;
+    private final int maxQueue;
+    private final double backoffRatio;
+    private final double latencyTolerance;
+    private final Predicate<Throwable> isOverload;
+
+    private final Deque<Waiter> waiters = new ArrayDeque<>();
+    private double limit;
+    private int inFlight;
+    private long baselineNanos = Long.MAX_VALUE;
+    private int baselineSamples;
+
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong throttled = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    /**
+     * 排队等待的请求
+     */
+    private static class Waiter {
+        private final MonoSink<Void> sink;
+        private final AtomicBoolean done = new AtomicBoolean();
+
+        Waiter(MonoSink<Void> sink) {
+            this.sink = sink;
+        }
+    }
+
+    /**
+     * @param name 限制器名称（通常为提供商标识）
+     * @param initialLimit 初始并发数
+     * @param minLimit 最小并发数
+     * @param maxLimit 最大并发数
+     * @param maxQueue 排队请求数上限
+     * @param backoffRatio 限流时的收缩比例（0~1）
+     * @param latencyTolerance 延迟相对基线的容忍倍数，超出时暂停增长
+     * @param isOverload 判断异常是否表示提供商过载（如 429/503/超时）
+     */
+    public AdaptiveConcurrencyLimiter(String name, int initialLimit, int minLimit, int maxLimit, int maxQueue,
+                                      double backoffRatio, double latencyTolerance,
+                                      Predicate<Throwable> isOverload) {
+        this.name = name;
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.maxQueue = Math.max(0, maxQueue);
+        this.backoffRatio = backoffRatio;
+        this.latencyTolerance = latencyTolerance;
+        this.isOverload = isOverload;
+        this.limit = Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit));
+    }
+
+    /**
+     * 在并发限制内执行单次请求
+     */
+    public <T> Mono<T> run(Supplier<Mono<T>> call) {
+        return acquire().then(Mono.defer(() -> {
+            long start = System.nanoTime();
+            AtomicBoolean released = new AtomicBoolean();
+            return call.get()
+                    .doOnSuccess(value -> {
+                        if (released.compareAndSet(false, true)) {
+                            onSuccess(System.nanoTime() - start);
+                        }
+                    })
+                    .doOnError(e -> {
+                        if (released.compareAndSet(false, true)) {
+                            onError(e);
+                        }
+                    })
+                    .doOnCancel(() -> {
+                        if (released.compareAndSet(false, true)) {
+                            release();
+                        }
+                    });
+        }));
+    }
+
+    /**
+     * 在并发限制内执行流式请求（整个流结束前一直占用并发名额）
+     */
+    public <T> Flux<T> runMany(Supplier<Flux<T>> call) {
+        return acquire().thenMany(Flux.defer(() -> {
+            long start = System.nanoTime();
+            AtomicLong firstItemNanos = new AtomicLong(-1);
+            AtomicBoolean released = new AtomicBoolean();
+            return call.get()
+                    .doOnNext(item -> firstItemNanos.compareAndSet(-1, System.nanoTime() - start))
+                    .doOnComplete(() -> {
+                        if (released.compareAndSet(false, true)) {
+                            long first = firstItemNanos.get();
+                            onSuccess(first >= 0 ? first : System.nanoTime() - start);
+                        }
+                    })
+                    .doOnError(e -> {
+                        if (released.compareAndSet(false, true)) {
+                            onError(e);
+                        }
+                    })
+                    .doOnCancel(() -> {
+                        if (released.compareAndSet(false, true)) {
+                            release();
+                        }
+                    });
+        }));
+    }
+
+    /**
+     * 当前并发限制（向下取整）
+     */
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    public synchronized int getQueued() {
+        return waiters.size();
+    }
+
+    /**
+     * 统计信息：在途数、限制、排队数、拒绝数等
+     */
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("name", name);
+        stats.put("limit", (int) limit);
+        stats.put("inFlight", inFlight);
+        stats.put("queued", waiters.size());
+        stats.put("maxQueue", maxQueue);
+        stats.put("completed", completed.get());
+        stats.put("failed", failed.get());
+        stats.put("throttled", throttled.get());
+        stats.put("rejected", rejected.get());
+        stats.put("baselineLatencyMs", baselineNanos == Long.MAX_VALUE ? null : baselineNanos / 1_000_000);
+        return stats;
+    }
+
+    private Mono<Void> acquire() {
+        return Mono.create(sink -> {
+            Waiter waiter;
+            synchronized (this) {
+                if (inFlight < (int) limit && waiters.isEmpty()) {
+                    inFlight++;
+                    waiter = null;
+                } else if (waiters.size() >= maxQueue) {
+                    rejected.incrementAndGet();
+                    sink.error(new RejectedExecutionException(
+                            name + " 并发已达上限 " + (int) limit + "，排队请求数已满 " + maxQueue));
+                    return;
+                } else {
+                    waiter = new Waiter(sink);
+                    waiters.addLast(waiter);
+                }
+            }
+            if (waiter == null) {
+                sink.success();
+                return;
+            }
+            sink.onCancel(() -> {
+                if (waiter.done.compareAndSet(false, true)) {
+                    synchronized (this) {
+                        waiters.remove(waiter);
+                    }
+                } else {
+                    // 已获得名额但下游取消，归还名额
+                    release();
+                }
+            });
+        });
+    }
+
+    private void onSuccess(long latencyNanos) {
+        completed.incrementAndGet();
+        synchronized (this) {
+            if (++baselineSamples >= BASELINE_WINDOW) {
+                baselineSamples = 0;
+                baselineNanos = latencyNanos;
+            } else {
+                baselineNanos = Math.min(baselineNanos, latencyNanos);
+            }
+
+            // 只有接近满载且延迟正常时才增长，避免空闲期或变慢时把限制抬得过高
+            if (latencyNanos <= baselineNanos * latencyTolerance && inFlight >= (int) limit / 2) {
+                limit = Math.min(maxLimit, limit + 1.0 / limit);
+            }
+        }
+        release();
+    }
+
+    private void onError(Throwable e) {
+        failed.incrementAndGet();
+        if (isOverload.test(e)) {
+            throttled.incrementAndGet();
+            synchronized (this) {
+                limit = Math.max(minLimit, limit * backoffRatio);
+            }
+        }
+        release();
+    }
+
+    private void release() {
+        synchronized (this) {
+            inFlight--;
+        }
+        drain();
+    }
+
+    /**
+     * 在限制内唤醒排队的请求
+     */
+    private void drain() {
+        while (true) {
+            Waiter next;
+            synchronized (this) {
+                if (waiters.isEmpty() || inFlight >= (int) limit) {
+                    return;
+                }
+                next = waiters.pollFirst();
+                inFlight++;
+            }
+            if (next.done.compareAndSet(false, true)) {
+                next.sink.success();
+            } else {
+                synchronized (this) {
+                    inFlight--;
+                }
+            }
+        }
+    }
+}
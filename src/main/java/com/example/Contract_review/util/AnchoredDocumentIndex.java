@@ -0,0 +1,711 @@
+package com.example.Contract_review.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * 带锚点文档的预索引形式
+ *
+ * 在 Parse 阶段生成一次并随 ParseResultCache 缓存，后续批注无需重复解压和全量解析XML：
+ * - 批注需要改写的XML部件（document.xml、comments.xml、document.xml.rels、[Content_Types].xml）解压后的字节
+ * - document.xml 中的段落字节偏移表（含表格、文本框内段落）
+ * - anc- 锚点书签 → 所在段落及书签标签字节偏移表
+ *
+ * 图片等其他部件不留在堆上，重新打包时从源文档（可以是磁盘层的内存映射）按中央目录逐个流式复制。
+ * 批注时只需解析被批注的段落片段，再按字节偏移拼接回 document.xml。
+ * 实例不可变，可被多个请求并发读取。
+ */
+public final class AnchoredDocumentIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(AnchoredDocumentIndex.class);
+
+    public static final String DOCUMENT_PART = "word/document.xml";
+    public static final String COMMENTS_PART = "word/comments.xml";
+    public static final String DOCUMENT_RELS_PART = "word/_rels/document.xml.rels";
+    public static final String CONTENT_TYPES_PART = "[Content_Types].xml";
+
+    /**
+     * 预索引保留在堆上的部件（批注时可能被改写）
+     */
+    private static final Set<String> RETAINED_PARTS = Set.of(
+            DOCUMENT_PART, COMMENTS_PART, DOCUMENT_RELS_PART, CONTENT_TYPES_PART);
+
+    private static final String W_NS_URI = "http://schemas.openxmlformats.org/wordprocessingml/2006/main";
+
+    private static final Pattern XMLNS_PATTERN = Pattern.compile("xmlns(:[\\w.-]+)?\\s*=\\s*\"([^\"]*)\"");
+
+    private final Map<String, byte[]> entries;
+    private final String rootNamespaceDeclarations;
+    private final List<ParagraphRange> paragraphs;
+    private final Map<String, AnchorBookmark> anchors;
+    private final long estimatedBytes;
+
+    private AnchoredDocumentIndex(Map<String, byte[]> entries, String rootNamespaceDeclarations,
+                                  List<ParagraphRange> paragraphs, Map<String, AnchorBookmark> anchors) {
+        this.entries = Collections.unmodifiableMap(entries);
+        this.rootNamespaceDeclarations = rootNamespaceDeclarations;
+        this.paragraphs = Collections.unmodifiableList(paragraphs);
+        this.anchors = Collections.unmodifiableMap(anchors);
+
+        long size = 0;
+        for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+            size += entry.getValue().length + entry.getKey().length() * 2L + 64;
+        }
+        size += paragraphs.size() * 40L;
+        size += anchors.size() * 120L;
+        this.estimatedBytes = size;
+    }
+
+    /**
+     * 从带锚点的DOCX构建预索引
+     *
+     * @param docxBytes 带锚点的DOCX字节
+     * @return 预索引；文档结构不支持（无document.xml、w前缀未绑定主命名空间等）时返回null
+     * @throws IOException 解压失败
+     */
+    public static AnchoredDocumentIndex build(byte[] docxBytes) throws IOException {
+        return build(ByteBuffer.wrap(docxBytes));
+    }
+
+    /**
+     * 从带锚点的DOCX视图构建预索引，只解压需要改写的部件
+     *
+     * @param docx 带锚点的DOCX（读取 position 到 limit 之间的内容，不改变其位置）
+     * @see #build(byte[])
+     */
+    public static AnchoredDocumentIndex build(ByteBuffer docx) throws IOException {
+        long startTime = System.currentTimeMillis();
+
+        DocxPackageInspector inspector = DocxPackageInspector.of(docx);
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        for (String name : inspector.getPartNames()) {
+            if (RETAINED_PARTS.contains(name)) {
+                entries.put(name, inspector.readPart(name));
+            }
+        }
+
+        byte[] documentXml = entries.get(DOCUMENT_PART);
+        if (documentXml == null) {
+            logger.warn("【预索引】文档中没有 {}，跳过预索引", DOCUMENT_PART);
+            return null;
+        }
+
+        Scanner scanner = new Scanner(documentXml);
+        if (!scanner.scan()) {
+            return null;
+        }
+
+        AnchoredDocumentIndex index = new AnchoredDocumentIndex(
+                entries, scanner.namespaceDeclarations, scanner.paragraphs, scanner.anchors);
+        logger.info("【预索引】构建完成：保留部件数={}/{}, 段落数={}, 锚点数={}, 估算内存={} 字节, 耗时={}ms",
+                   entries.size(), inspector.getPartNames().size(), scanner.paragraphs.size(), scanner.anchors.size(),
+                   index.estimatedBytes, System.currentTimeMillis() - startTime);
+        return index;
+    }
+
+    /**
+     * 获取保留在预索引中的部件（解压后字节，不可修改）
+     *
+     * @return 部件内容；不是可改写部件或文档中不存在时返回null
+     */
+    public byte[] getEntry(String name) {
+        return entries.get(name);
+    }
+
+    public byte[] getDocumentXml() {
+        return entries.get(DOCUMENT_PART);
+    }
+
+    /**
+     * 根元素上的全部命名空间声明（形如 ` xmlns:w="..." xmlns:r="..."`），用于解析段落片段
+     */
+    public String getRootNamespaceDeclarations() {
+        return rootNamespaceDeclarations;
+    }
+
+    /**
+     * 段落偏移表（按文档顺序）
+     */
+    public List<ParagraphRange> getParagraphs() {
+        return paragraphs;
+    }
+
+    /**
+     * 按锚点名查找书签
+     *
+     * @return 书签信息；不存在返回null
+     */
+    public AnchorBookmark getAnchor(String anchorId) {
+        return anchorId != null ? anchors.get(anchorId) : null;
+    }
+
+    public Map<String, AnchorBookmark> getAnchors() {
+        return anchors;
+    }
+
+    /**
+     * 估算的堆内存占用（字节），用于缓存内存记账
+     */
+    public long getEstimatedBytes() {
+        return estimatedBytes;
+    }
+
+    /**
+     * 按源文档的条目顺序重新打包ZIP，替换/追加指定条目
+     *
+     * 未替换的条目从源文档流式解压复制，不在堆上保留整个部件
+     *
+     * @param source 构建本索引的源文档（读取 position 到 limit 之间的内容，不改变其位置）
+     * @param replacements 条目名 → 新内容；源文档中不存在的条目追加到末尾
+     * @return DOCX字节
+     */
+    public byte[] repackage(ByteBuffer source, Map<String, byte[]> replacements) throws IOException {
+        DocxPackageInspector inspector = DocxPackageInspector.of(source);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(8192, source.remaining() + 4096));
+        try (ZipOutputStream zipOut = new ZipOutputStream(out)) {
+            for (String name : inspector.getPartNames()) {
+                zipOut.putNextEntry(new ZipEntry(name));
+                byte[] content = replacements.get(name);
+                if (content == null) {
+                    content = entries.get(name);
+                }
+                if (content != null) {
+                    zipOut.write(content);
+                } else {
+                    try (InputStream in = inspector.openPart(name)) {
+                        in.transferTo(zipOut);
+                    }
+                }
+                zipOut.closeEntry();
+            }
+            for (Map.Entry<String, byte[]> entry : replacements.entrySet()) {
+                if (!inspector.hasPart(entry.getKey())) {
+                    zipOut.putNextEntry(new ZipEntry(entry.getKey()));
+                    zipOut.write(entry.getValue());
+                    zipOut.closeEntry();
+                }
+            }
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * 按片段拼接结果增量更新预索引，不重新解压、不全量扫描 document.xml
+     *
+     * 未替换的段落和书签只按其前面各替换段落的长度变化平移偏移，被整体替换的段落只重新扫描新字节定位书签；
+     * 当前实例保持不变（可能仍被缓存共享）
+     *
+     * @param replacements 重新打包时替换/追加的部件，必须包含新的 document.xml
+     * @param replacedLengths 被整体替换的段落序号 → 替换后的字节长度
+     * @return 更新后的预索引；被替换段落的结构与原索引不一致时返回null，由调用方全量重建
+     */
+    public AnchoredDocumentIndex withReplacedParagraphs(Map<String, byte[]> replacements,
+                                                        Map<Integer, Integer> replacedLengths) {
+        byte[] documentXml = replacements.get(DOCUMENT_PART);
+        if (documentXml == null) {
+            return null;
+        }
+
+        // 被替换段落均为叶子段落，互不重叠，按序号排序即按偏移排序
+        List<Integer> replaced = new ArrayList<>(replacedLengths.keySet());
+        Collections.sort(replaced);
+        int[] editEnds = new int[replaced.size()];
+        int[] cumulativeDeltas = new int[replaced.size()];
+        int delta = 0;
+        for (int i = 0; i < replaced.size(); i++) {
+            ParagraphRange range = paragraphs.get(replaced.get(i));
+            if (range.containsNestedParagraph) {
+                return null;
+            }
+            delta += replacedLengths.get(replaced.get(i)) - (range.end - range.start);
+            editEnds[i] = range.end;
+            cumulativeDeltas[i] = delta;
+        }
+
+        List<ParagraphRange> newParagraphs = new ArrayList<>(paragraphs.size());
+        for (ParagraphRange range : paragraphs) {
+            ParagraphRange shifted = new ParagraphRange(range.ordinal, shift(range.start, editEnds, cumulativeDeltas));
+            shifted.end = shift(range.end, editEnds, cumulativeDeltas);
+            shifted.clauseId = range.clauseId;
+            shifted.containsNestedParagraph = range.containsNestedParagraph;
+            newParagraphs.add(shifted);
+        }
+
+        Scanner scanner = new Scanner(documentXml);
+        Map<Integer, ParagraphTags> rescanned = new HashMap<>();
+        for (Integer ordinal : replaced) {
+            ParagraphRange range = newParagraphs.get(ordinal);
+            ParagraphTags tags = scanner.scanParagraph(range.start, range.end);
+            if (tags == null) {
+                return null;
+            }
+            rescanned.put(ordinal, tags);
+        }
+
+        Map<String, AnchorBookmark> newAnchors = new HashMap<>();
+        for (AnchorBookmark anchor : anchors.values()) {
+            int[] startTag;
+            ParagraphTags startTags = rescanned.get(anchor.paragraphOrdinal);
+            if (startTags != null) {
+                startTag = startTags.bookmarkStarts.get(anchor.name);
+                if (startTag == null) {
+                    return null;
+                }
+            } else {
+                startTag = new int[]{shift(anchor.startTagStart, editEnds, cumulativeDeltas),
+                        shift(anchor.startTagEnd, editEnds, cumulativeDeltas)};
+            }
+            AnchorBookmark shifted = new AnchorBookmark(anchor.name, anchor.id, anchor.paragraphOrdinal,
+                    startTag[0], startTag[1]);
+
+            if (anchor.endTagStart >= 0) {
+                ParagraphTags endTags = rescanned.get(anchor.endParagraphOrdinal);
+                int[] endTag;
+                if (endTags != null) {
+                    endTag = endTags.bookmarkEnds.get(anchor.id);
+                    if (endTag == null) {
+                        return null;
+                    }
+                } else {
+                    endTag = new int[]{shift(anchor.endTagStart, editEnds, cumulativeDeltas),
+                            shift(anchor.endTagEnd, editEnds, cumulativeDeltas)};
+                }
+                shifted.endParagraphOrdinal = anchor.endParagraphOrdinal;
+                shifted.endTagStart = endTag[0];
+                shifted.endTagEnd = endTag[1];
+            }
+            newAnchors.put(shifted.name, shifted);
+        }
+
+        Map<String, byte[]> newEntries = new LinkedHashMap<>(entries);
+        newEntries.putAll(replacements);
+        return new AnchoredDocumentIndex(newEntries, rootNamespaceDeclarations, newParagraphs, newAnchors);
+    }
+
+    /**
+     * 平移不在任何替换区间内部的偏移：加上结束位置不晚于该偏移的全部替换的长度变化
+     */
+    private static int shift(int position, int[] editEnds, int[] cumulativeDeltas) {
+        int low = 0;
+        int high = editEnds.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (editEnds[mid] <= position) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low == 0 ? position : position + cumulativeDeltas[low - 1];
+    }
+
+    /**
+     * 段落在 document.xml 中的字节范围
+     */
+    public static final class ParagraphRange {
+        private final int ordinal;
+        private final int start;
+        private int end;
+        private String clauseId;
+        private boolean containsNestedParagraph;
+
+        ParagraphRange(int ordinal, int start) {
+            this.ordinal = ordinal;
+            this.start = start;
+        }
+
+        /**
+         * 段落在文档中的序号（与递归段落遍历顺序一致）
+         */
+        public int getOrdinal() {
+            return ordinal;
+        }
+
+        /**
+         * 段落起始标签 &lt;w:p 的字节偏移
+         */
+        public int getStart() {
+            return start;
+        }
+
+        /**
+         * 段落结束标签 &lt;/w:p&gt; 之后的字节偏移（不含）
+         */
+        public int getEnd() {
+            return end;
+        }
+
+        /**
+         * 段落所属条款ID（由最近的 anc- 锚点书签推断，无锚点时为null）
+         */
+        public String getClauseId() {
+            return clauseId;
+        }
+
+        /**
+         * 段落内是否嵌套了其他段落（如文本框），此类段落不能按片段替换
+         */
+        public boolean containsNestedParagraph() {
+            return containsNestedParagraph;
+        }
+    }
+
+    /**
+     * anc- 锚点书签位置
+     */
+    public static final class AnchorBookmark {
+        private final String name;
+        private final String id;
+        private final int paragraphOrdinal;
+        private final int startTagStart;
+        private final int startTagEnd;
+        private int endParagraphOrdinal = -1;
+        private int endTagStart = -1;
+        private int endTagEnd = -1;
+
+        AnchorBookmark(String name, String id, int paragraphOrdinal, int startTagStart, int startTagEnd) {
+            this.name = name;
+            this.id = id;
+            this.paragraphOrdinal = paragraphOrdinal;
+            this.startTagStart = startTagStart;
+            this.startTagEnd = startTagEnd;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public int getParagraphOrdinal() {
+            return paragraphOrdinal;
+        }
+
+        public int getStartTagStart() {
+            return startTagStart;
+        }
+
+        public int getStartTagEnd() {
+            return startTagEnd;
+        }
+
+        /**
+         * 对应 bookmarkEnd 所在段落序号（可能与起始标签不在同一段落），不在段落内或不存在时为-1
+         */
+        public int getEndParagraphOrdinal() {
+            return endParagraphOrdinal;
+        }
+
+        /**
+         * 对应 bookmarkEnd（按 w:id 匹配）的起始偏移，不存在时为-1
+         */
+        public int getEndTagStart() {
+            return endTagStart;
+        }
+
+        public int getEndTagEnd() {
+            return endTagEnd;
+        }
+    }
+
+    /**
+     * 单个段落内的 anc- 书签标签偏移（[起始, 结束)），同名/同ID取段落内第一个
+     */
+    private static final class ParagraphTags {
+        private final Map<String, int[]> bookmarkStarts = new HashMap<>();
+        private final Map<String, int[]> bookmarkEnds = new HashMap<>();
+    }
+
+    /**
+     * document.xml 轻量字节扫描器：只识别段落和书签标签，不构建DOM
+     */
+    private static final class Scanner {
+        private final byte[] xml;
+        private final List<ParagraphRange> paragraphs = new ArrayList<>();
+        private final Map<String, AnchorBookmark> anchors = new HashMap<>();
+        private String namespaceDeclarations;
+
+        Scanner(byte[] xml) {
+            this.xml = xml;
+        }
+
+        boolean scan() {
+            Deque<ParagraphRange> open = new ArrayDeque<>();
+            Map<String, AnchorBookmark> pendingById = new HashMap<>();
+            boolean rootSeen = false;
+            String currentClauseId = null;
+
+            int pos = 0;
+            while ((pos = indexOf(xml, (byte) '<', pos)) >= 0) {
+                if (pos + 1 >= xml.length) {
+                    break;
+                }
+                byte next = xml[pos + 1];
+                if (next == '?' || next == '!') {
+                    int skipEnd;
+                    if (startsWith(pos, "<!--")) {
+                        skipEnd = indexOf(xml, "-->", pos);
+                        skipEnd = skipEnd < 0 ? -1 : skipEnd + 2;
+                    } else if (startsWith(pos, "<![CDATA[")) {
+                        skipEnd = indexOf(xml, "]]>", pos);
+                        skipEnd = skipEnd < 0 ? -1 : skipEnd + 2;
+                    } else {
+                        skipEnd = tagEnd(pos);
+                    }
+                    if (skipEnd < 0) {
+                        break;
+                    }
+                    pos = skipEnd + 1;
+                    continue;
+                }
+
+                int tagEnd = tagEnd(pos);
+                if (tagEnd < 0) {
+                    break;
+                }
+                int nameStart = next == '/' ? pos + 2 : pos + 1;
+                int nameEnd = nameStart;
+                while (nameEnd < tagEnd && !isNameTerminator(xml[nameEnd])) {
+                    nameEnd++;
+                }
+                String tagName = (next == '/' ? "/" : "")
+                        + new String(xml, nameStart, nameEnd - nameStart, StandardCharsets.US_ASCII);
+                boolean selfClosing = xml[tagEnd - 1] == '/';
+
+                if (!rootSeen) {
+                    rootSeen = true;
+                    String rootTag = new String(xml, pos, tagEnd - pos + 1, StandardCharsets.UTF_8);
+                    namespaceDeclarations = extractNamespaceDeclarations(rootTag);
+                    if (!namespaceDeclarations.contains("xmlns:w=\"" + W_NS_URI + "\"")) {
+                        logger.warn("【预索引】document.xml 的w前缀未绑定WordprocessingML主命名空间，跳过预索引");
+                        return false;
+                    }
+                } else if ("w:p".equals(tagName)) {
+                    ParagraphRange parent = open.peek();
+                    if (parent != null) {
+                        parent.containsNestedParagraph = true;
+                    }
+                    ParagraphRange range = new ParagraphRange(paragraphs.size(), pos);
+                    range.clauseId = currentClauseId;
+                    paragraphs.add(range);
+                    if (selfClosing) {
+                        range.end = tagEnd + 1;
+                    } else {
+                        open.push(range);
+                    }
+                } else if ("/w:p".equals(tagName)) {
+                    ParagraphRange range = open.poll();
+                    if (range == null) {
+                        logger.warn("【预索引】document.xml 段落标签不匹配（偏移 {}），跳过预索引", pos);
+                        return false;
+                    }
+                    range.end = tagEnd + 1;
+                } else if ("w:bookmarkStart".equals(tagName) && !open.isEmpty()) {
+                    String name = attributeValue(pos, tagEnd, "w:name");
+                    String id = attributeValue(pos, tagEnd, "w:id");
+                    if (name != null && name.startsWith("anc-")) {
+                        ParagraphRange owner = open.peek();
+                        AnchorBookmark bookmark = new AnchorBookmark(name, id, owner.ordinal, pos, tagEnd + 1);
+                        anchors.putIfAbsent(name, bookmark);
+                        if (id != null) {
+                            pendingById.put(id, bookmark);
+                        }
+
+                        int clauseEnd = name.indexOf('-', 4);
+                        if (clauseEnd > 4) {
+                            currentClauseId = name.substring(4, clauseEnd);
+                            owner.clauseId = currentClauseId;
+                        }
+                    }
+                } else if ("w:bookmarkEnd".equals(tagName)) {
+                    // 书签可能跨段落，结束标签按 w:id 匹配，记录其所在段落供清理时一并移除
+                    String id = attributeValue(pos, tagEnd, "w:id");
+                    AnchorBookmark bookmark = id != null ? pendingById.remove(id) : null;
+                    if (bookmark != null) {
+                        ParagraphRange owner = open.peek();
+                        bookmark.endParagraphOrdinal = owner != null ? owner.ordinal : -1;
+                        bookmark.endTagStart = pos;
+                        bookmark.endTagEnd = tagEnd + 1;
+                    }
+                }
+
+                pos = tagEnd + 1;
+            }
+
+            if (!open.isEmpty()) {
+                logger.warn("【预索引】document.xml 存在未闭合段落，跳过预索引");
+                return false;
+            }
+            return rootSeen;
+        }
+
+        /**
+         * 扫描单个叶子段落 [from, to) 内的书签标签（段落被整体替换后重新定位书签）
+         *
+         * @return 书签偏移；范围内不是恰好一个完整段落时返回null
+         */
+        ParagraphTags scanParagraph(int from, int to) {
+            ParagraphTags tags = new ParagraphTags();
+            int paragraphStarts = 0;
+            int pos = from;
+            while ((pos = indexOf(xml, (byte) '<', pos)) >= 0 && pos < to) {
+                int tagEnd = tagEnd(pos);
+                if (tagEnd < 0 || tagEnd >= to) {
+                    return null;
+                }
+                int nameStart = xml[pos + 1] == '/' ? pos + 2 : pos + 1;
+                int nameEnd = nameStart;
+                while (nameEnd < tagEnd && !isNameTerminator(xml[nameEnd])) {
+                    nameEnd++;
+                }
+                String tagName = new String(xml, nameStart, nameEnd - nameStart, StandardCharsets.US_ASCII);
+                if (nameStart == pos + 1 && "w:p".equals(tagName)) {
+                    paragraphStarts++;
+                } else if ("w:bookmarkStart".equals(tagName)) {
+                    String name = attributeValue(pos, tagEnd, "w:name");
+                    if (name != null && name.startsWith("anc-")) {
+                        tags.bookmarkStarts.putIfAbsent(name, new int[]{pos, tagEnd + 1});
+                    }
+                } else if ("w:bookmarkEnd".equals(tagName)) {
+                    String id = attributeValue(pos, tagEnd, "w:id");
+                    if (id != null) {
+                        tags.bookmarkEnds.putIfAbsent(id, new int[]{pos, tagEnd + 1});
+                    }
+                }
+                pos = tagEnd + 1;
+            }
+            return paragraphStarts == 1 ? tags : null;
+        }
+
+        /**
+         * 查找标签结束的 '>'，跳过引号内的内容（属性值中允许出现未转义的 '>'）
+         *
+         * @return '>' 的偏移；未闭合时返回-1
+         */
+        private int tagEnd(int tagStart) {
+            byte quote = 0;
+            for (int i = tagStart + 1; i < xml.length; i++) {
+                byte b = xml[i];
+                if (quote != 0) {
+                    if (b == quote) {
+                        quote = 0;
+                    }
+                } else if (b == '"' || b == '\'') {
+                    quote = b;
+                } else if (b == '>') {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * 读取属性值（支持单双引号，属性名前必须是空白，避免匹配到 xw:id 之类的后缀）
+         */
+        private String attributeValue(int tagStart, int tagEnd, String attribute) {
+            byte[] key = attribute.getBytes(StandardCharsets.US_ASCII);
+            int from = tagStart;
+            while (true) {
+                int keyPos = indexOf(xml, key, from, tagEnd);
+                if (keyPos < 0) {
+                    return null;
+                }
+                from = keyPos + 1;
+                if (!isWhitespace(xml[keyPos - 1])) {
+                    continue;
+                }
+                int p = keyPos + key.length;
+                while (p < tagEnd && isWhitespace(xml[p])) {
+                    p++;
+                }
+                if (p >= tagEnd || xml[p] != '=') {
+                    continue;
+                }
+                p++;
+                while (p < tagEnd && isWhitespace(xml[p])) {
+                    p++;
+                }
+                if (p >= tagEnd || (xml[p] != '"' && xml[p] != '\'')) {
+                    return null;
+                }
+                int valueStart = p + 1;
+                int valueEnd = indexOf(xml, xml[p], valueStart);
+                if (valueEnd < 0 || valueEnd > tagEnd) {
+                    return null;
+                }
+                return new String(xml, valueStart, valueEnd - valueStart, StandardCharsets.UTF_8);
+            }
+        }
+
+        private static boolean isWhitespace(byte b) {
+            return b == ' ' || b == '\t' || b == '\n' || b == '\r';
+        }
+
+        private boolean startsWith(int pos, String prefix) {
+            byte[] bytes = prefix.getBytes(StandardCharsets.US_ASCII);
+            return indexOf(xml, bytes, pos, pos + bytes.length) == pos;
+        }
+
+        private static boolean isNameTerminator(byte b) {
+            return b == ' ' || b == '>' || b == '/' || b == '\t' || b == '\n' || b == '\r';
+        }
+
+        private static String extractNamespaceDeclarations(String rootTag) {
+            StringBuilder declarations = new StringBuilder();
+            Matcher matcher = XMLNS_PATTERN.matcher(rootTag);
+            while (matcher.find()) {
+                declarations.append(' ').append(matcher.group());
+            }
+            return declarations.toString();
+        }
+
+        private static int indexOf(byte[] data, byte target, int from) {
+            for (int i = from; i < data.length; i++) {
+                if (data[i] == target) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private static int indexOf(byte[] data, String target, int from) {
+            byte[] bytes = target.getBytes(StandardCharsets.US_ASCII);
+            return indexOf(data, bytes, from, data.length);
+        }
+
+        private static int indexOf(byte[] data, byte[] target, int from, int limit) {
+            int last = Math.min(limit, data.length) - target.length;
+            outer:
+            for (int i = from; i <= last; i++) {
+                for (int j = 0; j < target.length; j++) {
+                    if (data[i + j] != target[j]) {
+                        continue outer;
+                    }
+                }
+                return i;
+            }
+            return -1;
+        }
+    }
+}
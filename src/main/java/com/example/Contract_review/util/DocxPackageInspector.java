@@ -0,0 +1,451 @@
+package com.example.Contract_review.util;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * DOCX（ZIP）包检查工具
+ *
+ * 只读取ZIP中央目录即可回答"某个部件是否存在、大小多少"，读取单个部件时只解压该部件：
+ * - 数据源可以是字节数组、ByteBuffer、内存映射文件，或按范围读取的远端对象（如 MinIO Range 请求）
+ * - ByteBuffer 数据源不复制数据，部件内容直接从缓冲区切片解压
+ * - 支持 STORED / DEFLATED 两种压缩方式和 ZIP64
+ *
+ * 部件名使用ZIP条目名（如 word/comments.xml），带前导"/"的OPC部件名也可识别。
+ * 实例构建后不可变，可被并发读取（每次 openPart 返回独立的流）。
+ */
+public final class DocxPackageInspector {
+
+    private static final int LOCAL_HEADER_SIG = 0x04034b50;
+    private static final int CENTRAL_HEADER_SIG = 0x02014b50;
+    private static final int END_SIG = 0x06054b50;
+    private static final int ZIP64_END_SIG = 0x06064b50;
+    private static final int ZIP64_LOCATOR_SIG = 0x07064b50;
+
+    private static final int LOCAL_HEADER_SIZE = 30;
+    private static final int CENTRAL_HEADER_SIZE = 46;
+    private static final int END_SIZE = 22;
+    private static final int ZIP64_END_SIZE = 56;
+    private static final int ZIP64_LOCATOR_SIZE = 20;
+    private static final int MAX_COMMENT_SIZE = 0xFFFF;
+    private static final int ZIP64_EXTRA_ID = 0x0001;
+
+    private static final int METHOD_STORED = 0;
+    private static final int METHOD_DEFLATED = 8;
+
+    private static final byte[] COMMENT_START_TAG = "<w:comment".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * 按范围读取数据源
+     */
+    @FunctionalInterface
+    public interface RangeReader {
+        /**
+         * 读取 [offset, offset + length) 范围的字节
+         */
+        ByteBuffer read(long offset, int length) throws IOException;
+    }
+
+    /**
+     * 中央目录中的部件信息
+     */
+    public static final class Part {
+        private final String name;
+        private final int method;
+        private final long compressedSize;
+        private final long size;
+        private final long localHeaderOffset;
+
+        Part(String name, int method, long compressedSize, long size, long localHeaderOffset) {
+            this.name = name;
+            this.method = method;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.localHeaderOffset = localHeaderOffset;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * 解压后大小（字节）
+         */
+        public long getSize() {
+            return size;
+        }
+
+        public long getCompressedSize() {
+            return compressedSize;
+        }
+
+        public boolean isCompressed() {
+            return method != METHOD_STORED;
+        }
+    }
+
+    private final long length;
+    private final RangeReader reader;
+    private final Map<String, Part> parts;
+
+    private DocxPackageInspector(long length, RangeReader reader) throws IOException {
+        this.length = length;
+        this.reader = reader;
+        this.parts = Collections.unmodifiableMap(readCentralDirectory());
+    }
+
+    public static DocxPackageInspector of(byte[] docxBytes) throws IOException {
+        return of(ByteBuffer.wrap(docxBytes));
+    }
+
+    /**
+     * 从 ByteBuffer 构建（读取 position 到 limit 之间的内容，不改变传入缓冲区的位置）
+     */
+    public static DocxPackageInspector of(ByteBuffer buffer) throws IOException {
+        ByteBuffer source = buffer.slice();
+        return new DocxPackageInspector(source.capacity(), (offset, count) -> {
+            ByteBuffer slice = source.duplicate();
+            slice.position((int) offset).limit((int) offset + count);
+            return slice.slice();
+        });
+    }
+
+    /**
+     * 内存映射文件后构建，文件内容按需由操作系统换入
+     */
+    public static DocxPackageInspector map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new ZipException("文件过大，无法内存映射: " + file);
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return of(mapped);
+        }
+    }
+
+    /**
+     * 按范围读取构建：先读取末尾的目录结束记录和中央目录，部件内容在 openPart 时读取
+     *
+     * @param length 数据源总长度
+     * @param reader 范围读取
+     */
+    public static DocxPackageInspector open(long length, RangeReader reader) throws IOException {
+        return new DocxPackageInspector(length, reader);
+    }
+
+    public boolean hasPart(String name) {
+        return getPart(name) != null;
+    }
+
+    /**
+     * @return 部件信息，不存在时返回 null
+     */
+    public Part getPart(String name) {
+        return name == null ? null : parts.get(name.startsWith("/") ? name.substring(1) : name);
+    }
+
+    /**
+     * @return 部件解压后大小，不存在时返回 -1
+     */
+    public long getPartSize(String name) {
+        Part part = getPart(name);
+        return part != null ? part.size : -1;
+    }
+
+    public Set<String> getPartNames() {
+        return parts.keySet();
+    }
+
+    /**
+     * 打开部件内容流（只解压该部件）
+     *
+     * @throws ZipException 部件不存在、本地文件头损坏或压缩方式不支持
+     */
+    public InputStream openPart(String name) throws IOException {
+        Part part = getPart(name);
+        if (part == null) {
+            throw new ZipException("部件不存在: " + name);
+        }
+        ByteBuffer header = read(part.localHeaderOffset, LOCAL_HEADER_SIZE);
+        if (header.getInt(0) != LOCAL_HEADER_SIG) {
+            throw new ZipException("本地文件头无效: " + part.name);
+        }
+        long dataOffset = part.localHeaderOffset + LOCAL_HEADER_SIZE
+                + (header.getShort(26) & 0xFFFF) + (header.getShort(28) & 0xFFFF);
+        ByteBuffer data = read(dataOffset, toIntSize(part.compressedSize, part.name));
+
+        if (part.method == METHOD_STORED) {
+            return new ByteBufferInputStream(data);
+        }
+        if (part.method == METHOD_DEFLATED) {
+            return new InflatingInputStream(data);
+        }
+        throw new ZipException("不支持的压缩方式 " + part.method + ": " + part.name);
+    }
+
+    /**
+     * 读取部件全部内容
+     */
+    public byte[] readPart(String name) throws IOException {
+        try (InputStream in = openPart(name)) {
+            return in.readAllBytes();
+        }
+    }
+
+    /**
+     * 是否包含批注：comments.xml 存在且至少有一个 w:comment 元素
+     *
+     * 流式扫描，找到第一个批注即停止解压
+     */
+    public boolean hasComments() throws IOException {
+        if (!hasPart(AnchoredDocumentIndex.COMMENTS_PART)) {
+            return false;
+        }
+        try (InputStream in = openPart(AnchoredDocumentIndex.COMMENTS_PART)) {
+            return containsStartTag(in, COMMENT_START_TAG);
+        }
+    }
+
+    /**
+     * 扫描流中是否出现指定开始标签（标签名后必须是空白、">" 或 "/"，避免 w:comments 误匹配）
+     */
+    private static boolean containsStartTag(InputStream in, byte[] tag) throws IOException {
+        byte[] buffer = new byte[8192];
+        int matched = 0;
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            for (int i = 0; i < n; i++) {
+                byte b = buffer[i];
+                if (matched == tag.length) {
+                    if (b == ' ' || b == '>' || b == '/' || b == '\t' || b == '\r' || b == '\n') {
+                        return true;
+                    }
+                    matched = 0;
+                }
+                if (b == tag[matched]) {
+                    matched++;
+                } else {
+                    matched = b == tag[0] ? 1 : 0;
+                }
+            }
+        }
+        return false;
+    }
+
+    private Map<String, Part> readCentralDirectory() throws IOException {
+        int tailLength = (int) Math.min(length, END_SIZE + MAX_COMMENT_SIZE);
+        if (tailLength < END_SIZE) {
+            throw new ZipException("不是有效的ZIP文件：长度不足");
+        }
+        long tailOffset = length - tailLength;
+        ByteBuffer tail = read(tailOffset, tailLength);
+
+        int end = -1;
+        for (int i = tailLength - END_SIZE; i >= 0; i--) {
+            if (tail.getInt(i) == END_SIG && i + END_SIZE + (tail.getShort(i + 20) & 0xFFFF) <= tailLength) {
+                end = i;
+                break;
+            }
+        }
+        if (end < 0) {
+            throw new ZipException("不是有效的ZIP文件：未找到中央目录结束记录");
+        }
+
+        long entryCount = tail.getShort(end + 10) & 0xFFFF;
+        long directorySize = tail.getInt(end + 12) & 0xFFFFFFFFL;
+        long directoryOffset = tail.getInt(end + 16) & 0xFFFFFFFFL;
+
+        if (entryCount == 0xFFFF || directorySize == 0xFFFFFFFFL || directoryOffset == 0xFFFFFFFFL) {
+            long locatorOffset = tailOffset + end - ZIP64_LOCATOR_SIZE;
+            if (locatorOffset < 0) {
+                throw new ZipException("ZIP64 目录定位记录缺失");
+            }
+            ByteBuffer locator = read(locatorOffset, ZIP64_LOCATOR_SIZE);
+            if (locator.getInt(0) != ZIP64_LOCATOR_SIG) {
+                throw new ZipException("ZIP64 目录定位记录无效");
+            }
+            ByteBuffer zip64End = read(locator.getLong(8), ZIP64_END_SIZE);
+            if (zip64End.getInt(0) != ZIP64_END_SIG) {
+                throw new ZipException("ZIP64 中央目录结束记录无效");
+            }
+            entryCount = zip64End.getLong(32);
+            directorySize = zip64End.getLong(40);
+            directoryOffset = zip64End.getLong(48);
+        }
+
+        ByteBuffer directory = read(directoryOffset, toIntSize(directorySize, "中央目录"));
+        Map<String, Part> result = new LinkedHashMap<>();
+        int pos = 0;
+        for (long i = 0; i < entryCount; i++) {
+            if (pos + CENTRAL_HEADER_SIZE > directory.limit() || directory.getInt(pos) != CENTRAL_HEADER_SIG) {
+                throw new ZipException("中央目录条目无效: #" + i);
+            }
+            int method = directory.getShort(pos + 10) & 0xFFFF;
+            long compressedSize = directory.getInt(pos + 20) & 0xFFFFFFFFL;
+            long size = directory.getInt(pos + 24) & 0xFFFFFFFFL;
+            int nameLength = directory.getShort(pos + 28) & 0xFFFF;
+            int extraLength = directory.getShort(pos + 30) & 0xFFFF;
+            int commentLength = directory.getShort(pos + 32) & 0xFFFF;
+            long localHeaderOffset = directory.getInt(pos + 42) & 0xFFFFFFFFL;
+
+            int namePos = pos + CENTRAL_HEADER_SIZE;
+            int extraPos = namePos + nameLength;
+            if (extraPos + extraLength + commentLength > directory.limit()) {
+                throw new ZipException("中央目录条目越界: #" + i);
+            }
+            // OOXML 部件名为 ASCII，按 UTF-8 解码与 ZipFile 默认行为一致
+            byte[] nameBytes = new byte[nameLength];
+            directory.get(namePos, nameBytes);
+            String name = new String(nameBytes, StandardCharsets.UTF_8);
+
+            if (size == 0xFFFFFFFFL || compressedSize == 0xFFFFFFFFL || localHeaderOffset == 0xFFFFFFFFL) {
+                long[] zip64 = readZip64Extra(directory, extraPos, extraLength,
+                        size == 0xFFFFFFFFL, compressedSize == 0xFFFFFFFFL, localHeaderOffset == 0xFFFFFFFFL);
+                size = zip64[0] >= 0 ? zip64[0] : size;
+                compressedSize = zip64[1] >= 0 ? zip64[1] : compressedSize;
+                localHeaderOffset = zip64[2] >= 0 ? zip64[2] : localHeaderOffset;
+            }
+            if (!name.endsWith("/")) {
+                result.put(name, new Part(name, method, compressedSize, size, localHeaderOffset));
+            }
+            pos = extraPos + extraLength + commentLength;
+        }
+        return result;
+    }
+
+    /**
+     * 读取 ZIP64 扩展字段，字段只在中央目录对应值为 0xFFFFFFFF 时按顺序出现
+     *
+     * @return [解压后大小, 压缩后大小, 本地文件头偏移]，未出现的字段为 -1
+     */
+    private static long[] readZip64Extra(ByteBuffer directory, int extraPos, int extraLength,
+                                         boolean hasSize, boolean hasCompressedSize, boolean hasOffset)
+            throws ZipException {
+        long[] values = {-1, -1, -1};
+        int pos = extraPos;
+        int end = extraPos + extraLength;
+        while (pos + 4 <= end) {
+            int id = directory.getShort(pos) & 0xFFFF;
+            int dataSize = directory.getShort(pos + 2) & 0xFFFF;
+            if (id == ZIP64_EXTRA_ID) {
+                int field = pos + 4;
+                int fieldEnd = field + dataSize;
+                if (hasSize && field + 8 <= fieldEnd) {
+                    values[0] = directory.getLong(field);
+                    field += 8;
+                }
+                if (hasCompressedSize && field + 8 <= fieldEnd) {
+                    values[1] = directory.getLong(field);
+                    field += 8;
+                }
+                if (hasOffset && field + 8 <= fieldEnd) {
+                    values[2] = directory.getLong(field);
+                }
+                return values;
+            }
+            pos += 4 + dataSize;
+        }
+        throw new ZipException("ZIP64 扩展字段缺失");
+    }
+
+    private ByteBuffer read(long offset, int count) throws IOException {
+        if (offset < 0 || offset + count > length) {
+            throw new ZipException("读取超出文件范围: offset=" + offset + ", length=" + count);
+        }
+        ByteBuffer buffer = reader.read(offset, count);
+        if (buffer.remaining() < count) {
+            throw new EOFException("读取的数据不完整: offset=" + offset + ", 期望 " + count + " 字节, 实际 " + buffer.remaining() + " 字节");
+        }
+        ByteBuffer slice = buffer.slice();
+        slice.limit(count);
+        return slice.order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static int toIntSize(long size, String what) throws ZipException {
+        if (size < 0 || size > Integer.MAX_VALUE) {
+            throw new ZipException("大小超出支持范围: " + what + " (" + size + " 字节)");
+        }
+        return (int) size;
+    }
+
+    /**
+     * DEFLATED 部件：Inflater 直接以缓冲区切片为输入（直接缓冲区不复制到堆）
+     */
+    private static final class InflatingInputStream extends InputStream {
+        private final Inflater inflater = new Inflater(true);
+        private boolean dummyByteFed;
+        private boolean eof;
+        private boolean closed;
+
+        InflatingInputStream(ByteBuffer data) {
+            inflater.setInput(data);
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (closed) {
+                throw new IOException("流已关闭");
+            }
+            if (len == 0) {
+                return 0;
+            }
+            if (eof) {
+                return -1;
+            }
+            try {
+                while (true) {
+                    int n = inflater.inflate(b, off, len);
+                    if (n > 0) {
+                        return n;
+                    }
+                    if (inflater.finished()) {
+                        eof = true;
+                        return -1;
+                    }
+                    if (inflater.needsDictionary()) {
+                        throw new ZipException("部件数据需要预设字典，无法解压");
+                    }
+                    if (inflater.needsInput()) {
+                        // 与 ZipFile 一致：nowrap 模式下输入结束后补一个哑字节
+                        if (dummyByteFed) {
+                            throw new EOFException("部件数据提前结束");
+                        }
+                        dummyByteFed = true;
+                        inflater.setInput(new byte[1]);
+                    }
+                }
+            } catch (DataFormatException e) {
+                throw new ZipException("部件数据损坏: " + e.getMessage());
+            }
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                inflater.end();
+            }
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.Contract_review.util;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 延迟直方图
+ *
+ * 按指数分桶（50ms 起，每桶 ×1.2，最大约 10 分钟）统计延迟分布，用于估算分位数：
+ * - 分位数取所在桶的上界，相对误差不超过 20%，对设置对冲阈值足够
+ * - 样本数达到衰减窗口时所有桶计数减半，使分布逐步偏向近期的延迟
+ *
+ * 线程安全。
+ */
+public class LatencyHistogram {
+
+    private static final long FIRST_BOUND_MS = 50;
+    private static final double GROWTH = 1.2;
+    private static final long MAX_BOUND_MS = 10 * 60 * 1000L;
+
+    private static final long[] BOUNDS = buildBounds();
+
+    private final long[] counts = new long[BOUNDS.length + 1];
+    private final int decayWindow;
+    private long total;
+    private long recorded;
+
+    /**
+     * @param decayWindow 计数减半的样本数（不大于 0 时不衰减）
+     */
+    public LatencyHistogram(int decayWindow) {
+        this.decayWindow = decayWindow;
+    }
+
+    /**
+     * 记录一次延迟
+     */
+    public synchronized void record(long latencyMs) {
+        counts[bucketOf(Math.max(0, latencyMs))]++;
+        total++;
+        recorded++;
+        if (decayWindow > 0 && total >= decayWindow) {
+            total = 0;
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] >>= 1;
+                total += counts[i];
+            }
+        }
+    }
+
+    /**
+     * 估算分位数（毫秒），没有样本时返回 -1
+     *
+     * @param quantile 分位（0~1），如 0.9 表示 P90
+     */
+    public synchronized long percentile(double quantile) {
+        if (total == 0) {
+            return -1;
+        }
+        long target = Math.max(1, (long) Math.ceil(total * Math.min(1.0, Math.max(0.0, quantile))));
+        long cumulative = 0;
+        for (int i = 0; i < counts.length; i++) {
+            cumulative += counts[i];
+            if (cumulative >= target) {
+                return i < BOUNDS.length ? BOUNDS[i] : MAX_BOUND_MS;
+            }
+        }
+        return MAX_BOUND_MS;
+    }
+
+    /**
+     * 当前参与统计的样本数（衰减后）
+     */
+    public synchronized long count() {
+        return total;
+    }
+
+    /**
+     * 统计信息：样本数和常用分位数
+     */
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("samples", total);
+        stats.put("recorded", recorded);
+        stats.put("p50Ms", percentile(0.5));
+        stats.put("p90Ms", percentile(0.9));
+        stats.put("p99Ms", percentile(0.99));
+        return stats;
+    }
+
+    private static int bucketOf(long latencyMs) {
+        int low = 0;
+        int high = BOUNDS.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (BOUNDS[mid] < latencyMs) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static long[] buildBounds() {
+        List<Long> bounds = new ArrayList<>();
+        double bound = FIRST_BOUND_MS;
+        while (bound < MAX_BOUND_MS) {
+            bounds.add((long) Math.ceil(bound));
+            bound *= GROWTH;
+        }
+        bounds.add(MAX_BOUND_MS);
+        return bounds.stream().mapToLong(Long::longValue).toArray();
+    }
+}
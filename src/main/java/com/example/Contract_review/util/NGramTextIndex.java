@@ -0,0 +1,536 @@
+package com.example.Contract_review.util;
+
+import org.dom4j.Element;
+import org.dom4j.Namespace;
+import org.dom4j.QName;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * 文档级字符 q-gram 倒排索引
+ *
+ * 每次批注处理时对整篇文档（含表格、文本框内段落）构建一次，
+ * 用于在LLM返回的targetText与原文存在轻微出入（改写、标点差异、跨段落）时快速定位：
+ *
+ *   1. 过滤：按 q-gram 引理统计候选对角线的命中数，只保留命中数达到阈值的候选窗口（亚线性，无需逐段扫描）
+ *   2. 验证：对候选窗口做有界编辑距离（半全局对齐）校验，得到精确的起止偏移
+ *   3. 排序：优先选择落在问题所属条款范围内的位置，其次编辑距离更小、距锚点段落更近的位置
+ *
+ * 段落文本与 PreciseTextAnnotationLocator 的 Run 文本拼接规则保持一致，
+ * 因此返回的偏移可以直接映射到 Run 元素。
+ */
+public class NGramTextIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(NGramTextIndex.class);
+
+    private static final Namespace W_NS =
+            Namespace.get("w", "http://schemas.openxmlformats.org/wordprocessingml/2006/main");
+
+    /**
+     * gram长度：中文合同以双字切分区分度已足够
+     */
+    private static final int Q = 2;
+
+    /**
+     * 允许的最大编辑距离占targetText长度的比例
+     */
+    private static final double MAX_ERROR_RATIO = 0.2;
+
+    /**
+     * 出现次数过多的gram（如"的，"）视为停用gram，不参与候选统计
+     */
+    private static final int MAX_POSTINGS_PER_GRAM = 4096;
+
+    /**
+     * 单次查询最多验证的候选窗口数
+     */
+    private static final int MAX_CANDIDATES = 32;
+
+    /**
+     * 支持的最长targetText，超过则放弃模糊定位
+     */
+    private static final int MAX_PATTERN_LENGTH = 1000;
+
+    /**
+     * 对角线偏置，保证段内局部对角线为非负数
+     */
+    private static final int DIAGONAL_BIAS = 1 << 20;
+
+    /**
+     * 无条款信息时，锚点段落之后视为同一条款范围的段落数（与多段落条款搜索保持一致）
+     */
+    private static final int NEIGHBOR_WINDOW = 10;
+
+    private final List<Element> paragraphs;
+    private final String[] foldedTexts;
+    private final String[] paragraphClauseIds;
+    private final Map<Element, Integer> paragraphPositions;
+    private final Map<Integer, long[]> postings;
+
+    private NGramTextIndex(List<Element> paragraphs, String[] foldedTexts,
+                           String[] paragraphClauseIds, Map<Integer, long[]> postings) {
+        this.paragraphs = paragraphs;
+        this.foldedTexts = foldedTexts;
+        this.paragraphClauseIds = paragraphClauseIds;
+        this.postings = postings;
+        this.paragraphPositions = new IdentityHashMap<>();
+        for (int i = 0; i < paragraphs.size(); i++) {
+            paragraphPositions.put(paragraphs.get(i), i);
+        }
+    }
+
+    /**
+     * 为文档段落构建索引
+     *
+     * @param paragraphs 文档中所有段落（按文档顺序，含表格/文本框内段落）
+     * @param textExtractor 段落文本提取函数，必须与Run映射使用的文本一致
+     * @return 索引
+     */
+    public static NGramTextIndex build(List<Element> paragraphs, Function<Element, String> textExtractor) {
+        long startTime = System.currentTimeMillis();
+
+        String[] foldedTexts = new String[paragraphs.size()];
+        String[] clauseIds = new String[paragraphs.size()];
+        Map<Integer, PostingList> lists = new HashMap<>();
+
+        String currentClauseId = null;
+        int totalChars = 0;
+        for (int paraIndex = 0; paraIndex < paragraphs.size(); paraIndex++) {
+            Element para = paragraphs.get(paraIndex);
+
+            // 按锚点书签确定段落所属条款（条款级/段落级锚点均以 anc-{clauseId}- 开头）
+            String bookmarkClauseId = extractClauseIdFromBookmarks(para);
+            if (bookmarkClauseId != null) {
+                currentClauseId = bookmarkClauseId;
+            }
+            clauseIds[paraIndex] = currentClauseId;
+
+            String folded = fold(textExtractor.apply(para));
+            foldedTexts[paraIndex] = folded;
+            totalChars += folded.length();
+
+            for (int i = 0; i + Q <= folded.length(); i++) {
+                lists.computeIfAbsent(gramKey(folded, i), k -> new PostingList())
+                        .add(((long) paraIndex << 32) | i);
+            }
+        }
+
+        Map<Integer, long[]> postings = new HashMap<>(lists.size() * 2);
+        for (Map.Entry<Integer, PostingList> entry : lists.entrySet()) {
+            postings.put(entry.getKey(), entry.getValue().toArray());
+        }
+
+        logger.debug("【q-gram索引】构建完成：段落数={}, 字符数={}, gram数={}, 耗时={}ms",
+                   paragraphs.size(), totalChars, postings.size(), System.currentTimeMillis() - startTime);
+        return new NGramTextIndex(paragraphs, foldedTexts, clauseIds, postings);
+    }
+
+    /**
+     * 获取索引覆盖的段落列表（文档顺序）
+     */
+    public List<Element> getParagraphs() {
+        return paragraphs;
+    }
+
+    /**
+     * 获取段落在索引中的位置
+     *
+     * @return 段落索引；不在索引中返回-1
+     */
+    public int indexOf(Element paragraph) {
+        Integer index = paragraphPositions.get(paragraph);
+        return index != null ? index : -1;
+    }
+
+    /**
+     * 在全文中查找与targetText最相近的位置
+     *
+     * @param targetText 要查找的文字
+     * @param clauseId 问题所属条款ID（可为null）
+     * @param anchorParaIndex 锚点段落索引（未知时传-1）
+     * @param allowFuzzy 是否允许编辑距离匹配（false时仅接受完全一致）
+     * @return 最佳匹配；未找到返回null
+     */
+    public Match search(String targetText, String clauseId, int anchorParaIndex, boolean allowFuzzy) {
+        if (targetText == null) {
+            return null;
+        }
+
+        String pattern = fold(targetText).trim();
+        int m = pattern.length();
+        if (m < Q || m > MAX_PATTERN_LENGTH) {
+            logger.debug("【q-gram索引】targetText长度={}，不在可检索范围内", m);
+            return null;
+        }
+
+        // 1. 允许的编辑距离和q-gram引理阈值：共享gram数 >= (m - Q + 1) - k * Q
+        int maxDistance = allowFuzzy ? (int) Math.floor(m * MAX_ERROR_RATIO) : 0;
+        int gramCount = m - Q + 1;
+        while (maxDistance > 0 && gramCount - maxDistance * Q < 1) {
+            maxDistance--;
+        }
+        int threshold = gramCount - maxDistance * Q;
+
+        // 2. 收集命中：key = (段落索引, 段内对角线)
+        long[] hits = new long[16];
+        int hitCount = 0;
+        int skippedGrams = 0;
+        for (int i = 0; i < gramCount; i++) {
+            long[] list = postings.get(gramKey(pattern, i));
+            if (list == null) {
+                continue;
+            }
+            if (list.length > MAX_POSTINGS_PER_GRAM) {
+                skippedGrams++;
+                continue;
+            }
+            for (long posting : list) {
+                int paraIndex = (int) (posting >>> 32);
+                int local = (int) posting;
+                if (hitCount == hits.length) {
+                    hits = Arrays.copyOf(hits, hitCount * 2);
+                }
+                hits[hitCount++] = ((long) paraIndex << 32) | (local - i + DIAGONAL_BIAS);
+            }
+        }
+        threshold = Math.max(1, threshold - skippedGrams);
+
+        if (hitCount == 0) {
+            logger.debug("【q-gram索引】未命中任何gram：targetText={}", targetText);
+            return null;
+        }
+
+        // 3. 过滤：同一段落内对角线跨度不超过2k的命中数达到阈值即为候选
+        List<Candidate> candidates = collectCandidates(hits, hitCount, threshold, maxDistance);
+        if (candidates.isEmpty()) {
+            logger.debug("【q-gram索引】无候选窗口达到阈值：threshold={}, 命中数={}", threshold, hitCount);
+            return null;
+        }
+
+        // 4. 验证：有界编辑距离
+        Match best = null;
+        for (Candidate candidate : candidates) {
+            String text = foldedTexts[candidate.paragraphIndex];
+            int windowStart = Math.max(0, candidate.minDiagonal - maxDistance);
+            int windowEnd = Math.min(text.length(), candidate.maxDiagonal + m + maxDistance);
+            if (windowEnd <= windowStart) {
+                continue;
+            }
+
+            Match match = verify(pattern, text, windowStart, windowEnd, maxDistance);
+            if (match == null) {
+                continue;
+            }
+            match.paragraphIndex = candidate.paragraphIndex;
+            match.paragraph = paragraphs.get(candidate.paragraphIndex);
+            match.inClauseRange = isInClauseRange(candidate.paragraphIndex, clauseId, anchorParaIndex);
+
+            if (best == null || compare(match, best, anchorParaIndex) < 0) {
+                best = match;
+            }
+        }
+
+        if (best != null) {
+            logger.debug("【q-gram索引】最佳匹配：段落={}, 范围={}-{}, 编辑距离={}, 条款范围内={}, 候选数={}",
+                       best.paragraphIndex, best.start, best.end, best.distance, best.inClauseRange, candidates.size());
+        }
+        return best;
+    }
+
+    /**
+     * 按对角线滑动窗口收集候选，按命中数降序截断
+     */
+    private List<Candidate> collectCandidates(long[] hits, int hitCount, int threshold, int maxDistance) {
+        Arrays.sort(hits, 0, hitCount);
+
+        List<Candidate> candidates = new ArrayList<>();
+        int left = 0;
+        for (int right = 0; right < hitCount; right++) {
+            int rightPara = (int) (hits[right] >>> 32);
+            int rightDiag = (int) hits[right] - DIAGONAL_BIAS;
+            while ((int) (hits[left] >>> 32) != rightPara
+                    || rightDiag - ((int) hits[left] - DIAGONAL_BIAS) > 2 * maxDistance) {
+                left++;
+            }
+
+            int count = right - left + 1;
+            boolean windowEnds = right + 1 == hitCount
+                    || (int) (hits[right + 1] >>> 32) != rightPara
+                    || ((int) hits[right + 1] - DIAGONAL_BIAS) - ((int) hits[left] - DIAGONAL_BIAS) > 2 * maxDistance;
+            if (count < threshold || !windowEnds) {
+                continue;
+            }
+
+            int leftDiag = (int) hits[left] - DIAGONAL_BIAS;
+            Candidate last = candidates.isEmpty() ? null : candidates.get(candidates.size() - 1);
+            if (last != null && last.paragraphIndex == rightPara && leftDiag <= last.maxDiagonal) {
+                // 与上一个候选重叠，合并窗口
+                last.maxDiagonal = Math.max(last.maxDiagonal, rightDiag);
+                last.hitCount = Math.max(last.hitCount, count);
+            } else {
+                candidates.add(new Candidate(rightPara, leftDiag, rightDiag, count));
+            }
+        }
+
+        if (candidates.size() > MAX_CANDIDATES) {
+            candidates.sort((a, b) -> Integer.compare(b.hitCount, a.hitCount));
+            return new ArrayList<>(candidates.subList(0, MAX_CANDIDATES));
+        }
+        return candidates;
+    }
+
+    /**
+     * 半全局对齐：pattern必须完整对齐，文本窗口内起止位置自由
+     *
+     * @return 窗口内编辑距离最小的匹配；超过maxDistance返回null
+     */
+    private Match verify(String pattern, String text, int windowStart, int windowEnd, int maxDistance) {
+        int m = pattern.length();
+        int n = windowEnd - windowStart;
+
+        // 正向：求最佳结束位置
+        int[] column = new int[m + 1];
+        int bestDistance = Integer.MAX_VALUE;
+        int bestEnd = -1;
+        for (int i = 0; i <= m; i++) {
+            column[i] = i;
+        }
+        if (column[m] <= maxDistance) {
+            bestDistance = column[m];
+            bestEnd = windowStart;
+        }
+        for (int j = 1; j <= n; j++) {
+            char c = text.charAt(windowStart + j - 1);
+            int diagonal = column[0];
+            column[0] = 0;
+            for (int i = 1; i <= m; i++) {
+                int above = column[i];
+                int cost = pattern.charAt(i - 1) == c ? 0 : 1;
+                column[i] = Math.min(Math.min(above + 1, column[i - 1] + 1), diagonal + cost);
+                diagonal = above;
+            }
+            if (column[m] < bestDistance) {
+                bestDistance = column[m];
+                bestEnd = windowStart + j;
+            }
+        }
+        if (bestEnd < 0 || bestDistance > maxDistance) {
+            return null;
+        }
+
+        // 反向：固定结束位置，倒推最佳起始位置
+        for (int i = 0; i <= m; i++) {
+            column[i] = i;
+        }
+        int bestStart = bestEnd;
+        int reverseBest = column[m];
+        for (int j = 1; j <= bestEnd - windowStart; j++) {
+            char c = text.charAt(bestEnd - j);
+            int diagonal = column[0];
+            column[0] = j;
+            for (int i = 1; i <= m; i++) {
+                int above = column[i];
+                int cost = pattern.charAt(m - i) == c ? 0 : 1;
+                column[i] = Math.min(Math.min(above + 1, column[i - 1] + 1), diagonal + cost);
+                diagonal = above;
+            }
+            if (column[m] < reverseBest) {
+                reverseBest = column[m];
+                bestStart = bestEnd - j;
+            }
+        }
+        if (bestStart >= bestEnd) {
+            return null;
+        }
+
+        Match match = new Match();
+        match.start = bestStart;
+        match.end = bestEnd;
+        match.distance = bestDistance;
+        return match;
+    }
+
+    /**
+     * 判断段落是否在问题所属条款范围内
+     */
+    private boolean isInClauseRange(int paraIndex, String clauseId, int anchorParaIndex) {
+        String paraClauseId = paragraphClauseIds[paraIndex];
+        if (clauseId != null && paraClauseId != null) {
+            return clauseId.equals(paraClauseId);
+        }
+        return anchorParaIndex >= 0 && paraIndex >= anchorParaIndex && paraIndex <= anchorParaIndex + NEIGHBOR_WINDOW;
+    }
+
+    /**
+     * 排序规则：条款范围内优先 → 编辑距离小优先 → 距锚点段落近优先 → 文档靠前优先
+     */
+    private int compare(Match a, Match b, int anchorParaIndex) {
+        if (a.inClauseRange != b.inClauseRange) {
+            return a.inClauseRange ? -1 : 1;
+        }
+        if (a.distance != b.distance) {
+            return Integer.compare(a.distance, b.distance);
+        }
+        if (anchorParaIndex >= 0) {
+            int da = Math.abs(a.paragraphIndex - anchorParaIndex);
+            int db = Math.abs(b.paragraphIndex - anchorParaIndex);
+            if (da != db) {
+                return Integer.compare(da, db);
+            }
+        }
+        if (a.paragraphIndex != b.paragraphIndex) {
+            return Integer.compare(a.paragraphIndex, b.paragraphIndex);
+        }
+        return Integer.compare(a.start, b.start);
+    }
+
+    /**
+     * 从段落的锚点书签中提取条款ID
+     * anc-c2-8f3a → c2；anc-c2-p1-8f3a → c2
+     */
+    private static String extractClauseIdFromBookmarks(Element paragraph) {
+        for (Element bookmark : paragraph.elements(QName.get("bookmarkStart", W_NS))) {
+            String name = bookmark.attributeValue(QName.get("name", W_NS));
+            if (name != null && name.startsWith("anc-")) {
+                int end = name.indexOf('-', 4);
+                if (end > 4) {
+                    return name.substring(4, end);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 逐字符规范化（保持长度不变，以便偏移直接映射回原文）
+     * 规则与 PreciseTextAnnotationLocator.normalizeText 的字符映射一致
+     */
+    static String fold(String text) {
+        if (text == null || text.isEmpty()) {
+            return "";
+        }
+        char[] chars = text.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = foldChar(chars[i]);
+        }
+        return new String(chars);
+    }
+
+    private static char foldChar(char c) {
+        switch (c) {
+            case '（': return '(';
+            case '）': return ')';
+            case '：': return ':';
+            case '；': return ';';
+            case '，': return ',';
+            case '。': return '.';
+            case '！': return '!';
+            case '？': return '?';
+            case '／': return '/';
+            case '～': return '~';
+            case '“':
+            case '”':
+            case '«':
+            case '»':
+                return '"';
+            case '‘':
+            case '’':
+                return '\'';
+            default:
+                return Character.isWhitespace(c) || c == '　' ? ' ' : c;
+        }
+    }
+
+    private static int gramKey(String text, int offset) {
+        return (text.charAt(offset) << 16) | text.charAt(offset + 1);
+    }
+
+    /**
+     * 匹配结果
+     */
+    public static class Match {
+        private Element paragraph;
+        private int paragraphIndex;
+        private int start;
+        private int end;
+        private int distance;
+        private boolean inClauseRange;
+
+        public Element getParagraph() {
+            return paragraph;
+        }
+
+        public int getParagraphIndex() {
+            return paragraphIndex;
+        }
+
+        /**
+         * 匹配在段落文本中的起始位置
+         */
+        public int getStart() {
+            return start;
+        }
+
+        /**
+         * 匹配在段落文本中的结束位置（不含）
+         */
+        public int getEnd() {
+            return end;
+        }
+
+        /**
+         * 与targetText的编辑距离，0表示完全一致（规范化后）
+         */
+        public int getDistance() {
+            return distance;
+        }
+
+        public boolean isInClauseRange() {
+            return inClauseRange;
+        }
+    }
+
+    /**
+     * 内部类：候选窗口（段内对角线范围）
+     */
+    private static class Candidate {
+        int paragraphIndex;
+        int minDiagonal;
+        int maxDiagonal;
+        int hitCount;
+
+        Candidate(int paragraphIndex, int minDiagonal, int maxDiagonal, int hitCount) {
+            this.paragraphIndex = paragraphIndex;
+            this.minDiagonal = minDiagonal;
+            this.maxDiagonal = maxDiagonal;
+            this.hitCount = hitCount;
+        }
+    }
+
+    /**
+     * 内部类：构建期间的可增长倒排表
+     */
+    private static class PostingList {
+        long[] data = new long[4];
+        int size;
+
+        void add(long value) {
+            if (size == data.length) {
+                data = Arrays.copyOf(data, size * 2);
+            }
+            data[size++] = value;
+        }
+
+        long[] toArray() {
+            return Arrays.copyOf(data, size);
+        }
+    }
+}
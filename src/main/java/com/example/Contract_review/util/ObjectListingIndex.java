@@ -0,0 +1,405 @@
+package com.example.Contract_review.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Predicate;
+
+/**
+ * 对象列表的本地元数据索引（分页查询用）
+ *
+ * - 按名称有序（前缀范围扫描）和按修改时间倒序两种索引，分页只访问当页条目，耗时与对象总数无关
+ * - 按时间排序时每个顶层目录（对象名第一段）单独维护一个有序集合，前缀带目录时只扫描该目录；
+ *   前缀不带目录时只合并名称匹配前缀的目录和根目录，不扫描全部对象
+ * - 可指定排除规则（如内部对象），被排除的对象不进入索引，也不会出现在分页结果中
+ * - 上传、删除时增量更新；定期用完整列表对账（reconcile），修正遗漏的变更
+ * - 对账期间发生的上传、删除以增量更新为准，不会被对账开始前的列表覆盖
+ *
+ * 游标不透明（Base64），记录上一页最后一个条目的排序键。
+ * 线程安全：写操作串行，读操作无锁。
+ */
+public class ObjectListingIndex {
+
+    /**
+     * 索引条目
+     */
+    public static final class Entry {
+        private final String name;
+        private final long size;
+        private final long lastModified;
+        private final String etag;
+        private final long indexedAt;
+
+        public Entry(String name, long size, long lastModified, String etag) {
+            this(name, size, lastModified, etag, System.currentTimeMillis());
+        }
+
+        private Entry(String name, long size, long lastModified, String etag, long indexedAt) {
+            this.name = name;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.etag = etag;
+            this.indexedAt = indexedAt;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        String folder() {
+            int slash = name.indexOf('/');
+            return slash > 0 ? name.substring(0, slash) : "";
+        }
+
+        boolean sameAs(Entry other) {
+            return other != null && size == other.size && lastModified == other.lastModified
+                    && (etag == null ? other.etag == null : etag.equals(other.etag));
+        }
+    }
+
+    /**
+     * 一页结果
+     */
+    public static final class Page {
+        private final List<Entry> items;
+        private final String nextCursor;
+
+        Page(List<Entry> items, String nextCursor) {
+            this.items = items;
+            this.nextCursor = nextCursor;
+        }
+
+        public List<Entry> getItems() {
+            return items;
+        }
+
+        /**
+         * 下一页游标，没有更多结果时为 null
+         */
+        public String getNextCursor() {
+            return nextCursor;
+        }
+    }
+
+    private static final Comparator<Entry> NEWEST_FIRST = Comparator.comparingLong(Entry::getLastModified).reversed()
+            .thenComparing(Entry::getName);
+
+    private final ConcurrentSkipListMap<String, Entry> byName = new ConcurrentSkipListMap<>();
+    private final ConcurrentSkipListSet<Entry> byTime = new ConcurrentSkipListSet<>(NEWEST_FIRST);
+    private final ConcurrentSkipListMap<String, ConcurrentSkipListSet<Entry>> byTimeInFolder = new ConcurrentSkipListMap<>();
+
+    /**
+     * 不进入索引的对象名
+     */
+    private final Predicate<String> excluded;
+
+    /**
+     * 最近删除的对象（对象名 -> 删除时间），对账时不恢复对账开始后删除的对象
+     */
+    private final Map<String, Long> removedAt = new ConcurrentHashMap<>();
+
+    private volatile boolean ready;
+    private volatile long lastReconciledAt;
+
+    public ObjectListingIndex() {
+        this(name -> false);
+    }
+
+    /**
+     * @param excluded 对象名匹配时不进入索引（如内部缓存、分段上传临时对象）
+     */
+    public ObjectListingIndex(Predicate<String> excluded) {
+        this.excluded = excluded;
+    }
+
+    /**
+     * 新增或更新条目（被排除的对象忽略）
+     */
+    public synchronized void put(Entry entry) {
+        if (excluded.test(entry.name)) {
+            return;
+        }
+        removedAt.remove(entry.name);
+        replace(entry);
+    }
+
+    /**
+     * 删除条目
+     */
+    public synchronized void remove(String name) {
+        removedAt.put(name, System.currentTimeMillis());
+        Entry existing = byName.remove(name);
+        if (existing != null) {
+            unindexTime(existing);
+        }
+    }
+
+    /**
+     * 用完整列表对账
+     *
+     * 列表中有而索引没有（或元数据不同）的条目写入索引；索引中有而列表没有、且在对账开始前写入的条目删除。
+     * 遍历列表抛出异常时中止，不做删除。
+     *
+     * @param listing 对象存储中的完整对象列表
+     * @return 对账后的条目数
+     */
+    public int reconcile(Iterable<Entry> listing) {
+        long startedAt = System.currentTimeMillis();
+        Set<String> seen = new HashSet<>();
+        for (Entry listed : listing) {
+            if (excluded.test(listed.name)) {
+                continue;
+            }
+            seen.add(listed.name);
+            synchronized (this) {
+                Long removed = removedAt.get(listed.name);
+                Entry existing = byName.get(listed.name);
+                if ((removed != null && removed >= startedAt)
+                        || (existing != null && existing.indexedAt >= startedAt)
+                        || listed.sameAs(existing)) {
+                    continue;
+                }
+                replace(new Entry(listed.name, listed.size, listed.lastModified, listed.etag, startedAt));
+            }
+        }
+        synchronized (this) {
+            Iterator<Entry> it = byName.values().iterator();
+            while (it.hasNext()) {
+                Entry entry = it.next();
+                if (!seen.contains(entry.name) && entry.indexedAt < startedAt) {
+                    it.remove();
+                    unindexTime(entry);
+                }
+            }
+            removedAt.values().removeIf(time -> time < startedAt);
+            ready = true;
+            lastReconciledAt = startedAt;
+        }
+        return byName.size();
+    }
+
+    /**
+     * 分页查询
+     *
+     * @param prefix 对象名前缀（可为空）
+     * @param cursor 上一页返回的游标（首页为 null）
+     * @param limit 每页条数
+     * @param sortByTime true 按修改时间倒序，false 按名称升序
+     * @throws IllegalArgumentException 游标无效或与排序方式不匹配
+     */
+    public Page page(String prefix, String cursor, int limit, boolean sortByTime) {
+        String effectivePrefix = prefix != null ? prefix : "";
+        int pageSize = Math.max(1, limit);
+        List<Entry> items = new ArrayList<>(Math.min(pageSize + 1, 1024));
+
+        if (sortByTime) {
+            Entry after = cursor != null ? decodeTimeCursor(cursor) : null;
+            Iterator<Entry> candidates = timeCandidates(effectivePrefix, after);
+            while (candidates.hasNext()) {
+                Entry entry = candidates.next();
+                if (!entry.name.startsWith(effectivePrefix)) {
+                    continue;
+                }
+                items.add(entry);
+                if (items.size() > pageSize) {
+                    break;
+                }
+            }
+        } else {
+            String after = cursor != null ? decodeNameCursor(cursor) : null;
+            Map<String, Entry> range = after != null && after.compareTo(effectivePrefix) >= 0
+                    ? byName.tailMap(after, false)
+                    : byName.tailMap(effectivePrefix, true);
+            for (Entry entry : range.values()) {
+                if (!entry.name.startsWith(effectivePrefix)) {
+                    break;
+                }
+                items.add(entry);
+                if (items.size() > pageSize) {
+                    break;
+                }
+            }
+        }
+
+        String nextCursor = null;
+        if (items.size() > pageSize) {
+            items.remove(pageSize);
+            Entry last = items.get(pageSize - 1);
+            nextCursor = encode(sortByTime ? "t:" + last.lastModified + ":" + last.name : "n:" + last.name);
+        }
+        return new Page(items, nextCursor);
+    }
+
+    /**
+     * 按时间倒序返回可能匹配前缀的条目
+     *
+     * 空前缀扫描全部；前缀带目录时只扫描该目录；前缀不带目录时归并名称以前缀开头的目录和根目录
+     */
+    private Iterator<Entry> timeCandidates(String prefix, Entry after) {
+        if (prefix.isEmpty()) {
+            return tail(byTime, after).iterator();
+        }
+        int slash = prefix.indexOf('/');
+        if (slash > 0) {
+            NavigableSet<Entry> set = byTimeInFolder.get(prefix.substring(0, slash));
+            return set != null ? tail(set, after).iterator() : Collections.emptyIterator();
+        }
+
+        List<NavigableSet<Entry>> sets = new ArrayList<>();
+        NavigableSet<Entry> root = byTimeInFolder.get("");
+        if (root != null) {
+            sets.add(root);
+        }
+        for (Map.Entry<String, ConcurrentSkipListSet<Entry>> folder : byTimeInFolder.tailMap(prefix, true).entrySet()) {
+            if (!folder.getKey().startsWith(prefix)) {
+                break;
+            }
+            sets.add(folder.getValue());
+        }
+        return merge(sets, after);
+    }
+
+    private static NavigableSet<Entry> tail(NavigableSet<Entry> set, Entry after) {
+        return after != null ? set.tailSet(after, false) : set;
+    }
+
+    /**
+     * 按 NEWEST_FIRST 归并多个有序集合
+     */
+    private static Iterator<Entry> merge(List<NavigableSet<Entry>> sets, Entry after) {
+        PriorityQueue<Head> heads = new PriorityQueue<>(Math.max(1, sets.size()),
+                (a, b) -> NEWEST_FIRST.compare(a.entry, b.entry));
+        for (NavigableSet<Entry> set : sets) {
+            Head.offer(heads, tail(set, after).iterator());
+        }
+        return new Iterator<Entry>() {
+            @Override
+            public boolean hasNext() {
+                return !heads.isEmpty();
+            }
+
+            @Override
+            public Entry next() {
+                Head head = heads.poll();
+                if (head == null) {
+                    throw new NoSuchElementException();
+                }
+                Head.offer(heads, head.rest);
+                return head.entry;
+            }
+        };
+    }
+
+    /**
+     * 归并中某个集合的当前条目及其后续条目
+     */
+    private static final class Head {
+        private final Entry entry;
+        private final Iterator<Entry> rest;
+
+        private Head(Entry entry, Iterator<Entry> rest) {
+            this.entry = entry;
+            this.rest = rest;
+        }
+
+        static void offer(PriorityQueue<Head> heads, Iterator<Entry> it) {
+            if (it.hasNext()) {
+                heads.add(new Head(it.next(), it));
+            }
+        }
+    }
+
+    public Entry get(String name) {
+        return byName.get(name);
+    }
+
+    public int size() {
+        return byName.size();
+    }
+
+    /**
+     * 是否已完成至少一次对账（之前只包含本进程内的增量更新）
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    public long getLastReconciledAt() {
+        return lastReconciledAt;
+    }
+
+    private void replace(Entry entry) {
+        Entry existing = byName.put(entry.name, entry);
+        if (existing != null) {
+            unindexTime(existing);
+        }
+        byTime.add(entry);
+        byTimeInFolder.computeIfAbsent(entry.folder(), folder -> new ConcurrentSkipListSet<>(NEWEST_FIRST)).add(entry);
+    }
+
+    private void unindexTime(Entry entry) {
+        byTime.remove(entry);
+        ConcurrentSkipListSet<Entry> folder = byTimeInFolder.get(entry.folder());
+        if (folder != null) {
+            folder.remove(entry);
+        }
+    }
+
+    private static String encode(String raw) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String decode(String cursor) {
+        try {
+            return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("无效的游标: " + cursor);
+        }
+    }
+
+    private static Entry decodeTimeCursor(String cursor) {
+        String raw = decode(cursor);
+        int split = raw.indexOf(':', 2);
+        if (!raw.startsWith("t:") || split < 0) {
+            throw new IllegalArgumentException("游标与排序方式不匹配: " + cursor);
+        }
+        try {
+            return new Entry(raw.substring(split + 1), 0, Long.parseLong(raw.substring(2, split)), null, 0);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("无效的游标: " + cursor);
+        }
+    }
+
+    private static String decodeNameCursor(String cursor) {
+        String raw = decode(cursor);
+        if (!raw.startsWith("n:")) {
+            throw new IllegalArgumentException("游标与排序方式不匹配: " + cursor);
+        }
+        return raw.substring(2);
+    }
+}
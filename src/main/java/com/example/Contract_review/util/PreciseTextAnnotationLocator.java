@@ -55,19 +55,8 @@ public class PreciseTextAnnotationLocator {
         }
 
         // 构建完整文本和Run映射关系
-        StringBuilder fullText = new StringBuilder();
-        List<RunInfo> runInfos = new ArrayList<>();
-
-        for (Element run : runs) {
-            int startPos = fullText.length();
-            String runText = extractRunText(run);
-            fullText.append(runText);
-            int endPos = fullText.length();
-
-            runInfos.add(new RunInfo(run, startPos, endPos, runText));
-        }
-
-        String completeText = fullText.toString();
+        List<RunInfo> runInfos = buildRunInfos(runs);
+        String completeText = joinRunTexts(runInfos);
         logger.debug("段落完整文本长度: {}, 内容: {}", completeText.length(), completeText);
         logger.debug("【文字匹配】寻找: '{}' (长度: {}, 模式: {})", targetText, targetText.length(), matchPattern);
 
@@ -98,6 +87,42 @@ public class PreciseTextAnnotationLocator {
         return mapPositionToRuns(runInfos, matchPos, endPos);
     }
 
+    /**
+     * 将段落文本中的已知范围映射到Run元素
+     *
+     * 用于q-gram索引（NGramTextIndex）在段落外部完成定位后，复用Run映射逻辑
+     *
+     * @param paragraph 目标段落元素
+     * @param startPos 段落文本中的起始位置
+     * @param endPos 段落文本中的结束位置（不含）
+     * @return 匹配结果；范围无效或段落无Run时返回null
+     */
+    public TextMatchResult locateRange(Element paragraph, int startPos, int endPos) {
+        List<Element> runs = getRuns(paragraph);
+        if (runs.isEmpty() || startPos < 0 || endPos <= startPos) {
+            return null;
+        }
+
+        List<RunInfo> runInfos = buildRunInfos(runs);
+        if (endPos > runInfos.get(runInfos.size() - 1).endPos) {
+            logger.warn("定位范围超出段落文本长度：范围={}-{}", startPos, endPos);
+            return null;
+        }
+
+        return mapPositionToRuns(runInfos, startPos, endPos);
+    }
+
+    /**
+     * 获取段落文本（仅拼接段落直属Run中的文字，与Run映射使用的文本一致）
+     */
+    public String getParagraphText(Element paragraph) {
+        StringBuilder text = new StringBuilder();
+        for (Element run : getRuns(paragraph)) {
+            text.append(extractRunText(run));
+        }
+        return text.toString();
+    }
+
     /**
      * 查找所有匹配位置
      * 支持智能文本规范化，处理空格、引号、全宽/半宽字符等差异
@@ -289,6 +314,28 @@ public class PreciseTextAnnotationLocator {
         return text.toString();
     }
 
+    /**
+     * 构建Run在段落完整文本中的位置信息
+     */
+    private List<RunInfo> buildRunInfos(List<Element> runs) {
+        List<RunInfo> runInfos = new ArrayList<>();
+        int position = 0;
+        for (Element run : runs) {
+            String runText = extractRunText(run);
+            runInfos.add(new RunInfo(run, position, position + runText.length(), runText));
+            position += runText.length();
+        }
+        return runInfos;
+    }
+
+    private String joinRunTexts(List<RunInfo> runInfos) {
+        StringBuilder fullText = new StringBuilder();
+        for (RunInfo info : runInfos) {
+            fullText.append(info.text);
+        }
+        return fullText.toString();
+    }
+
     /**
      * 将全局文本位置映射到具体的Run元素
      *
@@ -0,0 +1,94 @@
+package com.example.Contract_review.util;
+
+import com.example.Contract_review.model.RuleMatchResult;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.ToIntFunction;
+
+/**
+ * 规则审查分块规划器
+ *
+ * 按条款顺序把规则匹配结果贪心装入若干分块，使每块 Prompt 的估算 token 数不超过预算：
+ * - 条款不会被拆开（targetText 必须来自同一条款原文）
+ * - 单个条款超出预算时独占一块
+ * - 分块保持原始条款顺序，便于合并结果后按条款排序
+ */
+public final class ReviewChunkPlanner {
+
+    private ReviewChunkPlanner() {
+    }
+
+    /**
+     * 审查分块
+     */
+    public static class ReviewChunk {
+        private final int index;
+        private final List<RuleMatchResult> matchResults;
+        private final int estimatedTokens;
+
+        public ReviewChunk(int index, List<RuleMatchResult> matchResults, int estimatedTokens) {
+            this.index = index;
+            this.matchResults = Collections.unmodifiableList(matchResults);
+            this.estimatedTokens = estimatedTokens;
+        }
+
+        /**
+         * 分块序号（从 0 开始）
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        public List<RuleMatchResult> getMatchResults() {
+            return matchResults;
+        }
+
+        /**
+         * 分块内条款部分的估算 token 数（不含 Prompt 固定部分）
+         */
+        public int getEstimatedTokens() {
+            return estimatedTokens;
+        }
+    }
+
+    /**
+     * 规划分块
+     *
+     * @param matchResults 规则匹配结果（按条款顺序）
+     * @param clauseTokens 单个条款在 Prompt 中所占 token 数的估算函数
+     * @param tokenBudget 每块条款部分可用的 token 预算（<=0 表示不分块）
+     * @return 分块列表
+     */
+    public static List<ReviewChunk> plan(List<RuleMatchResult> matchResults,
+                                         ToIntFunction<RuleMatchResult> clauseTokens,
+                                         int tokenBudget) {
+        List<ReviewChunk> chunks = new ArrayList<>();
+        if (matchResults == null || matchResults.isEmpty()) {
+            return chunks;
+        }
+
+        if (tokenBudget <= 0) {
+            int total = matchResults.stream().mapToInt(clauseTokens).sum();
+            chunks.add(new ReviewChunk(0, new ArrayList<>(matchResults), total));
+            return chunks;
+        }
+
+        List<RuleMatchResult> current = new ArrayList<>();
+        int currentTokens = 0;
+        for (RuleMatchResult matchResult : matchResults) {
+            int tokens = clauseTokens.applyAsInt(matchResult);
+            if (!current.isEmpty() && currentTokens + tokens > tokenBudget) {
+                chunks.add(new ReviewChunk(chunks.size(), current, currentTokens));
+                current = new ArrayList<>();
+                currentTokens = 0;
+            }
+            current.add(matchResult);
+            currentTokens += tokens;
+        }
+        chunks.add(new ReviewChunk(chunks.size(), current, currentTokens));
+
+        return chunks;
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.Contract_review.util;
+
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * 简单的 MultipartFile 包装器
+ * 用于将 byte[] 包装成 MultipartFile 接口
+ *
+ * 上传文件的临时文件在请求结束后即被删除，需要在请求线程之外处理时先读出字节再包装
+ */
+public class SimpleMultipartFileWrapper implements MultipartFile {
+
+    private static final String DOCX_CONTENT_TYPE =
+            "application/vnd.openxmlformats-officedocument.wordprocessingml.document";
+
+    private final String filename;
+    private final byte[] content;
+    private final String contentType;
+
+    public SimpleMultipartFileWrapper(String filename, byte[] content) {
+        this(filename, content, DOCX_CONTENT_TYPE);
+    }
+
+    public SimpleMultipartFileWrapper(String filename, byte[] content, String contentType) {
+        this.filename = filename;
+        this.content = content;
+        this.contentType = contentType != null ? contentType : DOCX_CONTENT_TYPE;
+    }
+
+    /**
+     * 读取上传文件的内容并包装
+     */
+    public static SimpleMultipartFileWrapper copyOf(MultipartFile file) throws IOException {
+        return new SimpleMultipartFileWrapper(file.getOriginalFilename(), file.getBytes(), file.getContentType());
+    }
+
+    @Override
+    public String getName() {
+        return "file";
+    }
+
+    @Override
+    public String getOriginalFilename() {
+        return filename;
+    }
+
+    @Override
+    public String getContentType() {
+        return contentType;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return content == null || content.length == 0;
+    }
+
+    @Override
+    public long getSize() {
+        return content != null ? content.length : 0;
+    }
+
+    @Override
+    public byte[] getBytes() throws IOException {
+        return content;
+    }
+
+    @Override
+    public ByteArrayInputStream getInputStream() throws IOException {
+        return new ByteArrayInputStream(content != null ? content : new byte[0]);
+    }
+
+    @Override
+    public void transferTo(File dest) throws IOException {
+        Files.write(dest.toPath(), content);
+    }
+}
@@ -0,0 +1,253 @@
+package com.example.Contract_review.util;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ContainerNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * 审查结果的增量 JSON 解析器
+ *
+ * 基于 Jackson 非阻塞解析器，逐段喂入 LLM 流式返回的文本，
+ * issues 数组中的每个问题对象一闭合就立即返回，无需等待完整响应：
+ * - 兼容 {"issues": [...]} 和直接返回的 [...] 两种结构
+ * - 忽略第一个 { 或 [ 之前的说明文字和 ```json 代码块标记，根节点闭合后的内容也不再解析
+ * - 遇到格式错误时停止增量解析（isFailed），由调用方在流结束后用完整文本兜底
+ *
+ * 非线程安全，每个流使用一个实例
+ */
+public class StreamingIssueParser {
+
+    private static final Logger logger = LoggerFactory.getLogger(StreamingIssueParser.class);
+
+    private static final String ISSUES_FIELD = "issues";
+
+    private final JsonParser parser;
+    private final ByteArrayFeeder feeder;
+    private final JsonNodeFactory nodeFactory;
+    private final StringBuilder text = new StringBuilder();
+
+    /**
+     * 当前问题对象的构建栈（为空表示不在问题对象内）
+     */
+    private final Deque<ContainerNode<?>> building = new ArrayDeque<>();
+    private String pendingField;
+
+    private boolean started;
+    private boolean finished;
+    private boolean failed;
+
+    /**
+     * 已打开的容器层数
+     */
+    private int depth;
+
+    /**
+     * 问题对象所在的层数（-1 表示尚未进入 issues 数组）
+     */
+    private int issuesDepth = -1;
+    private boolean expectIssuesArray;
+    private int issueCount;
+
+    public StreamingIssueParser(ObjectMapper objectMapper) {
+        try {
+            this.parser = objectMapper.getFactory().createNonBlockingByteArrayParser();
+        } catch (IOException e) {
+            throw new IllegalStateException("无法创建非阻塞JSON解析器", e);
+        }
+        this.feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+        this.nodeFactory = objectMapper.getNodeFactory();
+    }
+
+    /**
+     * 喂入一段增量文本
+     *
+     * @param delta LLM 返回的增量内容
+     * @return 本次新闭合的问题对象（可能为空）
+     */
+    public List<ObjectNode> feed(String delta) {
+        if (delta == null || delta.isEmpty()) {
+            return Collections.emptyList();
+        }
+        text.append(delta);
+        if (finished || failed) {
+            return Collections.emptyList();
+        }
+
+        String input = delta;
+        if (!started) {
+            int start = firstContainerStart(delta);
+            if (start < 0) {
+                return Collections.emptyList();
+            }
+            started = true;
+            input = delta.substring(start);
+        }
+
+        List<ObjectNode> completed = new ArrayList<>();
+        try {
+            byte[] bytes = input.getBytes(StandardCharsets.UTF_8);
+            feeder.feedInput(bytes, 0, bytes.length);
+            JsonToken token;
+            while (!finished && (token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+                ObjectNode issue = handle(token);
+                if (issue != null) {
+                    completed.add(issue);
+                }
+            }
+        } catch (IOException e) {
+            failed = true;
+            logger.debug("增量JSON解析失败，等待流结束后使用完整文本兜底: {}", e.getMessage());
+        }
+        return completed;
+    }
+
+    /**
+     * 已接收的完整文本
+     */
+    public String getText() {
+        return text.toString();
+    }
+
+    /**
+     * 根节点是否已完整闭合（此时所有问题均已通过 feed 返回）
+     */
+    public boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * 增量解析是否因格式错误中止
+     */
+    public boolean isFailed() {
+        return failed;
+    }
+
+    /**
+     * 已返回的问题数
+     */
+    public int getIssueCount() {
+        return issueCount;
+    }
+
+    private ObjectNode handle(JsonToken token) throws IOException {
+        if (!building.isEmpty()) {
+            return buildIssue(token);
+        }
+
+        switch (token) {
+            case START_OBJECT:
+                if (depth == issuesDepth) {
+                    ObjectNode issue = nodeFactory.objectNode();
+                    building.push(issue);
+                    pendingField = null;
+                }
+                depth++;
+                break;
+            case START_ARRAY:
+                if (depth == 0) {
+                    issuesDepth = 1;
+                } else if (depth == 1 && expectIssuesArray) {
+                    issuesDepth = 2;
+                }
+                expectIssuesArray = false;
+                depth++;
+                break;
+            case END_OBJECT:
+            case END_ARRAY:
+                depth--;
+                if (depth == 0) {
+                    finished = true;
+                }
+                break;
+            case FIELD_NAME:
+                expectIssuesArray = depth == 1 && ISSUES_FIELD.equals(parser.currentName());
+                break;
+            default:
+                expectIssuesArray = false;
+                break;
+        }
+        return null;
+    }
+
+    private ObjectNode buildIssue(JsonToken token) throws IOException {
+        ContainerNode<?> current = building.peek();
+        switch (token) {
+            case FIELD_NAME:
+                pendingField = parser.currentName();
+                return null;
+            case START_OBJECT:
+                depth++;
+                building.push(attach(current, nodeFactory.objectNode()));
+                return null;
+            case START_ARRAY:
+                depth++;
+                building.push(attach(current, nodeFactory.arrayNode()));
+                return null;
+            case END_OBJECT:
+            case END_ARRAY:
+                depth--;
+                ContainerNode<?> closed = building.pop();
+                if (building.isEmpty()) {
+                    issueCount++;
+                    return (ObjectNode) closed;
+                }
+                return null;
+            case VALUE_STRING:
+                attach(current, nodeFactory.textNode(parser.getText()));
+                return null;
+            case VALUE_NUMBER_INT:
+                attach(current, parser.getNumberType() == JsonParser.NumberType.BIG_INTEGER
+                        ? nodeFactory.numberNode(parser.getBigIntegerValue())
+                        : nodeFactory.numberNode(parser.getLongValue()));
+                return null;
+            case VALUE_NUMBER_FLOAT:
+                attach(current, nodeFactory.numberNode(parser.getDoubleValue()));
+                return null;
+            case VALUE_TRUE:
+            case VALUE_FALSE:
+                attach(current, nodeFactory.booleanNode(token == JsonToken.VALUE_TRUE));
+                return null;
+            case VALUE_NULL:
+                attach(current, nodeFactory.nullNode());
+                return null;
+            default:
+                return null;
+        }
+    }
+
+    private <T extends JsonNode> T attach(ContainerNode<?> parent, T child) {
+        if (parent instanceof ObjectNode) {
+            ((ObjectNode) parent).set(pendingField, child);
+            pendingField = null;
+        } else {
+            ((ArrayNode) parent).add(child);
+        }
+        return child;
+    }
+
+    private static int firstContainerStart(String delta) {
+        for (int i = 0; i < delta.length(); i++) {
+            char c = delta.charAt(i);
+            if (c == '{' || c == '[') {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.Contract_review.util;
+
+/**
+ * 面向中文合同文本的 Token 估算器
+ *
+ * 不依赖具体模型的分词表，按字符类别近似估算（偏保守，宁可高估）：
+ * - 中日韩文字、全角标点及其他非ASCII字符：约 1 字 1 token
+ * - ASCII 字母数字：约 4 字符 1 token
+ * - ASCII 标点符号：约 2 字符 1 token
+ * - 空白字符：不计入
+ *
+ * 用于在调用 LLM 之前规划请求大小，不作为计费依据
+ */
+public final class TokenEstimator {
+
+    private TokenEstimator() {
+    }
+
+    /**
+     * 估算文本的 token 数
+     *
+     * @param text 文本
+     * @return 估算的 token 数（空文本为 0）
+     */
+    public static int estimate(CharSequence text) {
+        if (text == null || text.length() == 0) {
+            return 0;
+        }
+
+        int wide = 0;
+        int alnum = 0;
+        int punct = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= 0x80) {
+                // 代理对只计一次
+                if (!Character.isLowSurrogate(c)) {
+                    wide++;
+                }
+            } else if (Character.isLetterOrDigit(c)) {
+                alnum++;
+            } else if (!Character.isWhitespace(c)) {
+                punct++;
+            }
+        }
+
+        return wide + (alnum + 3) / 4 + (punct + 1) / 2;
+    }
+}
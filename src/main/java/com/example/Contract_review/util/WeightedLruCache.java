@@ -0,0 +1,202 @@
+package com.example.Contract_review.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+
+/**
+ * 按字节计重、带 TTL 的 LRU 缓存
+ *
+ * - 每个条目按 weigher 计算的字节数计重，总重量超过上限时先清理过期条目，再按最近访问顺序淘汰
+ * - 超过 TTL 的条目在读取或淘汰时移除
+ * - 单个条目超过上限时不缓存
+ *
+ * 线程安全。
+ */
+public class WeightedLruCache<K, V> {
+
+    private static final class Entry<V> {
+        private final V value;
+        private final long weight;
+        private final long createdAt;
+
+        Entry(V value, long weight, long createdAt) {
+            this.value = value;
+            this.weight = weight;
+            this.createdAt = createdAt;
+        }
+    }
+
+    private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final long maxWeight;
+    private final long ttlMs;
+    private final ToLongFunction<V> weigher;
+
+    private long totalWeight;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long expirations;
+    private long rejected;
+
+    /**
+     * @param maxWeight 总重量上限（字节）
+     * @param ttlMs 条目生存时间（毫秒），不大于 0 时不过期
+     * @param weigher 条目计重（字节）
+     */
+    public WeightedLruCache(long maxWeight, long ttlMs, ToLongFunction<V> weigher) {
+        this.maxWeight = maxWeight;
+        this.ttlMs = ttlMs;
+        this.weigher = weigher;
+    }
+
+    /**
+     * 读取条目，不存在或已过期时返回 null
+     */
+    public synchronized V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        if (isExpired(entry, System.currentTimeMillis())) {
+            removeEntry(key);
+            expirations++;
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.value;
+    }
+
+    /**
+     * 放入条目（替换同键条目）
+     *
+     * @return 是否已缓存（超过总重量上限的条目不缓存）
+     */
+    public synchronized boolean put(K key, V value) {
+        removeEntry(key);
+        long weight = weigher.applyAsLong(value);
+        if (weight > maxWeight) {
+            rejected++;
+            return false;
+        }
+        entries.put(key, new Entry<>(value, weight, System.currentTimeMillis()));
+        totalWeight += weight;
+        if (totalWeight > maxWeight) {
+            cleanupExpired();
+        }
+        Iterator<Map.Entry<K, Entry<V>>> it = entries.entrySet().iterator();
+        while (totalWeight > maxWeight && it.hasNext()) {
+            Map.Entry<K, Entry<V>> eldest = it.next();
+            if (eldest.getKey().equals(key)) {
+                continue;
+            }
+            it.remove();
+            totalWeight -= eldest.getValue().weight;
+            evictions++;
+        }
+        return true;
+    }
+
+    /**
+     * 读取条目但不计入命中统计，不存在或已过期时返回 null
+     */
+    public synchronized V peek(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        return isExpired(entry, System.currentTimeMillis()) ? null : entry.value;
+    }
+
+    public synchronized V remove(K key) {
+        Entry<V> removed = removeEntry(key);
+        return removed != null ? removed.value : null;
+    }
+
+    /**
+     * 移除键满足条件的所有条目
+     *
+     * @return 移除的条目数
+     */
+    public synchronized int removeIf(Predicate<K> predicate) {
+        int removed = 0;
+        Iterator<Map.Entry<K, Entry<V>>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<K, Entry<V>> entry = it.next();
+            if (predicate.test(entry.getKey())) {
+                it.remove();
+                totalWeight -= entry.getValue().weight;
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        totalWeight = 0;
+    }
+
+    /**
+     * 清理所有过期条目
+     *
+     * @return 清理的条目数
+     */
+    public synchronized int cleanupExpired() {
+        long now = System.currentTimeMillis();
+        int removed = 0;
+        Iterator<Map.Entry<K, Entry<V>>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<K, Entry<V>> entry = it.next();
+            if (isExpired(entry.getValue(), now)) {
+                it.remove();
+                totalWeight -= entry.getValue().weight;
+                removed++;
+            }
+        }
+        expirations += removed;
+        return removed;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long weight() {
+        return totalWeight;
+    }
+
+    /**
+     * 统计信息：条目数、占用字节、命中/未命中/淘汰/过期次数
+     */
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("entries", entries.size());
+        stats.put("bytes", totalWeight);
+        stats.put("maxBytes", maxWeight);
+        stats.put("ttlMs", ttlMs);
+        stats.put("hits", hits);
+        stats.put("misses", misses);
+        stats.put("hitRate", hits + misses == 0 ? 0.0 : (double) hits / (hits + misses));
+        stats.put("evictions", evictions);
+        stats.put("expirations", expirations);
+        stats.put("rejectedOversize", rejected);
+        return stats;
+    }
+
+    private Entry<V> removeEntry(K key) {
+        Entry<V> removed = entries.remove(key);
+        if (removed != null) {
+            totalWeight -= removed.weight;
+        }
+        return removed;
+    }
+
+    private boolean isExpired(Entry<V> entry, long now) {
+        return ttlMs > 0 && now - entry.createdAt > ttlMs;
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.Contract_review.util;
 
+import com.example.Contract_review.model.AnnotationReport;
 import com.example.Contract_review.model.ReviewIssue;
 import org.apache.poi.openxml4j.opc.OPCPackage;
 import org.apache.poi.openxml4j.opc.PackagePart;
@@ -16,15 +17,23 @@ import org.dom4j.io.SAXReader;
 import org.dom4j.io.XMLWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.apache.poi.openxml4j.util.ZipSecureFile;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -142,6 +151,10 @@ public class WordXmlCommentProcessor {
     // 精确文字匹配定位器
     private final PreciseTextAnnotationLocator preciseLocator;
 
+    // 调试模式：保存后额外遍历整个文档核对批注标记（默认仅使用插入过程中的计数校验）
+    @Value("${annotation.verify.full-scan:false}")
+    private boolean fullScanVerification;
+
     public WordXmlCommentProcessor(PreciseTextAnnotationLocator preciseLocator) {
         this.preciseLocator = preciseLocator;
     }
@@ -169,9 +182,21 @@ public class WordXmlCommentProcessor {
      */
     public byte[] addCommentsToDocx(byte[] docxBytes, List<ReviewIssue> issues,
                                    String anchorStrategy, boolean cleanupAnchors) throws Exception {
+        return annotateDocx(docxBytes, issues, anchorStrategy, cleanupAnchors).getDocumentBytes();
+    }
 
-        logger.info("开始XML方式添加批注：issues数量={}, 策略={}, 清理锚点={}",
-                   issues.size(), anchorStrategy, cleanupAnchors);
+    /**
+     * 为Word文档添加批注（纯XML操作），同时返回批注处理报告
+     *
+     * @param docxBytes 原始DOCX文件字节数组
+     * @param issues 审查问题列表
+     * @param anchorStrategy 锚点策略
+     * @param cleanupAnchors 是否清理锚点
+     * @return 带批注的DOCX文件字节数组及批注处理报告
+     * @throws Exception 处理失败
+     */
+    public AnnotatedDocument annotateDocx(byte[] docxBytes, List<ReviewIssue> issues,
+                                          String anchorStrategy, boolean cleanupAnchors) throws Exception {
 
         // 输入校验
         if (docxBytes == null || docxBytes.length == 0) {
@@ -180,12 +205,33 @@ public class WordXmlCommentProcessor {
 
         if (issues == null || issues.isEmpty()) {
             logger.warn("没有要添加的批注，直接返回原始文档");
-            return docxBytes;
+            return new AnnotatedDocument(docxBytes, new AnnotationTracker().toReport("xml", 0, 0, 0, 0));
+        }
+
+        return annotateDocx(new ByteArrayInputStream(docxBytes), issues, anchorStrategy, cleanupAnchors);
+    }
+
+    /**
+     * 从数据流读取Word文档并添加批注，同时返回批注处理报告
+     *
+     * 数据流直接交给 OPCPackage 解包，不先读成完整的字节数组；没有问题时才读出原文档原样返回
+     *
+     * @param docxStream 原始DOCX数据流（调用方负责关闭）
+     * @see #annotateDocx(byte[], List, String, boolean)
+     */
+    public AnnotatedDocument annotateDocx(InputStream docxStream, List<ReviewIssue> issues,
+                                          String anchorStrategy, boolean cleanupAnchors) throws Exception {
+        if (issues == null || issues.isEmpty()) {
+            logger.warn("没有要添加的批注，直接返回原始文档");
+            return new AnnotatedDocument(docxStream.readAllBytes(), new AnnotationTracker().toReport("xml", 0, 0, 0, 0));
         }
 
+        logger.info("开始XML方式添加批注：issues数量={}, 策略={}, 清理锚点={}",
+                   issues.size(), anchorStrategy, cleanupAnchors);
+        long startTime = System.currentTimeMillis();
+
         // 打开DOCX包
-        try (InputStream docxStream = new ByteArrayInputStream(docxBytes);
-             OPCPackage opcPackage = OPCPackage.open(docxStream)) {
+        try (OPCPackage opcPackage = OPCPackage.open(docxStream)) {
 
             // 处理document.xml
             Document documentXml = loadDocumentXml(opcPackage);
@@ -202,12 +248,18 @@ public class WordXmlCommentProcessor {
             // 【修复】重新计算批注ID起始值，避免与现有批注冲突
             initializeCommentIdCounter(commentsXml);
 
+            // 【q-gram索引】每个文档只构建一次，供所有问题共享段落列表和全文模糊定位
+            Element bodyElement = documentXml.getRootElement().element(QName.get("body", W_NS));
+            NGramTextIndex textIndex = NGramTextIndex.build(
+                    findAllParagraphsRecursive(bodyElement), preciseLocator::getParagraphText);
+
             // 为每个问题添加批注
+            AnnotationTracker tracker = new AnnotationTracker();
             int addedCount = 0;
             int failedCount = 0;
             for (ReviewIssue issue : issues) {
                 try {
-                    if (addCommentForIssue(documentXml, commentsXml, issue, anchorStrategy)) {
+                    if (addCommentForIssue(documentXml, commentsXml, issue, anchorStrategy, textIndex, tracker)) {
                         addedCount++;
                     } else {
                         failedCount++;
@@ -232,48 +284,8 @@ public class WordXmlCommentProcessor {
             // 保存修改后的XML
             saveDocumentXml(opcPackage, documentXml);
 
-            // 【维测】document.xml保存后验证批注标记
-            Element documentRoot = documentXml.getRootElement();
-            Element body = documentRoot.element(QName.get("body", W_NS));
-
-            // 【关键修复】使用递归查找所有段落中的批注标记，而不是只查直接子元素
-            List<Element> allCommentRangeStarts = findAllElementsRecursive(body, QName.get("commentRangeStart", W_NS));
-            List<Element> allCommentRangeEnds = findAllElementsRecursive(body, QName.get("commentRangeEnd", W_NS));
-            List<Element> allCommentRefs = findAllElementsRecursive(body, QName.get("commentReference", W_NS));
-
-            logger.info("【维测】document.xml保存后诊断：commentRangeStart数量={}, commentRangeEnd数量={}, commentReference数量={}",
-                       allCommentRangeStarts.size(), allCommentRangeEnds.size(), allCommentRefs.size());
-
-            // 列出所有批注ID
-            List<String> startIds = allCommentRangeStarts.stream()
-                .map(e -> e.attributeValue(QName.get("id", W_NS)))
-                .toList();
-            List<String> endIds = allCommentRangeEnds.stream()
-                .map(e -> e.attributeValue(QName.get("id", W_NS)))
-                .toList();
-            List<String> refIds = allCommentRefs.stream()
-                .map(e -> e.attributeValue(QName.get("id", W_NS)))
-                .toList();
-
-            logger.debug("【维测】commentRangeStart IDs: {}", startIds);
-            logger.debug("【维测】commentRangeEnd IDs: {}", endIds);
-            logger.debug("【维测】commentReference IDs: {}", refIds);
-
-            // 【维测】保存前输出comments.xml的结构和内容
-            Element commentsRoot = commentsXml.getRootElement();
-            List<Element> comments = commentsRoot.elements(QName.get("comment", W_NS));
-            logger.info("【维测】保存comments.xml前诊断：根元素={}, 批注数量={}, 已添加批注ID={}",
-                       commentsRoot.getName(), comments.size(),
-                       comments.stream().map(c -> c.attributeValue(QName.get("id", W_NS))).toList());
-
-            // 输出每个批注的内容（前100字）
-            for (Element comment : comments) {
-                String commentId = comment.attributeValue(QName.get("id", W_NS));
-                String commentContent = comment.asXML();
-                int contentLen = commentContent.length();
-                String preview = contentLen > 100 ? commentContent.substring(0, 100) + "..." : commentContent;
-                logger.debug("【维测】批注ID={}, 内容预览(总长度={}): {}", commentId, contentLen, preview);
-            }
+            // 【维测】批注标记校验由插入过程中维护的计数器完成，仅调试模式下再遍历整个文档核对
+            boolean fullScanVerified = fullScanVerification && verifyByFullScan(documentXml, commentsXml, tracker);
 
             saveCommentsXml(opcPackage, commentsXml);
 
@@ -356,14 +368,16 @@ public class WordXmlCommentProcessor {
                         logger.debug("【维测】修复前ZIP大小: {} 字节", originalZipBytes.length);
                         
                         byte[] fixedZip = manuallyAddRelsToZip(originalZipBytes, relsBytes);
-                        logger.debug("【维测】修复后ZIP大小: {} 字节", fixedZip.length);
-                        
-                        // 直接替换 outputStream 的内容
-                        outputStream.reset();
-                        outputStream.write(fixedZip);
-                        outputStream.flush();
-                        
-                        logger.info("【维测】✓ 手动修复 ZIP 文件成功");
+                        if (fixedZip != originalZipBytes) {
+                            logger.debug("【维测】修复后ZIP大小: {} 字节", fixedZip.length);
+                            
+                            // 直接替换 outputStream 的内容
+                            outputStream.reset();
+                            outputStream.write(fixedZip);
+                            outputStream.flush();
+                            
+                            logger.info("【维测】✓ 手动修复 ZIP 文件成功");
+                        }
                     } catch (Exception fixEx) {
                         logger.error("【维测】❌ ERROR: 手动修复失败: {}", fixEx.getMessage(), fixEx);
                     }
@@ -372,25 +386,11 @@ public class WordXmlCommentProcessor {
                 // 【关键修复5】验证保存后的ZIP文件内容
                 logger.info("【维测】OPCPackage保存后诊断：");
                 try {
-                    // 验证保存后的ZIP文件是否包含关键文件
-                    java.util.zip.ZipInputStream zipIn = new java.util.zip.ZipInputStream(
-                        new java.io.ByteArrayInputStream(outputStream.toByteArray())
-                    );
-                    java.util.zip.ZipEntry entry;
-                    boolean hasRels = false;
-                    boolean hasComments = false;
-                    int relsSize = 0;
-                    
-                    while ((entry = zipIn.getNextEntry()) != null) {
-                        if ("word/_rels/document.xml.rels".equals(entry.getName())) {
-                            hasRels = true;
-                            relsSize = (int) entry.getSize();
-                        }
-                        if ("word/comments.xml".equals(entry.getName())) {
-                            hasComments = true;
-                        }
-                    }
-                    zipIn.close();
+                    // 验证保存后的ZIP文件是否包含关键文件（只读取中央目录）
+                    DocxPackageInspector inspector = DocxPackageInspector.of(outputStream.toByteArray());
+                    boolean hasRels = inspector.hasPart(AnchoredDocumentIndex.DOCUMENT_RELS_PART);
+                    boolean hasComments = inspector.hasPart(AnchoredDocumentIndex.COMMENTS_PART);
+                    long relsSize = inspector.getPartSize(AnchoredDocumentIndex.DOCUMENT_RELS_PART);
                     
                     logger.info("【维测】✓ ZIP文件验证：hasRels={}, hasComments={}, relsSize={}字节", 
                                 hasRels, hasComments, relsSize);
@@ -419,14 +419,601 @@ public class WordXmlCommentProcessor {
                 }
             }
 
+            AnnotationReport report = tracker.toReport("xml", issues.size(), addedCount, failedCount,
+                    System.currentTimeMillis() - startTime);
+            report.setFullScanVerified(fullScanVerified);
+            logAnnotationReport(report);
             logger.info("XML批注处理完成：成功添加{}个批注，失败{}个", addedCount, failedCount);
-            return outputStream.toByteArray();
+            return new AnnotatedDocument(outputStream.toByteArray(), report);
         } catch (Exception e) {
             logger.error("批注处理失败：{}", e.getMessage(), e);
             throw new Exception("批注处理异常：" + e.getMessage(), e);
         }
     }
 
+    /**
+     * 【调试模式】遍历整个文档核对批注标记
+     *
+     * 单次遍历同时收集 commentRangeStart / commentRangeEnd / commentReference，
+     * 与插入过程中记录的计数逐个ID比对，不一致的ID标记到报告中
+     *
+     * @return 始终返回true，表示已执行全文档校验
+     */
+    private boolean verifyByFullScan(Document documentXml, Document commentsXml, AnnotationTracker tracker) {
+        Element body = documentXml.getRootElement().element(QName.get("body", W_NS));
+        Map<String, int[]> scanned = new LinkedHashMap<>();
+        java.util.Deque<Element> stack = new java.util.ArrayDeque<>();
+        stack.push(body);
+        while (!stack.isEmpty()) {
+            Element element = stack.pop();
+            int slot = AnnotationTracker.markerSlot(element);
+            if (slot >= 0) {
+                scanned.computeIfAbsent(element.attributeValue(QName.get("id", W_NS)), k -> new int[4])[slot]++;
+            }
+            for (Element child : element.elements()) {
+                stack.push(child);
+            }
+        }
+        for (Element comment : commentsXml.getRootElement().elements(QName.get("comment", W_NS))) {
+            scanned.computeIfAbsent(comment.attributeValue(QName.get("id", W_NS)), k -> new int[4])[3]++;
+        }
+
+        int mismatched = tracker.compareWith(scanned);
+        logger.info("【维测】全文档遍历校验：文档中批注ID数={}, 与插入记录不一致的ID数={}", scanned.size(), mismatched);
+        if (logger.isDebugEnabled()) {
+            for (Map.Entry<String, int[]> entry : scanned.entrySet()) {
+                int[] counts = entry.getValue();
+                logger.debug("【维测】批注ID={}: start={}, end={}, reference={}, comment={}",
+                            entry.getKey(), counts[0], counts[1], counts[2], counts[3]);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 输出批注处理报告摘要
+     */
+    private void logAnnotationReport(AnnotationReport report) {
+        logger.info("【维测】批注校验：commentRangeStart={}, commentRangeEnd={}, commentReference={}, comment={}, 一致={}",
+                   report.getCommentRangeStartCount(), report.getCommentRangeEndCount(),
+                   report.getCommentReferenceCount(), report.getCommentCount(), report.isConsistent());
+        if (!report.isConsistent()) {
+            logger.warn("【维测】❌ 以下批注ID标记不完整（缺少或重复 起始/结束/引用/批注内容）：{}",
+                       report.getInconsistentCommentIds());
+        }
+    }
+
+    /**
+     * 基于预索引文档添加批注（片段拼接方式）
+     *
+     * 直接使用 ParseResultCache 中缓存的 AnchoredDocumentIndex：不再解压整个DOCX、不再全量解析document.xml，
+     * 只解析被批注的段落片段，处理后按字节偏移拼接回document.xml，再与其他原始条目重新打包。
+     *
+     * 以下情况自动回退到 addCommentsToDocx 全量处理（结果与全量处理一致）：
+     * - 问题的anchorId不在锚点表中，需要条款号文本匹配（anchorOnly策略直接判定失败）
+     * - targetText不在锚点所在条款的段落内，需要全文q-gram模糊定位
+     * - 目标段落内嵌套了其他段落（如文本框），无法按片段替换
+     *
+     * @param index 预索引文档
+     * @param docxBytes 原始带锚点DOCX字节（回退时使用）
+     * @param issues 审查问题列表
+     * @param anchorStrategy 锚点策略
+     * @param cleanupAnchors 是否清理锚点
+     * @return 带批注的DOCX文件字节数组
+     * @throws Exception 处理失败
+     */
+    public byte[] addCommentsToIndexedDocx(AnchoredDocumentIndex index, byte[] docxBytes, List<ReviewIssue> issues,
+                                          String anchorStrategy, boolean cleanupAnchors) throws Exception {
+        return annotateIndexedDocx(index, docxBytes, issues, anchorStrategy, cleanupAnchors).getDocumentBytes();
+    }
+
+    /**
+     * 基于预索引文档添加批注，同时返回批注处理报告
+     *
+     * @see #addCommentsToIndexedDocx(AnchoredDocumentIndex, byte[], List, String, boolean)
+     */
+    public AnnotatedDocument annotateIndexedDocx(AnchoredDocumentIndex index, byte[] docxBytes, List<ReviewIssue> issues,
+                                                 String anchorStrategy, boolean cleanupAnchors) throws Exception {
+        if (index == null) {
+            return annotateDocx(docxBytes, issues, anchorStrategy, cleanupAnchors);
+        }
+        if (issues == null || issues.isEmpty()) {
+            logger.warn("没有要添加的批注，直接返回原始文档");
+            return new AnnotatedDocument(docxBytes, new AnnotationTracker().toReport("indexed", 0, 0, 0, 0));
+        }
+        return annotateIndexedDocx(index, ByteBuffer.wrap(docxBytes), issues, anchorStrategy, cleanupAnchors);
+    }
+
+    /**
+     * 基于预索引文档添加批注，原始文档以只读视图传入（如缓存磁盘层的内存映射），不复制到堆上
+     *
+     * 未改写的部件在重新打包时直接从该视图流式复制，回退到全量处理时也以数据流读取
+     *
+     * @param docx 原始带锚点DOCX视图（读取 position 到 limit 之间的内容，不改变其位置）
+     * @see #addCommentsToIndexedDocx(AnchoredDocumentIndex, byte[], List, String, boolean)
+     */
+    public AnnotatedDocument annotateIndexedDocx(AnchoredDocumentIndex index, ByteBuffer docx, List<ReviewIssue> issues,
+                                                 String anchorStrategy, boolean cleanupAnchors) throws Exception {
+        if (docx == null || !docx.hasRemaining()) {
+            throw new IllegalArgumentException("文档字节数组为空");
+        }
+        if (issues == null || issues.isEmpty()) {
+            logger.warn("没有要添加的批注，直接返回原始文档");
+            byte[] original = new byte[docx.remaining()];
+            docx.duplicate().get(original);
+            return new AnnotatedDocument(original, new AnnotationTracker().toReport(index != null ? "indexed" : "xml", 0, 0, 0, 0));
+        }
+        if (index == null) {
+            return annotateDocx(new ByteBufferInputStream(docx.duplicate()), issues, anchorStrategy, cleanupAnchors);
+        }
+
+        logger.info("开始预索引方式添加批注：issues数量={}, 策略={}, 清理锚点={}, 段落数={}, 锚点数={}",
+                   issues.size(), anchorStrategy, cleanupAnchors,
+                   index.getParagraphs().size(), index.getAnchors().size());
+        long startTime = System.currentTimeMillis();
+
+        try {
+            Document commentsXml = loadOrCreateCommentsXml(index);
+            int nextCommentId = findMaxCommentId(commentsXml) + 1;
+
+            Map<Integer, Element> fragments = new HashMap<>();
+            Set<Integer> modifiedParagraphs = new HashSet<>();
+            AnnotationTracker tracker = new AnnotationTracker();
+
+            int addedCount = 0;
+            int failedCount = 0;
+            for (ReviewIssue issue : issues) {
+                SpliceOutcome outcome = addCommentForIssueByIndex(
+                        index, fragments, modifiedParagraphs, commentsXml, issue, anchorStrategy, nextCommentId, tracker);
+                if (outcome == SpliceOutcome.FALLBACK) {
+                    logger.info("【预索引】问题需要全文定位（clauseId={}, anchorId={}），回退到全量批注处理",
+                               issue.getClauseId(), issue.getAnchorId());
+                    return annotateDocx(new ByteBufferInputStream(docx.duplicate()), issues, anchorStrategy, cleanupAnchors);
+                }
+                if (outcome == SpliceOutcome.ADDED) {
+                    nextCommentId++;
+                    addedCount++;
+                } else {
+                    failedCount++;
+                }
+            }
+
+            // 拼接document.xml：被修改的段落整体替换，清理锚点时按书签ID同时移除起止标签（结束标签可能在其他段落）
+            Set<String> anchorIds = new HashSet<>();
+            if (cleanupAnchors) {
+                for (AnchoredDocumentIndex.AnchorBookmark anchor : index.getAnchors().values()) {
+                    if (anchor.getId() != null) {
+                        anchorIds.add(anchor.getId());
+                    }
+                }
+            }
+            List<ByteEdit> edits = new ArrayList<>();
+            Map<Integer, Integer> replacedLengths = new HashMap<>();
+            for (Integer ordinal : modifiedParagraphs) {
+                AnchoredDocumentIndex.ParagraphRange range = index.getParagraphs().get(ordinal);
+                Element paragraph = fragments.get(ordinal);
+                if (cleanupAnchors) {
+                    removeAnchorBookmarks(paragraph, anchorIds);
+                }
+                byte[] replacement = serializeFragment(paragraph);
+                edits.add(new ByteEdit(range.getStart(), range.getEnd(), replacement));
+                replacedLengths.put(ordinal, replacement.length);
+            }
+            if (cleanupAnchors) {
+                for (AnchoredDocumentIndex.AnchorBookmark anchor : index.getAnchors().values()) {
+                    if (!modifiedParagraphs.contains(anchor.getParagraphOrdinal())) {
+                        edits.add(new ByteEdit(anchor.getStartTagStart(), anchor.getStartTagEnd(), new byte[0]));
+                    }
+                    if (anchor.getEndTagStart() >= 0 && !modifiedParagraphs.contains(anchor.getEndParagraphOrdinal())) {
+                        edits.add(new ByteEdit(anchor.getEndTagStart(), anchor.getEndTagEnd(), new byte[0]));
+                    }
+                }
+                logger.info("已清理文档中的锚点标记：{} 个", index.getAnchors().size());
+            }
+
+            Map<String, byte[]> replacements = new HashMap<>();
+            replacements.put(AnchoredDocumentIndex.DOCUMENT_PART, applyEdits(index.getDocumentXml(), edits));
+            replacements.put(AnchoredDocumentIndex.COMMENTS_PART, writeXml(commentsXml));
+
+            byte[] relsBytes = ensureCommentsRelationship(index.getEntry(AnchoredDocumentIndex.DOCUMENT_RELS_PART));
+            if (relsBytes != null) {
+                replacements.put(AnchoredDocumentIndex.DOCUMENT_RELS_PART, relsBytes);
+            }
+            byte[] contentTypesBytes = ensureCommentsContentType(index.getEntry(AnchoredDocumentIndex.CONTENT_TYPES_PART));
+            if (contentTypesBytes != null) {
+                replacements.put(AnchoredDocumentIndex.CONTENT_TYPES_PART, contentTypesBytes);
+            }
+
+            byte[] result = index.repackage(docx, replacements);
+
+            // 保留锚点时按拼接偏移增量更新预索引，供下一批批注直接复用（清理锚点后文档不再需要预索引）
+            AnchoredDocumentIndex updatedIndex = cleanupAnchors ? null
+                    : index.withReplacedParagraphs(replacements, replacedLengths);
+
+            AnnotationReport report = tracker.toReport("indexed", issues.size(), addedCount, failedCount,
+                    System.currentTimeMillis() - startTime);
+            logAnnotationReport(report);
+            logger.info("预索引批注处理完成：成功添加{}个批注，失败{}个，解析段落片段{}个，耗时{}ms，输出{}字节",
+                       addedCount, failedCount, fragments.size(), report.getElapsedMs(), result.length);
+            return new AnnotatedDocument(result, report, updatedIndex);
+
+        } catch (Exception e) {
+            logger.warn("预索引批注处理失败，回退到全量批注处理：{}", e.getMessage());
+            return annotateDocx(new ByteBufferInputStream(docx.duplicate()), issues, anchorStrategy, cleanupAnchors);
+        }
+    }
+
+    /**
+     * 预索引方式的单个问题处理结果
+     */
+    private enum SpliceOutcome {
+        ADDED, FAILED, FALLBACK
+    }
+
+    /**
+     * 预索引方式为单个问题添加批注
+     *
+     * 定位规则与 addCommentForIssue 保持一致：锚点段落 → 同条款后续段落（精确/规范化匹配），
+     * 无法在条款范围内完成定位时返回FALLBACK，由全量处理负责模糊定位
+     */
+    private SpliceOutcome addCommentForIssueByIndex(AnchoredDocumentIndex index, Map<Integer, Element> fragments,
+                                                    Set<Integer> modifiedParagraphs, Document commentsXml,
+                                                    ReviewIssue issue, String anchorStrategy, int commentId,
+                                                    AnnotationTracker tracker) throws Exception {
+        AnchoredDocumentIndex.AnchorBookmark anchor = index.getAnchor(issue.getAnchorId());
+        if (anchor == null) {
+            if ("anchorOnly".equalsIgnoreCase(anchorStrategy)) {
+                logger.warn("✗ 未找到anchorId对应的书签：anchorId={}", issue.getAnchorId());
+                return SpliceOutcome.FAILED;
+            }
+            return SpliceOutcome.FALLBACK;
+        }
+
+        List<AnchoredDocumentIndex.ParagraphRange> paragraphs = index.getParagraphs();
+        AnchoredDocumentIndex.ParagraphRange range = paragraphs.get(anchor.getParagraphOrdinal());
+        if (range.containsNestedParagraph()) {
+            return SpliceOutcome.FALLBACK;
+        }
+
+        Element targetParagraph = loadFragment(index, fragments, range);
+        int targetOrdinal = range.getOrdinal();
+        TextMatchResult matchResult = null;
+
+        if (issue.getTargetText() != null && !issue.getTargetText().isEmpty()) {
+            String matchPattern = issue.getMatchPattern() != null ? issue.getMatchPattern() : "EXACT";
+            int matchIndex = issue.getMatchIndex() != null ? issue.getMatchIndex() : 1;
+            boolean regex = "REGEX".equalsIgnoreCase(matchPattern);
+
+            matchResult = preciseLocator.findTextInParagraph(targetParagraph, issue.getTargetText(), matchPattern, matchIndex);
+
+            // 多段落条款：在同一条款的后续段落中查找（正则模式与全量处理一致，按后续10个段落查找）
+            int lastOrdinal = Math.min(range.getOrdinal() + 10, paragraphs.size() - 1);
+            for (int ordinal = range.getOrdinal() + 1; matchResult == null && ordinal <= lastOrdinal; ordinal++) {
+                AnchoredDocumentIndex.ParagraphRange next = paragraphs.get(ordinal);
+                if (!regex && !java.util.Objects.equals(next.getClauseId(), range.getClauseId())) {
+                    break;
+                }
+                if (next.containsNestedParagraph()) {
+                    continue;
+                }
+                Element nextParagraph = loadFragment(index, fragments, next);
+                matchResult = preciseLocator.findTextInParagraph(nextParagraph, issue.getTargetText(), matchPattern, matchIndex);
+                if (matchResult != null) {
+                    logger.info("【多段落条款】在后续段落 {} 中找到 targetText，从段落 {} 迁移",
+                               ordinal, range.getOrdinal());
+                    targetParagraph = nextParagraph;
+                    targetOrdinal = ordinal;
+                }
+            }
+
+            if (matchResult == null && !regex) {
+                return SpliceOutcome.FALLBACK;
+            }
+        }
+
+        if (matchResult != null && matchResult.getStartRun() != null && matchResult.getEndRun() != null) {
+            insertPreciseCommentRange(targetParagraph, matchResult, commentId);
+        } else {
+            insertCommentRangeInDocument(targetParagraph, commentId);
+        }
+        Element comment = addCommentToCommentsXml(commentsXml, commentId, issue);
+        tracker.record(targetParagraph, commentId, comment);
+        modifiedParagraphs.add(targetOrdinal);
+
+        logger.debug("成功添加批注（预索引）：commentId={}, clauseId={}, 段落={}, 方式={}",
+                    commentId, issue.getClauseId(), targetOrdinal, matchResult != null ? "精确" : "段落");
+        return SpliceOutcome.ADDED;
+    }
+
+    /**
+     * 解析段落片段（按需解析并复用）
+     *
+     * 片段包装在声明了document根元素全部命名空间的临时元素中，保证前缀可解析
+     */
+    private Element loadFragment(AnchoredDocumentIndex index, Map<Integer, Element> fragments,
+                                 AnchoredDocumentIndex.ParagraphRange range) throws Exception {
+        Element cached = fragments.get(range.getOrdinal());
+        if (cached != null) {
+            return cached;
+        }
+
+        byte[] documentXml = index.getDocumentXml();
+        ByteArrayOutputStream wrapped = new ByteArrayOutputStream(range.getEnd() - range.getStart() + 1024);
+        wrapped.write(("<fragment" + index.getRootNamespaceDeclarations() + ">").getBytes(StandardCharsets.UTF_8));
+        wrapped.write(documentXml, range.getStart(), range.getEnd() - range.getStart());
+        wrapped.write("</fragment>".getBytes(StandardCharsets.UTF_8));
+
+        SAXReader reader = new SAXReader();
+        Element paragraph = reader.read(new ByteArrayInputStream(wrapped.toByteArray()))
+                .getRootElement().elements().get(0);
+        fragments.put(range.getOrdinal(), paragraph);
+        return paragraph;
+    }
+
+    /**
+     * 移除段落片段中的锚点书签（与 cleanupAnchorsInDocument 的判定规则一致）
+     *
+     * @param anchorIds 文档中全部锚点书签的ID，用于移除起始标签在其他段落的 bookmarkEnd
+     */
+    private void removeAnchorBookmarks(Element paragraph, Set<String> anchorIds) {
+        Set<String> removedIds = new HashSet<>(anchorIds);
+        for (Element bookmark : new ArrayList<>(paragraph.elements(QName.get("bookmarkStart", W_NS)))) {
+            String name = bookmark.attributeValue(QName.get("name", W_NS));
+            if (name != null && name.startsWith("anc-")) {
+                removedIds.add(bookmark.attributeValue(QName.get("id", W_NS)));
+                paragraph.remove(bookmark);
+            }
+        }
+        for (Element bookmarkEnd : new ArrayList<>(paragraph.elements(QName.get("bookmarkEnd", W_NS)))) {
+            if (removedIds.contains(bookmarkEnd.attributeValue(QName.get("id", W_NS)))) {
+                paragraph.remove(bookmarkEnd);
+            }
+        }
+    }
+
+    /**
+     * 序列化段落片段（紧凑格式，不改变文本中的空白）
+     */
+    private byte[] serializeFragment(Element paragraph) throws Exception {
+        OutputFormat format = new OutputFormat();
+        format.setEncoding("UTF-8");
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        XMLWriter writer = new XMLWriter(outputStream, format);
+        writer.write(paragraph);
+        writer.close();
+        return outputStream.toByteArray();
+    }
+
+    private byte[] writeXml(Document document) throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        XMLWriter writer = new XMLWriter(outputStream, createOutputFormat());
+        writer.write(document);
+        writer.close();
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * 按偏移应用字节替换（编辑区间互不重叠）
+     */
+    private byte[] applyEdits(byte[] source, List<ByteEdit> edits) {
+        edits.sort((a, b) -> Integer.compare(a.start, b.start));
+        ByteArrayOutputStream out = new ByteArrayOutputStream(source.length + edits.size() * 512);
+        int position = 0;
+        for (ByteEdit edit : edits) {
+            out.write(source, position, edit.start - position);
+            out.write(edit.replacement, 0, edit.replacement.length);
+            position = edit.end;
+        }
+        out.write(source, position, source.length - position);
+        return out.toByteArray();
+    }
+
+    /**
+     * 从预索引条目加载或创建comments.xml
+     */
+    private Document loadOrCreateCommentsXml(AnchoredDocumentIndex index) throws Exception {
+        byte[] commentsBytes = index.getEntry(AnchoredDocumentIndex.COMMENTS_PART);
+        if (commentsBytes == null) {
+            logger.info("comments.xml不存在，创建新的comments.xml");
+            return createNewCommentsXml();
+        }
+        return new SAXReader().read(new ByteArrayInputStream(commentsBytes));
+    }
+
+    /**
+     * 确保document.xml.rels包含comments关系
+     *
+     * @return 需要更新时返回新内容，已包含时返回null
+     */
+    private byte[] ensureCommentsRelationship(byte[] relsBytes) throws Exception {
+        if (relsBytes == null) {
+            throw new IllegalStateException("预索引文档缺少document.xml.rels");
+        }
+        Document relsDoc = new SAXReader().read(new ByteArrayInputStream(relsBytes));
+        Element relationships = relsDoc.getRootElement();
+        for (Element rel : relationships.elements()) {
+            if ("comments.xml".equals(rel.attributeValue("Target"))) {
+                return null;
+            }
+        }
+
+        Element newRel = relationships.addElement(QName.get("Relationship", relationships.getNamespace()));
+        newRel.addAttribute("Id", "rComments");
+        newRel.addAttribute("Type", "http://schemas.openxmlformats.org/officeDocument/2006/relationships/comments");
+        newRel.addAttribute("Target", "comments.xml");
+        return writeXml(relsDoc);
+    }
+
+    /**
+     * 确保[Content_Types].xml声明了comments.xml的内容类型
+     *
+     * @return 需要更新时返回新内容，已声明时返回null
+     */
+    private byte[] ensureCommentsContentType(byte[] contentTypesBytes) throws Exception {
+        if (contentTypesBytes == null) {
+            throw new IllegalStateException("预索引文档缺少[Content_Types].xml");
+        }
+        Document typesDoc = new SAXReader().read(new ByteArrayInputStream(contentTypesBytes));
+        Element types = typesDoc.getRootElement();
+        for (Element override : types.elements(QName.get("Override", types.getNamespace()))) {
+            if ("/word/comments.xml".equals(override.attributeValue("PartName"))) {
+                return null;
+            }
+        }
+
+        Element override = types.addElement(QName.get("Override", types.getNamespace()));
+        override.addAttribute("PartName", "/word/comments.xml");
+        override.addAttribute("ContentType", "application/vnd.openxmlformats-officedocument.wordprocessingml.comments+xml");
+        return writeXml(typesDoc);
+    }
+
+    /**
+     * 内部类：document.xml字节替换
+     */
+    private static class ByteEdit {
+        final int start;
+        final int end;
+        final byte[] replacement;
+
+        ByteEdit(int start, int end, byte[] replacement) {
+            this.start = start;
+            this.end = end;
+            this.replacement = replacement;
+        }
+    }
+
+    /**
+     * 批注结果：带批注的文档字节及批注处理报告
+     */
+    public static class AnnotatedDocument {
+        private final byte[] documentBytes;
+        private final AnnotationReport report;
+        private final AnchoredDocumentIndex documentIndex;
+
+        public AnnotatedDocument(byte[] documentBytes, AnnotationReport report) {
+            this(documentBytes, report, null);
+        }
+
+        public AnnotatedDocument(byte[] documentBytes, AnnotationReport report, AnchoredDocumentIndex documentIndex) {
+            this.documentBytes = documentBytes;
+            this.report = report;
+            this.documentIndex = documentIndex;
+        }
+
+        public byte[] getDocumentBytes() {
+            return documentBytes;
+        }
+
+        public AnnotationReport getReport() {
+            return report;
+        }
+
+        /**
+         * 批注后文档的预索引（预索引方式且保留锚点时按拼接偏移增量更新），其他情况为null
+         */
+        public AnchoredDocumentIndex getDocumentIndex() {
+            return documentIndex;
+        }
+    }
+
+    /**
+     * 内部类：批注插入记录
+     *
+     * 每次插入后只检查目标段落中该批注ID的标记，按ID维护 起始/结束/引用/批注内容 四项计数
+     */
+    private static final class AnnotationTracker {
+        private static final QName RANGE_START = QName.get("commentRangeStart", W_NS);
+        private static final QName RANGE_END = QName.get("commentRangeEnd", W_NS);
+        private static final QName REFERENCE = QName.get("commentReference", W_NS);
+        private static final QName RUN = QName.get("r", W_NS);
+        private static final QName ID = QName.get("id", W_NS);
+
+        private final Map<Integer, int[]> markers = new LinkedHashMap<>();
+        private final Set<Integer> inconsistentIds = new java.util.TreeSet<>();
+
+        /**
+         * 批注标记在计数数组中的位置：0=起始，1=结束，2=引用；非批注标记返回-1
+         */
+        static int markerSlot(Element element) {
+            QName name = element.getQName();
+            if (RANGE_START.equals(name)) {
+                return 0;
+            }
+            if (RANGE_END.equals(name)) {
+                return 1;
+            }
+            if (REFERENCE.equals(name)) {
+                return 2;
+            }
+            return -1;
+        }
+
+        void record(Element paragraph, int commentId, Element comment) {
+            int[] counts = markers.computeIfAbsent(commentId, k -> new int[4]);
+            String id = String.valueOf(commentId);
+            for (Element child : paragraph.elements()) {
+                if (RUN.equals(child.getQName())) {
+                    for (Element reference : child.elements(REFERENCE)) {
+                        if (id.equals(reference.attributeValue(ID))) {
+                            counts[2]++;
+                        }
+                    }
+                } else {
+                    int slot = markerSlot(child);
+                    if (slot >= 0 && id.equals(child.attributeValue(ID))) {
+                        counts[slot]++;
+                    }
+                }
+            }
+            if (comment != null && id.equals(comment.attributeValue(ID))) {
+                counts[3]++;
+            }
+        }
+
+        /**
+         * 与全文档遍历结果逐个ID比对
+         *
+         * @return 不一致的ID数量
+         */
+        int compareWith(Map<String, int[]> scanned) {
+            int mismatched = 0;
+            for (Map.Entry<Integer, int[]> entry : markers.entrySet()) {
+                int[] actual = scanned.get(String.valueOf(entry.getKey()));
+                if (actual == null || !java.util.Arrays.equals(actual, entry.getValue())) {
+                    inconsistentIds.add(entry.getKey());
+                    mismatched++;
+                }
+            }
+            return mismatched;
+        }
+
+        AnnotationReport toReport(String mode, int requested, int added, int failed, long elapsedMs) {
+            int[] totals = new int[4];
+            for (Map.Entry<Integer, int[]> entry : markers.entrySet()) {
+                int[] counts = entry.getValue();
+                for (int i = 0; i < totals.length; i++) {
+                    totals[i] += counts[i];
+                    if (counts[i] != 1) {
+                        inconsistentIds.add(entry.getKey());
+                    }
+                }
+            }
+            return AnnotationReport.builder()
+                    .mode(mode)
+                    .requestedCount(requested)
+                    .addedCount(added)
+                    .failedCount(failed)
+                    .commentRangeStartCount(totals[0])
+                    .commentRangeEndCount(totals[1])
+                    .commentReferenceCount(totals[2])
+                    .commentCount(totals[3])
+                    .inconsistentCommentIds(new ArrayList<>(inconsistentIds))
+                    .consistent(inconsistentIds.isEmpty())
+                    .elapsedMs(elapsedMs)
+                    .build();
+        }
+    }
+
     /**
      * 加载document.xml
      */
@@ -503,23 +1090,8 @@ public class WordXmlCommentProcessor {
                 return;
             }
 
-            // 找到最大的ID
-            int maxId = 0;
-            for (Element comment : comments) {
-                try {
-                    String idStr = comment.attributeValue(QName.get("id", W_NS));
-                    if (idStr != null && !idStr.isEmpty()) {
-                        int id = Integer.parseInt(idStr);
-                        if (id > maxId) {
-                            maxId = id;
-                        }
-                    }
-                } catch (NumberFormatException e) {
-                    logger.warn("无法解析批注ID：{}", comment.attributeValue(QName.get("id", W_NS)));
-                }
-            }
-
-            // 设置计数器为最大ID + 1
+            // 找到最大的ID，设置计数器为最大ID + 1
+            int maxId = findMaxCommentId(commentsXml);
             int nextId = maxId + 1;
             commentIdCounter.set(nextId);
             logger.info("【批注冲突检测】检测到{}个现有批注，最大ID={}, 设置新批注ID起始值为{}",
@@ -531,6 +1103,24 @@ public class WordXmlCommentProcessor {
         }
     }
 
+    /**
+     * 查找comments.xml中现有批注的最大ID（无批注时返回0）
+     */
+    private int findMaxCommentId(Document commentsXml) {
+        int maxId = 0;
+        for (Element comment : commentsXml.getRootElement().elements(QName.get("comment", W_NS))) {
+            try {
+                String idStr = comment.attributeValue(QName.get("id", W_NS));
+                if (idStr != null && !idStr.isEmpty()) {
+                    maxId = Math.max(maxId, Integer.parseInt(idStr));
+                }
+            } catch (NumberFormatException e) {
+                logger.warn("无法解析批注ID：{}", comment.attributeValue(QName.get("id", W_NS)));
+            }
+        }
+        return maxId;
+    }
+
     /**
      * 为单个问题添加批注 - 实现多级定位架构
      *
@@ -543,6 +1133,7 @@ public class WordXmlCommentProcessor {
      * Step 2 - 文字匹配：若ReviewIssue中提供了targetText字段
      *          使用PreciseTextAnnotationLocator在段落内进行精确匹配
      *          支持EXACT、CONTAINS、REGEX三种匹配模式
+     *          段落内未命中时，通过q-gram索引在全文中查找（优先条款范围内，允许少量编辑距离）
      *
      * Step 3 - 精确插入：
      *          若文字匹配成功，在精确的Run位置插入批注标记（精确位置）
@@ -553,13 +1144,39 @@ public class WordXmlCommentProcessor {
      * @param commentsXml 批注XML对象
      * @param issue 审查问题，包含anchorId、targetText等定位信息
      * @param anchorStrategy 锚点策略：preferAnchor|anchorOnly|textFallback
+     * @param textIndex 文档q-gram索引
      * @return true if successfully added, false otherwise
      */
     private boolean addCommentForIssue(Document documentXml, Document commentsXml,
-                                      ReviewIssue issue, String anchorStrategy) {
+                                      ReviewIssue issue, String anchorStrategy, NGramTextIndex textIndex,
+                                      AnnotationTracker tracker) {
         try {
+            boolean hasTargetText = issue.getTargetText() != null && !issue.getTargetText().isEmpty();
+            String matchPattern = issue.getMatchPattern() != null ? issue.getMatchPattern() : "EXACT";
+
             // 1. 在document.xml中找到插入位置
-            Element targetParagraph = findTargetParagraph(documentXml, issue, anchorStrategy);
+            Element targetParagraph = findTargetParagraph(textIndex.getParagraphs(), issue, anchorStrategy);
+            TextMatchResult matchResult = null;
+
+            // 【q-gram索引】锚点和条款号都定位失败时，直接用targetText在全文中定位（anchorOnly策略除外）
+            if (targetParagraph == null && hasTargetText && !"anchorOnly".equalsIgnoreCase(anchorStrategy)
+                    && !"REGEX".equalsIgnoreCase(matchPattern)) {
+                NGramTextIndex.Match indexMatch = textIndex.search(
+                        issue.getTargetText(), issue.getClauseId(), -1, !"CONTAINS".equalsIgnoreCase(matchPattern));
+                // 条款范围外的位置只接受完全一致的匹配，避免近似匹配误批注到其他条款
+                if (indexMatch != null && !indexMatch.isInClauseRange() && indexMatch.getDistance() > 0) {
+                    logger.debug("【q-gram索引】全文最佳匹配位于条款范围外且非完全一致，放弃：段落={}, 编辑距离={}",
+                               indexMatch.getParagraphIndex(), indexMatch.getDistance());
+                    indexMatch = null;
+                }
+                if (indexMatch != null) {
+                    targetParagraph = indexMatch.getParagraph();
+                    matchResult = preciseLocator.locateRange(targetParagraph, indexMatch.getStart(), indexMatch.getEnd());
+                    logger.info("【q-gram索引】锚点定位失败，通过全文索引找到段落 {}，编辑距离={}",
+                               indexMatch.getParagraphIndex(), indexMatch.getDistance());
+                }
+            }
+
             if (targetParagraph == null) {
                 logger.warn("无法找到批注插入位置：clauseId={}, anchorId={}",
                            issue.getClauseId(), issue.getAnchorId());
@@ -572,34 +1189,50 @@ public class WordXmlCommentProcessor {
             // 3. 根据是否提供targetText，选择插入方式
             Element startRun = null;
             Element endRun = null;
-            TextMatchResult matchResult = null;
 
-            if (issue.getTargetText() != null && !issue.getTargetText().isEmpty()) {
+            if (hasTargetText && matchResult == null) {
                 // 精确文字匹配模式
                 matchResult = preciseLocator.findTextInParagraph(
                         targetParagraph,
                         issue.getTargetText(),
-                        issue.getMatchPattern() != null ? issue.getMatchPattern() : "EXACT",
+                        matchPattern,
                         issue.getMatchIndex() != null ? issue.getMatchIndex() : 1
                 );
 
-                // 【新增】如果在锚点段落找不到，尝试在后续段落中搜索
-                // 这是为了处理多段落条款的情况（条款标题和条款内容在不同段落）
-                if (matchResult == null) {
-                    logger.debug("在锚点段落中未找到 targetText，尝试在后续段落中搜索（处理多段落条款）");
-
-                    Element documentElement = documentXml.getRootElement();
-                    Element body = documentElement.element(QName.get("body", W_NS));
-                    List<Element> allParagraphs = findAllParagraphsRecursive(body);
+                // 【q-gram索引】锚点段落内未命中时，通过全文索引查找（优先条款范围内，允许少量改写差异）
+                // 这同时覆盖了多段落条款（条款标题和条款内容在不同段落）和表格单元格中的内容
+                if (matchResult == null && !"REGEX".equalsIgnoreCase(matchPattern)) {
+                    int currentParaIndex = textIndex.indexOf(targetParagraph);
+                    NGramTextIndex.Match indexMatch = textIndex.search(
+                            issue.getTargetText(), issue.getClauseId(), currentParaIndex,
+                            !"CONTAINS".equalsIgnoreCase(matchPattern));
+
+                    // 锚点段落已确定时，条款范围外的位置只接受完全一致的匹配，避免误批注到其他条款
+                    if (indexMatch != null && !indexMatch.isInClauseRange() && indexMatch.getDistance() > 0) {
+                        logger.debug("【q-gram索引】最佳匹配位于条款范围外且非完全一致，放弃：段落={}, 编辑距离={}",
+                                   indexMatch.getParagraphIndex(), indexMatch.getDistance());
+                        indexMatch = null;
+                    }
 
-                    // 找到当前段落在所有段落中的索引
-                    int currentParaIndex = -1;
-                    for (int i = 0; i < allParagraphs.size(); i++) {
-                        if (allParagraphs.get(i) == targetParagraph) {
-                            currentParaIndex = i;
-                            break;
+                    if (indexMatch != null) {
+                        TextMatchResult located = preciseLocator.locateRange(
+                                indexMatch.getParagraph(), indexMatch.getStart(), indexMatch.getEnd());
+                        if (located != null) {
+                            logger.info("【q-gram索引】在段落 {} 中找到 targetText（锚点段落 {}），编辑距离={}, 条款范围内={}",
+                                       indexMatch.getParagraphIndex(), currentParaIndex,
+                                       indexMatch.getDistance(), indexMatch.isInClauseRange());
+                            targetParagraph = indexMatch.getParagraph();
+                            matchResult = located;
                         }
                     }
+                }
+
+                // 正则模式无法使用索引，保留在后续段落中逐段搜索（处理多段落条款）
+                if (matchResult == null && "REGEX".equalsIgnoreCase(matchPattern)) {
+                    logger.debug("在锚点段落中未找到 targetText，尝试在后续段落中搜索（处理多段落条款）");
+
+                    List<Element> allParagraphs = textIndex.getParagraphs();
+                    int currentParaIndex = textIndex.indexOf(targetParagraph);
 
                     if (currentParaIndex >= 0) {
                         // 在后续的 10 个段落内搜索（避免跨越到下一个条款）
@@ -608,7 +1241,7 @@ public class WordXmlCommentProcessor {
                             matchResult = preciseLocator.findTextInParagraph(
                                     nextPara,
                                     issue.getTargetText(),
-                                    issue.getMatchPattern() != null ? issue.getMatchPattern() : "EXACT",
+                                    matchPattern,
                                     issue.getMatchIndex() != null ? issue.getMatchIndex() : 1
                             );
 
@@ -616,14 +1249,14 @@ public class WordXmlCommentProcessor {
                                 logger.info("【多段落条款】在后续段落 {} 中找到 targetText，从段落 {} 迁移到段落 {}",
                                            i, currentParaIndex, i);
                                 targetParagraph = nextPara;  // 更新目标段落
-                                startRun = matchResult.getStartRun();
-                                endRun = matchResult.getEndRun();
                                 break;
                             }
                         }
                     }
                 }
+            }
 
+            if (hasTargetText) {
                 if (matchResult != null) {
                     startRun = matchResult.getStartRun();
                     endRun = matchResult.getEndRun();
@@ -640,9 +1273,9 @@ public class WordXmlCommentProcessor {
                                    issue.getTargetText());
                     }
                 } else {
-                    logger.warn("精确文字匹配失败（包括多段落搜索），降级到段落级别批注：targetText={}, matchPattern={}, matchIndex={}",
+                    logger.warn("精确文字匹配失败（包括全文索引搜索），降级到段落级别批注：targetText={}, matchPattern={}, matchIndex={}",
                                issue.getTargetText(),
-                               issue.getMatchPattern() != null ? issue.getMatchPattern() : "EXACT",
+                               matchPattern,
                                issue.getMatchIndex() != null ? issue.getMatchIndex() : 1);
                     startRun = null;
                     endRun = null;
@@ -658,8 +1291,9 @@ public class WordXmlCommentProcessor {
                 insertCommentRangeInDocument(targetParagraph, commentId);
             }
 
-            // 5. 在comments.xml中添加批注内容
-            addCommentToCommentsXml(commentsXml, commentId, issue);
+            // 5. 在comments.xml中添加批注内容，并记录本次插入的批注标记
+            Element comment = addCommentToCommentsXml(commentsXml, commentId, issue);
+            tracker.record(targetParagraph, commentId, comment);
 
             logger.debug("成功添加批注：commentId={}, clauseId={}, 方式={}",
                         commentId, issue.getClauseId(),
@@ -678,15 +1312,9 @@ public class WordXmlCommentProcessor {
      * 【新版本】anchorId自动级别检测：通过格式判断是条款级还是段落级
      * - 条款级格式: anc-c1-4f21 (不含 -pX-)
      * - 段落级格式: anc-c1-p2-9f4b (含 -pX-)
-     * 新版本：支持表格内段落的递归查找
+     * 新版本：支持表格内段落的递归查找（段落列表由文档索引统一提供，无需每个问题重新遍历）
      */
-    private Element findTargetParagraph(Document documentXml, ReviewIssue issue, String anchorStrategy) {
-        Element documentElement = documentXml.getRootElement();
-        Element body = documentElement.element(QName.get("body", W_NS));
-
-        // 使用递归方式获取所有段落（包括表格内的段落）
-        List<Element> allParagraphs = findAllParagraphsRecursive(body);
-
+    private Element findTargetParagraph(List<Element> allParagraphs, ReviewIssue issue, String anchorStrategy) {
         String anchorId = issue.getAnchorId();
         logger.info("开始查找目标段落：clauseId={}, anchorId={}, 策略={}, 总段落数={} (包含表格内段落)",
                    issue.getClauseId(), anchorId, anchorStrategy, allParagraphs.size());
@@ -1121,7 +1749,7 @@ public class WordXmlCommentProcessor {
             Element commentRangeStart = new org.dom4j.tree.DefaultElement(QName.get("commentRangeStart", W_NS));
             commentRangeStart.addAttribute(QName.get("id", W_NS), String.valueOf(commentId));
             paragraph.elements().add(runIndex, commentRangeStart);
-            runIndex++;  // 现在runIndex指向commentRangeStart，originalRun在runIndex+1
+            runIndex++;  // 现在runIndex指向originalRun（commentRangeStart在runIndex-1）
             logger.debug("插入commentRangeStart");
 
             // Step 3: 创建匹配Run（修改原Run的文本内容）
@@ -1138,13 +1766,13 @@ public class WordXmlCommentProcessor {
             logger.debug("修改原Run文本为匹配部分：'{}'", matched.length() > 30 ? matched.substring(0, 30) + "..." : matched);
 
             // Step 4: 在匹配部分后插入commentRangeEnd
-            // 【关键修复】在originalRun之后插入commentRangeEnd
-            // 现在 originalRun 在 runIndex + 1 的位置
+            // 【关键修复】紧接在originalRun之后插入commentRangeEnd
+            // 原实现插入到runIndex+2，会把下一个元素包进批注范围；originalRun为段落最后一个元素时越界，
+            // 导致已插入commentRangeStart后再降级到段落级别，产生重复的commentRangeStart
             Element commentRangeEnd = new org.dom4j.tree.DefaultElement(QName.get("commentRangeEnd", W_NS));
             commentRangeEnd.addAttribute(QName.get("id", W_NS), String.valueOf(commentId));
-            // originalRun在段落中的位置是runIndex+1，所以commentRangeEnd应该在runIndex+2
-            paragraph.elements().add(runIndex + 2, commentRangeEnd);
-            runIndex = runIndex + 2;  // 更新runIndex指向commentRangeEnd
+            paragraph.elements().add(runIndex + 1, commentRangeEnd);
+            runIndex = runIndex + 1;  // 更新runIndex指向commentRangeEnd
             logger.debug("插入commentRangeEnd");
 
             // Step 5: 创建后缀Run（如果有）
@@ -1207,7 +1835,7 @@ public class WordXmlCommentProcessor {
     /**
      * 在comments.xml中添加批注内容
      */
-    private void addCommentToCommentsXml(Document commentsXml, int commentId, ReviewIssue issue) {
+    private Element addCommentToCommentsXml(Document commentsXml, int commentId, ReviewIssue issue) {
         Element commentsRoot = commentsXml.getRootElement();
 
         // 创建批注元素
@@ -1223,6 +1851,7 @@ public class WordXmlCommentProcessor {
 
         logger.debug("在comments.xml中添加批注内容：commentId={}, 风险等级={}, 类别={}",
                     commentId, issue.getSeverity(), issue.getCategory());
+        return comment;
     }
 
     /**
@@ -1737,9 +2366,13 @@ public class WordXmlCommentProcessor {
     }
 
     /**
-     * 手动将 document.xml.rels 添加到 ZIP 文件中
+     * 手动将 document.xml.rels 添加到 ZIP 文件中（已存在时直接返回原文档，不重新打包）
      */
     private byte[] manuallyAddRelsToZip(byte[] originalZip, byte[] relsBytes) throws Exception {
+        if (DocxPackageInspector.of(originalZip).hasPart(AnchoredDocumentIndex.DOCUMENT_RELS_PART)) {
+            logger.debug("ZIP 中已存在 document.xml.rels，跳过修复");
+            return originalZip;
+        }
         logger.debug("开始手动修复 ZIP 文件：添加 document.xml.rels");
         
         try (java.util.zip.ZipInputStream zipIn = new java.util.zip.ZipInputStream(
@@ -6,6 +6,7 @@
 class FileManager {
     constructor() {
         this.files = [];
+        this.nextCursor = null;
         this.currentFile = null;
         this.isLoading = false;
     }
@@ -26,19 +27,25 @@ class FileManager {
     }
 
     /**
-     * 加载文件列表
+     * 加载文件列表（分页，append 为 true 时追加下一页）
      */
-    async loadFileList() {
+    async loadFileList(append = false) {
         this.isLoading = true;
         this.showLoading('正在加载文件列表...');
 
         try {
-            const response = await fetch('/api/preview/files');
+            let url = '/api/preview/files?limit=100';
+            if (append && this.nextCursor) {
+                url += '&cursor=' + encodeURIComponent(this.nextCursor);
+            }
+            const response = await fetch(url);
             const result = await response.json();
 
             if (result.success) {
-                this.files = result.files || [];
-                console.log(`加载文件列表成功，共${this.files.length}个文件`);
+                const page = result.files || [];
+                this.files = append ? this.files.concat(page) : page;
+                this.nextCursor = result.nextCursor || null;
+                console.log(`加载文件列表成功，已加载${this.files.length}个文件`);
             } else {
                 throw new Error(result.error || '获取文件列表失败');
             }
@@ -75,7 +82,7 @@ class FileManager {
         container.innerHTML = `
             <div class="file-list">
                 <div class="file-list-header">
-                    <div class="file-count">共 ${this.files.length} 个文件</div>
+                    <div class="file-count">已加载 ${this.files.length} 个文件${this.nextCursor ? '' : '（全部）'}</div>
                     <button class="btn-refresh" onclick="fileManager.refresh()">
                         <span>🔄</span> 刷新
                     </button>
@@ -83,6 +90,9 @@ class FileManager {
                 <div class="file-items">
                     ${fileListHtml}
                 </div>
+                ${this.nextCursor ? `
+                    <button class="btn-refresh" onclick="fileManager.loadMore()">加载更多</button>
+                ` : ''}
             </div>
         `;
     }
@@ -166,6 +176,19 @@ class FileManager {
         }
     }
 
+    /**
+     * 加载下一页文件
+     */
+    async loadMore() {
+        try {
+            await this.loadFileList(true);
+            this.renderFileList();
+        } catch (error) {
+            console.error('加载更多文件失败:', error);
+            this.showError('加载更多文件失败: ' + error.message);
+        }
+    }
+
     /**
      * 刷新文件列表
      */
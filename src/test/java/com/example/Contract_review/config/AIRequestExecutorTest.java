@@ -0,0 +1,77 @@
+package com.example.Contract_review.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * AIRequestExecutor 单元测试
+ */
+class AIRequestExecutorTest {
+
+    @Test
+    void retriesThrottledRequestsHonouringRetryAfter() {
+        AIServiceConfig config = new AIServiceConfig();
+        config.setMaxRetries(3);
+        config.setRetryBaseDelayMs(5000);
+        AIRequestExecutor executor = new AIRequestExecutor();
+        ReflectionTestUtils.setField(executor, "aiServiceConfig", config);
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, "0");
+        AtomicInteger attempts = new AtomicInteger();
+
+        long start = System.currentTimeMillis();
+        String result = executor.execute("test", () -> attempts.incrementAndGet() < 3
+                ? Mono.error(WebClientResponseException.create(429, "Too Many Requests", headers, new byte[0], null))
+                : Mono.just("ok")).block(Duration.ofSeconds(5));
+
+        assertEquals("ok", result);
+        assertEquals(3, attempts.get());
+        // Retry-After: 0 优先于 5 秒的指数退避
+        assertTrue(System.currentTimeMillis() - start < 2000);
+    }
+
+    @Test
+    void doesNotRetryClientErrors() {
+        AIServiceConfig config = new AIServiceConfig();
+        AIRequestExecutor executor = new AIRequestExecutor();
+        ReflectionTestUtils.setField(executor, "aiServiceConfig", config);
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThrows(WebClientResponseException.class, () -> executor.execute("test", () -> {
+            attempts.incrementAndGet();
+            return Mono.error(WebClientResponseException.create(401, "Unauthorized", new HttpHeaders(), new byte[0], null));
+        }).block(Duration.ofSeconds(5)));
+        assertEquals(1, attempts.get());
+    }
+
+    @Test
+    void doesNotRetryTimeoutsButShrinksLimit() {
+        AIServiceConfig config = new AIServiceConfig();
+        config.setMaxRetries(3);
+        config.setRetryBaseDelayMs(1);
+        AIRequestExecutor executor = new AIRequestExecutor();
+        ReflectionTestUtils.setField(executor, "aiServiceConfig", config);
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThrows(RuntimeException.class, () -> executor.execute("test", () -> {
+            attempts.incrementAndGet();
+            return Mono.error(new RuntimeException("read timeout", new TimeoutException()));
+        }).block(Duration.ofSeconds(5)));
+        assertEquals(1, attempts.get());
+
+        @SuppressWarnings("unchecked")
+        Map<String, Object> stats = (Map<String, Object>) executor.getStats().get("test");
+        assertEquals(1L, stats.get("throttled"));
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.Contract_review.controller;
+
+import com.example.Contract_review.service.MinioFileService;
+import io.minio.GetObjectResponse;
+import io.minio.StatObjectResponse;
+import okhttp3.Headers;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+/**
+ * FilePreviewController 代理下载 Range 处理单元测试
+ */
+class FilePreviewControllerTest {
+
+    private static final String OBJECT = "reports/合同.docx";
+    private static final String ETAG = "abc123";
+    private static final byte[] CONTENT = "0123456789".getBytes(StandardCharsets.US_ASCII);
+
+    private FilePreviewController controller;
+    private MinioFileService minioFileService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        minioFileService = Mockito.mock(MinioFileService.class);
+        controller = new FilePreviewController();
+        ReflectionTestUtils.setField(controller, "minioFileService", minioFileService);
+        stubObject(CONTENT);
+    }
+
+    @Test
+    void servesSingleRanges() throws Exception {
+        assertPartial(get("bytes=0-", null), 0, 9, "0123456789");
+        assertPartial(get("bytes=2-5", null), 2, 5, "2345");
+        // 终点超出对象末尾时截断到最后一个字节
+        assertPartial(get("bytes=7-100", null), 7, 9, "789");
+        assertPartial(get("bytes=-3", null), 7, 9, "789");
+        // 后缀长度大于对象长度时返回整个对象
+        assertPartial(get("bytes=-50", null), 0, 9, "0123456789");
+    }
+
+    @Test
+    void rejectsRangeStartingPastEnd() throws Exception {
+        ResponseEntity<StreamingResponseBody> response = get("bytes=10-", null);
+
+        assertEquals(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE, response.getStatusCode());
+        assertEquals("bytes */10", response.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE));
+        assertNull(response.getBody());
+    }
+
+    @Test
+    void servesFullObjectForIgnoredRanges() throws Exception {
+        // 终点小于起点、多区间、无法识别的单位：忽略 Range
+        for (String range : new String[]{"bytes=5-3", "bytes=0-1,4-5", "items=0-1"}) {
+            assertFull(get(range, null), range);
+        }
+        // If-Range 与当前 ETag 不一致：对象已变化，返回完整对象
+        assertFull(get("bytes=2-5", "\"stale\""), "stale If-Range");
+        assertPartial(get("bytes=2-5", "\"" + ETAG + "\""), 2, 5, "2345");
+    }
+
+    @Test
+    void handlesZeroLengthObject() throws Exception {
+        stubObject(new byte[0]);
+
+        ResponseEntity<StreamingResponseBody> full = get(null, null);
+        assertEquals(HttpStatus.OK, full.getStatusCode());
+        assertEquals("0", full.getHeaders().getFirst(HttpHeaders.CONTENT_LENGTH));
+        assertEquals(0, body(full).length);
+
+        assertEquals(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE, get("bytes=0-", null).getStatusCode());
+        ResponseEntity<StreamingResponseBody> suffix = get("bytes=-5", null);
+        assertEquals(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE, suffix.getStatusCode());
+        assertEquals("bytes */0", suffix.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE));
+        Mockito.verify(minioFileService, Mockito.never()).openObject(anyString(), anyLong(), anyLong(), anyString());
+    }
+
+    private void assertPartial(ResponseEntity<StreamingResponseBody> response, long start, long end, String expected)
+            throws Exception {
+        assertEquals(HttpStatus.PARTIAL_CONTENT, response.getStatusCode());
+        assertEquals("bytes " + start + "-" + end + "/" + CONTENT.length,
+                response.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE));
+        assertEquals(String.valueOf(end - start + 1), response.getHeaders().getFirst(HttpHeaders.CONTENT_LENGTH));
+        assertEquals(expected, new String(body(response), StandardCharsets.US_ASCII));
+    }
+
+    private void assertFull(ResponseEntity<StreamingResponseBody> response, String message) throws Exception {
+        assertEquals(HttpStatus.OK, response.getStatusCode(), message);
+        assertNull(response.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE), message);
+        assertEquals(String.valueOf(CONTENT.length), response.getHeaders().getFirst(HttpHeaders.CONTENT_LENGTH), message);
+        assertArrayEquals(CONTENT, body(response), message);
+    }
+
+    private ResponseEntity<StreamingResponseBody> get(String range, String ifRange) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/preview/proxy");
+        if (range != null) {
+            request.addHeader(HttpHeaders.RANGE, range);
+        }
+        if (ifRange != null) {
+            request.addHeader(HttpHeaders.IF_RANGE, ifRange);
+        }
+        return controller.proxyDocumentByQuery(OBJECT, request);
+    }
+
+    private static byte[] body(ResponseEntity<StreamingResponseBody> response) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        response.getBody().writeTo(out);
+        return out.toByteArray();
+    }
+
+    /**
+     * 模拟 MinIO 对象：statObject 返回大小和 ETag，openObject 按区间返回内容（要求携带 stat 得到的 ETag）
+     */
+    private void stubObject(byte[] content) throws Exception {
+        StatObjectResponse stat = Mockito.mock(StatObjectResponse.class);
+        when(stat.size()).thenReturn((long) content.length);
+        when(stat.etag()).thenReturn("\"" + ETAG + "\"");
+        when(minioFileService.statObject(OBJECT)).thenReturn(stat);
+        when(minioFileService.openObject(eq(OBJECT), anyLong(), anyLong(), eq(ETAG))).thenAnswer(invocation -> {
+            int offset = (int) (long) invocation.getArgument(1);
+            int length = (int) (long) invocation.getArgument(2);
+            byte[] slice = Arrays.copyOfRange(content, offset, offset + length);
+            return new GetObjectResponse(Headers.of(), "bucket", "", OBJECT, new ByteArrayInputStream(slice));
+        });
+    }
+}
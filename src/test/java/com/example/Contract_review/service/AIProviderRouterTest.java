@@ -0,0 +1,131 @@
+package com.example.Contract_review.service;
+
+import com.example.Contract_review.config.AIServiceConfig;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+/**
+ * AIProviderRouter 单元测试
+ */
+class AIProviderRouterTest {
+
+    private static final String VALID = "{\"issues\":[]}";
+
+    private AIProviderRouter router;
+    private AIServiceConfig.RoutingConfig routing;
+
+    @BeforeEach
+    void setUp() {
+        AIServiceConfig config = new AIServiceConfig();
+        routing = config.getRouting();
+        routing.setHedgeInitialDelayMs(50);
+        routing.setFailureThreshold(2);
+        router = new AIProviderRouter();
+        ReflectionTestUtils.setField(router, "aiServiceConfig", config);
+        ReflectionTestUtils.setField(router, "objectMapper", new ObjectMapper());
+    }
+
+    @Test
+    void hedgesSlowPrimaryAndCancelsLoser() {
+        AtomicBoolean primaryCancelled = new AtomicBoolean();
+        routing.setHedgeEnabled(true);
+
+        AIProviderRouter.RouteResult result = router.route("test", List.of("qwen", "doubao"), provider ->
+                "qwen".equals(provider)
+                        ? Mono.delay(Duration.ofSeconds(10)).thenReturn(VALID).doOnCancel(() -> primaryCancelled.set(true))
+                        : Mono.just(VALID))
+                .block(Duration.ofSeconds(5));
+
+        assertEquals("doubao", result.getProvider());
+        assertTrue(result.isHedged());
+        assertEquals(List.of("qwen", "doubao"), result.getAttempted());
+        assertTrue(primaryCancelled.get());
+    }
+
+    @Test
+    void failsOverOnInvalidResponseAndOpensCircuit() {
+        AtomicInteger primaryCalls = new AtomicInteger();
+        routing.setHedgeEnabled(false);
+
+        for (int i = 0; i < 3; i++) {
+            AIProviderRouter.RouteResult result = router.route("test", List.of("qwen", "doubao"), provider -> {
+                if ("qwen".equals(provider)) {
+                    primaryCalls.incrementAndGet();
+                    return Mono.just("{\"success\":false,\"error\":\"超时\",\"issues\":[]}");
+                }
+                return Mono.just(VALID);
+            }).block(Duration.ofSeconds(5));
+
+            assertEquals("doubao", result.getProvider());
+            assertFalse(result.isHedged());
+        }
+
+        // 连续失败 2 次后熔断，第 3 次不再调用主提供商
+        assertEquals(2, primaryCalls.get());
+        @SuppressWarnings("unchecked")
+        Map<String, Object> qwen = (Map<String, Object>) router.getStats().get("qwen");
+        assertEquals("OPEN", qwen.get("circuit"));
+    }
+
+    @Test
+    void failsOverOnlyToExplicitlyConfiguredProviders() throws Exception {
+        QwenRuleReviewService qwen = Mockito.mock(QwenRuleReviewService.class);
+        when(qwen.isQwenAvailable()).thenReturn(true);
+        when(qwen.reviewContractWithQwen(anyString(), any())).thenReturn("{\"success\":false,\"error\":\"超时\"}");
+        AIReviewService doubao = Mockito.mock(AIReviewService.class);
+        when(doubao.isAvailable()).thenReturn(true);
+        when(doubao.supportsPrompt()).thenReturn(true);
+        when(doubao.reviewPrompt(anyString())).thenReturn(VALID);
+        ReflectionTestUtils.setField(router, "qwenRuleReviewService", qwen);
+        ReflectionTestUtils.setField(router, "doubaoReviewService", doubao);
+        routing.setEnabled(true);
+
+        // 未配置备选：合同内容不发送给其他提供商
+        assertThrows(IllegalStateException.class, () -> router.reviewPrompt("qwen", "prompt", null));
+        Mockito.verify(doubao, Mockito.never()).reviewPrompt(anyString());
+
+        routing.setOrder(List.of("doubao"));
+        assertEquals("doubao", router.reviewPrompt("qwen", "prompt", null).getProvider());
+    }
+
+    @Test
+    void disabledRouterPassesResponseThroughWithoutCircuitBreaker() throws Exception {
+        String invalid = "{\"success\":false,\"error\":\"超时\"}";
+        QwenRuleReviewService qwen = Mockito.mock(QwenRuleReviewService.class);
+        when(qwen.isQwenAvailable()).thenReturn(true);
+        when(qwen.reviewContractWithQwen(anyString(), any())).thenReturn(invalid);
+        ReflectionTestUtils.setField(router, "qwenRuleReviewService", qwen);
+        routing.setEnabled(false);
+
+        for (int i = 0; i < 5; i++) {
+            AIProviderRouter.RouteResult result = router.reviewPrompt("qwen", "prompt", null);
+            assertEquals("qwen", result.getProvider());
+            assertEquals(invalid, result.getResponse());
+            assertEquals(List.of("qwen"), result.getAttempted());
+        }
+
+        Mockito.verify(qwen, Mockito.times(5)).reviewContractWithQwen(anyString(), any());
+        assertNull(router.getStats().get("qwen"));
+    }
+
+    @Test
+    void failsWhenAllProvidersFail() {
+        assertThrows(IllegalStateException.class, () -> router.route("test", List.of("qwen", "doubao"),
+                provider -> Mono.<String>error(new RuntimeException(provider + " down"))).block(Duration.ofSeconds(5)));
+    }
+}
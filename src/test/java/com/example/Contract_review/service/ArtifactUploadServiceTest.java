@@ -0,0 +1,169 @@
+package com.example.Contract_review.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+/**
+ * ArtifactUploadService 单元测试
+ */
+class ArtifactUploadServiceTest {
+
+    @TempDir
+    Path spoolDir;
+
+    private ArtifactUploadService service;
+    private MinioFileService minio;
+
+    @BeforeEach
+    void setUp() {
+        minio = Mockito.mock(MinioFileService.class);
+        when(minio.getFileUrl(anyString())).thenAnswer(invocation -> "http://minio/" + invocation.getArgument(0));
+        service = new ArtifactUploadService();
+        ReflectionTestUtils.setField(service, "minioFileService", minio);
+        ReflectionTestUtils.setField(service, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(service, "asyncEnabled", true);
+        ReflectionTestUtils.setField(service, "spoolDir", spoolDir.toString());
+        ReflectionTestUtils.setField(service, "workers", 1);
+        ReflectionTestUtils.setField(service, "partConcurrency", 1);
+        ReflectionTestUtils.setField(service, "partSize", 5L * 1024 * 1024);
+        ReflectionTestUtils.setField(service, "queueCapacity", 10);
+        ReflectionTestUtils.setField(service, "maxAttempts", 3);
+        ReflectionTestUtils.setField(service, "initialBackoffMs", 10L);
+        ReflectionTestUtils.setField(service, "maxBackoffMs", 20L);
+        ReflectionTestUtils.setField(service, "retentionMinutes", 60L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void retriesWithBackoffAndRemovesSpoolFileAfterSuccess() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        when(minio.uploadFileParallel(any(Path.class), eq("reports/a.docx"), anyString(), anyLong(), any(), any()))
+                .thenAnswer(invocation -> {
+                    Path file = invocation.getArgument(0);
+                    assertArrayEquals(new byte[]{1, 2, 3}, Files.readAllBytes(file));
+                    if (calls.incrementAndGet() < 3) {
+                        throw new RuntimeException("MinIO 不可用");
+                    }
+                    return "http://minio/reports/a.docx";
+                });
+        service.init();
+
+        ArtifactUploadService.Upload upload = service.submit(new byte[]{1, 2, 3}, "reports/a.docx", "application/octet-stream");
+        assertEquals("http://minio/reports/a.docx", upload.getUrl());
+
+        awaitFinished(upload);
+        assertEquals(ArtifactUploadService.UploadStatus.SUCCEEDED, upload.getStatus());
+        assertEquals(3, upload.toStatus().get("attempts"));
+        try (var files = Files.list(spoolDir)) {
+            assertEquals(0, files.count());
+        }
+        Map<String, Object> stats = service.getStats();
+        assertEquals(2L, stats.get("retries"));
+        assertEquals(0, stats.get("pending"));
+    }
+
+    @Test
+    void resumesSpooledUploadsAfterRestart() throws Exception {
+        Files.write(spoolDir.resolve("u1.bin"), new byte[]{9});
+        Files.writeString(spoolDir.resolve("u1.json"),
+                "{\"objectName\":\"contracts/b.docx\",\"contentType\":\"application/octet-stream\",\"size\":1,\"createdAt\":1}");
+        // 只写了数据、没有元数据的文件视为写入中断
+        Files.write(spoolDir.resolve("u2.bin"), new byte[]{8});
+        when(minio.uploadFileParallel(any(Path.class), anyString(), anyString(), anyLong(), any(), any()))
+                .thenReturn("http://minio/contracts/b.docx");
+
+        service.init();
+
+        ArtifactUploadService.Upload upload = service.getUpload("u1");
+        assertNotNull(upload);
+        awaitFinished(upload);
+        assertEquals(ArtifactUploadService.UploadStatus.SUCCEEDED, upload.getStatus());
+        assertEquals("contracts/b.docx", upload.getObjectName());
+        assertFalse(Files.exists(spoolDir.resolve("u2.bin")));
+        assertEquals(1L, service.getStats().get("recovered"));
+    }
+
+    @Test
+    void hashesAndDeduplicatesContentOnWorkerThreads() throws Exception {
+        byte[] data = {4, 5, 6};
+        String sha256 = MinioFileService.sha256Hex(data);
+        String objectName = "content/" + sha256.substring(0, 2) + "/" + sha256 + ".docx";
+        List<String> resolvingThreads = new CopyOnWriteArrayList<>();
+        when(minio.contentObjectName(sha256, "合同.docx")).thenAnswer(invocation -> {
+            resolvingThreads.add(Thread.currentThread().getName());
+            return objectName;
+        });
+        when(minio.generateObjectName(anyString(), eq("contracts"))).thenReturn("contracts/ref");
+        CountDownLatch release = new CountDownLatch(1);
+        when(minio.uploadFileParallel(any(Path.class), eq(objectName), anyString(), anyLong(), any(), any()))
+                .thenAnswer(invocation -> {
+                    release.await(5, TimeUnit.SECONDS);
+                    return "http://minio/" + objectName;
+                });
+        ReflectionTestUtils.setField(service, "workers", 2);
+        service.init();
+
+        ArtifactUploadService.Upload first = service.submitContent(data, "合同.docx", "application/octet-stream");
+        ArtifactUploadService.Upload second = service.submitContent(data, "合同.docx", "application/octet-stream");
+        // 相同内容仍在上传：后提交的跟随先开始的上传结束
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!first.isDeduplicated() && !second.isDeduplicated() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        release.countDown();
+        awaitFinished(first);
+        awaitFinished(second);
+        assertEquals(ArtifactUploadService.UploadStatus.SUCCEEDED, first.getStatus());
+        assertEquals(ArtifactUploadService.UploadStatus.SUCCEEDED, second.getStatus());
+        assertNotEquals(first.isDeduplicated(), second.isDeduplicated());
+        assertEquals(sha256, first.getContentHash());
+        assertEquals("http://minio/" + objectName, second.getUrl());
+        Mockito.verify(minio).markContentExists(objectName);
+
+        // 已存在：不再上传
+        when(minio.contentExists(objectName)).thenReturn(true);
+        ArtifactUploadService.Upload third = service.submitContent(data, "合同.docx", "application/octet-stream");
+        awaitFinished(third);
+        assertTrue(third.isDeduplicated());
+        assertEquals(ArtifactUploadService.UploadStatus.SUCCEEDED, third.getStatus());
+        Mockito.verify(minio, Mockito.times(1))
+                .uploadFileParallel(any(Path.class), eq(objectName), anyString(), anyLong(), any(), any());
+        assertEquals(2L, service.getStats().get("deduplicated"));
+
+        // 哈希、去重和存在性查询都不在请求线程
+        assertEquals(3, resolvingThreads.size());
+        assertTrue(resolvingThreads.stream().allMatch(name -> name.startsWith("artifact-upload-")), resolvingThreads.toString());
+    }
+
+    private static void awaitFinished(ArtifactUploadService.Upload upload) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!upload.getStatus().isFinished() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+}
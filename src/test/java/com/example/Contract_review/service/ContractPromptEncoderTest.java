@@ -0,0 +1,128 @@
+package com.example.Contract_review.service;
+
+import com.example.Contract_review.model.Clause;
+import com.example.Contract_review.model.ParagraphAnchor;
+import com.example.Contract_review.model.ParseResult;
+import com.example.Contract_review.model.ReviewRule;
+import com.example.Contract_review.model.ReviewStandard;
+import com.example.Contract_review.util.TokenEstimator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ContractPromptEncoder 单元测试
+ */
+class ContractPromptEncoderTest {
+
+    private ContractPromptEncoder encoder;
+    private ObjectMapper objectMapper;
+
+    @BeforeEach
+    void setUp() {
+        objectMapper = new ObjectMapper();
+        ReviewStandardService standards = new ReviewStandardService();
+        ReflectionTestUtils.setField(standards, "objectMapper", objectMapper);
+        standards.saveStandard(ReviewStandard.builder()
+                .id("test")
+                .name("测试标准")
+                .contractType("测试合同")
+                .enabled(true)
+                .rules(List.of(ReviewRule.builder()
+                        .name("付款条款检查")
+                        .severity("HIGH")
+                        .targetClauses(List.of("付款"))
+                        .enabled(true)
+                        .build()))
+                .build());
+
+        encoder = new ContractPromptEncoder();
+        ReflectionTestUtils.setField(encoder, "reviewStandardService", standards);
+        ReflectionTestUtils.setField(encoder, "objectMapper", objectMapper);
+        ReflectionTestUtils.setField(encoder, "enabled", true);
+        ReflectionTestUtils.setField(encoder, "relevantOnly", true);
+        ReflectionTestUtils.setField(encoder, "contextWindow", 1);
+    }
+
+    @Test
+    void emitsRelevantClausesOnceWithContext() throws Exception {
+        List<Clause> clauses = new ArrayList<>();
+        StringBuilder full = new StringBuilder();
+        for (int i = 1; i <= 6; i++) {
+            String text = i == 4 ? "甲方应在验收后三十日内付款。" : "第" + i + "条的一般约定内容。";
+            full.append(text);
+            clauses.add(Clause.builder()
+                    .id("c" + i)
+                    .heading("第" + i + "条")
+                    .text(text)
+                    .anchorId("anc-c" + i + "-abcd")
+                    .paragraphAnchors(List.of(ParagraphAnchor.builder()
+                            .anchorId("anc-c" + i + "-p1-abcd").paragraphText(text).paragraphIndex(i).build()))
+                    .build());
+        }
+        ParseResult parseResult = ParseResult.builder()
+                .title("采购合同").partyA("某某公司").clauses(clauses).fullContractText(full.toString()).build();
+
+        ContractPromptEncoder.EncodedContract encoded = encoder.encode(parseResult, "测试合同");
+        String text = encoded.getText();
+
+        assertEquals(6, encoded.getTotalClauses());
+        assertEquals(3, encoded.getIncludedClauses());
+        assertTrue(text.contains("[c3]") && text.contains("[c4]") && text.contains("[c5]"));
+        assertFalse(text.contains("[c1]") || text.contains("[c6]"));
+        assertTrue(text.contains("（相关检查项：付款条款检查）"));
+        assertTrue(text.contains("c1 第1条"));
+        // 命中条款正文只出现一次，不含锚点
+        assertEquals(text.indexOf("三十日内付款"), text.lastIndexOf("三十日内付款"));
+        assertFalse(text.contains("anc-"));
+        assertEquals(TokenEstimator.estimate(text), encoded.getEstimatedTokens());
+        assertTrue(encoded.getEstimatedTokens() < TokenEstimator.estimate(objectMapper.writeValueAsString(parseResult)) / 3);
+    }
+
+    @Test
+    void emitsAllClausesWhenGeneralRulesApply() throws Exception {
+        ReviewStandardService standards = new ReviewStandardService();
+        ReflectionTestUtils.setField(standards, "objectMapper", objectMapper);
+        standards.saveStandard(ReviewStandard.builder()
+                .id("general")
+                .name("含通用规则的标准")
+                .contractType("通用测试合同")
+                .enabled(true)
+                .rules(List.of(
+                        ReviewRule.builder().name("付款条款检查").severity("HIGH")
+                                .targetClauses(List.of("付款")).enabled(true).build(),
+                        ReviewRule.builder().name("用语规范检查").severity("LOW").enabled(true).build()))
+                .build());
+        ReflectionTestUtils.setField(encoder, "reviewStandardService", standards);
+        ParseResult parseResult = ParseResult.builder().clauses(List.of(
+                Clause.builder().id("c1").heading("第一条").text("保密义务。").build(),
+                Clause.builder().id("c2").heading("第二条").text("甲方应在验收后付款。").build(),
+                Clause.builder().id("c3").heading("第三条").text("其他约定。").build(),
+                Clause.builder().id("c4").heading("第四条").text("争议解决。").build())).build();
+
+        ContractPromptEncoder.EncodedContract encoded = encoder.encode(parseResult, "通用测试合同");
+
+        assertEquals(4, encoded.getIncludedClauses());
+        assertTrue(encoded.getText().contains("[c4] 第四条\n争议解决。"));
+        assertFalse(encoded.getText().contains("无需审查"));
+        assertTrue(encoded.getText().contains("（相关检查项：付款条款检查）"));
+    }
+
+    @Test
+    void emitsAllClausesWhenNothingMatches() throws Exception {
+        ParseResult parseResult = ParseResult.builder().clauses(List.of(
+                Clause.builder().id("c1").heading("第一条").text("保密义务。").build(),
+                Clause.builder().id("c2").heading("第二条").text("争议解决。").build())).build();
+
+        ContractPromptEncoder.EncodedContract encoded = encoder.encode(parseResult, "测试合同");
+
+        assertEquals(2, encoded.getIncludedClauses());
+        assertTrue(encoded.getText().contains("[c1] 第一条\n保密义务。"));
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.Contract_review.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * DiagnosticsSink 单元测试
+ */
+class DiagnosticsSinkTest {
+
+    @TempDir
+    Path baseDir;
+
+    private DiagnosticsSink sink;
+
+    @BeforeEach
+    void setUp() {
+        sink = new DiagnosticsSink();
+        ReflectionTestUtils.setField(sink, "enabled", true);
+        ReflectionTestUtils.setField(sink, "baseDir", baseDir.toString());
+        ReflectionTestUtils.setField(sink, "queueCapacity", 1);
+        ReflectionTestUtils.setField(sink, "ruleMatchSampleRate", 0.0);
+        ReflectionTestUtils.setField(sink, "ruleMatchMaxBytes", 100L);
+        ReflectionTestUtils.setField(sink, "reviewReportSampleRate", 1.0);
+        ReflectionTestUtils.setField(sink, "reviewReportMaxBytes", 25L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        sink.shutdown();
+    }
+
+    @Test
+    void dropsWhenQueueIsFullInsteadOfBlocking() throws Exception {
+        sink.init();
+        assertFalse(sink.sampled(DiagnosticsSink.Category.RULE_MATCH));
+        assertTrue(sink.sampled(DiagnosticsSink.Category.REVIEW_REPORT));
+
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        assertTrue(sink.submit(DiagnosticsSink.Category.RULE_MATCH, "a.txt", out -> {
+            writing.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            out.write(1);
+        }));
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+        // 后台线程正在写入，队列只能再容纳一条
+        assertTrue(sink.submit(DiagnosticsSink.Category.RULE_MATCH, "b.txt", new byte[]{2}));
+        assertFalse(sink.submit(DiagnosticsSink.Category.RULE_MATCH, "c.txt", new byte[]{3}));
+        release.countDown();
+
+        Path dir = sink.directory(DiagnosticsSink.Category.RULE_MATCH);
+        awaitFiles(dir, 2);
+        assertEquals(List.of("a.txt", "b.txt"), fileNames(dir));
+        @SuppressWarnings("unchecked")
+        Map<String, Object> stats = (Map<String, Object>) sink.getStats().get("RULE_MATCH");
+        assertEquals(1L, stats.get("dropped"));
+        assertEquals(1L, stats.get("skipped"));
+    }
+
+    @Test
+    void appendsSuffixOnCollisionAndDeletesOldestOverCap() throws Exception {
+        ReflectionTestUtils.setField(sink, "queueCapacity", 8);
+        sink.init();
+        Path dir = sink.directory(DiagnosticsSink.Category.REVIEW_REPORT);
+
+        sink.submit(DiagnosticsSink.Category.REVIEW_REPORT, "报告.docx", new byte[10]);
+        awaitFiles(dir, 1);
+        Files.setLastModifiedTime(dir.resolve("报告.docx"), java.nio.file.attribute.FileTime.fromMillis(1000));
+        sink.submit(DiagnosticsSink.Category.REVIEW_REPORT, "报告.docx", new byte[10]);
+        awaitFiles(dir, 2);
+        assertEquals(List.of("报告.docx", "报告_1.docx"), fileNames(dir));
+
+        // 超过 25 字节上限，删除最早的文件
+        sink.submit(DiagnosticsSink.Category.REVIEW_REPORT, "新报告.docx", new byte[10]);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!Long.valueOf(1L).equals(sink.getStats().get("rotatedFiles")) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(1L, sink.getStats().get("rotatedFiles"));
+        assertEquals(List.of("报告_1.docx", "新报告.docx"), fileNames(dir));
+    }
+
+    private static void awaitFiles(Path dir, int count) throws Exception {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (System.currentTimeMillis() < deadline) {
+            if (Files.isDirectory(dir) && fileNames(dir).size() >= count) {
+                return;
+            }
+            Thread.sleep(5);
+        }
+    }
+
+    private static List<String> fileNames(Path dir) throws Exception {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.map(file -> file.getFileName().toString())
+                        .filter(name -> !name.startsWith(".pending-"))
+                        .sorted()
+                        .collect(Collectors.toList());
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.Contract_review.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * LlmResponseCache 单元测试
+ */
+class LlmResponseCacheTest {
+
+    @TempDir
+    Path cacheDir;
+
+    private LlmResponseCache cache;
+    private final AtomicInteger calls = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        ReviewRulesService rulesService = new ReviewRulesService();
+        ReflectionTestUtils.setField(rulesService, "rulesFilePath", cacheDir.resolve("missing.xlsx").toString());
+
+        cache = new LlmResponseCache();
+        ReflectionTestUtils.setField(cache, "reviewRulesService", rulesService);
+        ReflectionTestUtils.setField(cache, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "cacheDir", cacheDir.toString());
+        ReflectionTestUtils.setField(cache, "ttlHours", 1L);
+        ReflectionTestUtils.setField(cache, "maxBytes", 1L << 20);
+        cache.init();
+    }
+
+    @Test
+    void returnsCachedResponseForEquivalentPrompt() throws Exception {
+        LlmResponseCache.Usage first = new LlmResponseCache.Usage();
+        String response = cache.getOrCompute("qwen", "m", "审查条款\r\n甲方  应付款   \n", this::callModel, first);
+        assertEquals("MISS", first.getStatus());
+
+        // 仅换行和空白不同的 Prompt 命中同一条目
+        LlmResponseCache.Usage second = new LlmResponseCache.Usage();
+        assertEquals(response, cache.getOrCompute("qwen", "m", "审查条款\n甲方 应付款", this::callModel, second));
+        assertEquals("HIT", second.getStatus());
+        assertEquals(1, calls.get());
+
+        // 模型不同则不命中
+        cache.getOrCompute("qwen", "other", "审查条款\n甲方 应付款", this::callModel, null);
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void doesNotCacheErrorResponses() throws Exception {
+        cache.getOrCompute("doubao", "m", "p", () -> "{\"error\":true,\"issues\":[]}", null);
+        cache.getOrCompute("qwen", "m", "p", () -> "{\"success\":false,\"error\":\"超时\"}", null);
+        assertEquals(0, cache.getStats().get("entries"));
+    }
+
+    @Test
+    void doesNotCacheMalformedOrIssueLessOutput() throws Exception {
+        cache.getOrCompute("claude", "m", "p1", () -> "以下是审查结果：{\"issues\":[", null);
+        cache.getOrCompute("claude", "m", "p2", () -> "{\"issues\":[]} 多余文本", null);
+        cache.getOrCompute("openai", "m", "p3", () -> "{\"summary\":\"无问题\"}", null);
+        cache.getOrCompute("qwen", "m", "p4", () -> "{\"issues\":{}}", null);
+        assertEquals(0, cache.getStats().get("entries"));
+
+        cache.getOrCompute("claude", "m", "p5", () -> "```json\n{\"issues\":[]}\n```", null);
+        assertEquals(1, cache.getStats().get("entries"));
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedWhenOverCapacity() throws Exception {
+        ReflectionTestUtils.setField(cache, "maxBytes", 2048L);
+        String payload = "{\"issues\":[],\"note\":\"" + "x".repeat(600) + "\"}";
+        for (int i = 0; i < 5; i++) {
+            cache.getOrCompute("qwen", "m", "prompt-" + i, () -> payload, null);
+        }
+
+        assertTrue((Long) cache.getStats().get("totalBytes") <= 2048L);
+        assertTrue((Long) cache.getStats().get("evictions") > 0);
+        assertNotNull(cache.lookup("qwen", "m", "prompt-4", null));
+        assertNull(cache.lookup("qwen", "m", "prompt-0", null));
+    }
+
+    private String callModel() {
+        return "{\"issues\":[{\"clauseId\":\"c1\",\"finding\":\"第" + calls.incrementAndGet() + "次调用\"}]}";
+    }
+}
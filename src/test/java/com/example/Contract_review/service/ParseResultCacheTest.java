@@ -0,0 +1,159 @@
+package com.example.Contract_review.service;
+
+import com.example.Contract_review.model.Clause;
+import com.example.Contract_review.model.ParseResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+/**
+ * ParseResultCache 单元测试
+ */
+class ParseResultCacheTest {
+
+    private ParseResultCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new ParseResultCache();
+        ReflectionTestUtils.setField(cache, "anchoredDocumentStore", Mockito.mock(AnchoredDocumentStore.class));
+        ReflectionTestUtils.setField(cache, "indexEnabled", false);
+        ReflectionTestUtils.setField(cache, "ttlMinutes", 240L);
+        ReflectionTestUtils.setField(cache, "maxBytes", 250_000L);
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedEntriesOverByteBudget() {
+        String first = cache.store(parseResult(), new byte[100_000], "a.docx");
+        String second = cache.store(parseResult(), new byte[100_000], "b.docx");
+        // 访问 first 后 second 成为最久未访问的条目
+        assertNotNull(cache.retrieve(first));
+
+        String third = cache.store(parseResult(), new byte[100_000], "c.docx");
+
+        assertNull(cache.retrieve(second));
+        assertNotNull(cache.retrieve(first));
+        assertNotNull(cache.retrieve(third));
+
+        Map<String, Object> stats = cache.getStats();
+        assertEquals(2, stats.get("totalCached"));
+        assertEquals(1L, stats.get("evictions"));
+        assertEquals(3L, stats.get("hits"));
+        assertEquals(1L, stats.get("misses"));
+        assertTrue((Long) stats.get("totalBytes") <= 250_000L);
+
+        // 超过整个预算的条目不进入内存缓存，也不挤掉已有条目
+        String huge = cache.store(parseResult(), new byte[300_000], "huge.docx");
+        assertNull(cache.retrieve(huge));
+        assertNotNull(cache.retrieve(first));
+        assertEquals(1L, cache.getStats().get("rejectedOversize"));
+    }
+
+    @Test
+    void cleanupRemovesExpiredEntriesAndReleasesBytes() throws Exception {
+        ReflectionTestUtils.setField(cache, "ttlMinutes", 0L);
+        cache.store(parseResult(), new byte[1000], "a.docx");
+        cache.store(parseResult(), new byte[1000], "b.docx");
+        Thread.sleep(5);
+
+        assertEquals(2, cache.cleanupExpired());
+
+        Map<String, Object> stats = cache.getStats();
+        assertEquals(0, stats.get("totalCached"));
+        assertEquals(0L, stats.get("totalBytes"));
+        assertEquals(2L, stats.get("expirations"));
+    }
+
+    @Test
+    void spillsDocumentsToMappedFilesAndEvictsByDiskBudget(@TempDir Path spillDir) throws Exception {
+        ParseResultSpillStore spillStore = new ParseResultSpillStore();
+        ReflectionTestUtils.setField(spillStore, "enabled", true);
+        ReflectionTestUtils.setField(spillStore, "dir", spillDir.toString());
+        ReflectionTestUtils.setField(spillStore, "minDocumentBytes", 0L);
+        spillStore.init();
+        ReflectionTestUtils.setField(cache, "spillStore", spillStore);
+        ReflectionTestUtils.setField(cache, "diskMaxBytes", 250_000L);
+        cache.init();
+        try {
+            byte[] document = new byte[200_000];
+            Arrays.fill(document, (byte) 7);
+            document[document.length - 1] = 42;
+            String first = cache.store(parseResult(), document, "a.docx");
+
+            // 写入磁盘层在后台进行，文档从存储时起就不计入堆内存，写入前后都可读取
+            ParseResultCache.CachedParseResult cached = cache.retrieve(first);
+            assertTrue(cached.getWeight() < document.length);
+            assertEquals(200_000L, cache.getStats().get("diskBytes"));
+            assertEquals(document.length, cached.getDocumentBuffer().remaining());
+            awaitSpilled(cached);
+            assertArrayEquals(document, cached.getDocumentBytes());
+            try (InputStream in = cached.openDocumentStream()) {
+                assertArrayEquals(document, in.readAllBytes());
+            }
+            assertTrue(Files.exists(spillDir.resolve(first + ".docx")));
+
+            // 磁盘层超出上限时淘汰最久未访问的条目并删除文件
+            String second = cache.store(parseResult(), new byte[100_000], "b.docx");
+            assertNull(cache.retrieve(first));
+            assertFalse(Files.exists(spillDir.resolve(first + ".docx")));
+            awaitSpilled(cache.retrieve(second));
+            assertEquals(100_000L, cache.getStats().get("diskBytes"));
+        } finally {
+            cache.shutdown();
+        }
+    }
+
+    private static void awaitSpilled(ParseResultCache.CachedParseResult cached) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!cached.isSpilled() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertTrue(cached.isSpilled());
+    }
+
+    @Test
+    void loadsEntriesCreatedByAnotherInstanceFromSharedStore() throws Exception {
+        AnchoredDocumentStore store = Mockito.mock(AnchoredDocumentStore.class);
+        ReflectionTestUtils.setField(cache, "anchoredDocumentStore", store);
+        String id = "0b6f2a1c-0000-4000-8000-000000000001";
+        String expiredId = "0b6f2a1c-0000-4000-8000-000000000002";
+        byte[] document = {1, 2, 3};
+        when(store.isSharedEnabled()).thenReturn(true);
+        when(store.loadParseResult(id)).thenReturn(
+                new AnchoredDocumentStore.SharedParseResult(parseResult(), "a.docx", System.currentTimeMillis()));
+        when(store.loadParseResult(expiredId)).thenReturn(
+                new AnchoredDocumentStore.SharedParseResult(parseResult(), "b.docx", 0L));
+        when(store.open(anyString())).thenAnswer(invocation ->
+                new AnchoredDocumentStore.StoredDocument(new ByteArrayInputStream(document), "a.docx"));
+
+        ParseResultCache.CachedParseResult loaded = cache.retrieve(id);
+        assertNotNull(loaded);
+        assertEquals("a.docx", loaded.sourceFilename);
+        assertArrayEquals(document, loaded.getDocumentBytes());
+        assertNull(cache.retrieve(expiredId));
+
+        // 第二次从本地近端缓存命中，不再读取共享存储
+        assertSame(loaded, cache.retrieve(id));
+        Mockito.verify(store, Mockito.times(1)).loadParseResult(id);
+        assertEquals(1L, cache.getStats().get("sharedLoads"));
+    }
+
+    private static ParseResult parseResult() {
+        Clause clause = Clause.builder().id("c1").heading("第一条 付款").text("甲方应于验收后30日内付款。").build();
+        return ParseResult.builder().filename("contract.docx").clauses(Collections.singletonList(clause)).build();
+    }
+}
@@ -0,0 +1,160 @@
+package com.example.Contract_review.service;
+
+import com.example.Contract_review.model.Clause;
+import com.example.Contract_review.model.ParseResult;
+import com.example.Contract_review.model.ReviewRule;
+import com.example.Contract_review.model.RuleMatchResult;
+import com.example.Contract_review.qwen.client.QwenClient;
+import com.example.Contract_review.qwen.dto.ChatMessage;
+import com.example.Contract_review.qwen.dto.ChatResponse;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+/**
+ * QwenRuleReviewService 分块审查单元测试
+ */
+class QwenRuleReviewServiceTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private QwenRuleReviewService service;
+
+    /**
+     * 按条款ID给出该条款所在分块的返回（JSON 文本，或 null 表示调用失败）
+     */
+    private final Map<String, String> responses = new HashMap<>();
+
+    private List<RuleMatchResult> matches;
+    private ParseResult parseResult;
+
+    @BeforeEach
+    void setUp() {
+        QwenClient qwenClient = Mockito.mock(QwenClient.class);
+        when(qwenClient.chat(anyList(), anyString())).thenAnswer(invocation -> {
+            List<ChatMessage> messages = invocation.getArgument(0);
+            String prompt = messages.get(messages.size() - 1).getContent();
+            for (Map.Entry<String, String> entry : responses.entrySet()) {
+                if (prompt.contains("(ID: " + entry.getKey() + " ")) {
+                    return entry.getValue() != null
+                            ? Mono.just(ChatResponse.builder().content(entry.getValue()).build())
+                            : Mono.error(new RuntimeException(entry.getKey() + " 超时"));
+                }
+            }
+            return Mono.error(new IllegalStateException("unexpected prompt"));
+        });
+
+        LlmResponseCache cache = new LlmResponseCache();
+        ReflectionTestUtils.setField(cache, "enabled", false);
+
+        service = new QwenRuleReviewService();
+        ReflectionTestUtils.setField(service, "qwenClient", qwenClient);
+        ReflectionTestUtils.setField(service, "objectMapper", objectMapper);
+        ReflectionTestUtils.setField(service, "llmResponseCache", cache);
+        ReflectionTestUtils.setField(service, "diagnosticsSink", Mockito.mock(DiagnosticsSink.class));
+        // 预算小于单个条款：每个条款单独成块
+        ReflectionTestUtils.setField(service, "chunkTokenBudget", 1);
+        ReflectionTestUtils.setField(service, "maxConcurrency", 3);
+
+        matches = new ArrayList<>();
+        List<Clause> clauses = new ArrayList<>();
+        for (String clauseId : List.of("c1", "c2", "c3")) {
+            matches.add(RuleMatchResult.builder()
+                    .clauseId(clauseId)
+                    .anchorId("anc-" + clauseId + "-0001")
+                    .clauseText(clauseId + " 条款内容")
+                    .matchedRules(List.of(ReviewRule.builder().id("r1").risk("high").build()))
+                    .matchCount(1)
+                    .build());
+            clauses.add(Clause.builder().id(clauseId).build());
+        }
+        parseResult = ParseResult.builder().filename("合同.docx").clauses(clauses).build();
+    }
+
+    @Test
+    void mergesOverlappingChunksDedupedAndInClauseOrder() throws Exception {
+        // 分块之间返回顺序与条款顺序不一致，且互有重叠
+        responses.put("c3", issues(
+                issue("c3", "违约金", "违约金过高"),
+                issue("c1", "按期付款", "付款期限不明确（重复）"),
+                issue("c1", "", "缺少发票条款")));
+        responses.put("c1", issues(
+                issue("c1", "按期付款", "付款期限不明确"),
+                issue("c1", "", "缺少发票条款"),
+                issue("c1", "", "缺少付款账户")));
+        responses.put("c2", issues(
+                issue("c2", "", "缺少发票条款"),
+                issue("c2", " 按期交付 ", "交付期限不明确")));
+
+        JsonNode result = objectMapper.readTree(service.reviewContractInChunks(parseResult, "甲方", matches));
+
+        assertEquals(3, result.path("chunkCount").asInt());
+        assertEquals(0, result.path("failedChunks").asInt());
+        assertFalse(result.has("chunkErrors"));
+        // (clauseId, targetText) 去重保留先到分块的问题；targetText 为空时按 finding 区分；按条款顺序排序
+        assertEquals(List.of(
+                "c1|付款期限不明确", "c1|缺少发票条款", "c1|缺少付款账户",
+                "c2|缺少发票条款", "c2|交付期限不明确",
+                "c3|违约金过高"), summarize(result));
+    }
+
+    @Test
+    void failedChunkDoesNotDiscardOthers() throws Exception {
+        responses.put("c1", issues(issue("c1", "按期付款", "付款期限不明确")));
+        responses.put("c2", null);
+        responses.put("c3", "{\"success\":false,\"error\":\"限流\",\"issues\":[]}");
+
+        JsonNode result = objectMapper.readTree(service.reviewContractInChunks(parseResult, "甲方", matches));
+
+        assertFalse(result.has("success"));
+        assertEquals(List.of("c1|付款期限不明确"), summarize(result));
+        assertEquals(3, result.path("chunkCount").asInt());
+        assertEquals(2, result.path("failedChunks").asInt());
+        assertEquals(2, result.path("chunkErrors").size());
+        assertTrue(result.path("chunkErrors").get(0).asText().startsWith("分块2"));
+        assertTrue(result.path("chunkErrors").get(1).asText().contains("限流"));
+    }
+
+    @Test
+    void returnsErrorOnlyWhenAllChunksFail() throws Exception {
+        responses.put("c1", null);
+        responses.put("c2", null);
+        responses.put("c3", null);
+
+        JsonNode result = objectMapper.readTree(service.reviewContractInChunks(parseResult, "甲方", matches));
+
+        assertFalse(result.path("success").asBoolean(true));
+        assertTrue(result.path("error").asText().contains("c2 超时"), result.toString());
+        assertEquals(0, result.path("issues").size());
+    }
+
+    private static List<String> summarize(JsonNode result) {
+        List<String> summary = new ArrayList<>();
+        result.path("issues").forEach(issue ->
+                summary.add(issue.path("clauseId").asText() + "|" + issue.path("finding").asText()));
+        return summary;
+    }
+
+    private String issues(Map<?, ?>... issues) throws Exception {
+        return objectMapper.writeValueAsString(Map.of("issues", List.of(issues)));
+    }
+
+    private static Map<String, String> issue(String clauseId, String targetText, String finding) {
+        return Map.of("clauseId", clauseId, "anchorId", "anc-" + clauseId + "-0001", "severity", "HIGH",
+                "targetText", targetText, "finding", finding);
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.Contract_review.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ReviewJobService 单元测试
+ */
+class ReviewJobServiceTest {
+
+    @TempDir
+    Path resultDir;
+
+    private ReviewJobService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new ReviewJobService();
+        ReflectionTestUtils.setField(service, "workers", 1);
+        ReflectionTestUtils.setField(service, "queueCapacity", 1);
+        ReflectionTestUtils.setField(service, "retentionMinutes", 60L);
+        ReflectionTestUtils.setField(service, "maxRetained", 10);
+        ReflectionTestUtils.setField(service, "resultDir", resultDir.toString());
+        ReflectionTestUtils.setField(service, "maxRetainedBytes", 10L);
+        service.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void reportsStagesAndResult() {
+        ReviewJobService.ReviewJob job = service.submit("unified", "a.docx", () -> {
+            ReviewJobService.reportStage("parse", "解析合同");
+            ReviewJobService.reportStage("llm", "调用AI");
+            return "done";
+        });
+
+        List<String> events = service.events(job)
+                .map(ReviewJobService.JobEvent::getType)
+                .collectList()
+                .block(Duration.ofSeconds(5));
+
+        assertEquals(List.of("queued", "stage", "stage", "stage", "result"), events);
+        assertEquals(ReviewJobService.JobStatus.SUCCEEDED, job.getStatus());
+        assertEquals("done", job.getResult());
+        assertEquals("llm", job.getStage());
+    }
+
+    @Test
+    void rejectsWhenQueueIsFullAndCancelsQueuedJob() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        ReviewJobService.ReviewJob running = service.submit("auto", "a.docx", () -> release.await(5, TimeUnit.SECONDS));
+        ReviewJobService.ReviewJob queued = service.submit("auto", "b.docx", () -> "b");
+
+        assertThrows(RejectedExecutionException.class, () -> service.submit("auto", "c.docx", () -> "c"));
+        assertEquals(1L, service.getStats().get("rejected"));
+
+        assertTrue(service.cancel(queued.getJobId()));
+        assertEquals(ReviewJobService.JobStatus.CANCELLED, queued.getStatus());
+        // 已取消的任务移出等待队列，队列容量立即释放
+        assertEquals(0, service.getStats().get("queued"));
+        ReviewJobService.ReviewJob next = service.submit("auto", "d.docx", () -> "d");
+        release.countDown();
+
+        List<String> events = service.events(running)
+                .map(ReviewJobService.JobEvent::getType)
+                .collect(Collectors.toList())
+                .block(Duration.ofSeconds(5));
+        assertEquals("result", events.get(events.size() - 1));
+        assertNull(queued.getResult());
+        awaitFinished(next);
+        assertEquals("d", next.getResult());
+    }
+
+    @Test
+    void storesDocumentResultsOutsideHeapAndBoundsRetainedBytes() throws Exception {
+        ReviewJobService.ReviewJob first = service.submit("auto", "a.docx", () -> new byte[]{1, 2, 3, 4, 5, 6});
+        awaitFinished(first);
+        assertNull(first.getResult());
+        assertEquals(6, first.getDocumentSize());
+        assertArrayEquals(new byte[]{1, 2, 3, 4, 5, 6}, Files.readAllBytes(first.getDocumentFile()));
+
+        // 超出文档结果总大小上限（10 字节）时清理最早结束的任务
+        ReviewJobService.ReviewJob second = service.submit("auto", "b.docx", () -> new byte[]{7, 8, 9, 10, 11, 12});
+        awaitFinished(second);
+        assertNull(service.getJob(first.getJobId()));
+        assertFalse(Files.exists(first.getDocumentFile()));
+        assertNotNull(service.getJob(second.getJobId()));
+        assertEquals(6L, service.getStats().get("retainedDocumentBytes"));
+    }
+
+    private static void awaitFinished(ReviewJobService.ReviewJob job) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!job.getStatus().isFinished() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+}
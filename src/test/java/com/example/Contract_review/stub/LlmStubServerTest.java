@@ -0,0 +1,109 @@
+package com.example.Contract_review.stub;
+
+import com.example.Contract_review.config.AIHttpClients;
+import com.example.Contract_review.config.AIRequestExecutor;
+import com.example.Contract_review.config.AIServiceConfig;
+import com.example.Contract_review.qwen.client.QwenClient;
+import com.example.Contract_review.qwen.dto.ChatDelta;
+import com.example.Contract_review.qwen.dto.ChatMessage;
+import com.example.Contract_review.qwen.dto.ChatRequest;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * LlmStubServer 单元测试：通过真实的 QwenClient 和 HTTP 客户端层调用替身服务
+ */
+class LlmStubServerTest {
+
+    private static final String PROMPT = "请审查以下条款：\n"
+            + "锚点: anc-c1-p1-4f21\n甲方应在收到发票后三十日内支付全部货款。\n"
+            + "锚点: anc-c2-p1-9a0b\n乙方应在合同签订后十日内交付货物。\n";
+
+    private LlmStubServer server;
+    private AIHttpClients aiHttpClients;
+    private QwenClient qwenClient;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @BeforeEach
+    void setUp() {
+        LlmStubServer.Settings settings = new LlmStubServer.Settings();
+        settings.setPort(0);
+        settings.setLatencyDistribution("fixed");
+        settings.setLatencyMeanMs(10);
+        settings.setTokensPerSecond(0);
+        settings.setError429Rate(0.5);
+        settings.setRetryAfterSeconds(0);
+        settings.setIssuesPerResponse(2);
+        settings.setSeed(42);
+        server = new LlmStubServer(settings).start();
+
+        AIServiceConfig config = new AIServiceConfig();
+        config.setMaxRetries(10);
+        aiHttpClients = new AIHttpClients();
+        ReflectionTestUtils.setField(aiHttpClients, "aiServiceConfig", config);
+        ReflectionTestUtils.setField(aiHttpClients, "webClientBuilder", WebClient.builder());
+        AIRequestExecutor executor = new AIRequestExecutor();
+        ReflectionTestUtils.setField(executor, "aiServiceConfig", config);
+
+        qwenClient = new QwenClient(aiHttpClients, executor, objectMapper);
+        ReflectionTestUtils.setField(qwenClient, "baseUrl", server.getBaseUrl());
+        ReflectionTestUtils.setField(qwenClient, "apiKey", "stub");
+        ReflectionTestUtils.setField(qwenClient, "defaultModel", "stub-model");
+        ReflectionTestUtils.setField(qwenClient, "timeoutSeconds", 10);
+    }
+
+    @AfterEach
+    void tearDown() {
+        aiHttpClients.shutdown();
+        server.stop();
+    }
+
+    @Test
+    void completesThroughInjected429sWithIssuesReferencingPromptAnchors() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            String content = qwenClient.chat(messages(), "stub-model").block(Duration.ofSeconds(10)).getContent();
+            assertIssues(content);
+        }
+        assertEquals(5L, server.getStats().get("completed"));
+        assertTrue((Long) server.getStats().get("throttled") > 0);
+    }
+
+    @Test
+    void streamsSseChunks() throws Exception {
+        ChatRequest request = ChatRequest.builder().messages(messages()).model("stub-model").build();
+        List<ChatDelta> deltas = qwenClient.streamChat(request).collectList().block(Duration.ofSeconds(10));
+
+        assertTrue(deltas.size() > 2);
+        assertTrue(deltas.get(deltas.size() - 1).isDone());
+        assertIssues(deltas.stream().map(ChatDelta::getDelta).collect(Collectors.joining()));
+        assertEquals(1L, server.getStats().get("streamed"));
+    }
+
+    private List<ChatMessage> messages() {
+        return List.of(ChatMessage.builder().role("user").content(PROMPT).build());
+    }
+
+    private void assertIssues(String content) throws Exception {
+        assertTrue(content.startsWith("```json"));
+        JsonNode issues = objectMapper.readTree(content.substring(content.indexOf('{'), content.lastIndexOf('}') + 1))
+                .path("issues");
+        assertEquals(2, issues.size());
+        assertEquals("anc-c1-p1-4f21", issues.get(0).path("anchorId").asText());
+        assertEquals("c1", issues.get(0).path("clauseId").asText());
+        assertEquals("anc-c2-p1-9a0b", issues.get(1).path("anchorId").asText());
+        String targetText = issues.get(0).path("targetText").asText();
+        assertFalse(targetText.isEmpty());
+        assertTrue(PROMPT.contains(targetText));
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.Contract_review.util;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * AdaptiveConcurrencyLimiter 单元测试
+ */
+class AdaptiveConcurrencyLimiterTest {
+
+    @Test
+    void queuesBeyondLimitAndRejectsWhenQueueIsFull() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("test", 2, 1, 4, 1, 0.5, 2.0, e -> false);
+        List<Sinks.One<String>> calls = new ArrayList<>();
+        List<String> results = new ArrayList<>();
+        List<Throwable> errors = new ArrayList<>();
+
+        for (int i = 0; i < 4; i++) {
+            Sinks.One<String> call = Sinks.one();
+            calls.add(call);
+            limiter.run(call::asMono).subscribe(results::add, errors::add);
+        }
+
+        // 2 个在途，1 个排队，第 4 个被拒绝
+        assertEquals(2, limiter.getInFlight());
+        assertEquals(1, limiter.getQueued());
+        assertEquals(1, errors.size());
+        assertInstanceOf(RejectedExecutionException.class, errors.get(0));
+
+        calls.get(0).tryEmitValue("a");
+        assertEquals(2, limiter.getInFlight());
+        assertEquals(0, limiter.getQueued());
+
+        calls.get(1).tryEmitValue("b");
+        calls.get(2).tryEmitValue("c");
+        assertEquals(List.of("a", "b", "c"), results);
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    void shrinksOnOverloadAndGrowsUnderLoad() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(
+                "test", 8, 1, 16, 10, 0.5, 100.0, e -> e instanceof IllegalStateException);
+
+        limiter.run(() -> Mono.error(new IllegalStateException("429"))).onErrorResume(e -> Mono.empty()).block();
+        assertEquals(4, limiter.getLimit());
+
+        // 其他错误不收缩
+        limiter.run(() -> Mono.error(new IllegalArgumentException("400"))).onErrorResume(e -> Mono.empty()).block();
+        assertEquals(4, limiter.getLimit());
+
+        // 满载且延迟正常时逐步增长
+        for (int round = 0; round < 20; round++) {
+            List<Mono<String>> batch = new ArrayList<>();
+            for (int i = 0; i < limiter.getLimit(); i++) {
+                batch.add(limiter.run(() -> Mono.delay(Duration.ofMillis(1)).thenReturn("ok")));
+            }
+            Mono.when(batch).block();
+        }
+        assertTrue(limiter.getLimit() > 4, "limit=" + limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    void slowResponsesDoNotShrinkLimit() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(
+                "test", 4, 1, 16, 10, 0.5, 2.0, e -> false);
+
+        // 先建立很低的基线延迟，之后的响应明显变慢（如输出更长），限制保持不变
+        limiter.run(() -> Mono.just("fast")).block();
+        for (int i = 0; i < 10; i++) {
+            limiter.run(() -> Mono.delay(Duration.ofMillis(20)).thenReturn("slow")).block();
+        }
+        assertEquals(4, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+}
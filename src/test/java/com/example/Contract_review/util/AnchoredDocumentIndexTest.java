@@ -0,0 +1,229 @@
+package com.example.Contract_review.util;
+
+import com.example.Contract_review.model.ReviewIssue;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * AnchoredDocumentIndex 单元测试
+ */
+class AnchoredDocumentIndexTest {
+
+    private static final String W_NS = "http://schemas.openxmlformats.org/wordprocessingml/2006/main";
+
+    /**
+     * 三个段落：锚点1从段落0跨到段落1，锚点2从段落1跨到段落2；
+     * 段落0的书签起始标签前有一个属性值中含 '>' 的属性
+     */
+    private static final String DOCUMENT_XML = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+            + "<w:document xmlns:w=\"" + W_NS + "\"><w:body>"
+            + "<w:p><w:bookmarkStart w:colFirst='a>b' w:id=\"1\" w:name=\"anc-c1-0001\"/>"
+            + "<w:r><w:t>甲方应按期付款</w:t></w:r></w:p>"
+            + "<w:p><w:bookmarkEnd w:id=\"1\"/><w:bookmarkStart w:id=\"2\" w:name=\"anc-c2-0002\"/>"
+            + "<w:r><w:t>乙方应按期交付</w:t></w:r></w:p>"
+            + "<w:p><w:bookmarkEnd w:id=\"2\"/><w:r><w:t>其他约定</w:t></w:r></w:p>"
+            + "</w:body></w:document>";
+
+    @Test
+    void findsTagEndsOutsideQuotesAndMatchesBookmarkEndsAcrossParagraphs() throws Exception {
+        AnchoredDocumentIndex index = AnchoredDocumentIndex.build(docx(DOCUMENT_XML));
+        assertNotNull(index);
+        assertEquals(3, index.getParagraphs().size());
+
+        AnchoredDocumentIndex.AnchorBookmark first = index.getAnchor("anc-c1-0001");
+        assertNotNull(first);
+        assertEquals("1", first.getId());
+        assertEquals(0, first.getParagraphOrdinal());
+        String startTag = new String(index.getDocumentXml(), first.getStartTagStart(),
+                first.getStartTagEnd() - first.getStartTagStart(), StandardCharsets.UTF_8);
+        assertTrue(startTag.endsWith("w:name=\"anc-c1-0001\"/>"), startTag);
+        assertEquals(1, first.getEndParagraphOrdinal());
+
+        AnchoredDocumentIndex.AnchorBookmark second = index.getAnchor("anc-c2-0002");
+        assertEquals(1, second.getParagraphOrdinal());
+        assertEquals(2, second.getEndParagraphOrdinal());
+        assertEquals("c2", index.getParagraphs().get(1).getClauseId());
+    }
+
+    @Test
+    void cleanupRemovesBookmarkStartAndEndById() throws Exception {
+        byte[] docx = docx(DOCUMENT_XML);
+        AnchoredDocumentIndex index = AnchoredDocumentIndex.build(docx);
+        WordXmlCommentProcessor processor = new WordXmlCommentProcessor(new PreciseTextAnnotationLocator());
+        ReviewIssue issue = ReviewIssue.builder()
+                .anchorId("anc-c2-0002")
+                .clauseId("c2")
+                .severity("HIGH")
+                .category("交付")
+                .finding("交付期限不明确")
+                .suggestion("明确交付期限")
+                .targetText("按期交付")
+                .build();
+
+        WordXmlCommentProcessor.AnnotatedDocument annotated =
+                processor.annotateIndexedDocx(index, docx, List.of(issue), "preferAnchor", true);
+        assertEquals(1, annotated.getReport().getAddedCount());
+
+        String documentXml = readEntry(annotated.getDocumentBytes(), AnchoredDocumentIndex.DOCUMENT_PART);
+        assertFalse(documentXml.contains("anc-"), documentXml);
+        assertFalse(documentXml.contains("bookmarkEnd"), documentXml);
+        assertTrue(documentXml.contains("commentRangeStart"), documentXml);
+    }
+
+    @Test
+    void splicedIndexMatchesFullRebuild() throws Exception {
+        byte[] docx = docx(DOCUMENT_XML);
+        AnchoredDocumentIndex index = AnchoredDocumentIndex.build(docx);
+        WordXmlCommentProcessor processor = new WordXmlCommentProcessor(new PreciseTextAnnotationLocator());
+
+        // 两批分别修改锚点1起始段落和锚点2起止所在段落，第二批使用第一批增量更新后的索引
+        String[][] batches = {{"anc-c1-0001", "c1", "按期付款"}, {"anc-c2-0002", "c2", "按期交付"}};
+        for (String[] batch : batches) {
+            ReviewIssue issue = ReviewIssue.builder()
+                    .anchorId(batch[0])
+                    .clauseId(batch[1])
+                    .severity("HIGH")
+                    .finding("约定不明确")
+                    .targetText(batch[2])
+                    .build();
+            WordXmlCommentProcessor.AnnotatedDocument annotated =
+                    processor.annotateIndexedDocx(index, docx, List.of(issue), "preferAnchor", false);
+            assertEquals(1, annotated.getReport().getAddedCount());
+            assertNotNull(annotated.getDocumentIndex());
+
+            docx = annotated.getDocumentBytes();
+            index = annotated.getDocumentIndex();
+            AnchoredDocumentIndex rebuilt = AnchoredDocumentIndex.build(docx);
+            assertArrayEquals(rebuilt.getDocumentXml(), index.getDocumentXml());
+            assertArrayEquals(rebuilt.getEntry(AnchoredDocumentIndex.COMMENTS_PART),
+                    index.getEntry(AnchoredDocumentIndex.COMMENTS_PART));
+            assertEquals(rebuilt.getParagraphs().size(), index.getParagraphs().size());
+            for (int i = 0; i < rebuilt.getParagraphs().size(); i++) {
+                AnchoredDocumentIndex.ParagraphRange expected = rebuilt.getParagraphs().get(i);
+                AnchoredDocumentIndex.ParagraphRange actual = index.getParagraphs().get(i);
+                assertEquals(expected.getStart(), actual.getStart());
+                assertEquals(expected.getEnd(), actual.getEnd());
+                assertEquals(expected.getClauseId(), actual.getClauseId());
+            }
+            assertEquals(rebuilt.getAnchors().keySet(), index.getAnchors().keySet());
+            for (AnchoredDocumentIndex.AnchorBookmark expected : rebuilt.getAnchors().values()) {
+                AnchoredDocumentIndex.AnchorBookmark actual = index.getAnchor(expected.getName());
+                assertEquals(expected.getStartTagStart(), actual.getStartTagStart());
+                assertEquals(expected.getStartTagEnd(), actual.getStartTagEnd());
+                assertEquals(expected.getEndParagraphOrdinal(), actual.getEndParagraphOrdinal());
+                assertEquals(expected.getEndTagStart(), actual.getEndTagStart());
+                assertEquals(expected.getEndTagEnd(), actual.getEndTagEnd());
+            }
+        }
+        assertEquals(2, countOccurrences(readEntry(docx, AnchoredDocumentIndex.DOCUMENT_PART), "commentReference"));
+    }
+
+    @Test
+    void keepsOnlyEditablePartsAndCopiesOthersFromSource() throws Exception {
+        byte[] media = new byte[50_000];
+        new Random(3).nextBytes(media);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(out);
+             ZipInputStream base = new ZipInputStream(new ByteArrayInputStream(docx(DOCUMENT_XML)))) {
+            ZipEntry entry;
+            while ((entry = base.getNextEntry()) != null) {
+                zip.putNextEntry(new ZipEntry(entry.getName()));
+                zip.write(base.readAllBytes());
+                zip.closeEntry();
+            }
+            zip.putNextEntry(new ZipEntry("word/media/image1.png"));
+            zip.write(media);
+            zip.closeEntry();
+        }
+        // 只读视图（如磁盘层映射）作为源文档
+        ByteBuffer source = ByteBuffer.wrap(out.toByteArray()).asReadOnlyBuffer();
+
+        AnchoredDocumentIndex index = AnchoredDocumentIndex.build(source);
+        assertNull(index.getEntry("word/media/image1.png"));
+        assertNotNull(index.getEntry(AnchoredDocumentIndex.DOCUMENT_PART));
+        assertTrue(index.getEstimatedBytes() < media.length);
+
+        ReviewIssue issue = ReviewIssue.builder()
+                .anchorId("anc-c1-0001")
+                .clauseId("c1")
+                .severity("HIGH")
+                .finding("付款期限不明确")
+                .targetText("按期付款")
+                .build();
+        WordXmlCommentProcessor processor = new WordXmlCommentProcessor(new PreciseTextAnnotationLocator());
+        WordXmlCommentProcessor.AnnotatedDocument annotated =
+                processor.annotateIndexedDocx(index, source, List.of(issue), "preferAnchor", false);
+        assertEquals(1, annotated.getReport().getAddedCount());
+        assertEquals(0, source.position());
+
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(annotated.getDocumentBytes()))) {
+            List<String> names = new ArrayList<>();
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                names.add(entry.getName());
+                if (entry.getName().equals("word/media/image1.png")) {
+                    assertArrayEquals(media, zip.readAllBytes());
+                }
+            }
+            assertEquals(List.of(AnchoredDocumentIndex.CONTENT_TYPES_PART, AnchoredDocumentIndex.DOCUMENT_RELS_PART,
+                    AnchoredDocumentIndex.DOCUMENT_PART, "word/media/image1.png", AnchoredDocumentIndex.COMMENTS_PART), names);
+        }
+    }
+
+    private static int countOccurrences(String text, String token) {
+        int count = 0;
+        for (int i = text.indexOf(token); i >= 0; i = text.indexOf(token, i + 1)) {
+            count++;
+        }
+        return count;
+    }
+
+    private static byte[] docx(String documentXml) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(out)) {
+            putEntry(zip, AnchoredDocumentIndex.CONTENT_TYPES_PART,
+                    "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+                    + "<Types xmlns=\"http://schemas.openxmlformats.org/package/2006/content-types\">"
+                    + "<Default Extension=\"rels\" ContentType=\"application/vnd.openxmlformats-package.relationships+xml\"/>"
+                    + "<Default Extension=\"xml\" ContentType=\"application/xml\"/>"
+                    + "<Override PartName=\"/word/document.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.wordprocessingml.document.main+xml\"/>"
+                    + "</Types>");
+            putEntry(zip, AnchoredDocumentIndex.DOCUMENT_RELS_PART,
+                    "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+                    + "<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\"/>");
+            putEntry(zip, AnchoredDocumentIndex.DOCUMENT_PART, documentXml);
+        }
+        return out.toByteArray();
+    }
+
+    private static void putEntry(ZipOutputStream zip, String name, String content) throws IOException {
+        zip.putNextEntry(new ZipEntry(name));
+        zip.write(content.getBytes(StandardCharsets.UTF_8));
+        zip.closeEntry();
+    }
+
+    private static String readEntry(byte[] docx, String name) throws IOException {
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(docx))) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                if (entry.getName().equals(name)) {
+                    return new String(zip.readAllBytes(), StandardCharsets.UTF_8);
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,409 @@
+package com.example.Contract_review.util;
+
+import ch.qos.logback.classic.Level;
+import com.example.Contract_review.model.ReviewIssue;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 批注吞吐量与内存基准测试
+ *
+ * 生成带锚点合同（含表格和嵌套文本框），按问题数和三种锚点策略（anchorOnly / preferAnchor / textFallback）
+ * 分别测量两条批注路径：全量处理 addCommentsToDocx，以及基于预索引的片段拼接 annotateIndexedDocx
+ * （索引在测量前构建，与 ParseResultCache 中的用法一致）。记录耗时、分配量和峰值堆内存，
+ * 与提交在仓库中的基线对比，超出阈值即判定失败；基线中缺少的用例同样判定失败。
+ *
+ * 默认构建（mvn test）运行 10/100 页 × 10/100 个问题的小规模用例：分配量与机器无关，按 benchmark.threshold 判定；
+ * 耗时和峰值堆受机器和堆配置影响，按较宽的 benchmark.env-threshold 判定。
+ * 完整规模（含 1000 页、1000 个问题）及严格阈值使用 benchmark profile：
+ *   mvn -Pbenchmark test
+ *
+ * 可选系统属性：
+ * - benchmark.pages          页数列表，默认 10,100
+ * - benchmark.issues         问题数列表，默认 10,100
+ * - benchmark.iterations     每组测量次数，默认 3（取耗时中位数）
+ * - benchmark.threshold      分配量允许的回退比例，默认 0.30
+ * - benchmark.env-threshold  耗时和峰值堆允许的回退比例，默认 1.50（benchmark profile 中为 0.30）
+ * - benchmark.baseline       基线文件，默认 src/test/resources/benchmark/annotation-baseline.properties
+ * - benchmark.record         为 true 时将本次结果写入基线文件（更新基线后需一并提交）
+ */
+@Tag("benchmark")
+public class AnnotationBenchmarkTest {
+
+    private static final String[] STRATEGIES = {"anchorOnly", "preferAnchor", "textFallback"};
+
+    /**
+     * 每页条款数（每个条款：标题 + 3个正文段落）
+     */
+    private static final int CLAUSES_PER_PAGE = 2;
+
+    /**
+     * 耗时低于该值（毫秒）的基线不做回退判定，避免计时噪声
+     */
+    private static final double MIN_COMPARABLE_LATENCY_MS = 20;
+
+    /**
+     * 每组测量前的预热次数，小规模用例需要多次调用才能完成JIT编译
+     */
+    private static final int WARMUP_RUNS = 3;
+
+    private static final Path RESULT_FILE = Paths.get("target", "benchmark", "annotation-benchmark.csv");
+
+    @Test
+    public void benchmarkAnnotationScaling() throws Exception {
+        int[] pageCounts = intList("benchmark.pages", "10,100");
+        int[] issueCounts = intList("benchmark.issues", "10,100");
+        int iterations = Integer.getInteger("benchmark.iterations", 3);
+        double threshold = Double.parseDouble(System.getProperty("benchmark.threshold", "0.30"));
+        double envThreshold = Double.parseDouble(System.getProperty("benchmark.env-threshold", "1.50"));
+        Path baselineFile = Paths.get(System.getProperty("benchmark.baseline",
+                "src/test/resources/benchmark/annotation-baseline.properties"));
+        boolean record = Boolean.getBoolean("benchmark.record");
+
+        // 处理器按问题输出INFO日志，基准中只保留WARN以上，避免控制台输出主导耗时
+        ch.qos.logback.classic.Logger appLogger =
+                (ch.qos.logback.classic.Logger) LoggerFactory.getLogger("com.example.Contract_review");
+        Level previousLevel = appLogger.getLevel();
+        appLogger.setLevel(Level.WARN);
+
+        WordXmlCommentProcessor processor = new WordXmlCommentProcessor(new PreciseTextAnnotationLocator());
+        Map<String, Measurement> results = new LinkedHashMap<>();
+        try {
+            for (int pages : pageCounts) {
+                byte[] docx = generateDocument(pages);
+                ByteBuffer docxView = ByteBuffer.wrap(docx).asReadOnlyBuffer();
+                AnchoredDocumentIndex index = AnchoredDocumentIndex.build(docx);
+                int clauseCount = pages * CLAUSES_PER_PAGE;
+
+                for (int issueCount : issueCounts) {
+                    List<ReviewIssue> issues = generateIssues(clauseCount, issueCount, true);
+                    // 片段拼接路径：锚点均存在，问题不会整体回退到全量处理
+                    List<ReviewIssue> anchoredIssues = generateIssues(clauseCount, issueCount, false);
+
+                    for (String strategy : STRATEGIES) {
+                        String key = pages + "p." + issueCount + "i." + strategy;
+                        record(results, key, docx.length, measure(
+                                () -> processor.addCommentsToDocx(docx, issues, strategy, true), iterations));
+                        record(results, key + ".indexed", docx.length, measure(
+                                () -> processor.annotateIndexedDocx(index, docxView, anchoredIssues, strategy, true),
+                                iterations));
+                    }
+                }
+            }
+        } finally {
+            appLogger.setLevel(previousLevel);
+        }
+
+        writeResults(results);
+
+        if (record) {
+            writeBaseline(baselineFile, results);
+            System.out.println("【基准】已记录基线: " + baselineFile.toAbsolutePath());
+            return;
+        }
+        assertTrue(Files.exists(baselineFile), "基线文件不存在（使用 -Dbenchmark.record=true 记录并提交基线）: "
+                + baselineFile.toAbsolutePath());
+
+        List<String> regressions = compareWithBaseline(readBaseline(baselineFile), results, threshold, envThreshold);
+        assertTrue(regressions.isEmpty(), "批注性能回退超过阈值（分配 " + (int) (threshold * 100) + "%，耗时/峰值堆 "
+                + (int) (envThreshold * 100) + "%）:\n" + String.join("\n", regressions));
+    }
+
+    /**
+     * 被测量的批注调用
+     */
+    @FunctionalInterface
+    private interface Workload {
+        void run() throws Exception;
+    }
+
+    private void record(Map<String, Measurement> results, String key, int documentBytes, Measurement measurement) {
+        results.put(key, measurement);
+        System.out.printf("【基准】%-36s 文档=%7.1fKB 耗时=%9.1fms 分配=%9.1fMB 分配速率=%8.1fMB/s 峰值堆=%8.1fMB%n",
+                key, documentBytes / 1024.0, measurement.latencyMs, measurement.allocatedMb,
+                measurement.allocationRateMbPerSec(), measurement.peakHeapMb);
+    }
+
+    private Measurement measure(Workload workload, int iterations) throws Exception {
+        // 预热，排除类加载和JIT影响
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            workload.run();
+        }
+
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        com.sun.management.ThreadMXBean allocationBean = threadBean instanceof com.sun.management.ThreadMXBean
+                ? (com.sun.management.ThreadMXBean) threadBean : null;
+        long threadId = Thread.currentThread().getId();
+
+        double[] latencies = new double[iterations];
+        double allocatedMb = 0;
+        double peakHeapMb = 0;
+
+        for (int i = 0; i < iterations; i++) {
+            System.gc();
+            resetHeapPeaks();
+            long allocatedBefore = allocationBean != null ? allocationBean.getThreadAllocatedBytes(threadId) : 0;
+            long start = System.nanoTime();
+
+            workload.run();
+
+            latencies[i] = (System.nanoTime() - start) / 1_000_000.0;
+            if (allocationBean != null) {
+                allocatedMb += (allocationBean.getThreadAllocatedBytes(threadId) - allocatedBefore) / 1048576.0;
+            }
+            peakHeapMb = Math.max(peakHeapMb, heapPeakBytes() / 1048576.0);
+        }
+
+        Arrays.sort(latencies);
+        return new Measurement(latencies[iterations / 2], allocatedMb / iterations, peakHeapMb);
+    }
+
+    private void resetHeapPeaks() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    private long heapPeakBytes() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    private List<String> compareWithBaseline(Properties baseline, Map<String, Measurement> results,
+                                             double threshold, double envThreshold) {
+        List<String> regressions = new ArrayList<>();
+        for (Map.Entry<String, Measurement> entry : results.entrySet()) {
+            String key = entry.getKey();
+            Measurement current = entry.getValue();
+
+            if (baseline.getProperty(key + ".allocatedMb") == null) {
+                regressions.add(key + " 没有基线（使用 -Dbenchmark.record=true 记录并提交基线）");
+                continue;
+            }
+            double baseLatency = baselineValue(baseline, key + ".latencyMs");
+            if (baseLatency >= MIN_COMPARABLE_LATENCY_MS && current.latencyMs > baseLatency * (1 + envThreshold)) {
+                regressions.add(String.format("%s 耗时 %.1fms（基线 %.1fms）", key, current.latencyMs, baseLatency));
+            }
+            double baseAllocated = baselineValue(baseline, key + ".allocatedMb");
+            if (baseAllocated > 0 && current.allocatedMb > baseAllocated * (1 + threshold)) {
+                regressions.add(String.format("%s 分配 %.1fMB（基线 %.1fMB）", key, current.allocatedMb, baseAllocated));
+            }
+            double basePeak = baselineValue(baseline, key + ".peakHeapMb");
+            if (basePeak > 0 && current.peakHeapMb > basePeak * (1 + envThreshold)) {
+                regressions.add(String.format("%s 峰值堆 %.1fMB（基线 %.1fMB）", key, current.peakHeapMb, basePeak));
+            }
+        }
+        return regressions;
+    }
+
+    private double baselineValue(Properties baseline, String key) {
+        String value = baseline.getProperty(key);
+        return value != null ? Double.parseDouble(value) : -1;
+    }
+
+    private Properties readBaseline(Path file) throws IOException {
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(file)) {
+            properties.load(in);
+        }
+        return properties;
+    }
+
+    private void writeBaseline(Path file, Map<String, Measurement> results) throws IOException {
+        Properties properties = file.toFile().exists() ? readBaseline(file) : new Properties();
+        for (Map.Entry<String, Measurement> entry : results.entrySet()) {
+            Measurement m = entry.getValue();
+            properties.setProperty(entry.getKey() + ".latencyMs", String.format("%.1f", m.latencyMs));
+            properties.setProperty(entry.getKey() + ".allocatedMb", String.format("%.1f", m.allocatedMb));
+            properties.setProperty(entry.getKey() + ".peakHeapMb", String.format("%.1f", m.peakHeapMb));
+        }
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        // 按键排序写出，重新记录后的基线差异便于审阅
+        List<String> lines = new ArrayList<>();
+        lines.add("# addCommentsToDocx / annotateIndexedDocx benchmark baseline");
+        new TreeMap<>(properties).forEach((key, value) -> lines.add(key + "=" + value));
+        Files.write(file, lines, StandardCharsets.ISO_8859_1);
+    }
+
+    private void writeResults(Map<String, Measurement> results) throws IOException {
+        StringBuilder csv = new StringBuilder("case,latencyMs,allocatedMb,allocationRateMbPerSec,peakHeapMb\n");
+        for (Map.Entry<String, Measurement> entry : results.entrySet()) {
+            Measurement m = entry.getValue();
+            csv.append(String.format("%s,%.1f,%.1f,%.1f,%.1f%n", entry.getKey(), m.latencyMs, m.allocatedMb,
+                    m.allocationRateMbPerSec(), m.peakHeapMb));
+        }
+        Files.createDirectories(RESULT_FILE.getParent());
+        Files.write(RESULT_FILE, csv.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 生成带锚点的合同文档
+     *
+     * 每页2个条款（标题带 anc- 书签 + 3个分成多个run的正文段落），
+     * 每2页一个3x3表格，每5页一个两层嵌套文本框
+     */
+    static byte[] generateDocument(int pages) throws IOException {
+        StringBuilder body = new StringBuilder(pages * 4096);
+        int clauseNo = 0;
+        for (int page = 1; page <= pages; page++) {
+            for (int c = 0; c < CLAUSES_PER_PAGE; c++) {
+                clauseNo++;
+                body.append("<w:p><w:bookmarkStart w:id=\"").append(clauseNo).append("\" w:name=\"anc-c")
+                    .append(clauseNo).append("-").append(Integer.toHexString(clauseNo * 2654435 & 0xffff))
+                    .append("\"/><w:r><w:t>第").append(clauseNo).append("条 合同条款").append(clauseNo)
+                    .append("</w:t></w:r><w:bookmarkEnd w:id=\"").append(clauseNo).append("\"/></w:p>");
+                for (int p = 1; p <= 3; p++) {
+                    body.append("<w:p><w:r><w:t xml:space=\"preserve\">").append(bodyTextHead(clauseNo, p))
+                        .append("</w:t></w:r><w:r><w:rPr><w:b/></w:rPr><w:t xml:space=\"preserve\">")
+                        .append(bodyTextTail(clauseNo, p)).append("</w:t></w:r></w:p>");
+                }
+            }
+            if (page % 2 == 0) {
+                body.append("<w:tbl><w:tblPr><w:tblW w:w=\"0\" w:type=\"auto\"/></w:tblPr>");
+                for (int row = 1; row <= 3; row++) {
+                    body.append("<w:tr>");
+                    for (int col = 1; col <= 3; col++) {
+                        body.append("<w:tc><w:p><w:r><w:t>第").append(page).append("页表格 ")
+                            .append(row).append("-").append(col).append(" 单价：").append(row * col * 100)
+                            .append("元</w:t></w:r></w:p></w:tc>");
+                    }
+                    body.append("</w:tr>");
+                }
+                body.append("</w:tbl>");
+            }
+            if (page % 5 == 0) {
+                body.append("<w:p><w:r><w:t>附注</w:t></w:r><w:r><w:pict><v:shape style=\"width:300pt;height:120pt\">")
+                    .append("<v:textbox><w:txbxContent><w:p><w:r><w:t>第").append(page)
+                    .append("页外层文本框说明</w:t></w:r></w:p><w:p><w:r><w:pict><v:shape style=\"width:200pt;height:60pt\">")
+                    .append("<v:textbox><w:txbxContent><w:p><w:r><w:t>内层文本框：以上条款解释权归双方共同所有</w:t></w:r></w:p>")
+                    .append("</w:txbxContent></v:textbox></v:shape></w:pict></w:r></w:p>")
+                    .append("</w:txbxContent></v:textbox></v:shape></w:pict></w:r></w:p>");
+            }
+            body.append("<w:p><w:r><w:br w:type=\"page\"/></w:r></w:p>");
+        }
+
+        String documentXml = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>"
+                + "<w:document xmlns:w=\"http://schemas.openxmlformats.org/wordprocessingml/2006/main\""
+                + " xmlns:r=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships\""
+                + " xmlns:v=\"urn:schemas-microsoft-com:vml\"><w:body>" + body + "<w:sectPr/></w:body></w:document>";
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(out)) {
+            putEntry(zip, "[Content_Types].xml", "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>"
+                    + "<Types xmlns=\"http://schemas.openxmlformats.org/package/2006/content-types\">"
+                    + "<Default Extension=\"rels\" ContentType=\"application/vnd.openxmlformats-package.relationships+xml\"/>"
+                    + "<Default Extension=\"xml\" ContentType=\"application/xml\"/>"
+                    + "<Override PartName=\"/word/document.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.wordprocessingml.document.main+xml\"/>"
+                    + "</Types>");
+            putEntry(zip, "_rels/.rels", "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>"
+                    + "<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">"
+                    + "<Relationship Id=\"rId1\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/officeDocument\" Target=\"word/document.xml\"/>"
+                    + "</Relationships>");
+            putEntry(zip, "word/_rels/document.xml.rels", "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>"
+                    + "<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\"></Relationships>");
+            putEntry(zip, "word/document.xml", documentXml);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * 生成审查问题：80%锚点段落精确文字、10%在条款后续段落、10%锚点缺失仅有条款号
+     *
+     * @param withMissingAnchors 为 false 时锚点缺失的问题改用正确锚点（片段拼接路径不整体回退）
+     */
+    static List<ReviewIssue> generateIssues(int clauseCount, int issueCount, boolean withMissingAnchors) {
+        List<ReviewIssue> issues = new ArrayList<>(issueCount);
+        for (int i = 0; i < issueCount; i++) {
+            int clauseNo = (int) ((long) i * clauseCount / issueCount) + 1;
+            String anchorId = "anc-c" + clauseNo + "-" + Integer.toHexString(clauseNo * 2654435 & 0xffff);
+            int paragraph = 1;
+            if (i % 10 == 8) {
+                paragraph = 3;
+            } else if (i % 10 == 9 && withMissingAnchors) {
+                anchorId = "anc-c" + clauseNo + "-missing";
+            }
+            issues.add(ReviewIssue.builder()
+                    .anchorId(anchorId)
+                    .clauseId("c" + clauseNo)
+                    .severity(i % 3 == 0 ? "HIGH" : "MEDIUM")
+                    .category("付款条款")
+                    .finding("第" + clauseNo + "条付款期限约定不明确")
+                    .suggestion("建议明确付款期限及逾期责任")
+                    .targetText(bodyTextHead(clauseNo, paragraph).substring(2))
+                    .build());
+        }
+        return issues;
+    }
+
+    private static String bodyTextHead(int clauseNo, int paragraph) {
+        return paragraph + "、甲方应在收到乙方发票后" + (clauseNo % 30 + paragraph) + "个工作日内";
+    }
+
+    private static String bodyTextTail(int clauseNo, int paragraph) {
+        return "支付第" + clauseNo + "期合同价款的" + (clauseNo % 50 + paragraph) + "%，逾期按日万分之五计付违约金。";
+    }
+
+    private static void putEntry(ZipOutputStream zip, String name, String content) throws IOException {
+        zip.putNextEntry(new ZipEntry(name));
+        zip.write(content.getBytes(StandardCharsets.UTF_8));
+        zip.closeEntry();
+    }
+
+    private static int[] intList(String property, String defaultValue) {
+        return Arrays.stream(System.getProperty(property, defaultValue).split(","))
+                .map(String::trim)
+                .filter(s -> !s.isEmpty())
+                .mapToInt(Integer::parseInt)
+                .toArray();
+    }
+
+    private static final class Measurement {
+        final double latencyMs;
+        final double allocatedMb;
+        final double peakHeapMb;
+
+        Measurement(double latencyMs, double allocatedMb, double peakHeapMb) {
+            this.latencyMs = latencyMs;
+            this.allocatedMb = allocatedMb;
+            this.peakHeapMb = peakHeapMb;
+        }
+
+        double allocationRateMbPerSec() {
+            return latencyMs > 0 ? allocatedMb * 1000 / latencyMs : 0;
+        }
+    }
+}
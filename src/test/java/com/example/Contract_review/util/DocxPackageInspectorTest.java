@@ -0,0 +1,104 @@
+package com.example.Contract_review.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * DocxPackageInspector 单元测试
+ */
+class DocxPackageInspectorTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static final String EMPTY_COMMENTS =
+            "<?xml version=\"1.0\"?><w:comments xmlns:w=\"http://schemas.openxmlformats.org/wordprocessingml/2006/main\"/>";
+    private static final String ONE_COMMENT =
+            "<?xml version=\"1.0\"?><w:comments xmlns:w=\"http://schemas.openxmlformats.org/wordprocessingml/2006/main\">"
+            + "<w:comment w:id=\"1\" w:author=\"AI\"><w:p/></w:comment></w:comments>";
+
+    @Test
+    void readsPartsFromCentralDirectoryAndInflatesOnlyRequestedPart() throws Exception {
+        byte[] media = new byte[200_000];
+        new Random(1).nextBytes(media);
+        byte[] docx = zip(
+                new Object[]{"word/document.xml", "<w:document/>".getBytes(StandardCharsets.UTF_8), true},
+                new Object[]{"word/media/image1.png", media, false},
+                new Object[]{"word/comments.xml", ONE_COMMENT.getBytes(StandardCharsets.UTF_8), true});
+
+        DocxPackageInspector inspector = DocxPackageInspector.of(docx);
+        assertTrue(inspector.hasPart("word/document.xml"));
+        assertTrue(inspector.hasPart("/word/comments.xml"));
+        assertFalse(inspector.hasPart("word/_rels/document.xml.rels"));
+        assertEquals(media.length, inspector.getPartSize("word/media/image1.png"));
+        assertEquals(-1, inspector.getPartSize("word/missing.xml"));
+        assertArrayEquals(media, inspector.readPart("word/media/image1.png"));
+        assertEquals("<w:document/>", new String(inspector.readPart("word/document.xml"), StandardCharsets.UTF_8));
+        assertTrue(inspector.hasComments());
+        assertThrows(ZipException.class, () -> inspector.openPart("word/missing.xml"));
+
+        // 按范围读取：检查批注不读取图片数据
+        AtomicLong bytesRead = new AtomicLong();
+        DocxPackageInspector ranged = DocxPackageInspector.open(docx.length, (offset, length) -> {
+            bytesRead.addAndGet(length);
+            return ByteBuffer.wrap(Arrays.copyOfRange(docx, (int) offset, (int) offset + length));
+        });
+        assertTrue(ranged.hasComments());
+        assertTrue(bytesRead.get() < 100_000, "读取了 " + bytesRead.get() + " 字节");
+    }
+
+    @Test
+    void emptyCommentsPartHasNoComments() throws Exception {
+        byte[] docx = zip(
+                new Object[]{"word/document.xml", "<w:document/>".getBytes(StandardCharsets.UTF_8), true},
+                new Object[]{"word/comments.xml", EMPTY_COMMENTS.getBytes(StandardCharsets.UTF_8), true});
+        Path file = tempDir.resolve("a.docx");
+        Files.write(file, docx);
+
+        DocxPackageInspector inspector = DocxPackageInspector.map(file);
+        assertTrue(inspector.hasPart("word/comments.xml"));
+        assertFalse(inspector.hasComments());
+        assertFalse(DocxPackageInspector.of(zip(
+                new Object[]{"word/document.xml", new byte[0], true})).hasComments());
+
+        assertThrows(ZipException.class, () -> DocxPackageInspector.of("not a zip".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static byte[] zip(Object[]... entries) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(out)) {
+            for (Object[] entry : entries) {
+                byte[] data = (byte[]) entry[1];
+                ZipEntry zipEntry = new ZipEntry((String) entry[0]);
+                if (!(Boolean) entry[2]) {
+                    CRC32 crc = new CRC32();
+                    crc.update(data);
+                    zipEntry.setMethod(ZipEntry.STORED);
+                    zipEntry.setSize(data.length);
+                    zipEntry.setCompressedSize(data.length);
+                    zipEntry.setCrc(crc.getValue());
+                }
+                zip.putNextEntry(zipEntry);
+                zip.write(data);
+                zip.closeEntry();
+            }
+        }
+        return out.toByteArray();
+    }
+}
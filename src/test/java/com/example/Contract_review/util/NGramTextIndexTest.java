@@ -0,0 +1,96 @@
+package com.example.Contract_review.util;
+
+import org.dom4j.DocumentHelper;
+import org.dom4j.Element;
+import org.dom4j.Namespace;
+import org.dom4j.QName;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * NGramTextIndex 单元测试
+ */
+public class NGramTextIndexTest {
+
+    private static final Namespace W_NS =
+            Namespace.get("w", "http://schemas.openxmlformats.org/wordprocessingml/2006/main");
+
+    private final PreciseTextAnnotationLocator locator = new PreciseTextAnnotationLocator();
+
+    private List<Element> paragraphs;
+
+    @BeforeEach
+    public void setUp() {
+        Element body = DocumentHelper.createDocument().addElement(QName.get("body", W_NS));
+        paragraphs = new ArrayList<>();
+        paragraphs.add(addParagraph(body, "anc-c1-1a2b", "第一条 合同标的"));
+        paragraphs.add(addParagraph(body, null, "乙方应于合同签订后十五日内交付全部货物。"));
+        paragraphs.add(addParagraph(body, "anc-c2-3c4d", "第二条 违约责任"));
+        paragraphs.add(addParagraph(body, null, "乙方逾期交付的，每日按合同总价的千分之五支付违约金。"));
+        paragraphs.add(addParagraph(body, "anc-c3-5e6f", "第三条 其他"));
+        paragraphs.add(addParagraph(body, null, "乙方逾期交付的，每日按合同总价的千分之五支付违约金。"));
+    }
+
+    @Test
+    public void testExactMatchInNeighbourParagraph() {
+        NGramTextIndex index = NGramTextIndex.build(paragraphs, locator::getParagraphText);
+
+        NGramTextIndex.Match match = index.search("十五日内交付全部货物", "c1", 0, false);
+
+        assertNotNull(match, "应在锚点后续段落中找到完全一致的文字");
+        assertEquals(1, match.getParagraphIndex());
+        assertEquals(0, match.getDistance());
+        assertEquals("十五日内交付全部货物",
+                locator.getParagraphText(match.getParagraph()).substring(match.getStart(), match.getEnd()));
+    }
+
+    @Test
+    public void testFuzzyMatchPrefersClauseRange() {
+        NGramTextIndex index = NGramTextIndex.build(paragraphs, locator::getParagraphText);
+
+        // LLM改写了一个字，且相同文字同时出现在c2和c3
+        NGramTextIndex.Match match = index.search("每日按合同总额的千分之五支付违约金", "c3", -1, true);
+
+        assertNotNull(match, "应通过编辑距离找到近似位置");
+        assertEquals(5, match.getParagraphIndex(), "应优先选择问题所属条款内的位置");
+        assertTrue(match.isInClauseRange());
+        assertEquals(1, match.getDistance());
+    }
+
+    @Test
+    public void testFuzzyDisabledRejectsParaphrase() {
+        NGramTextIndex index = NGramTextIndex.build(paragraphs, locator::getParagraphText);
+
+        assertNull(index.search("每日按合同总额的千分之五支付违约金", "c2", 2, false));
+        assertNull(index.search("不可抗力导致的延期", "c2", 2, true), "无关文字不应命中");
+    }
+
+    @Test
+    public void testLocateRangeMapsToRuns() {
+        NGramTextIndex index = NGramTextIndex.build(paragraphs, locator::getParagraphText);
+
+        NGramTextIndex.Match match = index.search("千分之五", "c2", 2, false);
+        TextMatchResult result = locator.locateRange(match.getParagraph(), match.getStart(), match.getEnd());
+
+        assertNotNull(result);
+        assertTrue(result.isSingleRun());
+        assertEquals(match.getStart(), result.getStartOffsetInRun());
+    }
+
+    private Element addParagraph(Element body, String bookmarkName, String text) {
+        Element paragraph = body.addElement(QName.get("p", W_NS));
+        if (bookmarkName != null) {
+            Element bookmark = paragraph.addElement(QName.get("bookmarkStart", W_NS));
+            bookmark.addAttribute(QName.get("name", W_NS), bookmarkName);
+        }
+        paragraph.addElement(QName.get("r", W_NS))
+                .addElement(QName.get("t", W_NS))
+                .setText(text);
+        return paragraph;
+    }
+}
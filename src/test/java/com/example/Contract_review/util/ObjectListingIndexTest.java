@@ -0,0 +1,100 @@
+package com.example.Contract_review.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ObjectListingIndex 单元测试
+ */
+class ObjectListingIndexTest {
+
+    @Test
+    void pagesByNameAndByTimeWithinPrefix() {
+        ObjectListingIndex index = new ObjectListingIndex();
+        index.put(new ObjectListingIndex.Entry("contracts/a.docx", 1, 100, "e1"));
+        index.put(new ObjectListingIndex.Entry("reports/a.docx", 1, 300, "e2"));
+        index.put(new ObjectListingIndex.Entry("reports/b.docx", 1, 200, "e3"));
+        index.put(new ObjectListingIndex.Entry("reports/c.docx", 1, 400, "e4"));
+
+        ObjectListingIndex.Page first = index.page("reports/", null, 2, false);
+        assertEquals(List.of("reports/a.docx", "reports/b.docx"), names(first));
+        ObjectListingIndex.Page second = index.page("reports/", first.getNextCursor(), 2, false);
+        assertEquals(List.of("reports/c.docx"), names(second));
+        assertNull(second.getNextCursor());
+
+        ObjectListingIndex.Page newest = index.page("reports/", null, 2, true);
+        assertEquals(List.of("reports/c.docx", "reports/a.docx"), names(newest));
+        assertEquals(List.of("reports/b.docx"), names(index.page("reports/", newest.getNextCursor(), 2, true)));
+
+        // 更新修改时间后按时间排序的位置随之变化
+        index.put(new ObjectListingIndex.Entry("reports/b.docx", 2, 500, "e5"));
+        assertEquals("reports/b.docx", names(index.page("", null, 1, true)).get(0));
+
+        assertThrows(IllegalArgumentException.class, () -> index.page("", first.getNextCursor(), 2, true));
+    }
+
+    @Test
+    void reconcileAddsMissingAndRemovesDeletedEntries() {
+        ObjectListingIndex index = new ObjectListingIndex();
+        index.put(new ObjectListingIndex.Entry("reports/stale.docx", 1, 100, "e1"));
+        assertFalse(index.isReady());
+
+        // 对账前写入的条目若不在列表中则删除
+        try {
+            Thread.sleep(2);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        int count = index.reconcile(List.of(
+                new ObjectListingIndex.Entry("reports/new.docx", 5, 200, "e2"),
+                new ObjectListingIndex.Entry("contracts/x.docx", 6, 150, "e3")));
+
+        assertEquals(2, count);
+        assertTrue(index.isReady());
+        assertNull(index.get("reports/stale.docx"));
+        assertEquals(5, index.get("reports/new.docx").getSize());
+        assertEquals(List.of("reports/new.docx", "contracts/x.docx"), names(index.page(null, null, 10, true)));
+
+        index.remove("reports/new.docx");
+        assertEquals(List.of("contracts/x.docx"), names(index.page(null, null, 10, true)));
+    }
+
+    @Test
+    void excludesInternalObjectsAndPagesByTimeAcrossMatchingFolders() {
+        ObjectListingIndex index = new ObjectListingIndex(
+                name -> name.startsWith("anchored/") || name.endsWith(".ref.json") || name.contains(".parts/"));
+        index.put(new ObjectListingIndex.Entry("anchored/id/source.docx", 1, 900, "e0"));
+        index.put(new ObjectListingIndex.Entry("reports/a.docx.parts/u/1", 1, 800, "e1"));
+        index.put(new ObjectListingIndex.Entry("report-root.docx", 1, 300, "e2"));
+        index.put(new ObjectListingIndex.Entry("reports/a.docx", 1, 500, "e3"));
+        index.put(new ObjectListingIndex.Entry("reports2/b.docx", 1, 400, "e4"));
+        index.put(new ObjectListingIndex.Entry("contracts/c.docx", 1, 700, "e5"));
+        index.reconcile(List.of(
+                new ObjectListingIndex.Entry("contracts/c.docx", 1, 700, "e5"),
+                new ObjectListingIndex.Entry("contracts/c.docx.ref.json", 1, 600, "e6"),
+                new ObjectListingIndex.Entry("reports/a.docx", 1, 500, "e3"),
+                new ObjectListingIndex.Entry("reports2/b.docx", 1, 400, "e4"),
+                new ObjectListingIndex.Entry("report-root.docx", 1, 300, "e2")));
+
+        assertEquals(4, index.size());
+        assertNull(index.get("anchored/id/source.docx"));
+        assertNull(index.get("contracts/c.docx.ref.json"));
+
+        // 前缀不带目录：归并 reports、reports2 目录和根目录中匹配的对象
+        ObjectListingIndex.Page first = index.page("report", null, 2, true);
+        assertEquals(List.of("reports/a.docx", "reports2/b.docx"), names(first));
+        ObjectListingIndex.Page second = index.page("report", first.getNextCursor(), 2, true);
+        assertEquals(List.of("report-root.docx"), names(second));
+        assertNull(second.getNextCursor());
+        assertEquals(List.of("contracts/c.docx", "reports/a.docx", "reports2/b.docx", "report-root.docx"),
+                names(index.page("", null, 10, true)));
+    }
+
+    private static List<String> names(ObjectListingIndex.Page page) {
+        return page.getItems().stream().map(ObjectListingIndex.Entry::getName).collect(Collectors.toList());
+    }
+}
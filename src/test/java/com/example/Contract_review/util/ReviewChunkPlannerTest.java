@@ -0,0 +1,63 @@
+package com.example.Contract_review.util;
+
+import com.example.Contract_review.model.RuleMatchResult;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReviewChunkPlannerTest {
+
+    @Test
+    void estimatesChineseByCharacterAndAsciiByWord() {
+        assertEquals(0, TokenEstimator.estimate(""));
+        assertEquals(4, TokenEstimator.estimate("违约责任"));
+        assertEquals(2, TokenEstimator.estimate("contract"));
+        assertEquals(9, TokenEstimator.estimate("甲方应于 30 日内付款"));
+    }
+
+    @Test
+    void packsClausesInOrderWithinBudget() {
+        List<RuleMatchResult> matches = new ArrayList<>();
+        int[] sizes = {40, 30, 50, 20, 10, 120, 5};
+        for (int i = 0; i < sizes.length; i++) {
+            matches.add(RuleMatchResult.builder().clauseId("c" + (i + 1)).matchCount(sizes[i]).build());
+        }
+
+        List<ReviewChunkPlanner.ReviewChunk> chunks =
+                ReviewChunkPlanner.plan(matches, RuleMatchResult::getMatchCount, 100);
+
+        // [40,30] [50,20,10] [120] [5]：超预算的条款独占一块，不拆分
+        assertEquals(4, chunks.size());
+        assertEquals(70, chunks.get(0).getEstimatedTokens());
+        assertEquals(3, chunks.get(1).getMatchResults().size());
+        assertEquals("c6", chunks.get(2).getMatchResults().get(0).getClauseId());
+        assertEquals(120, chunks.get(2).getEstimatedTokens());
+
+        int next = 1;
+        for (ReviewChunkPlanner.ReviewChunk chunk : chunks) {
+            assertTrue(chunk.getEstimatedTokens() <= 100 || chunk.getMatchResults().size() == 1);
+            for (RuleMatchResult match : chunk.getMatchResults()) {
+                assertEquals("c" + next++, match.getClauseId());
+            }
+        }
+    }
+
+    @Test
+    void nonPositiveBudgetKeepsSingleChunk() {
+        List<RuleMatchResult> matches = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            matches.add(RuleMatchResult.builder().clauseId("c" + i).matchCount(1000).build());
+        }
+
+        List<ReviewChunkPlanner.ReviewChunk> chunks =
+                ReviewChunkPlanner.plan(matches, RuleMatchResult::getMatchCount, 0);
+
+        assertEquals(1, chunks.size());
+        assertEquals(5000, chunks.get(0).getEstimatedTokens());
+        assertTrue(ReviewChunkPlanner.plan(new ArrayList<>(), RuleMatchResult::getMatchCount, 100).isEmpty());
+    }
+}
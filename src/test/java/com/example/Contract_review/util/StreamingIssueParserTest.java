@@ -0,0 +1,68 @@
+package com.example.Contract_review.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StreamingIssueParserTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void emitsEachIssueAsSoonAsItCloses() {
+        String response = "好的，以下是审查结果：\n```json\n{\"issues\": [" +
+                "{\"clauseId\": \"c1\", \"anchorId\": \"anc-c1-4f21\", \"finding\": \"违约金比例过高{30%}\", " +
+                "\"tags\": [\"违约\", {\"k\": 1}], \"score\": 0.8}," +
+                "{\"clauseId\": \"c2\", \"targetText\": \"甲方应于\\\"30日\\\"内付款\", \"finding\": \"付款期限不明确\"}" +
+                "], \"summary\": {\"issues\": [\"ignored\"]}}\n```\n以上。";
+
+        StreamingIssueParser parser = new StreamingIssueParser(objectMapper);
+        List<ObjectNode> issues = new ArrayList<>();
+        int firstIssueAt = -1;
+        for (int i = 0; i < response.length(); i += 3) {
+            issues.addAll(parser.feed(response.substring(i, Math.min(response.length(), i + 3))));
+            if (firstIssueAt < 0 && !issues.isEmpty()) {
+                firstIssueAt = i;
+            }
+        }
+
+        assertEquals(2, issues.size());
+        assertTrue(parser.isFinished());
+        assertFalse(parser.isFailed());
+        assertTrue(firstIssueAt < response.indexOf("\"c2\""), "第一个问题应在第二个问题开始前发出");
+        assertEquals("违约金比例过高{30%}", issues.get(0).get("finding").asText());
+        assertEquals(1, issues.get(0).get("tags").get(1).get("k").asInt());
+        assertEquals(0.8, issues.get(0).get("score").asDouble());
+        assertEquals("甲方应于\"30日\"内付款", issues.get(1).get("targetText").asText());
+        assertEquals(response, parser.getText());
+    }
+
+    @Test
+    void acceptsBareArray() {
+        StreamingIssueParser parser = new StreamingIssueParser(objectMapper);
+        List<ObjectNode> issues = new ArrayList<>(parser.feed("[{\"finding\": \"a\"}, {\"find"));
+        assertEquals(1, issues.size());
+        issues.addAll(parser.feed("ing\": \"b\"}]"));
+        assertEquals(2, issues.size());
+        assertTrue(parser.isFinished());
+    }
+
+    @Test
+    void stopsOnMalformedInputAndKeepsText() {
+        StreamingIssueParser parser = new StreamingIssueParser(objectMapper);
+        List<ObjectNode> issues = new ArrayList<>(parser.feed("{\"issues\": [{\"finding\": \"a\"}, {finding: b}]}"));
+
+        assertEquals(1, issues.size());
+        assertTrue(parser.isFailed());
+        assertFalse(parser.isFinished());
+        assertTrue(parser.feed("更多内容").isEmpty());
+        assertTrue(parser.getText().endsWith("更多内容"));
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.Contract_review.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * WeightedLruCache 单元测试
+ */
+class WeightedLruCacheTest {
+
+    @Test
+    void evictsLeastRecentlyUsedByWeightAndRejectsOversizeEntries() {
+        WeightedLruCache<String, byte[]> cache = new WeightedLruCache<>(100, 0, value -> value.length);
+        cache.put("a", new byte[40]);
+        cache.put("b", new byte[40]);
+        assertNotNull(cache.get("a"));
+
+        cache.put("c", new byte[40]);
+
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("a"));
+        assertNotNull(cache.get("c"));
+        assertEquals(80, cache.weight());
+
+        assertFalse(cache.put("huge", new byte[101]));
+        assertEquals(2, cache.size());
+
+        Map<String, Object> stats = cache.getStats();
+        assertEquals(1L, stats.get("evictions"));
+        assertEquals(1L, stats.get("rejectedOversize"));
+        assertEquals(3L, stats.get("hits"));
+        assertEquals(1L, stats.get("misses"));
+    }
+
+    @Test
+    void expiresEntriesAfterTtl() throws Exception {
+        WeightedLruCache<String, String> cache = new WeightedLruCache<>(1000, 1, String::length);
+        cache.put("page_1", "x");
+        cache.put("page_2", "y");
+        Thread.sleep(5);
+
+        assertNull(cache.peek("page_1"));
+        assertNull(cache.get("page_1"));
+        assertEquals(1, cache.cleanupExpired());
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.weight());
+        assertEquals(2L, cache.getStats().get("expirations"));
+    }
+}
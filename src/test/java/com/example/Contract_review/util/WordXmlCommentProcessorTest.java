@@ -0,0 +1,194 @@
+package com.example.Contract_review.util;
+
+import com.example.Contract_review.model.AnnotationReport;
+import com.example.Contract_review.model.ReviewIssue;
+import org.dom4j.Document;
+import org.dom4j.Element;
+import org.dom4j.io.SAXReader;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * WordXmlCommentProcessor 单元测试
+ */
+class WordXmlCommentProcessorTest {
+
+    private static final String W_NS = "http://schemas.openxmlformats.org/wordprocessingml/2006/main";
+
+    /**
+     * 段落0：匹配文字位于中间Run内（前后都有文字，其后还有一个Run）；
+     * 段落1：匹配文字位于段落最后一个Run的末尾
+     */
+    private static final String PARAGRAPHS = "<w:p><w:bookmarkStart w:id=\"1\" w:name=\"anc-c1-0001\"/><w:bookmarkEnd w:id=\"1\"/>"
+            + "<w:r><w:t>第一条 </w:t></w:r>"
+            + "<w:r><w:t>甲方应按期付款给乙方</w:t></w:r>"
+            + "<w:r><w:t>，否则承担违约责任。</w:t></w:r></w:p>"
+            + "<w:p><w:bookmarkStart w:id=\"2\" w:name=\"anc-c2-0002\"/><w:bookmarkEnd w:id=\"2\"/>"
+            + "<w:r><w:t>第二条 </w:t></w:r>"
+            + "<w:r><w:t>乙方应按期交付</w:t></w:r></w:p>";
+
+    private final WordXmlCommentProcessor processor = new WordXmlCommentProcessor(new PreciseTextAnnotationLocator());
+
+    @Test
+    void insertsRangeEndDirectlyAfterSplitRunAndReportsCounts() throws Exception {
+        List<ReviewIssue> issues = List.of(
+                issue("anc-c1-0001", "c1", "按期付款"),
+                issue("anc-c2-0002", "c2", "按期交付"),
+                issue("anc-c9-missing", "c9", null));
+
+        WordXmlCommentProcessor.AnnotatedDocument annotated =
+                processor.annotateDocx(docx(PARAGRAPHS), issues, "anchorOnly", false);
+
+        List<Element> paragraphs = body(annotated.getDocumentBytes()).elements("p");
+        assertRangeWrapsOnly(paragraphs.get(0), "1", "按期付款");
+        assertRangeWrapsOnly(paragraphs.get(1), "2", "按期交付");
+
+        // 中间Run分割后：后缀Run和原来的下一个Run都在批注范围之外
+        List<Element> first = paragraphs.get(0).elements();
+        int end = indexOf(first, "commentRangeEnd");
+        assertEquals("给乙方", runText(first.get(end + 1)));
+        assertTrue(texts(first).contains("，否则承担违约责任。"));
+
+        AnnotationReport report = annotated.getReport();
+        assertEquals("xml", report.getMode());
+        assertEquals(3, report.getRequestedCount());
+        assertEquals(2, report.getAddedCount());
+        assertEquals(1, report.getFailedCount());
+        assertEquals(2, report.getCommentRangeStartCount());
+        assertEquals(2, report.getCommentRangeEndCount());
+        assertEquals(2, report.getCommentReferenceCount());
+        assertEquals(2, report.getCommentCount());
+        assertTrue(report.isConsistent());
+        assertTrue(report.getInconsistentCommentIds().isEmpty());
+        assertFalse(report.isFullScanVerified());
+    }
+
+    @Test
+    void fullScanReportsIdsWithDuplicateMarkers() throws Exception {
+        ReflectionTestUtils.setField(processor, "fullScanVerification", true);
+        // 文档中已有一个与新批注ID相同的孤立 commentRangeEnd
+        String documentBody = PARAGRAPHS + "<w:p><w:commentRangeEnd w:id=\"2\"/><w:r><w:t>其他约定</w:t></w:r></w:p>";
+
+        AnnotationReport report = processor.annotateDocx(docx(documentBody), List.of(
+                issue("anc-c1-0001", "c1", "按期付款"),
+                issue("anc-c2-0002", "c2", "按期交付")), "anchorOnly", false).getReport();
+
+        assertTrue(report.isFullScanVerified());
+        assertEquals(2, report.getAddedCount());
+        assertFalse(report.isConsistent());
+        assertEquals(List.of(2), report.getInconsistentCommentIds());
+    }
+
+    /**
+     * 段落中恰好一个批注范围：commentRangeStart 紧接在匹配Run之前，commentRangeEnd 紧接在匹配Run之后
+     */
+    private static void assertRangeWrapsOnly(Element paragraph, String id, String matched) {
+        List<Element> elements = paragraph.elements();
+        assertEquals(1, elements.stream().filter(e -> "commentRangeStart".equals(e.getName())).count(),
+                paragraph.asXML());
+        assertEquals(1, elements.stream().filter(e -> "commentRangeEnd".equals(e.getName())).count(),
+                paragraph.asXML());
+
+        int start = indexOf(elements, "commentRangeStart");
+        int end = indexOf(elements, "commentRangeEnd");
+        assertEquals(id, elements.get(start).attributeValue("id"));
+        assertEquals(id, elements.get(end).attributeValue("id"));
+        assertEquals(start + 2, end, paragraph.asXML());
+        assertEquals(matched, runText(elements.get(start + 1)));
+    }
+
+    private static int indexOf(List<Element> elements, String name) {
+        for (int i = 0; i < elements.size(); i++) {
+            if (name.equals(elements.get(i).getName())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String runText(Element run) {
+        assertEquals("r", run.getName());
+        StringBuilder text = new StringBuilder();
+        for (Element t : run.elements("t")) {
+            text.append(t.getText());
+        }
+        return text.toString();
+    }
+
+    private static List<String> texts(List<Element> elements) {
+        List<String> texts = new ArrayList<>();
+        for (Element element : elements) {
+            if ("r".equals(element.getName())) {
+                texts.add(runText(element));
+            }
+        }
+        return texts;
+    }
+
+    private static ReviewIssue issue(String anchorId, String clauseId, String targetText) {
+        return ReviewIssue.builder()
+                .anchorId(anchorId)
+                .clauseId(clauseId)
+                .severity("HIGH")
+                .category("履约")
+                .finding("期限不明确")
+                .suggestion("明确期限")
+                .targetText(targetText)
+                .build();
+    }
+
+    private static Element body(byte[] docx) throws Exception {
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(docx))) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                if (entry.getName().equals(AnchoredDocumentIndex.DOCUMENT_PART)) {
+                    Document document = new SAXReader().read(new ByteArrayInputStream(zip.readAllBytes()));
+                    return document.getRootElement().element("body");
+                }
+            }
+        }
+        throw new IllegalStateException("document.xml not found");
+    }
+
+    private static byte[] docx(String bodyXml) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(out)) {
+            putEntry(zip, AnchoredDocumentIndex.CONTENT_TYPES_PART,
+                    "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+                    + "<Types xmlns=\"http://schemas.openxmlformats.org/package/2006/content-types\">"
+                    + "<Default Extension=\"rels\" ContentType=\"application/vnd.openxmlformats-package.relationships+xml\"/>"
+                    + "<Default Extension=\"xml\" ContentType=\"application/xml\"/>"
+                    + "<Override PartName=\"/word/document.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.wordprocessingml.document.main+xml\"/>"
+                    + "</Types>");
+            putEntry(zip, "_rels/.rels",
+                    "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+                    + "<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">"
+                    + "<Relationship Id=\"rId1\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/officeDocument\" Target=\"word/document.xml\"/>"
+                    + "</Relationships>");
+            putEntry(zip, AnchoredDocumentIndex.DOCUMENT_RELS_PART,
+                    "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+                    + "<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\"/>");
+            putEntry(zip, AnchoredDocumentIndex.DOCUMENT_PART, "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+                    + "<w:document xmlns:w=\"" + W_NS + "\"><w:body>" + bodyXml + "</w:body></w:document>");
+        }
+        return out.toByteArray();
+    }
+
+    private static void putEntry(ZipOutputStream zip, String name, String content) throws IOException {
+        zip.putNextEntry(new ZipEntry(name));
+        zip.write(content.getBytes(StandardCharsets.UTF_8));
+        zip.closeEntry();
+    }
+}